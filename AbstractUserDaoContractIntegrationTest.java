@@ -0,0 +1,164 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Общий контракт UserDao: каждая реализация проверяется одними и теми же сценариями
+@Testcontainers
+abstract class AbstractUserDaoContractIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private UserDao userDao;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    protected abstract UserDao createDao();
+
+    private UserDao dao() {
+        if (userDao == null) {
+            userDao = createDao();
+        }
+        return userDao;
+    }
+
+    @Test
+    void shouldSaveAndFindById() {
+        User saved = dao().save(new User("Alice", "alice@contract.com", 30));
+
+        User found = dao().findById(saved.getId()).orElseThrow();
+
+        assertNotNull(saved.getId());
+        assertEquals(0L, saved.getVersion());
+        assertEquals("Alice", found.getName());
+        assertEquals("alice@contract.com", found.getEmail());
+        assertEquals(30, found.getAge());
+        assertEquals(saved.getCreatedAt().withNano(0), found.getCreatedAt().withNano(0));
+        assertFalse(dao().findById(-1L).isPresent());
+    }
+
+    @Test
+    void shouldKeepNullAge() {
+        User saved = dao().save(new User("No Age", "no-age@contract.com", null));
+
+        assertNull(dao().findById(saved.getId()).orElseThrow().getAge());
+    }
+
+    @Test
+    void shouldFindAllByIdInIdOrderSkippingMissing() {
+        User first = dao().save(new User("Batch A", "batch-a@contract.com", 20));
+        User second = dao().save(new User("Batch B", "batch-b@contract.com", 21));
+
+        List<User> found = dao().findAllById(Arrays.asList(second.getId(), -5L, first.getId()));
+
+        assertEquals(Arrays.asList(first.getId(), second.getId()),
+                found.stream().map(User::getId).collect(Collectors.toList()));
+        assertTrue(dao().findAllById(List.of()).isEmpty());
+    }
+
+    @Test
+    void shouldFindByEmailIgnoringCase() {
+        User saved = dao().save(new User("Bob", "Bob@Contract.com", 40));
+
+        assertEquals(saved.getId(), dao().findByEmail("bob@contract.com").orElseThrow().getId());
+        assertTrue(dao().isEmailExistsForOtherUser("BOB@contract.com", -1L));
+        assertFalse(dao().isEmailExistsForOtherUser("bob@contract.com", saved.getId()));
+        assertFalse(dao().findByEmail("nobody@contract.com").isPresent());
+    }
+
+    @Test
+    void shouldUpdateAndIncrementVersion() {
+        User saved = dao().save(new User("Carol", "carol@contract.com", 25));
+        User loaded = dao().findById(saved.getId()).orElseThrow();
+        loaded.setName("Caroline");
+
+        User updated = dao().update(loaded);
+
+        assertEquals("Caroline", updated.getName());
+        assertEquals(loaded.getVersion() + 1, updated.getVersion());
+        assertEquals("Caroline", dao().findById(saved.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void shouldRejectUpdateOfStaleCopy() {
+        User saved = dao().save(new User("Stale", "stale@contract.com", 30));
+        User first = dao().findById(saved.getId()).orElseThrow();
+        User second = dao().findById(saved.getId()).orElseThrow();
+
+        first.setAge(31);
+        dao().update(first);
+        second.setAge(32);
+
+        assertThrows(OptimisticLockConflictException.class, () -> dao().update(second));
+        assertEquals(31, dao().findById(saved.getId()).orElseThrow().getAge());
+    }
+
+    @Test
+    void shouldDeleteAndRejectMissing() {
+        User saved = dao().save(new User("Dave", "dave@contract.com", 50));
+
+        dao().delete(saved.getId());
+
+        assertFalse(dao().findById(saved.getId()).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> dao().delete(saved.getId()));
+    }
+
+    @Test
+    void shouldFindByQueryAndSearchByName() {
+        dao().save(new User("Query Zed", "query-zed@contract.com", 61));
+        dao().save(new User("Query Young", "query-young@contract.com", 62));
+
+        List<User> byAge = dao().findByQuery(UserQuery.builder().ageBetween(61, 62)
+                .sortBy(UserQuery.SortField.AGE, true).build());
+        List<User> byName = dao().searchByName("query z", 10);
+
+        assertEquals(Arrays.asList("Query Young", "Query Zed"),
+                byAge.stream().map(User::getName).collect(Collectors.toList()));
+        assertEquals(1, byName.size());
+        assertEquals("Query Zed", byName.get(0).getName());
+    }
+
+    @Test
+    void shouldUpsertByEmail() {
+        User inserted = dao().upsertByEmail(new User("Eve", "eve@contract.com", 30));
+        User updated = dao().upsertByEmail(new User("Eve Adams", "EVE@contract.com", 31));
+
+        assertEquals(inserted.getId(), updated.getId());
+        assertEquals("Eve Adams", dao().findById(inserted.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void shouldRollBackUnitOfWork() {
+        User existing = dao().save(new User("Frank", "frank@contract.com", 40));
+
+        assertThrows(IllegalArgumentException.class, () -> dao().inTransaction(dao -> {
+            dao.save(new User("Ghost", "ghost@contract.com", 20));
+            User user = dao.findById(existing.getId()).orElseThrow();
+            user.setName("Renamed");
+            dao.update(user);
+            throw new IllegalArgumentException("Validation failed");
+        }));
+        dao().inTransaction(outer -> outer.inTransaction(inner ->
+                inner.save(new User("Nested", "nested@contract.com", 25))));
+
+        assertFalse(dao().findByEmail("ghost@contract.com").isPresent());
+        assertEquals("Frank", dao().findById(existing.getId()).orElseThrow().getName());
+        assertTrue(dao().findByEmail("nested@contract.com").isPresent());
+    }
+}
@@ -0,0 +1,100 @@
+package ru.aston.hometask.intensive2.program.limit;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.service.UserService;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void shouldRejectImmediatelyByPriorityShare() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10, 1.5, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(Priority.BULK);
+        }
+        assertThrows(LimitExceededException.class, () -> limiter.acquire(Priority.BULK));
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(Priority.READ);
+        }
+        assertThrows(LimitExceededException.class, () -> limiter.acquire(Priority.READ));
+
+        assertEquals(10, limiter.getInflight());
+        assertEquals(1, limiter.getRejected(Priority.BULK));
+        assertEquals(1, limiter.getRejected(Priority.READ));
+        assertEquals(0, limiter.getRejected(Priority.WRITE));
+    }
+
+    @Test
+    void shouldGrowWhileLatencyIsStableAndShrinkWhenQueueBuilds() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100, 1.5, clock::get);
+
+        for (int round = 0; round < 50; round++) {
+            runRound(limiter, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        int grown = limiter.getLimit();
+        for (int round = 0; round < 50; round++) {
+            runRound(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertTrue(grown > 20, "limit " + grown);
+        assertTrue(limiter.getLimit() < 20, "limit " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 4);
+        assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    void shouldBackOffOnDropsAndIgnoreUnrelatedFailures() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100, 1.5, clock::get);
+
+        AdaptiveConcurrencyLimiter.Permit ignored = limiter.acquire(Priority.WRITE);
+        ignored.ignore();
+        ignored.ignore();
+        assertEquals(20, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+
+        limiter.acquire(Priority.WRITE).dropped();
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    void shouldShedLoadInFrontOfService() {
+        UserService delegate = mock(UserService.class);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, 1.5, clock::get);
+        UserService service = new ConcurrencyLimitedUserService(delegate, limiter);
+        when(delegate.getAllUsers()).thenThrow(new DeadlineExceededException("slow"));
+        when(delegate.getUserById(-1L)).thenThrow(new IllegalArgumentException("invalid id"));
+
+        assertThrows(DeadlineExceededException.class, service::getAllUsers);
+        assertThrows(IllegalArgumentException.class, () -> service.getUserById(-1L));
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+
+        limiter.acquire(Priority.READ);
+        limiter.acquire(Priority.READ);
+        limiter.acquire(Priority.READ);
+        assertThrows(LimitExceededException.class, () -> service.getUserById(1L));
+        verify(delegate, never()).getUserById(1L);
+    }
+
+    // Столько одновременных вызовов, сколько позволяет лимит, каждый длиной rttNanos
+    private void runRound(AdaptiveConcurrencyLimiter limiter, long rttNanos) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        int concurrency = limiter.getLimit();
+        for (int i = 0; i < concurrency; i++) {
+            permits.add(limiter.acquire(Priority.READ));
+        }
+        clock.addAndGet(rttNanos);
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::success);
+    }
+}
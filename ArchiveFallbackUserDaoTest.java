@@ -0,0 +1,156 @@
+package ru.aston.hometask.intensive2.program.archive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.OptimisticLockConflictException;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveFallbackUserDaoTest {
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private UserArchive archive;
+
+    private ArchiveFallbackUserDao dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = new ArchiveFallbackUserDao(userDao, archive);
+    }
+
+    @Test
+    void shouldNotTouchArchiveWhenUserIsActive() {
+        User user = user(1L, "john@example.com");
+        when(userDao.findById(1L)).thenReturn(Optional.of(user));
+        when(userDao.update(user)).thenReturn(user);
+
+        assertSame(user, dao.findById(1L).orElseThrow());
+        assertSame(user, dao.update(user));
+        verifyNoInteractions(archive);
+    }
+
+    @Test
+    void shouldRestoreArchivedUserOnLookupMiss() {
+        User archived = user(2L, "old@example.com");
+        when(userDao.findById(2L)).thenReturn(Optional.empty());
+        when(archive.findArchivedIds(List.of(2L))).thenReturn(Set.of(2L));
+        when(archive.restoreById(2L)).thenReturn(Optional.of(archived));
+        when(userDao.findByEmail("Old@Example.com")).thenReturn(Optional.empty());
+        when(archive.isEmailArchived("Old@Example.com", null)).thenReturn(true);
+        when(archive.restoreByEmails(List.of("Old@Example.com"))).thenReturn(List.of(archived));
+
+        assertSame(archived, dao.findById(2L).orElseThrow());
+        assertSame(archived, dao.findByEmail("Old@Example.com").orElseThrow());
+    }
+
+    @Test
+    void shouldNotStartMoveWhenLookupMissIsNotArchived() {
+        when(userDao.findById(3L)).thenReturn(Optional.empty());
+        when(archive.findArchivedIds(List.of(3L))).thenReturn(Set.of());
+        when(userDao.findByEmail("nobody@example.com")).thenReturn(Optional.empty());
+
+        assertFalse(dao.findById(3L).isPresent());
+        assertFalse(dao.findByEmail("nobody@example.com").isPresent());
+        verify(archive, never()).restoreById(any());
+        verify(archive, never()).restoreByEmails(any());
+    }
+
+    @Test
+    void shouldMergeRestoredUsersIntoBatchLookupInIdOrder() {
+        User first = user(1L, "a@example.com");
+        User second = user(2L, "b@example.com");
+        User third = user(3L, "c@example.com");
+        when(userDao.findAllById(List.of(1L, 2L, 3L, 4L))).thenReturn(List.of(first, third));
+        when(archive.findArchivedIds(Set.of(2L, 4L))).thenReturn(Set.of(2L));
+        when(archive.restoreById(2L)).thenReturn(Optional.of(second));
+
+        assertEquals(List.of(first, second, third), dao.findAllById(List.of(1L, 2L, 3L, 4L)));
+    }
+
+    @Test
+    void shouldRestoreAndRepeatWriteThatMissedArchivedRow() {
+        User user = user(5L, "cold@example.com");
+        when(userDao.update(user)).thenThrow(new OptimisticLockConflictException("gone", null)).thenReturn(user);
+        when(archive.restoreById(5L)).thenReturn(Optional.of(user));
+
+        assertSame(user, dao.update(user));
+        verify(userDao, times(2)).update(user);
+    }
+
+    @Test
+    void shouldRethrowWriteFailureWhenUserIsNotArchived() {
+        User user = user(6L, "conflict@example.com");
+        OptimisticLockConflictException conflict = new OptimisticLockConflictException("conflict", null);
+        when(userDao.update(user)).thenThrow(conflict);
+        when(archive.restoreById(6L)).thenReturn(Optional.empty());
+
+        assertSame(conflict, assertThrows(OptimisticLockConflictException.class, () -> dao.update(user)));
+        verify(userDao, times(1)).update(user);
+    }
+
+    @Test
+    void shouldDeleteArchivedUserThroughActiveTable() {
+        doThrow(new IllegalArgumentException("User not found with id: 7")).doNothing().when(userDao).delete(7L);
+        when(archive.restoreById(7L)).thenReturn(Optional.of(user(7L, "gone@example.com")));
+
+        dao.delete(7L);
+
+        verify(userDao, times(2)).delete(7L);
+    }
+
+    @Test
+    void shouldTreatArchivedEmailAsTaken() {
+        when(userDao.isEmailExistsForOtherUser("old@example.com", null)).thenReturn(false);
+        when(archive.isEmailArchived("old@example.com", null)).thenReturn(true);
+
+        assertTrue(dao.isEmailExistsForOtherUser("old@example.com", null));
+    }
+
+    @Test
+    void shouldNotRepeatWritesInsideUnitOfWork() {
+        User user = user(8L, "unit@example.com");
+        when(userDao.inTransaction(any())).thenAnswer(invocation -> {
+            Function<UserDao, ?> work = invocation.getArgument(0);
+            return work.apply(userDao);
+        });
+        when(userDao.update(user)).thenThrow(new OptimisticLockConflictException("gone", null));
+
+        assertThrows(OptimisticLockConflictException.class, () -> dao.inTransaction(unit -> unit.update(user)));
+        verify(archive, never()).restoreById(any());
+    }
+
+    @Test
+    void shouldArchiveInBatchesUntilNoCandidatesLeft() {
+        LocalDateTime now = LocalDateTime.of(2024, 6, 1, 12, 0);
+        when(archive.archiveBatch(now.minusDays(30), 100)).thenReturn(100, 100, 40);
+        UserArchiver archiver = new UserArchiver(archive, Duration.ofDays(30), 100, 0, 60_000, () -> now);
+
+        assertEquals(240, archiver.archiveOnce());
+        assertEquals(240, archiver.getArchived());
+        verify(archive, times(3)).archiveBatch(now.minusDays(30), 100);
+    }
+
+    private static User user(Long id, String email) {
+        User user = new User("User " + id, email, 30);
+        user.setId(id);
+        return user;
+    }
+}
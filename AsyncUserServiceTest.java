@@ -0,0 +1,120 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.AsyncUserDaoImpl;
+import ru.aston.hometask.intensive2.program.dao.OptimisticLockConflictException;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncUserServiceTest {
+
+    @Mock
+    private UserDao userDao;
+
+    private AsyncUserDaoImpl asyncUserDao;
+    private AsyncUserService userService;
+
+    @BeforeEach
+    void setUp() {
+        asyncUserDao = new AsyncUserDaoImpl(userDao, 2, 4);
+        userService = new AsyncUserServiceImpl(asyncUserDao);
+        lenient().when(userDao.inTransaction(any())).thenAnswer(invocation ->
+                invocation.<Function<UserDao, Object>>getArgument(0).apply(userDao));
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncUserDao.close();
+    }
+
+    @Test
+    void shouldCreateUserWithoutBlockingCaller() {
+        User saved = new User("John Doe", "john@example.com", 30);
+        saved.setId(1L);
+        when(userDao.findByEmail("john@example.com")).thenReturn(Optional.empty());
+        when(userDao.save(any(User.class))).thenReturn(saved);
+
+        User result = userService.createUser("John Doe", "john@example.com", 30).join();
+
+        assertEquals(1L, result.getId());
+        verify(userDao).save(any(User.class));
+        verify(userDao).inTransaction(any());
+    }
+
+    @Test
+    void shouldFailFutureOnValidationError() {
+        CompletableFuture<User> future = userService.createUser("", "john@example.com", 30);
+
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        verifyNoInteractions(userDao);
+    }
+
+    @Test
+    void shouldRejectUpdateWhenEmailTakenByOtherUser() {
+        User existing = new User("Old", "old@example.com", 20);
+        existing.setId(5L);
+        when(userDao.findById(5L)).thenReturn(Optional.of(existing));
+        when(userDao.isEmailExistsForOtherUser("taken@example.com", 5L)).thenReturn(true);
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> userService.updateUser(5L, null, "taken@example.com", null).join());
+
+        assertEquals("Another user with this email already exists: taken@example.com",
+                exception.getCause().getMessage());
+        verify(userDao, never()).update(any());
+    }
+
+    @Test
+    void shouldRetryUpdateInNewTransactionOnVersionConflict() {
+        User existing = new User("Old", "old@example.com", 20);
+        existing.setId(5L);
+        AsyncUserService retryingService = new AsyncUserServiceImpl(asyncUserDao, new RetryPolicy(3, 0, 0));
+        when(userDao.findById(5L)).thenReturn(Optional.of(existing));
+        when(userDao.update(any(User.class)))
+                .thenThrow(new OptimisticLockConflictException("User was modified concurrently", null))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        User result = retryingService.updateUser(5L, null, null, 40).join();
+
+        assertEquals(40, result.getAge());
+        verify(userDao, times(2)).inTransaction(any());
+    }
+
+    @Test
+    void shouldRejectWhenIoPoolIsSaturated() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(userDao.findAll()).thenAnswer(invocation -> {
+            release.await();
+            return Collections.emptyList();
+        });
+
+        for (int i = 0; i < 6; i++) {
+            userService.getAllUsers();
+        }
+        CompletableFuture<?> rejected = userService.getAllUsers();
+
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        release.countDown();
+    }
+}
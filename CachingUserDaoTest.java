@@ -0,0 +1,138 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingUserDaoTest {
+
+    @Mock
+    private UserDao userDao;
+
+    private final AtomicLong clock = new AtomicLong();
+    private HeapUserCache cache;
+    private CachingUserDao cachingUserDao;
+
+    @BeforeEach
+    void setUp() {
+        cache = new HeapUserCache(1_000, 100, clock::get);
+        cachingUserDao = new CachingUserDao(userDao, cache);
+    }
+
+    @Test
+    void shouldServeRepeatedLookupsFromCache() {
+        when(userDao.findById(1L)).thenReturn(Optional.of(user(1L, "john@example.com")));
+
+        cachingUserDao.findById(1L);
+        User byId = cachingUserDao.findById(1L).orElseThrow();
+        User byEmail = cachingUserDao.findByEmail("john@example.com").orElseThrow();
+
+        assertEquals(1L, byId.getId());
+        assertEquals(1L, byEmail.getId());
+        assertEquals(2, cachingUserDao.getHits());
+        verify(userDao, times(1)).findById(1L);
+        verify(userDao, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void shouldLoadOnlyCacheMissesForBatchLookup() {
+        cache.put(user(1L, "john@example.com"));
+        when(userDao.findAllById(List.of(3L, 2L))).thenReturn(List.of(user(2L, "jane@example.com")));
+
+        List<User> users = cachingUserDao.findAllById(List.of(3L, 1L, 2L));
+
+        assertEquals(List.of(1L, 2L), users.stream().map(User::getId).collect(Collectors.toList()));
+        assertTrue(cache.get(2L).isPresent());
+        assertEquals(1, cachingUserDao.getHits());
+        assertEquals(2, cachingUserDao.getMisses());
+    }
+
+    @Test
+    void shouldReturnCopiesSoCallersCannotCorruptCache() {
+        when(userDao.findById(1L)).thenReturn(Optional.of(user(1L, "john@example.com")));
+
+        cachingUserDao.findById(1L).orElseThrow().setName("Changed");
+
+        assertEquals("John", cachingUserDao.findById(1L).orElseThrow().getName());
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() {
+        when(userDao.findById(1L)).thenReturn(Optional.of(user(1L, "john@example.com")));
+
+        cachingUserDao.findById(1L);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cachingUserDao.findById(1L);
+
+        verify(userDao, times(2)).findById(1L);
+    }
+
+    @Test
+    void shouldDropEmailIndexWhenInvalidated() {
+        cache.put(user(1L, "john@example.com"));
+
+        cache.evictAll(Collections.singleton(1L));
+
+        assertFalse(cache.getByEmail("john@example.com").isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldEvictUsersTouchedByRolledBackTransaction() {
+        cache.put(user(1L, "john@example.com"));
+        when(userDao.inTransaction(any())).thenAnswer(invocation -> {
+            invocation.<Function<UserDao, Object>>getArgument(0).apply(userDao);
+            throw new IllegalStateException("rollback");
+        });
+
+        assertThrows(IllegalStateException.class, () -> cachingUserDao.inTransaction(dao -> {
+            User user = user(1L, "john@example.com");
+            user.setName("Uncommitted");
+            return dao.update(user);
+        }));
+
+        assertFalse(cache.get(1L).isPresent());
+        verify(userDao).update(any(User.class));
+    }
+
+    @Test
+    void shouldEvictUsersUpsertedInsideTransaction() {
+        cache.put(user(1L, "john@example.com"));
+        cache.put(user(2L, "jane@example.com"));
+        when(userDao.inTransaction(any())).thenAnswer(invocation ->
+                invocation.<Function<UserDao, Object>>getArgument(0).apply(userDao));
+        when(userDao.upsertByEmail(any(User.class))).thenReturn(user(1L, "john@example.com"));
+        when(userDao.upsertAll(any())).thenReturn(List.of(user(2L, "jane@example.com")));
+
+        cachingUserDao.inTransaction(dao -> {
+            dao.upsertByEmail(user(null, "john@example.com"));
+            return dao.upsertAll(List.of(user(null, "jane@example.com")));
+        });
+
+        assertFalse(cache.get(1L).isPresent());
+        assertFalse(cache.get(2L).isPresent());
+    }
+
+    private static User user(Long id, String email) {
+        User user = new User("John", email, 30);
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,55 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    @Test
+    void shouldRouteSameKeyToSameNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 64);
+
+        assertEquals(ring.nodeFor(42L), ring.nodeFor(42L));
+        assertEquals(ring.nodeFor("john@example.com"), ring.nodeFor("john@example.com"));
+    }
+
+    @Test
+    void shouldSpreadSequentialIdsAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (long id = 0; id < 30_000; id++) {
+            counts.merge(ring.nodeFor(id), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 7_000, "Unbalanced ring: " + counts));
+    }
+
+    @Test
+    void shouldMoveOnlyFractionOfKeysWhenNodeIsAdded() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 128);
+        int moved = 0;
+
+        for (long id = 0; id < 10_000; id++) {
+            String newOwner = after.nodeFor(id);
+            if (!before.nodeFor(id).equals(newOwner)) {
+                assertEquals("d", newOwner);
+                moved++;
+            }
+        }
+
+        assertTrue(moved > 1_500 && moved < 3_500, "Moved keys: " + moved);
+    }
+
+    @Test
+    void shouldRejectEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(Arrays.asList(), 16));
+    }
+}
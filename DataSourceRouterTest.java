@@ -0,0 +1,85 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class DataSourceRouterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final SessionFactory primary = mock(SessionFactory.class);
+    private DataSourceRouter.Node first;
+    private DataSourceRouter.Node second;
+
+    @BeforeEach
+    void setUp() {
+        first = DataSourceRouter.node("replica-1", mock(SessionFactory.class));
+        second = DataSourceRouter.node("replica-2", mock(SessionFactory.class));
+    }
+
+    @Test
+    void shouldBalanceReadsRoundRobin() {
+        DataSourceRouter router = router(DataSourceRouter.Balancing.ROUND_ROBIN);
+
+        assertSame(first, router.selectReadNode());
+        assertSame(second, router.selectReadNode());
+        assertSame(first, router.selectReadNode());
+    }
+
+    @Test
+    void shouldPreferReplicaWithLowestLatency() {
+        DataSourceRouter router = router(DataSourceRouter.Balancing.LEAST_LATENCY);
+        router.recordSuccess(first, TimeUnit.MILLISECONDS.toNanos(20));
+        router.recordSuccess(second, TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertSame(second, router.selectReadNode());
+    }
+
+    @Test
+    void shouldReadFromPrimaryWithinReadYourWritesWindow() {
+        DataSourceRouter router = router(DataSourceRouter.Balancing.ROUND_ROBIN);
+
+        router.markWrite();
+        assertNull(router.selectReadNode());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        assertNotNull(router.selectReadNode());
+    }
+
+    @Test
+    void shouldSkipUnhealthyReplicaUntilDowntimeExpires() {
+        DataSourceRouter router = router(DataSourceRouter.Balancing.ROUND_ROBIN);
+        router.recordFailure(first);
+        router.recordFailure(first);
+
+        assertSame(second, router.selectReadNode());
+        assertSame(second, router.selectReadNode());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        router.selectReadNode();
+        assertTrue(first.isHealthy(clock.get()));
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhenAllReplicasAreDown() {
+        DataSourceRouter router = router(DataSourceRouter.Balancing.ROUND_ROBIN);
+        router.recordFailure(first);
+        router.recordFailure(first);
+        router.recordFailure(second);
+        router.recordFailure(second);
+
+        assertNull(router.selectReadNode());
+    }
+
+    private DataSourceRouter router(DataSourceRouter.Balancing balancing) {
+        return new DataSourceRouter(primary, Arrays.asList(first, second), balancing,
+                500, 2, 1_000, clock::get);
+    }
+}
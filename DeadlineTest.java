@@ -0,0 +1,143 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.service.TimeLimitedUserService;
+import ru.aston.hometask.intensive2.program.service.UserService;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.*;
+
+class DeadlineTest {
+
+    @Test
+    void shouldOnlyShortenDeadlineWhenNested() {
+        long[] remaining = new long[3];
+
+        Deadline.within(Duration.ofSeconds(10), () -> {
+            remaining[0] = Deadline.current().remainingMillis();
+            Deadline.within(Duration.ofHours(1), () -> remaining[1] = Deadline.current().remainingMillis());
+            return Deadline.within(Duration.ofSeconds(1), () -> remaining[2] = Deadline.current().remainingMillis());
+        });
+
+        assertTrue(remaining[0] > 9_000 && remaining[0] <= 10_000);
+        assertTrue(remaining[1] <= 10_000);
+        assertTrue(remaining[2] <= 1_000);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void shouldPropagateDeadlineToOtherThread() {
+        Long remaining = Deadline.within(Duration.ofSeconds(5), () -> CompletableFuture
+                .supplyAsync(Deadline.propagate(() -> Deadline.current().remainingMillis()))
+                .join());
+
+        assertTrue(remaining > 0 && remaining <= 5_000);
+        assertNull(CompletableFuture.supplyAsync(Deadline.propagate(Deadline::current)).join());
+    }
+
+    @Test
+    void shouldSetLocalStatementTimeoutFromRemainingTime() throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        long applied = Deadline.getApplied();
+
+        Deadline.after(Duration.ofSeconds(5)).applyTo(connection);
+
+        verify(statement).execute(matches("set local statement_timeout = [1-5]\\d{0,3}"));
+        verify(statement).close();
+        assertEquals(applied + 1, Deadline.getApplied());
+    }
+
+    @Test
+    void shouldApplyRemainingTimeOfCurrentDeadline() throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+
+        Deadline.applyCurrent(connection);
+        verify(connection, never()).createStatement();
+
+        Deadline.within(Duration.ofSeconds(5), () -> {
+            Deadline.within(Duration.ofSeconds(1), () -> {
+                try {
+                    Deadline.applyCurrent(connection);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            });
+            return null;
+        });
+
+        verify(statement).execute(matches("set local statement_timeout = (\\d{1,3}|1000)"));
+    }
+
+    @Test
+    void shouldRejectWorkAfterDeadlineWithoutTouchingDatabase() throws SQLException {
+        Connection connection = mock(Connection.class);
+        long expired = Deadline.getExpired();
+
+        assertThrows(DeadlineExceededException.class, () -> Deadline.after(Duration.ZERO).applyTo(connection));
+        assertThrows(DeadlineExceededException.class,
+                () -> Deadline.within(Duration.ZERO, () -> {
+                    Deadline.checkCurrent();
+                    return null;
+                }));
+
+        verify(connection, never()).createStatement();
+        assertEquals(expired + 2, Deadline.getExpired());
+        Deadline.checkCurrent();
+    }
+
+    @Test
+    void shouldRecognizeServerCancellationInCauseChain() {
+        SQLException cancelled = new SQLException("canceling statement due to statement timeout", "57014");
+        RuntimeException wrapped = new RuntimeException("Error finding all users",
+                new IllegalStateException(cancelled));
+        long count = Deadline.getCancelled();
+
+        assertTrue(Deadline.isExceeded(wrapped));
+        assertFalse(Deadline.isExceeded(new RuntimeException(new SQLException("duplicate key", "23505"))));
+
+        DeadlineExceededException translated = Deadline.exceeded(wrapped);
+        assertSame(wrapped, translated.getCause());
+        assertSame(translated, Deadline.exceeded(translated));
+        assertEquals(count + 1, Deadline.getCancelled());
+    }
+
+    @Test
+    void shouldApplyPerOperationTimeouts() {
+        UserService delegate = mock(UserService.class);
+        AtomicReference<Deadline> seenById = new AtomicReference<>();
+        AtomicReference<Deadline> seenAll = new AtomicReference<>();
+        when(delegate.getUserById(1L)).thenAnswer(invocation -> {
+            seenById.set(Deadline.current());
+            return Optional.empty();
+        });
+        when(delegate.getAllUsers()).thenAnswer(invocation -> {
+            seenAll.set(Deadline.current());
+            return List.of();
+        });
+        UserService service = new TimeLimitedUserService(delegate, Duration.ofSeconds(2),
+                Map.of("getAllUsers", Duration.ZERO));
+
+        service.getUserById(1L);
+        service.getAllUsers();
+
+        assertTrue(seenById.get().remainingMillis() <= 2_000);
+        assertNull(seenAll.get());
+        assertNull(Deadline.current());
+    }
+}
@@ -0,0 +1,29 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcUserDaoIntegrationTest extends AbstractUserDaoContractIntegrationTest {
+
+    @Override
+    protected UserDao createDao() {
+        return new JdbcUserDao();
+    }
+
+    // Строки, записанные одной реализацией, читаются другой: схема и формат колонок общие
+    @Test
+    void shouldInteroperateWithHibernateDao() {
+        User saved = new JdbcUserDao().save(new User("Mixed", "Mixed@Contract.com", 33));
+
+        User loaded = new UserDaoImpl().findByEmail("mixed@contract.com").orElseThrow();
+        loaded.setAge(34);
+        User updated = new UserDaoImpl().update(loaded);
+
+        assertEquals(saved.getId(), loaded.getId());
+        assertEquals("mixed@contract.com", loaded.getEmailNormalized());
+        assertEquals(34, new JdbcUserDao().findById(saved.getId()).orElseThrow().getAge());
+        assertEquals(updated.getVersion(), new JdbcUserDao().findById(saved.getId()).orElseThrow().getVersion());
+    }
+}
@@ -0,0 +1,133 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapUserCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private OffHeapUserCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new OffHeapUserCache(1_000, 4, OffHeapUserCache.DEFAULT_SLOT_SIZE, 1, clock::get);
+    }
+
+    @Test
+    void shouldRoundTripAllFields() {
+        User user = user(1L, "Jöhn Доу", "John@Example.com");
+        user.setCreatedAt(LocalDateTime.of(2024, 5, 17, 10, 30, 15, 123_456_000));
+        user.setVersion(7L);
+        cache.put(user);
+        User withNulls = user(2L, "No Age", "noage@example.com");
+        withNulls.setAge(null);
+        withNulls.setVersion(null);
+        cache.put(withNulls);
+
+        User cached = cache.get(1L).orElseThrow();
+        User cachedWithNulls = cache.get(2L).orElseThrow();
+
+        assertEquals("Jöhn Доу", cached.getName());
+        assertEquals("John@Example.com", cached.getEmail());
+        assertEquals(30, cached.getAge());
+        assertEquals(7L, cached.getVersion());
+        assertEquals(user.getCreatedAt(), cached.getCreatedAt());
+        assertNull(cachedWithNulls.getAge());
+        assertNull(cachedWithNulls.getVersion());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void shouldFindByNormalizedEmailAndFollowEmailChanges() {
+        cache.put(user(1L, "John", "John@Example.com"));
+
+        assertEquals(1L, cache.getByEmail(" john@example.COM").orElseThrow().getId());
+
+        cache.put(user(1L, "John", "john.new@example.com"));
+
+        assertFalse(cache.getByEmail("john@example.com").isPresent());
+        assertEquals(1L, cache.getByEmail("john.new@example.com").orElseThrow().getId());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() {
+        cache.put(user(1L, "John", "john@example.com"));
+
+        clock.addAndGet(1_000_000_000L);
+
+        assertFalse(cache.get(1L).isPresent());
+        assertFalse(cache.getByEmail("john@example.com").isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldEvictUnreferencedEntriesFirstWhenFull() {
+        for (long id = 1; id <= 4; id++) {
+            cache.put(user(id, "User " + id, "user" + id + "@example.com"));
+        }
+        cache.get(1L);
+        cache.get(3L);
+
+        cache.put(user(5L, "User 5", "user5@example.com"));
+        cache.put(user(6L, "User 6", "user6@example.com"));
+
+        assertEquals(4, cache.size());
+        assertTrue(cache.get(1L).isPresent());
+        assertTrue(cache.get(3L).isPresent());
+        assertFalse(cache.get(2L).isPresent());
+        assertFalse(cache.getByEmail("user4@example.com").isPresent());
+        assertEquals(6L, cache.getByEmail("user6@example.com").orElseThrow().getId());
+    }
+
+    @Test
+    void shouldRejectOversizedUserAndDropItsOldVersion() {
+        cache.put(user(1L, "John", "john@example.com"));
+
+        cache.put(user(1L, "J".repeat(OffHeapUserCache.DEFAULT_SLOT_SIZE), "john@example.com"));
+
+        assertFalse(cache.get(1L).isPresent());
+        assertEquals(1, cache.getRejected());
+    }
+
+    @Test
+    void shouldReturnIndependentCopies() {
+        cache.put(user(1L, "John", "john@example.com"));
+
+        cache.get(1L).orElseThrow().setName("Changed");
+
+        assertEquals("John", cache.get(1L).orElseThrow().getName());
+    }
+
+    @Test
+    void shouldKeepProbeChainsIntactAfterRemovals() {
+        OffHeapIndex index = new OffHeapIndex(64);
+        for (int i = 1; i <= 48; i++) {
+            // Повторяющиеся ключи дают длинные цепочки с дубликатами
+            assertTrue(index.add(i % 5, i));
+        }
+
+        for (int i = 1; i <= 48; i += 3) {
+            assertTrue(index.remove(i % 5, i));
+        }
+
+        for (int i = 1; i <= 48; i++) {
+            assertEquals(i % 3 != 1, index.contains(i % 5, i), "value " + i);
+        }
+        assertEquals(32, index.size());
+        assertEquals(7, index.getAll(2).length);
+    }
+
+    private static User user(Long id, String name, String email) {
+        User user = new User(name, email, 30);
+        user.setId(id);
+        user.setVersion(0L);
+        return user;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private UserOutbox outbox;
+
+    private final List<UserChange> delivered = new ArrayList<>();
+
+    @Test
+    void shouldDeliverBatchAndAdvanceCursor() throws Exception {
+        OutboxRelay relay = new OutboxRelay(outbox, "test", delivered::addAll, 2, 10);
+        when(outbox.changesSince(ChangeCursor.START, 2))
+                .thenReturn(List.of(change(6, 11), change(7, 12)));
+
+        assertTrue(relay.relayOnce());
+
+        assertEquals(2, delivered.size());
+        assertEquals(new ChangeCursor(7, 12), relay.getCursor());
+        assertEquals(2, relay.getRelayed());
+        verify(outbox).saveCursor("test", new ChangeCursor(7, 12));
+    }
+
+    @Test
+    void shouldKeepCursorWhenSinkFails() throws Exception {
+        OutboxRelay relay = new OutboxRelay(outbox, "test", changes -> {
+            throw new IOException("disk full");
+        }, 100, 10);
+        when(outbox.changesSince(ChangeCursor.START, 100)).thenReturn(List.of(change(6, 11)));
+
+        assertThrows(IOException.class, relay::relayOnce);
+
+        assertEquals(ChangeCursor.START, relay.getCursor());
+        verify(outbox, never()).saveCursor(any(), any());
+    }
+
+    @Test
+    void shouldOrderCursorsByTransactionThenSequence() {
+        assertTrue(new ChangeCursor(1, 99).compareTo(new ChangeCursor(2, 1)) < 0);
+        assertTrue(new ChangeCursor(2, 5).compareTo(new ChangeCursor(2, 4)) > 0);
+        assertEquals(new ChangeCursor(42, 7), ChangeCursor.parse(new ChangeCursor(42, 7).toString()));
+        assertThrows(IllegalArgumentException.class, () -> ChangeCursor.parse("42"));
+    }
+
+    private static UserChange change(long transactionId, long sequence) {
+        return new UserChange(new ChangeCursor(transactionId, sequence), UserChange.Operation.DELETED, sequence,
+                null, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,168 @@
+package ru.aston.hometask.intensive2.program.resilience;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientUserDaoTest {
+
+    @Mock
+    private UserDao userDao;
+
+    private final AtomicLong clock = new AtomicLong();
+    private CircuitBreaker breaker;
+    private RetryBudget budget;
+    private ResilientUserDao dao;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new CircuitBreaker(3, 1_000, clock::get);
+        budget = new RetryBudget(0.5, 10);
+        dao = new ResilientUserDao(userDao, new RetryPolicy(3, 0, 0), budget, breaker);
+    }
+
+    @Test
+    void shouldClassifyErrorsBySqlState() {
+        assertEquals(TransientErrors.Kind.ROLLED_BACK, TransientErrors.classify(dbError("40001")));
+        assertEquals(TransientErrors.Kind.ROLLED_BACK, TransientErrors.classify(dbError("40P01")));
+        assertEquals(TransientErrors.Kind.ROLLED_BACK, TransientErrors.classify(dbError("08001")));
+        assertEquals(TransientErrors.Kind.CONNECTION_LOST, TransientErrors.classify(dbError("08006")));
+        assertEquals(TransientErrors.Kind.CONNECTION_LOST, TransientErrors.classify(dbError("57P01")));
+        assertEquals(TransientErrors.Kind.NONE, TransientErrors.classify(dbError("23505")));
+        assertEquals(TransientErrors.Kind.NONE, TransientErrors.classify(new IllegalStateException("boom")));
+        assertTrue(TransientErrors.isUnavailable(dbError("08006")));
+        assertFalse(TransientErrors.isUnavailable(dbError("40001")));
+    }
+
+    @Test
+    void shouldRetryReadAfterConnectionLoss() {
+        User user = user();
+        when(userDao.findById(1L)).thenThrow(dbError("08006")).thenReturn(Optional.of(user));
+
+        assertSame(user, dao.findById(1L).orElseThrow());
+        verify(userDao, times(2)).findById(1L);
+        assertEquals(1, dao.getRetryPolicy().getRetries());
+    }
+
+    @Test
+    void shouldRetryWriteOnlyWhenTransactionWasRolledBack() {
+        User user = user();
+        when(userDao.save(user)).thenThrow(dbError("08006"));
+
+        assertThrows(RuntimeException.class, () -> dao.save(user));
+        verify(userDao, times(1)).save(user);
+
+        when(userDao.update(user)).thenThrow(dbError("40001")).thenReturn(user);
+
+        assertSame(user, dao.update(user));
+        verify(userDao, times(2)).update(user);
+    }
+
+    @Test
+    void shouldNotRetryOrTripOnNonTransientErrors() {
+        when(userDao.findByEmail("a@example.com")).thenThrow(new IllegalArgumentException("bad"));
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalArgumentException.class, () -> dao.findByEmail("a@example.com"));
+        }
+        verify(userDao, times(5)).findByEmail("a@example.com");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void shouldFailFastWhileOpenAndCloseAfterSuccessfulProbe() {
+        User user = user();
+        when(userDao.findById(1L)).thenThrow(dbError("08001"));
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> dao.findById(1L));
+        assertInstanceOf(SQLException.class, failure.getCause());
+        verify(userDao, times(3)).findById(1L);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpened());
+
+        assertThrows(CircuitOpenException.class, () -> dao.findById(1L));
+        verify(userDao, times(3)).findById(1L);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+        reset(userDao);
+        when(userDao.findById(1L)).thenReturn(Optional.of(user));
+
+        assertSame(user, dao.findById(1L).orElseThrow());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getRejected());
+    }
+
+    @Test
+    void shouldReopenWhenProbeFailsAndAdmitSingleProbe() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+
+        breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void shouldStopRetryingWhenBudgetIsSpent() {
+        dao = new ResilientUserDao(userDao, new RetryPolicy(3, 0, 0), new RetryBudget(0, 1),
+                new CircuitBreaker(100, 1_000, clock::get));
+        when(userDao.findAll()).thenThrow(dbError("40P01"));
+
+        assertThrows(RuntimeException.class, () -> dao.findAll());
+        verify(userDao, times(2)).findAll();
+
+        assertThrows(RuntimeException.class, () -> dao.findAll());
+        verify(userDao, times(3)).findAll();
+        assertEquals(2, dao.getRetryBudget().getExhausted());
+    }
+
+    @Test
+    void shouldRetryWholeUnitOfWorkInsteadOfSingleStatements() {
+        User user = user();
+        when(userDao.inTransaction(any())).thenAnswer(invocation -> {
+            Function<UserDao, ?> work = invocation.getArgument(0);
+            return work.apply(userDao);
+        });
+        when(userDao.findById(1L)).thenReturn(Optional.of(user));
+        when(userDao.update(user)).thenThrow(dbError("40P01")).thenReturn(user);
+
+        User updated = dao.inTransaction(unit -> unit.update(unit.findById(1L).orElseThrow()));
+
+        assertSame(user, updated);
+        verify(userDao, times(2)).inTransaction(any());
+        verify(userDao, times(2)).findById(1L);
+        verify(userDao, times(2)).update(user);
+    }
+
+    private static RuntimeException dbError(String sqlState) {
+        return new RuntimeException("Database error", new SQLException("failure", sqlState));
+    }
+
+    private static User user() {
+        User user = new User("John", "john@example.com", 30);
+        user.setId(1L);
+        return user;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private final List<Long> pauses = new ArrayList<>();
+
+    @Test
+    void shouldRetryUntilSuccess() {
+        RetryPolicy policy = new RetryPolicy(5, 10, 100, pauses::add);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new IllegalStateException("conflict");
+            }
+            return "done";
+        }, e -> e instanceof IllegalStateException);
+
+        assertEquals("done", result);
+        assertEquals(3, calls.get());
+        assertEquals(2, policy.getRetries());
+    }
+
+    @Test
+    void shouldRetryAsyncUntilSuccess() {
+        RetryPolicy policy = new RetryPolicy(5, 0, 0, pauses::add);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.executeAsync(() -> calls.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new IllegalStateException("conflict"))
+                : CompletableFuture.completedFuture("done"), e -> e instanceof IllegalStateException).join();
+
+        assertEquals("done", result);
+        assertEquals(3, calls.get());
+        assertEquals(2, policy.getRetries());
+    }
+
+    @Test
+    void shouldCapJitteredBackoff() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 40, pauses::add);
+
+        assertThrows(IllegalStateException.class, () -> policy.execute(() -> {
+            throw new IllegalStateException("conflict");
+        }, e -> true));
+
+        assertEquals(9, policy.getRetries());
+        assertEquals(1, policy.getExhausted());
+        assertTrue(pauses.stream().allMatch(pause -> pause >= 0 && pause <= 40), pauses.toString());
+    }
+
+    @Test
+    void shouldNotRetryNonRetryableFailures() {
+        RetryPolicy policy = new RetryPolicy(5, 10, 100, pauses::add);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalArgumentException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("invalid");
+        }, e -> e instanceof IllegalStateException));
+
+        assertEquals(1, calls.get());
+        assertTrue(pauses.isEmpty());
+    }
+
+    @Test
+    void shouldGiveUpWhenDeadlineLeavesNoTimeForRetry() {
+        RetryPolicy policy = new RetryPolicy(5, 10, 100, pauses::add);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> Deadline.within(Duration.ZERO, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("conflict");
+        }, e -> true)));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, policy.getExhausted());
+        assertTrue(pauses.isEmpty());
+    }
+}
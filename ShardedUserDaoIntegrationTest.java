@@ -0,0 +1,153 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class ShardedUserDaoIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> shard0 = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Container
+    private static final PostgreSQLContainer<?> shard1 = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Container
+    private static final PostgreSQLContainer<?> shard2 = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static Map<String, SessionFactory> factories;
+
+    private ShardedUserDao userDao;
+
+    @BeforeAll
+    static void setUpFactories() {
+        System.setProperty("hibernate.connection.username", shard0.getUsername());
+        System.setProperty("hibernate.connection.password", shard0.getPassword());
+        factories = new LinkedHashMap<>();
+        factories.put("shard-0", HibernateUtil.buildSessionFactory(shard0.getJdbcUrl(), false));
+        factories.put("shard-1", HibernateUtil.buildSessionFactory(shard1.getJdbcUrl(), false));
+        factories.put("shard-2", HibernateUtil.buildSessionFactory(shard2.getJdbcUrl(), false));
+    }
+
+    @AfterAll
+    static void closeFactories() {
+        factories.values().forEach(SessionFactory::close);
+    }
+
+    @BeforeEach
+    void setUp() {
+        for (SessionFactory factory : factories.values()) {
+            Transactions.inTransaction(factory, session -> {
+                session.createQuery("delete from User").executeUpdate();
+                return session.createQuery("delete from UserEmailRoute").executeUpdate();
+            });
+        }
+        userDao = new ShardedUserDao(twoShards());
+    }
+
+    @Test
+    void shouldFindUsersByIdAndEmailAcrossShards() {
+        for (int i = 0; i < 20; i++) {
+            userDao.save(new User("User " + i, "user" + i + "@example.com", 20 + i));
+        }
+
+        User found = userDao.findByEmail("user7@example.com").orElseThrow();
+
+        assertEquals("User 7", found.getName());
+        assertEquals(found.getEmail(), userDao.findById(found.getId()).orElseThrow().getEmail());
+        assertTrue(userDao.isEmailExistsForOtherUser("user7@example.com", -1L));
+        assertFalse(userDao.isEmailExistsForOtherUser("user7@example.com", found.getId()));
+    }
+
+    @Test
+    void shouldMergeFindAllAndPagesInIdOrder() {
+        for (int i = 0; i < 25; i++) {
+            userDao.save(new User("User " + i, "user" + i + "@example.com", 30));
+        }
+
+        List<User> all = userDao.findAll();
+        List<User> firstPage = userDao.findPage(null, 10);
+        List<User> secondPage = userDao.findPage(firstPage.get(9).getId(), 10);
+
+        assertEquals(25, all.size());
+        assertEquals(all.subList(0, 10).stream().map(User::getId).toList(),
+                firstPage.stream().map(User::getId).toList());
+        assertEquals(all.get(10).getId(), secondPage.get(0).getId());
+    }
+
+    @Test
+    void shouldMoveRowsWhenShardIsAdded() {
+        for (int i = 0; i < 50; i++) {
+            userDao.save(new User("User " + i, "user" + i + "@example.com", 40));
+        }
+
+        long moved = new ShardRebalancer(userDao, 7).rebalance(factories);
+
+        assertTrue(moved > 0);
+        assertEquals(50, userDao.findAll().size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(userDao.findByEmail("user" + i + "@example.com").isPresent());
+        }
+    }
+
+    @Test
+    void shouldUpdateEmailRoute() {
+        User user = userDao.save(new User("John", "john@example.com", 30));
+
+        user.setEmail("john.doe@example.com");
+        userDao.update(user);
+
+        assertFalse(userDao.findByEmail("john@example.com").isPresent());
+        assertEquals(user.getId(), userDao.findByEmail("john.doe@example.com").orElseThrow().getId());
+    }
+
+    @Test
+    void shouldReportStaleVersionAsConflict() {
+        User user = userDao.save(new User("John", "john@example.com", 30));
+        User stale = userDao.findById(user.getId()).orElseThrow();
+        user.setAge(31);
+        userDao.update(user);
+
+        stale.setAge(32);
+
+        assertThrows(OptimisticLockConflictException.class, () -> userDao.update(stale));
+        assertEquals(31, userDao.findById(user.getId()).orElseThrow().getAge());
+    }
+
+    @Test
+    void shouldReportAppliedRecordsWhenUpsertPartiallyFails() {
+        User invalid = new User(null, "broken@example.com", 40);
+
+        PartialUpsertException e = assertThrows(PartialUpsertException.class, () -> userDao.upsertAll(
+                List.of(new User("Ann", "ann@example.com", 20), invalid, new User("Bob", "bob@example.com", 30))));
+
+        assertEquals(List.of("ann@example.com", "bob@example.com"),
+                e.getApplied().stream().map(User::getEmail).collect(Collectors.toList()));
+        assertEquals(List.of(invalid), e.getFailed());
+        assertTrue(userDao.findByEmail("bob@example.com").isPresent());
+        assertFalse(userDao.findByEmail("broken@example.com").isPresent());
+    }
+
+    private static Map<String, SessionFactory> twoShards() {
+        Map<String, SessionFactory> shards = new LinkedHashMap<>();
+        shards.put("shard-0", factories.get("shard-0"));
+        shards.put("shard-1", factories.get("shard-1"));
+        return shards;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void shouldGenerateUniqueIncreasingIds() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        Set<Long> ids = new HashSet<>();
+        long previous = 0;
+
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertTrue(ids.add(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    void shouldEncodeNodeIdAndTimestamp() {
+        long before = System.currentTimeMillis();
+        long id = new SnowflakeIdGenerator(513).nextId();
+
+        assertEquals(513, SnowflakeIdGenerator.extractNodeId(id));
+        assertTrue(SnowflakeIdGenerator.extractTimestampMillis(id) >= before);
+    }
+
+    @Test
+    void shouldNotGoBackwardsWhenClockMovesBack() {
+        long[] now = {SnowflakeIdGenerator.EPOCH_MILLIS + 10_000};
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1) {
+            @Override
+            long currentTimeMillis() {
+                return now[0];
+            }
+        };
+
+        long first = generator.nextId();
+        now[0] -= 5_000;
+        long second = generator.nextId();
+
+        assertTrue(second > first);
+    }
+
+    @Test
+    void shouldRejectInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+}
@@ -0,0 +1,192 @@
+package ru.aston.hometask.intensive2.program.archive;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.batch.UserBatchLoader;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.dao.UserStatsDaoImpl;
+import ru.aston.hometask.intensive2.program.export.ExportCompression;
+import ru.aston.hometask.intensive2.program.export.ExportFormat;
+import ru.aston.hometask.intensive2.program.export.UserExporter;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.outbox.UserOutbox;
+import ru.aston.hometask.intensive2.program.snapshot.UserSnapshot;
+import ru.aston.hometask.intensive2.program.snapshot.UserSnapshotService;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserArchiveIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.now().minusDays(365);
+
+    private static UserArchive archive;
+    private static UserDao userDao;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        new UserOutbox(HibernateUtil.getSessionFactory()).install();
+        archive = new UserArchive(HibernateUtil.getSessionFactory());
+        archive.install();
+        userDao = new ArchiveFallbackUserDao(new UserDaoImpl(), archive);
+    }
+
+    @Test
+    void shouldMoveOnlyInactiveUsersIntoYearPartitions() throws SQLException {
+        insertCold(9_001L, "cold1@archive.com", LocalDateTime.of(2019, 5, 1, 0, 0));
+        insertCold(9_002L, "cold2@archive.com", LocalDateTime.of(2020, 7, 1, 0, 0));
+        User active = userDao.save(new User("Active", "active@archive.com", 30));
+        long outboxBefore = count("select count(*) from user_outbox");
+
+        while (archive.archiveBatch(CUTOFF, 1) > 0) {
+            // пачками по одной строке, как фоновый архиватор с маленьким batchSize
+        }
+
+        assertEquals(0, count("select count(*) from users where id in (9001, 9002)"));
+        assertEquals(1, count("select count(*) from users_archive_2019 where id = 9001"));
+        assertEquals(1, count("select count(*) from users_archive_2020 where id = 9002"));
+        assertTrue(new UserDaoImpl().findById(active.getId()).isPresent());
+        assertEquals(outboxBefore, count("select count(*) from user_outbox"));
+    }
+
+    @Test
+    void shouldRestoreArchivedUserOnLookupAndKeepItActive() throws SQLException {
+        insertCold(9_101L, "restored@archive.com", LocalDateTime.of(2018, 1, 10, 0, 0));
+        archiveAll();
+
+        User restored = userDao.findByEmail("Restored@Archive.com").orElseThrow();
+
+        assertEquals(9_101L, restored.getId());
+        assertEquals(0, count("select count(*) from users_archive where id = 9101"));
+        assertEquals(1, count("select count(*) from users where id = 9101 and last_modified_at is not null"));
+        archiveAll();
+        assertEquals(1, count("select count(*) from users where id = 9101"));
+
+        restored.setAge(42);
+        assertEquals(42, userDao.update(restored).getAge());
+    }
+
+    @Test
+    void shouldKeepArchivedEmailsUniqueAndUpsertIntoThem() throws SQLException {
+        insertCold(9_201L, "taken@archive.com", LocalDateTime.of(2017, 3, 3, 0, 0));
+        archiveAll();
+
+        assertTrue(userDao.isEmailExistsForOtherUser("taken@archive.com", null));
+        assertThrows(RuntimeException.class, () -> new UserDaoImpl().save(new User("Dup", "taken@archive.com", 20)));
+
+        User upserted = userDao.upsertByEmail(new User("Returned", "TAKEN@archive.com", 21));
+
+        assertEquals(9_201L, upserted.getId());
+        assertEquals("Returned", upserted.getName());
+        assertEquals(0, count("select count(*) from users_archive where id = 9201"));
+    }
+
+    @Test
+    void shouldDeleteArchivedUserAndPublishDeletion() throws SQLException {
+        insertCold(9_301L, "deleted@archive.com", LocalDateTime.of(2016, 8, 8, 0, 0));
+        archiveAll();
+
+        userDao.delete(9_301L);
+
+        assertFalse(userDao.findById(9_301L).isPresent());
+        assertEquals(1, count("select count(*) from user_outbox where user_id = 9301 and operation = 'DELETE'"));
+    }
+
+    @Test
+    void shouldRecreatePartitionAfterRolledBackBatch() throws SQLException {
+        insertCold(9_401L, "rollback@archive.com", LocalDateTime.of(2016, 3, 1, 0, 0));
+        execute("create or replace function users_reject_delete() returns trigger as $$"
+                + " begin raise exception 'archive move rejected'; end $$ language plpgsql");
+        execute("create trigger users_reject_delete before delete on users"
+                + " for each row execute function users_reject_delete()");
+        try {
+            assertThrows(RuntimeException.class, () -> archive.archiveBatch(CUTOFF, 100));
+        } finally {
+            execute("drop trigger users_reject_delete on users");
+        }
+
+        archiveAll();
+
+        assertEquals(1, count("select count(*) from users_archive_2016 where id = 9401"));
+    }
+
+    @Test
+    void shouldKeepArchivedUsersInExportsSnapshotsAndStats(@TempDir Path dir) throws SQLException {
+        insertCold(9_501L, "reported@archive.com", LocalDateTime.of(2017, 4, 1, 0, 0));
+        SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+        UserSnapshotService snapshots = new UserSnapshotService(sessionFactory, UserArchive.ALL_USERS_VIEW);
+        UserSnapshot base = snapshots.dump(dir.resolve("base.snapshot"));
+
+        archiveAll();
+
+        UserSnapshot delta = snapshots.dumpDelta(base, dir.resolve("delta.snapshot"));
+        long total = count("select count(*) from users") + count("select count(*) from users_archive");
+        assertEquals(1, count("select count(*) from users_archive where id = 9501"));
+        assertEquals(0, delta.size());
+        assertEquals(total, new UserStatsDaoImpl(sessionFactory, UserArchive.ALL_USERS_VIEW).count());
+        assertEquals(total, new UserBatchLoader(sessionFactory, UserArchive.ALL_USERS_VIEW).loadAll().size());
+        assertEquals(total, new UserExporter(sessionFactory, UserArchive.ALL_USERS_VIEW)
+                .export(dir.resolve("users.csv"), ExportFormat.CSV, ExportCompression.NONE));
+    }
+
+    private static void archiveAll() {
+        while (archive.archiveBatch(CUTOFF, 100) > 0) {
+            // до исчерпания кандидатов
+        }
+    }
+
+    // Вставка в обход приложения: last_modified_at пуст, и активность считается по created_at
+    private static void insertCold(long id, String email, LocalDateTime createdAt) throws SQLException {
+        try (Connection connection = connect(); PreparedStatement statement = connection.prepareStatement(
+                "insert into users (id, name, email, email_normalized, age, created_at, version)"
+                        + " values (?, ?, ?, ?, 50, ?, 0)")) {
+            statement.setLong(1, id);
+            statement.setString(2, "Cold " + id);
+            statement.setString(3, email);
+            statement.setString(4, email.toLowerCase());
+            statement.setTimestamp(5, Timestamp.valueOf(createdAt));
+            statement.executeUpdate();
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static long count(String sql) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
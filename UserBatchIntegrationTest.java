@@ -0,0 +1,74 @@
+package ru.aston.hometask.intensive2.program.batch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.dao.UserStatsDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserBatchIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static UserBatchLoader loader;
+    private static List<User> saved;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        loader = new UserBatchLoader(HibernateUtil.getSessionFactory());
+        UserDao userDao = new UserDaoImpl();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < UserBatchLoader.FETCH_SIZE + 10; i++) {
+            users.add(new User("Пользователь " + i, "batch" + i + "@example.com", i % 4 == 0 ? null : 18 + i % 60));
+        }
+        saved = userDao.upsertAll(users);
+    }
+
+    @Test
+    void shouldLoadAllColumnsStraightFromJdbc() {
+        UserBatch batch = loader.loadAll();
+
+        assertEquals(saved.size(), batch.size());
+        User first = saved.stream().filter(user -> user.getId() == batch.getId(0)).findFirst().orElseThrow();
+        User restored = batch.toUser(0);
+        assertEquals(first.getName(), restored.getName());
+        assertEquals(first.getEmail(), restored.getEmail());
+        assertEquals(first.getAge(), restored.getAge());
+        assertEquals(first.getCreatedAt().withNano(0), restored.getCreatedAt().withNano(0));
+    }
+
+    @Test
+    void shouldAgreeWithSqlStatistics() {
+        UserBatch batch = loader.loadAll();
+        UserStatsDaoImpl statsDao = new UserStatsDaoImpl(HibernateUtil.getSessionFactory());
+
+        assertEquals(statsDao.averageAge().getAsDouble(), UserBatchOperators.averageAge(batch).getAsDouble(), 1e-9);
+        assertEquals(statsDao.countByAgeBucket(), UserBatchOperators.countByAgeBucket(batch, 10));
+    }
+
+    @Test
+    void shouldScanInBoundedBatches() {
+        List<Integer> sizes = new ArrayList<>();
+
+        long rows = loader.scan(2_000, batch -> sizes.add(batch.size()));
+
+        assertEquals(saved.size(), rows);
+        assertEquals(saved.size(), sizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(sizes.stream().allMatch(size -> size <= 2_000));
+    }
+}
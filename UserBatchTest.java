@@ -0,0 +1,124 @@
+package ru.aston.hometask.intensive2.program.batch;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserBatchTest {
+
+    @Test
+    void shouldRoundTripUsersThroughColumns() {
+        User john = user(1L, "Jöhn", "john@example.com", 30, LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6_000_000));
+        User noAge = user(2L, "Аня", "anya@example.com", null, LocalDateTime.of(2024, 1, 3, 0, 0));
+
+        UserBatch batch = UserBatch.of(List.of(john, noAge));
+
+        assertEquals(2, batch.size());
+        assertEquals("Jöhn", batch.getName(0));
+        assertEquals("Аня", batch.getName(1));
+        assertTrue(batch.isAgeNull(1));
+        assertFalse(batch.isAgeNull(0));
+        User restored = batch.toUser(0);
+        assertEquals(john.getId(), restored.getId());
+        assertEquals(john.getEmail(), restored.getEmail());
+        assertEquals(john.getAge(), restored.getAge());
+        assertEquals(john.getCreatedAt(), restored.getCreatedAt());
+        assertNull(batch.toUser(1).getAge());
+    }
+
+    @Test
+    void shouldGrowPastInitialCapacity() {
+        UserBatch.Builder builder = UserBatch.builder(1);
+        for (int i = 0; i < 200; i++) {
+            builder.add(user((long) i, "Name " + i, "user" + i + "@example.com", i % 7 == 0 ? null : i % 90,
+                    LocalDateTime.of(2024, 1, 1, 0, 0)));
+        }
+
+        UserBatch batch = builder.build();
+
+        assertEquals(200, batch.size());
+        assertEquals("Name 199", batch.getName(199));
+        assertEquals("user128@example.com", batch.getEmail(128));
+        assertTrue(batch.isAgeNull(196));
+        assertEquals(199 % 90, batch.getAge(199));
+    }
+
+    @Test
+    void shouldCombineFiltersAndAggregateSelection() {
+        UserBatch batch = sample();
+        int[] selection = UserBatchOperators.newSelection(batch);
+
+        int count = UserBatchOperators.filterAgeBetween(batch, 20, 40, selection);
+        count = UserBatchOperators.filterCreatedBetween(batch, millis(2024, 1, 2), millis(2024, 1, 4), selection,
+                count);
+
+        assertEquals(List.of(2L, 3L), ids(batch, selection, count));
+        assertEquals(55, UserBatchOperators.sumAges(batch, selection, count));
+        assertEquals(27.5, UserBatchOperators.averageAge(batch, selection, count).getAsDouble());
+    }
+
+    @Test
+    void shouldMatchNamePrefixOnRawBytes() {
+        UserBatch batch = sample();
+        int[] selection = UserBatchOperators.newSelection(batch);
+
+        int count = UserBatchOperators.filterNamePrefix(batch, "Al", selection);
+
+        assertEquals(List.of(1L, 4L), ids(batch, selection, count));
+    }
+
+    @Test
+    void shouldComputeStatsLikeStatsDao() {
+        UserBatch batch = sample();
+
+        assertEquals(4, UserBatchOperators.countKnownAges(batch));
+        assertEquals(112, UserBatchOperators.sumAges(batch));
+        assertEquals(28.0, UserBatchOperators.averageAge(batch).getAsDouble());
+        assertEquals(Map.of(10, 1L, 20, 1L, 30, 1L, 40, 1L), UserBatchOperators.countByAgeBucket(batch, 10));
+        assertEquals(Map.of(LocalDate.of(2024, 1, 2), 2L, LocalDate.of(2024, 1, 3), 1L),
+                UserBatchOperators.signupsPerDay(batch, LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 4)));
+    }
+
+    @Test
+    void shouldRejectTooSmallSelection() {
+        UserBatch batch = sample();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> UserBatchOperators.filterAgeBetween(batch, 0, 100, new int[1]));
+    }
+
+    private static UserBatch sample() {
+        return UserBatch.of(List.of(
+                user(1L, "Alice", "alice@example.com", 15, LocalDateTime.of(2024, 1, 1, 12, 0)),
+                user(2L, "Bob", "bob@example.com", 25, LocalDateTime.of(2024, 1, 2, 8, 0)),
+                user(3L, "Carol", "carol@example.com", 30, LocalDateTime.of(2024, 1, 2, 23, 59)),
+                user(4L, "Alex", "alex@example.com", null, LocalDateTime.of(2024, 1, 3, 10, 0)),
+                user(5L, "Dan", "dan@example.com", 42, LocalDateTime.of(2024, 1, 5, 10, 0))));
+    }
+
+    private static List<Long> ids(UserBatch batch, int[] selection, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(batch.getId(selection[i]));
+        }
+        return ids;
+    }
+
+    private static long millis(int year, int month, int day) {
+        return LocalDate.of(year, month, day).toEpochDay() * 86_400_000L;
+    }
+
+    private static User user(Long id, String name, String email, Integer age, LocalDateTime createdAt) {
+        User user = new User(name, email, age);
+        user.setId(id);
+        user.setCreatedAt(createdAt);
+        return user;
+    }
+}
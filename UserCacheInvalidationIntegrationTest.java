@@ -0,0 +1,103 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserCacheInvalidationIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private HeapUserCache cacheA;
+    private HeapUserCache cacheB;
+    private CachingUserDao nodeA;
+    private CachingUserDao nodeB;
+    private UserInvalidationListener listenerA;
+    private UserInvalidationListener listenerB;
+
+    @BeforeAll
+    static void configureHibernate() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    @BeforeEach
+    void setUp() {
+        cacheA = new HeapUserCache(60_000, 1_000);
+        cacheB = new HeapUserCache(60_000, 1_000);
+        nodeA = new CachingUserDao(new UserDaoImpl(), cacheA);
+        nodeB = new CachingUserDao(new UserDaoImpl(), cacheB);
+        listenerA = listener(cacheA);
+        listenerB = listener(cacheB);
+        listenerA.start();
+        listenerB.start();
+        await(() -> listenerA.getResyncs() > 0 && listenerB.getResyncs() > 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listenerA.close();
+        listenerB.close();
+    }
+
+    @Test
+    void shouldEvictStaleEntryOnOtherNodeAfterUpdate() {
+        User user = nodeA.save(new User("John", "john@example.com", 30));
+        // Ждём уведомление о самой вставке, чтобы оно не вытеснило запись уже после прогрева
+        await(() -> listenerB.getEvictedBatches() > 0);
+        nodeB.findById(user.getId());
+        assertTrue(cacheB.get(user.getId()).isPresent());
+
+        user.setName("John Updated");
+        nodeA.update(user);
+
+        await(() -> cacheB.get(user.getId()).isEmpty());
+        assertEquals("John Updated", nodeB.findById(user.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void shouldEvictDeletedUserOnOtherNode() {
+        User user = nodeA.save(new User("Jane", "jane@example.com", 25));
+        await(() -> listenerB.getEvictedBatches() > 0);
+        nodeB.findById(user.getId());
+        assertTrue(cacheB.get(user.getId()).isPresent());
+
+        nodeA.delete(user.getId());
+
+        await(() -> cacheB.get(user.getId()).isEmpty());
+        assertFalse(nodeB.findById(user.getId()).isPresent());
+    }
+
+    private static UserInvalidationListener listener(UserCache cache) {
+        return new UserInvalidationListener(() -> DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()), cache, 10);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition was not met in time");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
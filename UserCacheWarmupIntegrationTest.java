@@ -0,0 +1,60 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserCacheWarmupIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    // Первый экземпляр набирает горячий набор и сохраняет его; второй прогревается и обслуживает его без промахов
+    @Test
+    void shouldServeHotSetFromCacheRightAfterRestart() throws Exception {
+        UserDao userDao = new UserDaoImpl();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            ids.add(userDao.save(new User("Warm " + i, "warm" + i + "@cache.com", 20 + i)).getId());
+        }
+        HotUserTracker tracker = new HotUserTracker(100);
+        CachingUserDao first = new CachingUserDao(userDao, new HeapUserCache(60_000, 1_000), tracker);
+        ids.forEach(first::findById);
+        Path file = tempDir.resolve("hot-users.txt");
+        CacheWarmer.saveHotSet(tracker, file, 20);
+
+        HeapUserCache cache = new HeapUserCache(60_000, 1_000);
+        int loaded = new CacheWarmer(cache, userDao, 7, 3).warmUp(CacheWarmer.loadHotSet(file));
+        CachingUserDao second = new CachingUserDao(userDao, cache);
+        for (Long id : CacheWarmer.loadHotSet(file)) {
+            assertTrue(second.findById(id).isPresent());
+        }
+
+        assertEquals(20, loaded);
+        assertEquals(20, second.getHits());
+        assertEquals(0, second.getMisses());
+    }
+}
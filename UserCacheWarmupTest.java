@@ -0,0 +1,193 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheWarmupTest {
+
+    @Mock
+    private UserDao userDao;
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong clock = new AtomicLong();
+    private HeapUserCache cache;
+    private RefreshAheadUserCache refreshing;
+
+    @BeforeEach
+    void setUp() {
+        cache = new HeapUserCache(1_000, 100, clock::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (refreshing != null) {
+            refreshing.close();
+        }
+    }
+
+    @Test
+    void shouldKeepMostAccessedIdsWithinCapacity() {
+        HotUserTracker tracker = new HotUserTracker(3);
+        for (int i = 0; i < 50; i++) {
+            tracker.record(1L);
+            tracker.record(2L);
+        }
+        for (int i = 0; i < 20; i++) {
+            tracker.record(3L);
+        }
+        for (long id = 100; id < 110; id++) {
+            tracker.record(id);
+        }
+
+        assertTrue(tracker.size() <= 6);
+        assertEquals(List.of(1L, 2L, 3L), tracker.top(3));
+    }
+
+    @Test
+    void shouldCountLookupsThroughCachingDao() {
+        HotUserTracker tracker = new HotUserTracker(10);
+        CachingUserDao dao = new CachingUserDao(userDao, cache, tracker);
+        when(userDao.findById(2L)).thenReturn(Optional.of(user(2L)));
+
+        dao.findById(2L);
+        dao.findById(2L);
+        dao.findByEmail("user2@example.com");
+        when(userDao.findAllById(List.of(3L))).thenReturn(List.of(user(3L)));
+        dao.findAllById(List.of(2L, 3L));
+
+        assertEquals(List.of(2L, 3L), tracker.top(5));
+    }
+
+    @Test
+    void shouldSaveHotSetAndWarmUpMissingUsersInParallelBatches() throws Exception {
+        HotUserTracker tracker = new HotUserTracker(100);
+        LongStream.rangeClosed(1, 10).forEach(id -> {
+            for (long i = 0; i < id; i++) {
+                tracker.record(id);
+            }
+        });
+        Path file = tempDir.resolve("hot-users.txt");
+        CacheWarmer.saveHotSet(tracker, file, 7);
+
+        List<Long> ids = CacheWarmer.loadHotSet(file);
+        assertEquals(List.of(10L, 9L, 8L, 7L, 6L, 5L, 4L), ids);
+
+        cache.put(user(9L));
+        when(userDao.findAllById(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> batch = invocation.getArgument(0);
+            return batch.stream().filter(id -> id != 5L).map(UserCacheWarmupTest::user).collect(Collectors.toList());
+        });
+
+        int loaded = new CacheWarmer(cache, userDao, 2, 2).warmUp(ids);
+
+        assertEquals(5, loaded);
+        verify(userDao, times(3)).findAllById(anyCollection());
+        for (long id : List.of(10L, 8L, 7L, 6L, 4L)) {
+            assertTrue(cache.get(id).isPresent());
+        }
+        assertFalse(cache.get(5L).isPresent());
+        assertEquals(List.of(), CacheWarmer.loadHotSet(tempDir.resolve("missing.txt")));
+    }
+
+    @Test
+    void shouldReloadEntryAsynchronouslyShortlyBeforeExpiry() throws Exception {
+        refreshing = new RefreshAheadUserCache(cache, userDao, 1_000, 0.2, 1);
+        User fresh = user(1L);
+        fresh.setName("Fresh");
+        CountDownLatch loaded = new CountDownLatch(1);
+        when(userDao.findById(1L)).thenAnswer(invocation -> {
+            loaded.countDown();
+            return Optional.of(fresh);
+        });
+        refreshing.put(user(1L));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(700));
+        assertTrue(refreshing.get(1L).isPresent());
+        verify(userDao, never()).findById(any());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals("User 1", refreshing.get(1L).orElseThrow().getName());
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        awaitRefreshed(1);
+
+        assertEquals("Fresh", refreshing.get(1L).orElseThrow().getName());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1_000), refreshing.expiresInNanos(1L));
+    }
+
+    @Test
+    void shouldDiscardRefreshWhenEntryIsEvictedMeanwhile() throws Exception {
+        refreshing = new RefreshAheadUserCache(cache, userDao, 1_000, 0.2, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userDao.findById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(user(1L));
+        });
+        refreshing.put(user(1L));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(900));
+
+        refreshing.get(1L);
+        refreshing.get(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        refreshing.evict(1L);
+        release.countDown();
+        awaitRefreshed(1);
+
+        assertFalse(refreshing.get(1L).isPresent());
+        verify(userDao, times(1)).findById(1L);
+    }
+
+    @Test
+    void shouldReportRemainingTtl() {
+        OffHeapUserCache offHeap = new OffHeapUserCache(1_000, 4, OffHeapUserCache.DEFAULT_SLOT_SIZE, 1, clock::get);
+        offHeap.put(user(1L));
+        cache.put(user(1L));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(600), offHeap.expiresInNanos(1L));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(600), cache.expiresInNanos(1L));
+        assertEquals(0, offHeap.expiresInNanos(2L));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        assertEquals(0, cache.expiresInNanos(1L));
+    }
+
+    private void awaitRefreshed(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (refreshing.getRefreshed() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, refreshing.getRefreshed());
+    }
+
+    private static User user(Long id) {
+        User user = new User("User " + id, "user" + id + "@example.com", 30);
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,9 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+class UserDaoImplContractIntegrationTest extends AbstractUserDaoContractIntegrationTest {
+
+    @Override
+    protected UserDao createDao() {
+        return new UserDaoImpl();
+    }
+}
@@ -12,6 +12,7 @@ import ru.aston.hometask.intensive2.program.service.UserServiceImpl;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,6 +30,9 @@ class UserServiceUnitTest {
     @BeforeEach
     void setUp() {
         userService = new UserServiceImpl(userDao);
+        // Единица работы на моке просто выполняет переданную работу над тем же DAO
+        lenient().when(userDao.inTransaction(any())).thenAnswer(invocation ->
+                invocation.<Function<UserDao, Object>>getArgument(0).apply(userDao));
     }
 
     @Test
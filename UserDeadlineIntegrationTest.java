@@ -0,0 +1,164 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.Deadline;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserDeadlineIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static final Duration TIMEOUT = Duration.ofMillis(300);
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    @AfterEach
+    void dropSlowTrigger() throws SQLException {
+        execute("drop trigger if exists users_slow_update on users");
+        execute("drop trigger if exists users_slow_insert on users");
+    }
+
+    @Test
+    void shouldCancelSlowUpdateOnServer() throws SQLException {
+        assertSlowUpdateCancelled(new UserDaoImpl(), "hibernate@deadline.com");
+    }
+
+    @Test
+    void shouldCancelSlowUpdateOnServerWithJdbcDao() throws SQLException {
+        assertSlowUpdateCancelled(new JdbcUserDao(), "jdbc@deadline.com");
+    }
+
+    @Test
+    void shouldCancelLockWaitInsideUnitOfWork() throws SQLException {
+        UserDao userDao = new UserDaoImpl();
+        User saved = userDao.save(new User("Locked", "locked@deadline.com", 30));
+        try (Connection holder = connect()) {
+            holder.setAutoCommit(false);
+            try (Statement statement = holder.createStatement()) {
+                statement.execute("select * from users where id = " + saved.getId() + " for update");
+            }
+
+            long started = System.nanoTime();
+            assertThrows(DeadlineExceededException.class, () -> Deadline.within(TIMEOUT, () ->
+                    userDao.inTransaction(dao -> {
+                        User user = dao.findById(saved.getId()).orElseThrow();
+                        user.setAge(31);
+                        return dao.update(user);
+                    })));
+            assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 2_000);
+            holder.rollback();
+        }
+        assertEquals(30, userDao.findById(saved.getId()).orElseThrow().getAge());
+    }
+
+    // Чтение вне транзакции ждёт эксклюзивную блокировку таблицы; срок снимает его на сервере
+    @Test
+    void shouldCancelBlockedReadOutsideTransaction() throws SQLException {
+        UserDao userDao = new UserDaoImpl();
+        userDao.save(new User("Reader", "reader@deadline.com", 30));
+        try (Connection holder = connect()) {
+            holder.setAutoCommit(false);
+            try (Statement statement = holder.createStatement()) {
+                statement.execute("lock table users in access exclusive mode");
+            }
+
+            long started = System.nanoTime();
+            assertThrows(DeadlineExceededException.class, () -> Deadline.within(TIMEOUT, userDao::findAll));
+            assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 2_000);
+            holder.rollback();
+        }
+        assertFalse(userDao.findAll().isEmpty());
+    }
+
+    @Test
+    void shouldNotLeakStatementTimeoutToPooledConnections() {
+        UserDao userDao = new UserDaoImpl();
+        userDao.save(new User("Pooled", "pooled@deadline.com", 30));
+
+        Deadline.within(Duration.ofSeconds(5), userDao::findAll);
+
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            String timeout = session.createNativeQuery("show statement_timeout").getSingleResult().toString();
+            assertEquals("0", timeout);
+        }
+    }
+
+    @Test
+    void shouldShrinkStatementTimeoutForEachCallInUnitOfWork() throws SQLException {
+        assertSecondStatementCancelled(new UserDaoImpl(), "hibernate");
+    }
+
+    @Test
+    void shouldShrinkStatementTimeoutForEachCallInUnitOfWorkWithJdbcDao() throws SQLException {
+        assertSecondStatementCancelled(new JdbcUserDao(), "jdbc");
+    }
+
+    // Каждое выражение короче срока, но вместе они его превышают: второе отменяется по оставшемуся времени
+    private void assertSecondStatementCancelled(UserDao userDao, String prefix) throws SQLException {
+        execute("create or replace function users_slow_insert() returns trigger as $$"
+                + " begin perform pg_sleep(0.2); return new; end $$ language plpgsql");
+        execute("create trigger users_slow_insert before insert on users"
+                + " for each row execute function users_slow_insert()");
+
+        assertThrows(DeadlineExceededException.class, () -> Deadline.within(TIMEOUT, () ->
+                userDao.inTransaction(dao -> {
+                    dao.upsertByEmail(new User("First", prefix + "-first@deadline.com", 30));
+                    return dao.upsertByEmail(new User("Second", prefix + "-second@deadline.com", 30));
+                })));
+
+        dropSlowTrigger();
+        assertFalse(userDao.findByEmail(prefix + "-first@deadline.com").isPresent());
+        assertFalse(userDao.findByEmail(prefix + "-second@deadline.com").isPresent());
+    }
+
+    private void assertSlowUpdateCancelled(UserDao userDao, String email) throws SQLException {
+        User saved = userDao.save(new User("Slow", email, 30));
+        execute("create or replace function users_slow_update() returns trigger as $$"
+                + " begin perform pg_sleep(5); return new; end $$ language plpgsql");
+        execute("create trigger users_slow_update before update on users"
+                + " for each row execute function users_slow_update()");
+        long cancelled = Deadline.getCancelled();
+
+        saved.setAge(31);
+        long started = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> Deadline.within(TIMEOUT, () -> userDao.update(saved)));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 2_000);
+        assertEquals(cancelled + 1, Deadline.getCancelled());
+        dropSlowTrigger();
+        assertEquals(30, userDao.findById(saved.getId()).orElseThrow().getAge());
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
@@ -0,0 +1,101 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserExportIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static UserExporter exporter;
+    private static List<User> saved;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        exporter = new UserExporter(HibernateUtil.getSessionFactory());
+        UserDao userDao = new UserDaoImpl();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < UserExporter.FETCH_SIZE + 10; i++) {
+            users.add(new User("User, \"" + i + "\"", "export" + i + "@example.com", i % 3 == 0 ? null : 20 + i % 50));
+        }
+        saved = userDao.upsertAll(users);
+    }
+
+    @Test
+    void shouldExportCsvThroughCopy() throws Exception {
+        Path target = directory.resolve("users.csv.gz");
+
+        long rows = exporter.export(target, ExportFormat.CSV, ExportCompression.GZIP);
+
+        List<String> lines = readLines(target, ExportCompression.GZIP);
+        assertEquals(saved.size(), rows);
+        assertEquals(saved.size() + 1, lines.size());
+        assertEquals("id,name,email,age,created_at", lines.get(0));
+        assertTrue(lines.get(1).contains("\"User, \"\"0\"\"\",export0@example.com,,"), lines.get(1));
+        assertFalse(Files.exists(directory.resolve("users.csv.gz.part")));
+    }
+
+    @Test
+    void shouldExportJsonLines() throws Exception {
+        Path target = directory.resolve("users.jsonl");
+
+        long rows = exporter.export(target, ExportFormat.JSONL, ExportCompression.NONE);
+
+        List<String> lines = readLines(target, ExportCompression.NONE);
+        assertEquals(saved.size(), rows);
+        assertEquals(saved.size(), lines.size());
+        assertTrue(lines.get(0).startsWith("{\"id\":" + saved.get(0).getId() + ",\"name\":\"User, \\\"0\\\"\""),
+                lines.get(0));
+    }
+
+    @Test
+    void shouldRoundTripColumnarExport() throws Exception {
+        Path target = directory.resolve("users.ucol.gz");
+
+        long rows = exporter.export(target, ExportFormat.COLUMNAR, ExportCompression.GZIP);
+
+        List<User> users = new ArrayList<>();
+        assertEquals(rows, ColumnarUserReader.read(target, ExportCompression.GZIP, users::add));
+        assertEquals(saved.size(), users.size());
+        User expected = saved.get(saved.size() - 1);
+        User actual = users.get(users.size() - 1);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getAge(), actual.getAge());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+    }
+
+    private static List<String> readLines(Path file, ExportCompression compression) throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                compression.wrap(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserExportWritersTest {
+
+    @Test
+    void shouldEscapeJsonStrings() throws Exception {
+        StringWriter out = new StringWriter();
+        JsonLinesUserWriter writer = new JsonLinesUserWriter(out);
+
+        writer.write(7L, "Jo \"Q\"\\\n\u0001", "jo@example.com", null, LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        writer.finish();
+
+        assertEquals("{\"id\":7,\"name\":\"Jo \\\"Q\\\"\\\\\\n\\u0001\",\"email\":\"jo@example.com\","
+                + "\"age\":null,\"createdAt\":\"2024-01-02T03:04:05\"}\n", out.toString());
+    }
+
+    @Test
+    void shouldRoundTripColumnarFormatAcrossRowGroups() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream gzip = ExportCompression.GZIP.wrap(bytes);
+        ColumnarUserWriter writer = new ColumnarUserWriter(gzip);
+        int rows = ColumnarUserWriter.ROW_GROUP_SIZE + 3;
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_000);
+        for (int i = 0; i < rows; i++) {
+            writer.write(1_000_000L + i * 17L, "Имя " + i, "user" + i + "@example.com",
+                    i % 5 == 0 ? null : i % 120, base.minusSeconds(i % 7));
+        }
+        writer.finish();
+        gzip.close();
+
+        List<User> users = new ArrayList<>();
+        long read = ColumnarUserReader.read(
+                ExportCompression.GZIP.wrap(new ByteArrayInputStream(bytes.toByteArray())), users::add);
+
+        assertEquals(rows, read);
+        assertEquals(rows, users.size());
+        User last = users.get(rows - 1);
+        assertEquals(1_000_000L + (rows - 1) * 17L, last.getId());
+        assertEquals("Имя " + (rows - 1), last.getName());
+        assertEquals("user" + (rows - 1) + "@example.com", last.getEmail());
+        assertEquals((rows - 1) % 120, last.getAge());
+        assertEquals(base.minusSeconds((rows - 1) % 7), last.getCreatedAt());
+        assertNull(users.get(0).getAge());
+    }
+}
@@ -0,0 +1,70 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserNameSearchTest {
+
+    @Test
+    void shouldRankExactThenPrefixThenWordStartThenSubstring() {
+        UserNameSearch search = UserNameSearch.of("  Ann ", 10);
+        List<User> users = new ArrayList<>(Arrays.asList(
+                user(1L, "Joanna"),
+                user(2L, "Mary Ann Smith"),
+                user(3L, "Annabel"),
+                user(4L, "ANN"),
+                user(5L, "Anna")));
+
+        users.sort(search.comparator());
+
+        assertEquals("ann", search.getFragment());
+        assertEquals(Arrays.asList("ANN", "Anna", "Annabel", "Mary Ann Smith", "Joanna"),
+                users.stream().map(User::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldEscapeLikeWildcardsInParameters() {
+        UserNameSearch search = UserNameSearch.of("50%_off", 10);
+
+        assertEquals(Arrays.asList("%50\\%\\_off%", "50%_off", "50\\%\\_off%", "% 50\\%\\_off%", 10),
+                search.getParameters());
+        assertEquals(5, search.getJdbcSql().chars().filter(c -> c == '?').count());
+    }
+
+    @Test
+    void shouldBreakTiesById() {
+        UserNameSearch search = UserNameSearch.of("bob", 10);
+        List<User> users = new ArrayList<>(Arrays.asList(user(7L, "Bobby"), user(3L, "bobby")));
+
+        users.sort(search.comparator());
+
+        assertEquals(Arrays.asList(3L, 7L), users.stream().map(User::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldRejectFragmentsTooShortForTrigramIndex() {
+        assertThrows(IllegalArgumentException.class, () -> UserNameSearch.of("ab", 10));
+        assertThrows(IllegalArgumentException.class, () -> UserNameSearch.of("  a  ", 10));
+        assertThrows(IllegalArgumentException.class, () -> UserNameSearch.of(null, 10));
+    }
+
+    @Test
+    void shouldRejectLimitOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> UserNameSearch.of("john", 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> UserNameSearch.of("john", UserNameSearch.MAX_LIMIT + 1));
+    }
+
+    private static User user(Long id, String name) {
+        User user = new User(name, name.toLowerCase() + id + "@example.com", 30);
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+import ru.aston.hometask.intensive2.program.service.UserServiceImpl;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserOperationEventsTest {
+
+    @Mock
+    private UserDao userDao;
+
+    @TempDir
+    Path tempDir;
+
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new JfrUserService(new UserServiceImpl(new JfrUserDao(userDao)));
+    }
+
+    @Test
+    void shouldSummarizeRecordedOperationsWithNestedTimings() throws Exception {
+        User user = new User("John", "john@example.com", 30);
+        user.setId(1L);
+        when(userDao.findById(anyLong())).thenAnswer(invocation -> {
+            OperationRecorder.addTimings(100_000, 200_000, 0);
+            return invocation.getArgument(0).equals(1L) ? Optional.of(user) : Optional.empty();
+        });
+        when(userDao.inTransaction(any())).thenAnswer(invocation -> {
+            OperationRecorder.addTimings(1_000_000, 0, 3_000_000);
+            Function<UserDao, ?> work = invocation.getArgument(0);
+            return work.apply(userDao);
+        });
+
+        Path file = tempDir.resolve("users.jfr");
+        try (Recording recording = new Recording(bundledConfiguration())) {
+            recording.start();
+            userService.getUserById(1L);
+            userService.getUserById(2L);
+            assertThrows(IllegalArgumentException.class, () -> userService.deleteUser(3L));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<OperationLatencyReport.OperationStats> stats = OperationLatencyReport.summarize(file);
+
+        assertEquals("service", stats.get(0).getLayer());
+        OperationLatencyReport.OperationStats getById = find(stats, "service", "getUserById");
+        assertEquals(2, getById.getCount());
+        assertEquals(0, getById.getFailed());
+        assertEquals(0.5, getById.getAvgRows());
+        assertEquals(100_000, getById.getAvgSessionOpenNanos());
+        assertEquals(200_000, getById.getAvgTransactionNanos());
+
+        OperationLatencyReport.OperationStats deleteUser = find(stats, "service", "deleteUser");
+        assertEquals(1, deleteUser.getFailed());
+        assertEquals(1_100_000, deleteUser.getAvgSessionOpenNanos());
+        assertEquals(3_000_000, deleteUser.getAvgCommitNanos());
+
+        assertEquals(3, find(stats, "dao", "findById").getCount());
+        assertEquals(0, find(stats, "dao", "findById").getFailed());
+        assertEquals(1, find(stats, "dao", "inTransaction").getFailed());
+        assertTrue(getById.getMaxNanos() >= getById.getP50Nanos());
+        assertTrue(OperationLatencyReport.format(stats).contains("getUserById"));
+    }
+
+    @Test
+    void shouldPassCallsThroughWhenNotRecording() {
+        User user = new User("John", "john@example.com", 30);
+        when(userDao.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(userDao.findById(5L)).thenThrow(new IllegalStateException("boom"));
+
+        assertSame(user, userService.getUserByEmail("John@Example.com").orElseThrow());
+        assertThrows(IllegalStateException.class, () -> userService.getUserById(5L));
+        // Без активного события подвремена просто отбрасываются
+        OperationRecorder.addTimings(1, 2, 3);
+    }
+
+    private static Configuration bundledConfiguration() throws Exception {
+        try (Reader reader = new InputStreamReader(
+                UserOperationEventsTest.class.getResourceAsStream("/jfr/user-operations.jfc"),
+                StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    private static OperationLatencyReport.OperationStats find(List<OperationLatencyReport.OperationStats> stats,
+                                                              String layer, String operation) {
+        return stats.stream()
+                .filter(row -> row.getLayer().equals(layer) && row.getOperation().equals(operation))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,150 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserOutboxIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static UserOutbox outbox;
+    private static UserDao userDao;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        outbox = new UserOutbox(HibernateUtil.getSessionFactory());
+        outbox.install();
+        userDao = new UserDaoImpl();
+    }
+
+    @Test
+    void shouldRecordCommittedChangesInOrder() {
+        ChangeCursor start = latestCursor();
+        User user = userDao.save(new User("John", "outbox.john@example.com", 30));
+        user.setAge(31);
+        userDao.update(user);
+        assertThrows(RuntimeException.class, () -> userDao.inTransaction(dao -> {
+            dao.save(new User("Rolled Back", "outbox.rollback@example.com", 40));
+            throw new IllegalStateException("rollback");
+        }));
+        userDao.delete(user.getId());
+
+        List<UserChange> changes = outbox.changesSince(start, 100);
+
+        assertEquals(3, changes.size());
+        assertEquals(UserChange.Operation.CREATED, changes.get(0).getOperation());
+        assertEquals(UserChange.Operation.UPDATED, changes.get(1).getOperation());
+        assertEquals(31, changes.get(1).getUser().getAge());
+        assertEquals(UserChange.Operation.DELETED, changes.get(2).getOperation());
+        assertNull(changes.get(2).getUser());
+        assertTrue(changes.stream().allMatch(change -> change.getUserId() == user.getId()));
+        assertTrue(outbox.changesSince(changes.get(2).getCursor(), 100).isEmpty());
+    }
+
+    @Test
+    void shouldRelayChangesToQueueAndResumeFromSavedCursor() throws Exception {
+        outbox.saveCursor("queue", latestCursor());
+        LinkedBlockingQueue<UserChange> queue = new LinkedBlockingQueue<>();
+        OutboxRelay relay = new OutboxRelay(outbox, "queue", new QueueChangeSink(queue), 10, 20);
+        relay.start();
+        try {
+            User user = userDao.save(new User("Relayed", "outbox.relayed@example.com", 25));
+
+            UserChange change = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull(change);
+            assertEquals(user.getId(), change.getUserId());
+            assertEquals(UserChange.Operation.CREATED, change.getOperation());
+        } finally {
+            relay.close();
+        }
+        assertEquals(relay.getCursor(), outbox.loadCursor("queue").orElseThrow());
+    }
+
+    @Test
+    void shouldLetConsumerSkipChangeOlderThanAppliedVersion() throws Exception {
+        User first = userDao.save(new User("First", "outbox.first@example.com", 20));
+        User second = userDao.save(new User("Second", "outbox.second@example.com", 20));
+        ChangeCursor start = latestCursor();
+        try (Connection earlier = connect(); Connection later = connect()) {
+            // earlier получает txid первым, но обновляет second уже после коммита later
+            setAge(earlier, first.getId(), 21);
+            setAge(later, second.getId(), 22);
+            CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+                try {
+                    setAge(earlier, second.getId(), 23);
+                    earlier.commit();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            later.commit();
+            blocked.get(10, TimeUnit.SECONDS);
+        }
+
+        List<UserChange> changes = outbox.changesSince(start, 100).stream()
+                .filter(change -> change.getUserId() == second.getId())
+                .collect(Collectors.toList());
+        Map<Long, UserChange> applied = new HashMap<>();
+        for (UserChange change : changes) {
+            UserChange last = applied.get(change.getUserId());
+            if (change.isNewerThan(last != null ? last.getUser().getVersion() : null)) {
+                applied.put(change.getUserId(), change);
+            }
+        }
+
+        assertEquals(List.of(23, 22), changes.stream().map(change -> change.getUser().getAge())
+                .collect(Collectors.toList()));
+        assertEquals(23, applied.get(second.getId()).getUser().getAge());
+    }
+
+    private static Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    private static void setAge(Connection connection, long id, int age) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "update users set age = ?, version = version + 1 where id = ?")) {
+            statement.setInt(1, age);
+            statement.setLong(2, id);
+            statement.executeUpdate();
+        }
+    }
+
+    private static ChangeCursor latestCursor() {
+        ChangeCursor cursor = ChangeCursor.START;
+        for (List<UserChange> batch = outbox.changesSince(cursor, 1_000); !batch.isEmpty();
+             batch = outbox.changesSince(cursor, 1_000)) {
+            cursor = batch.get(batch.size() - 1).getCursor();
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,131 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserQueryIndexIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    private final UserDao userDao = new UserDaoImpl();
+
+    @BeforeAll
+    static void seed() throws Exception {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        HibernateUtil.getSessionFactory();
+        try (Connection connection = HibernateUtil.openDedicatedConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("insert into users (id, name, email, age, created_at) "
+                    + "select g, 'User ' || g, 'user' || g || '@example.com', g % 90, "
+                    + "timestamp '2024-06-01' - (g % 365) * interval '1 day' from generate_series(1, 50000) g");
+            statement.execute("analyze users");
+        }
+        assertTrue(new UserNameSearchIndex(HibernateUtil.getSessionFactory()).install());
+    }
+
+    @Test
+    void shouldReturnFilteredUsersInKeysetPages() {
+        UserQuery firstPageQuery = UserQuery.builder()
+                .ageBetween(18, 25)
+                .createdBetween(NOW.minusDays(7), NOW)
+                .sortBy(UserQuery.SortField.AGE, false)
+                .limit(20)
+                .build();
+
+        List<User> firstPage = userDao.findByQuery(firstPageQuery);
+        List<User> secondPage = userDao.findByQuery(UserQuery.builder()
+                .ageBetween(18, 25)
+                .createdBetween(NOW.minusDays(7), NOW)
+                .sortBy(UserQuery.SortField.AGE, false)
+                .after(firstPage.get(firstPage.size() - 1))
+                .limit(20)
+                .build());
+
+        assertEquals(20, firstPage.size());
+        firstPage.forEach(user -> assertTrue(user.getAge() >= 18 && user.getAge() <= 25));
+        assertTrue(secondPage.get(0).getAge() >= firstPage.get(19).getAge());
+        assertTrue(secondPage.stream().noneMatch(user -> user.getId().equals(firstPage.get(19).getId())));
+    }
+
+    @Test
+    void shouldUseAgeIndexForAgeRange() throws Exception {
+        String plan = explain(UserQuery.builder()
+                .ageBetween(18, 25)
+                .sortBy(UserQuery.SortField.AGE, false)
+                .limit(50)
+                .build());
+
+        assertTrue(plan.contains("idx_users_age_id"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void shouldUseCreatedAtIndexForSignupWindow() throws Exception {
+        String plan = explain(UserQuery.builder()
+                .createdBetween(NOW.minusDays(7), NOW)
+                .sortBy(UserQuery.SortField.CREATED_AT, true)
+                .limit(50)
+                .build());
+
+        assertTrue(plan.contains("idx_users_created_at_id"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void shouldRankNameSearchResults() {
+        List<User> users = userDao.searchByName("4242", 10);
+
+        assertEquals("User 4242", users.get(0).getName());
+        assertTrue(users.stream().allMatch(user -> user.getName().contains("4242")));
+    }
+
+    @Test
+    void shouldUseTrigramIndexForNameSearch() throws Exception {
+        UserNameSearch search = UserNameSearch.of("4242", 10);
+
+        String plan = explain(search.getJdbcSql(), search.getParameters());
+
+        assertTrue(plan.contains("idx_users_name_trgm"), plan);
+    }
+
+    private static String explain(UserQuery query) throws Exception {
+        UserQuerySql sql = UserQuerySql.build(query);
+        return explain(sql.getJdbcSql(), sql.getParameters());
+    }
+
+    private static String explain(String jdbcSql, List<Object> parameters) throws Exception {
+        try (Connection connection = HibernateUtil.openDedicatedConnection();
+             PreparedStatement statement = connection.prepareStatement("explain " + jdbcSql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserQuerySqlTest {
+
+    @Test
+    void shouldBuildRangeFilterWithIndexFriendlyOrder() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = from.plusDays(7);
+        UserQuery query = UserQuery.builder()
+                .ageBetween(18, 25)
+                .createdBetween(from, to)
+                .sortBy(UserQuery.SortField.AGE, false)
+                .limit(50)
+                .build();
+
+        UserQuerySql sql = UserQuerySql.build(query);
+
+        assertEquals("select u.* from users u where 1 = 1 and u.age is not null and u.age >= :p0 and u.age <= :p1"
+                + " and u.created_at >= :p2 and u.created_at < :p3 order by u.age asc, u.id asc limit :p4", sql.getSql());
+        assertEquals(Arrays.asList(18, 25, from, to, 50), sql.getParameters());
+    }
+
+    @Test
+    void shouldUseRowComparisonForKeysetCursor() {
+        User lastRow = new User("John", "john@example.com", 30);
+        lastRow.setId(42L);
+        UserQuery query = UserQuery.builder()
+                .sortBy(UserQuery.SortField.CREATED_AT, true)
+                .after(lastRow)
+                .build();
+
+        UserQuerySql sql = UserQuerySql.build(query);
+
+        assertTrue(sql.getSql().contains("and (u.created_at, u.id) < (:p0, :p1)"));
+        assertTrue(sql.getSql().endsWith("order by u.created_at desc, u.id desc limit :p2"));
+        assertEquals(Arrays.asList(lastRow.getCreatedAt(), 42L, 100), sql.getParameters());
+        assertFalse(sql.getJdbcSql().contains(":p"));
+    }
+
+    @Test
+    void shouldEscapeLikeWildcardsInNamePrefix() {
+        UserQuery query = UserQuery.builder().namePrefix("50%_off").build();
+
+        UserQuerySql sql = UserQuerySql.build(query);
+
+        assertEquals("50\\%\\_off%", sql.getParameters().get(0));
+    }
+
+    @Test
+    void shouldRejectInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> UserQuery.builder().ageBetween(30, 20).build());
+        assertThrows(IllegalArgumentException.class, () -> UserQuery.builder().limit(0).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> UserQuery.builder().limit(UserQuery.MAX_LIMIT + 1).build());
+    }
+}
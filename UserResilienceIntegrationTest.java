@@ -0,0 +1,114 @@
+package ru.aston.hometask.intensive2.program.resilience;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserResilienceIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    @AfterEach
+    void dropFailingTrigger() throws SQLException {
+        execute("drop trigger if exists users_failing on users");
+        execute("drop sequence if exists users_failures");
+    }
+
+    // Последовательность не откатывается вместе с транзакцией, поэтому сбой случается ровно failures раз
+    @Test
+    void shouldRetryInsertRejectedWithSerializationFailure() throws SQLException {
+        UserDao userDao = resilient();
+        installFailingTrigger("insert", "40001", 1);
+
+        User saved = userDao.save(new User("Retried", "retried@resilience.com", 30));
+
+        assertTrue(new UserDaoImpl().findById(saved.getId()).isPresent());
+        assertEquals(2, attempts());
+    }
+
+    @Test
+    void shouldNotRepeatUpdateAfterConnectionFailure() throws SQLException {
+        UserDao userDao = resilient();
+        User saved = userDao.save(new User("Ambiguous", "ambiguous@resilience.com", 30));
+        installFailingTrigger("update", "08006", 100);
+
+        saved.setAge(31);
+        assertThrows(RuntimeException.class, () -> userDao.update(saved));
+
+        assertEquals(1, attempts());
+        assertEquals(30, new UserDaoImpl().findById(saved.getId()).orElseThrow().getAge());
+    }
+
+    @Test
+    void shouldRetryWholeUnitOfWorkAfterDeadlock() throws SQLException {
+        UserDao userDao = resilient();
+        User first = userDao.save(new User("First", "first@resilience.com", 30));
+        installFailingTrigger("update", "40P01", 1);
+
+        userDao.inTransaction(dao -> {
+            User user = dao.findById(first.getId()).orElseThrow();
+            user.setAge(user.getAge() + 1);
+            return dao.update(user);
+        });
+
+        assertEquals(31, new UserDaoImpl().findById(first.getId()).orElseThrow().getAge());
+        assertEquals(2, attempts());
+    }
+
+    private static UserDao resilient() {
+        return new ResilientUserDao(new UserDaoImpl(), new RetryPolicy(3, 10, 50), new RetryBudget(0.1, 10),
+                new CircuitBreaker(5, 1_000));
+    }
+
+    private static void installFailingTrigger(String event, String sqlState, int failures) throws SQLException {
+        execute("create sequence users_failures");
+        execute("create or replace function users_failing() returns trigger as $$"
+                + " begin if nextval('users_failures') <= " + failures + " then"
+                + " raise exception 'injected failure' using errcode = '" + sqlState + "'; end if;"
+                + " return new; end $$ language plpgsql");
+        execute("create trigger users_failing before " + event + " on users"
+                + " for each row execute function users_failing()");
+    }
+
+    private static long attempts() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select last_value from users_failures")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
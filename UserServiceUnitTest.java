@@ -5,16 +5,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.OptimisticLockConflictException;
 import ru.aston.hometask.intensive2.program.dao.UserDao;
 import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +34,9 @@ class UserServiceUnitTest {
     @BeforeEach
     void setUp() {
         userService = new UserServiceImpl(userDao);
+        // Единица работы на моке просто выполняет переданную работу над тем же DAO
+        lenient().when(userDao.inTransaction(any())).thenAnswer(invocation ->
+                invocation.<Function<UserDao, Object>>getArgument(0).apply(userDao));
     }
 
     @Test
@@ -287,6 +296,19 @@ class UserServiceUnitTest {
         verify(userDao).findByEmail(email);
     }
 
+    @Test
+    void testGetUserByEmail_CaseInsensitive() {
+        User expectedUser = new User("Test User", "Test@Example.com", 25);
+
+        when(userDao.findByEmail("test@example.com")).thenReturn(Optional.of(expectedUser));
+
+        Optional<User> result = userService.getUserByEmail("  TEST@example.COM ");
+
+        assertTrue(result.isPresent());
+        assertEquals(expectedUser, result.get());
+        verify(userDao).findByEmail("test@example.com");
+    }
+
     @Test
     void testGetUserByEmail_InvalidEmail() {
         assertThrows(IllegalArgumentException.class,
@@ -309,4 +331,59 @@ class UserServiceUnitTest {
         assertTrue(userService.isEmailUnique(uniqueEmail));
         assertFalse(userService.isEmailUnique(existingEmail));
     }
+
+    @Test
+    void testSearchByName() {
+        List<User> expectedUsers = Arrays.asList(new User("Anna", "anna@example.com", 25));
+
+        when(userDao.searchByName("ann", 10)).thenReturn(expectedUsers);
+
+        assertEquals(expectedUsers, userService.searchByName(" ann ", 10));
+        assertThrows(IllegalArgumentException.class, () -> userService.searchByName("an", 10));
+        verify(userDao, never()).searchByName(eq("an"), anyInt());
+    }
+
+    @Test
+    void testUpdateUser_RetriesOnVersionConflict() {
+        Long userId = 1L;
+        User existingUser = new User("Old Name", "old@example.com", 25);
+        existingUser.setId(userId);
+        UserService retryingService = new UserServiceImpl(userDao, new RetryPolicy(3, 0, 0));
+
+        when(userDao.findById(userId)).thenReturn(Optional.of(existingUser));
+        when(userDao.update(any(User.class)))
+                .thenThrow(new OptimisticLockConflictException("User was modified concurrently", null))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        User result = retryingService.updateUser(userId, null, null, 40);
+
+        assertEquals(40, result.getAge());
+        verify(userDao, times(2)).inTransaction(any());
+    }
+
+    @Test
+    void testUpdateUser_VersionConflictWithoutRetry() {
+        Long userId = 1L;
+        User existingUser = new User("Old Name", "old@example.com", 25);
+        existingUser.setId(userId);
+
+        when(userDao.findById(userId)).thenReturn(Optional.of(existingUser));
+        when(userDao.update(any(User.class)))
+                .thenThrow(new OptimisticLockConflictException("User was modified concurrently", null));
+
+        assertThrows(OptimisticLockConflictException.class, () -> userService.updateUser(userId, null, null, 40));
+        verify(userDao, times(1)).update(any(User.class));
+    }
+
+    @Test
+    void testUpsertAll_ValidatesAndTrimsRecords() {
+        when(userDao.upsertAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<User> result = userService.upsertAll(Arrays.asList(new User("Anna", " anna@example.com ", 25)));
+
+        assertEquals("anna@example.com", result.get(0).getEmail());
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.upsertAll(Arrays.asList(new User("Bad", "no-at-sign", 25))));
+        verify(userDao, times(1)).upsertAll(anyList());
+    }
 }
\ No newline at end of file
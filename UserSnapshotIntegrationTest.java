@@ -0,0 +1,70 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserSnapshotIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static UserSnapshotService service;
+    private static UserDao userDao;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        service = new UserSnapshotService(HibernateUtil.getSessionFactory());
+        userDao = new UserDaoImpl();
+    }
+
+    @Test
+    void shouldDumpDeltaApplyAndRestore() throws Exception {
+        User kept = userDao.save(new User("Kept", "Kept@Example.com", 20));
+        User changed = userDao.save(new User("Changed", "changed@example.com", 30));
+        User deleted = userDao.save(new User("Deleted", "deleted@example.com", null));
+
+        UserSnapshot base = service.dump(directory.resolve("base.snap"));
+        assertEquals("Kept", base.findByEmail("kept@example.com").orElseThrow().getName());
+        assertEquals(changed.getId(), base.findById(changed.getId()).orElseThrow().getId());
+
+        changed.setAge(31);
+        userDao.update(changed);
+        userDao.delete(deleted.getId());
+        User added = userDao.save(new User("Added", "added@example.com", 50));
+
+        UserSnapshot delta = service.dumpDelta(base, directory.resolve("delta.snap"));
+        assertEquals(3, delta.size());
+
+        UserSnapshot merged = UserSnapshot.applyDelta(base, delta, directory.resolve("merged.snap"));
+        UserSnapshot current = service.dump(directory.resolve("current.snap"));
+        assertEquals(current.size(), merged.size());
+        assertEquals(31, merged.findById(changed.getId()).orElseThrow().getAge());
+        assertEquals(added.getId(), merged.findByEmail("added@example.com").orElseThrow().getId());
+        assertTrue(merged.findById(deleted.getId()).isEmpty());
+
+        userDao.delete(kept.getId());
+        assertEquals(merged.size(), service.restore(merged));
+        User restored = userDao.findById(kept.getId()).orElseThrow();
+        assertEquals("Kept@Example.com", restored.getEmail());
+        assertEquals(base.findById(kept.getId()).orElseThrow().getCreatedAt(), restored.getCreatedAt());
+    }
+}
@@ -0,0 +1,128 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSnapshotTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldFindUsersByIdAndNormalizedEmail() throws Exception {
+        Path file = directory.resolve("users.snap");
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(file, SnapshotLayout.KIND_FULL, 3, 3, 0)) {
+            builder.addRecord(10L, 1L, CREATED_AT, "Анна", "Anna@Example.com", 30);
+            builder.addRecord(20L, 2L, CREATED_AT, "Bob", "bob@example.com", null);
+            builder.addRecord(30L, 0L, CREATED_AT, "Zed", "a@example.com", 41);
+            builder.addIndexEntry(30L, bytes("a@example.com"));
+            builder.addIndexEntry(10L, bytes("anna@example.com"));
+            builder.addIndexEntry(20L, bytes("bob@example.com"));
+            builder.finish(1_000L);
+        }
+
+        UserSnapshot snapshot = UserSnapshot.open(file);
+
+        assertEquals(3, snapshot.size());
+        User anna = snapshot.findByEmail(" ANNA@example.com").orElseThrow();
+        assertEquals(10L, anna.getId());
+        assertEquals("Анна", anna.getName());
+        assertEquals("Anna@Example.com", anna.getEmail());
+        assertEquals(30, anna.getAge());
+        assertEquals(CREATED_AT, anna.getCreatedAt());
+        assertEquals(1L, anna.getVersion());
+        assertNull(snapshot.findById(20L).orElseThrow().getAge());
+        assertEquals(30L, snapshot.findByEmail("a@example.com").orElseThrow().getId());
+        assertTrue(snapshot.findById(25L).isEmpty());
+        assertTrue(snapshot.findByEmail("nobody@example.com").isEmpty());
+    }
+
+    @Test
+    void shouldRejectCorruptedSnapshot() throws Exception {
+        Path file = directory.resolve("users.snap");
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(file, SnapshotLayout.KIND_FULL, 1, 1, 0)) {
+            builder.addRecord(1L, 0L, CREATED_AT, "John", "john@example.com", 25);
+            builder.addIndexEntry(1L, bytes("john@example.com"));
+            builder.finish(1_000L);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), SnapshotLayout.HEADER_SIZE + SnapshotLayout.RECORD_AGE);
+        }
+
+        assertThrows(IOException.class, () -> UserSnapshot.open(file));
+    }
+
+    @Test
+    void shouldApplyDeltaToBaseSnapshot() throws Exception {
+        Path basePath = directory.resolve("base.snap");
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(basePath, SnapshotLayout.KIND_FULL, 3, 3, 0)) {
+            builder.addRecord(1L, 0L, CREATED_AT, "Kept", "kept@example.com", 20);
+            builder.addRecord(2L, 0L, CREATED_AT, "Changed", "old@example.com", 30);
+            builder.addRecord(3L, 0L, CREATED_AT, "Deleted", "deleted@example.com", 40);
+            builder.addIndexEntry(3L, bytes("deleted@example.com"));
+            builder.addIndexEntry(1L, bytes("kept@example.com"));
+            builder.addIndexEntry(2L, bytes("old@example.com"));
+            builder.finish(1_000L);
+        }
+        UserSnapshot base = UserSnapshot.open(basePath);
+        Path deltaPath = directory.resolve("delta.snap");
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(deltaPath, SnapshotLayout.KIND_DELTA, 3, 2,
+                base.getChecksum())) {
+            builder.addRecord(2L, 1L, CREATED_AT, "Changed", "new@example.com", 31);
+            builder.addTombstone(3L);
+            builder.addRecord(4L, 0L, CREATED_AT, "Added", "added@example.com", null);
+            builder.addIndexEntry(4L, bytes("added@example.com"));
+            builder.addIndexEntry(2L, bytes("new@example.com"));
+            builder.finish(2_000L);
+        }
+
+        UserSnapshot merged = UserSnapshot.applyDelta(base, UserSnapshot.open(deltaPath),
+                directory.resolve("merged.snap"));
+
+        List<Long> ids = new ArrayList<>();
+        merged.forEach(user -> ids.add(user.getId()));
+        assertEquals(List.of(1L, 2L, 4L), ids);
+        assertFalse(merged.isDelta());
+        assertEquals(2_000L, merged.getCreatedAtMillis());
+        assertEquals(31, merged.findById(2L).orElseThrow().getAge());
+        assertEquals(2L, merged.findByEmail("new@example.com").orElseThrow().getId());
+        assertEquals(4L, merged.findByEmail("added@example.com").orElseThrow().getId());
+        assertTrue(merged.findByEmail("old@example.com").isEmpty());
+        assertTrue(merged.findByEmail("deleted@example.com").isEmpty());
+        assertEquals(merged.getChecksum(), UserSnapshot.open(merged.getFile()).getChecksum());
+    }
+
+    @Test
+    void shouldRejectDeltaTakenAgainstAnotherBase() throws Exception {
+        Path basePath = directory.resolve("base.snap");
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(basePath, SnapshotLayout.KIND_FULL, 0, 0, 0)) {
+            builder.finish(1_000L);
+        }
+        Path deltaPath = directory.resolve("delta.snap");
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(deltaPath, SnapshotLayout.KIND_DELTA, 0, 0, 7L)) {
+            builder.finish(2_000L);
+        }
+
+        assertThrows(IOException.class, () -> UserSnapshot.applyDelta(UserSnapshot.open(basePath),
+                UserSnapshot.open(deltaPath), directory.resolve("merged.snap")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.UserStatsDao;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserStatsServiceTest {
+
+    @Mock
+    private UserStatsDao statsDao;
+
+    private final AtomicLong clock = new AtomicLong(1_000L);
+
+    private UserStatsService statsService;
+
+    @BeforeEach
+    void setUp() {
+        statsService = new UserStatsServiceImpl(statsDao, 5_000L, clock::get);
+    }
+
+    @Test
+    void shouldCacheResultsUntilTtlExpires() {
+        when(statsDao.count()).thenReturn(10L, 11L);
+
+        assertEquals(10L, statsService.count());
+        clock.addAndGet(4_999L);
+        assertEquals(10L, statsService.count());
+        clock.addAndGet(1L);
+        assertEquals(11L, statsService.count());
+
+        verify(statsDao, times(2)).count();
+    }
+
+    @Test
+    void shouldFillDaysWithoutSignups() {
+        LocalDate from = LocalDate.of(2024, 6, 1);
+        when(statsDao.signupsPerDay(from, from.plusDays(3)))
+                .thenReturn(Collections.singletonMap(from.plusDays(1), 5L));
+
+        Map<LocalDate, Long> signups = statsService.signupsPerDay(from, from.plusDays(3));
+
+        assertEquals(3, signups.size());
+        assertEquals(0L, signups.get(from));
+        assertEquals(5L, signups.get(from.plusDays(1)));
+        assertEquals(0L, signups.get(from.plusDays(2)));
+    }
+
+    @Test
+    void shouldCacheDateRangesSeparately() {
+        LocalDate from = LocalDate.of(2024, 6, 1);
+        when(statsDao.signupsPerDay(any(), any())).thenReturn(Collections.emptyMap());
+
+        statsService.signupsPerDay(from, from.plusDays(1));
+        statsService.signupsPerDay(from, from.plusDays(2));
+        statsService.signupsPerDay(from, from.plusDays(1));
+
+        verify(statsDao).signupsPerDay(from, from.plusDays(1));
+        verify(statsDao).signupsPerDay(from, from.plusDays(2));
+    }
+
+    @Test
+    void shouldRejectInvalidDateRange() {
+        LocalDate day = LocalDate.of(2024, 6, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> statsService.signupsPerDay(day, day));
+        assertThrows(IllegalArgumentException.class, () -> statsService.signupsPerDay(null, day));
+        assertThrows(IllegalArgumentException.class, () -> statsService.signupsPerDay(day, day.plusYears(2)));
+        verifyNoInteractions(statsDao);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserStatsSummaryIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static UserStatsSummary summary;
+    private static UserStatsDao groupByStats;
+    private static UserDao userDao;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+        summary = new UserStatsSummary(HibernateUtil.getSessionFactory());
+        summary.initialize();
+        groupByStats = new UserStatsDaoImpl(HibernateUtil.getSessionFactory());
+        userDao = new UserDaoImpl(summary);
+    }
+
+    @Test
+    void shouldKeepSummaryConsistentWithGroupByQueries() {
+        User young = userDao.save(new User("Young", "young@example.com", 19));
+        User adult = userDao.save(new User("Adult", "adult@example.com", 34));
+        userDao.save(new User("Unknown", "unknown@example.com", null));
+
+        adult.setAge(41);
+        userDao.update(adult);
+        userDao.delete(young.getId());
+
+        LocalDate today = LocalDate.now();
+        assertEquals(groupByStats.count(), summary.count());
+        assertEquals(groupByStats.countByAgeBucket(), summary.countByAgeBucket());
+        assertEquals(groupByStats.signupsPerDay(today, today.plusDays(1)),
+                summary.signupsPerDay(today, today.plusDays(1)));
+        assertEquals(groupByStats.averageAge().getAsDouble(), summary.averageAge().getAsDouble(), 1e-9);
+
+        summary.rebuild();
+        assertEquals(groupByStats.countByAgeBucket(), summary.countByAgeBucket());
+    }
+}
@@ -0,0 +1,140 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+import ru.aston.hometask.intensive2.program.service.UserServiceImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserTracingTest {
+
+    @Mock
+    private UserDao userDao;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<List<Span>> traces = new CopyOnWriteArrayList<>();
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new TracingUserService(new UserServiceImpl(new TracingUserDao(userDao)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Tracing.disable();
+    }
+
+    @Test
+    void shouldRecordNestedPhasesOfUpdateWithSql() {
+        Tracing.configure(spans -> traces.add(new ArrayList<>(spans)), 1.0, 0);
+        TracingStatementInspector inspector = new TracingStatementInspector();
+        TracingSessionEventListener listener = new TracingSessionEventListener();
+        when(userDao.inTransaction(any())).thenAnswer(invocation -> {
+            Function<UserDao, ?> work = invocation.getArgument(0);
+            return work.apply(userDao);
+        });
+        when(userDao.findById(1L)).thenAnswer(invocation -> {
+            inspector.inspect("select * from users where id=?");
+            listener.jdbcExecuteStatementStart();
+            listener.jdbcExecuteStatementEnd();
+            return Optional.of(user());
+        });
+        when(userDao.update(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.updateUser(1L, "New Name", null, null);
+
+        assertEquals(1, traces.size());
+        List<Span> spans = traces.get(0);
+        assertEquals(List.of("validate", "sql", "UserDao.findById", "UserDao.update", "UserDao.inTransaction",
+                "UserService.updateUser"), names(spans));
+        Span sql = spans.get(1);
+        assertEquals("select * from users where id=?", sql.getAttributes().get("db.statement"));
+        assertEquals("UserDao.findById", sql.getParent().getName());
+        assertEquals("UserDao.inTransaction", spans.get(2).getParent().getName());
+        assertEquals("UserService.updateUser", spans.get(0).getParent().getName());
+        assertTrue(spans.stream().allMatch(span -> span.getTraceId().equals(spans.get(5).getTraceId())));
+        assertSame(Span.NOOP, Tracing.currentSpan());
+    }
+
+    @Test
+    void shouldMarkFailedSpansAndStillExportTrace() {
+        Tracing.configure(spans -> traces.add(new ArrayList<>(spans)), 1.0, 0);
+        when(userDao.findById(7L)).thenThrow(new IllegalStateException("down"));
+
+        assertThrows(IllegalStateException.class, () -> userService.getUserById(7L));
+
+        List<Span> spans = traces.get(0);
+        assertEquals("IllegalStateException", spans.get(0).getAttributes().get("error"));
+        assertEquals("IllegalStateException", spans.get(1).getAttributes().get("error"));
+    }
+
+    @Test
+    void shouldSkipUnsampledTracesWithoutLeakingContext() {
+        Tracing.configure(spans -> traces.add(new ArrayList<>(spans)), 0.0, 0);
+        when(userDao.findById(1L)).thenReturn(Optional.of(user()));
+
+        userService.getUserById(1L);
+
+        assertTrue(traces.isEmpty());
+        assertSame(Span.NOOP, Tracing.currentSpan());
+
+        Tracing.configure(spans -> traces.add(new ArrayList<>(spans)), 1.0, TimeUnit.SECONDS.toNanos(10));
+        userService.getUserById(1L);
+
+        assertTrue(traces.isEmpty());
+    }
+
+    @Test
+    void shouldWriteChromeTraceEvents() throws Exception {
+        Path file = tempDir.resolve("trace.json");
+        try (ChromeTraceExporter exporter = new ChromeTraceExporter(file)) {
+            Tracing.configure(exporter, 1.0, 0);
+            try (Span root = Tracing.span("UserService.getUserById")) {
+                Tracing.span("sql").setAttribute("db.statement", "select \"name\" from users").close();
+            }
+            Tracing.span("UserService.getAllUsers").close();
+        }
+
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("[\n{\"name\":\"sql\",\"cat\":\"user\",\"ph\":\"X\",\"ts\":"));
+        assertTrue(json.endsWith("}}\n]\n"));
+        assertTrue(json.contains("\"db.statement\":\"select \\\"name\\\" from users\""));
+        assertEquals(3, json.split("\"ph\":\"X\"", -1).length - 1);
+        assertTrue(json.matches("(?s).*\"dur\":\\d+\\.\\d{3},.*"));
+    }
+
+    private static List<String> names(List<Span> spans) {
+        return spans.stream().map(Span::getName).collect(Collectors.toList());
+    }
+
+    private static User user() {
+        User user = new User("John", "john@example.com", 30);
+        user.setId(1L);
+        return user;
+    }
+}
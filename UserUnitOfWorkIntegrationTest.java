@@ -0,0 +1,74 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserUnitOfWorkIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private final UserDao userDao = new UserDaoImpl();
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    @Test
+    void shouldShareOneSessionAcrossCalls() {
+        User saved = userDao.save(new User("Shared", "shared@example.com", 30));
+
+        boolean sameInstance = userDao.inTransaction(dao ->
+                dao.findById(saved.getId()).orElseThrow() == dao.findById(saved.getId()).orElseThrow());
+
+        assertTrue(sameInstance);
+    }
+
+    @Test
+    void shouldRollBackAllOperationsTogether() {
+        User existing = userDao.save(new User("Existing", "existing@example.com", 40));
+
+        assertThrows(IllegalArgumentException.class, () -> userDao.inTransaction(dao -> {
+            dao.save(new User("Created", "created@example.com", 20));
+            User user = dao.findById(existing.getId()).orElseThrow();
+            user.setName("Renamed");
+            dao.update(user);
+            throw new IllegalArgumentException("Validation failed");
+        }));
+
+        assertFalse(userDao.findByEmail("created@example.com").isPresent());
+        assertEquals("Existing", userDao.findById(existing.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void shouldJoinOuterTransactionWhenNested() {
+        userDao.inTransaction(outer -> outer.inTransaction(inner ->
+                inner.save(new User("Nested", "nested@example.com", 25))));
+
+        assertTrue(userDao.findByEmail("nested@example.com").isPresent());
+    }
+
+    @Test
+    void shouldRejectUpdateOfStaleCopy() {
+        User saved = userDao.save(new User("Versioned", "versioned@example.com", 30));
+        User first = userDao.findById(saved.getId()).orElseThrow();
+        User second = userDao.findById(saved.getId()).orElseThrow();
+
+        first.setAge(31);
+        userDao.update(first);
+        second.setAge(32);
+
+        assertThrows(OptimisticLockConflictException.class, () -> userDao.update(second));
+        assertEquals(31, userDao.findById(saved.getId()).orElseThrow().getAge());
+    }
+}
@@ -0,0 +1,83 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class UserUpsertIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private final UserDao userDao = new UserDaoImpl();
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        System.setProperty("hibernate.connection.username", postgres.getUsername());
+        System.setProperty("hibernate.connection.password", postgres.getPassword());
+    }
+
+    @Test
+    void shouldInsertThenUpdateByEmail() {
+        User inserted = userDao.upsertByEmail(new User("John", "john@example.com", 30));
+        User updated = userDao.upsertByEmail(new User("John Smith", "John@Example.com", 31));
+
+        assertEquals(inserted.getId(), updated.getId());
+        assertEquals("John Smith", updated.getName());
+        assertEquals("John@Example.com", updated.getEmail());
+        assertEquals(31, updated.getAge());
+        assertEquals(inserted.getVersion() + 1, updated.getVersion());
+        assertEquals(inserted.getCreatedAt().withNano(0), updated.getCreatedAt().withNano(0));
+    }
+
+    @Test
+    void shouldNotRewriteUnchangedRecords() {
+        User first = userDao.upsertByEmail(new User("Same", "same@example.com", 40));
+        User second = userDao.upsertByEmail(new User("Same", "same@example.com", 40));
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(first.getVersion(), second.getVersion());
+    }
+
+    @Test
+    void shouldUpsertLargeBatchesInInputOrder() {
+        userDao.upsertByEmail(new User("Existing", "bulk5@example.com", 20));
+        List<User> records = new ArrayList<>();
+        for (int i = 0; i < UserUpsertSql.BATCH_SIZE * 2 + 500; i++) {
+            records.add(new User("Bulk " + i, "bulk" + i + "@example.com", i % 90));
+        }
+        records.add(new User("Bulk duplicate", "BULK7@example.com", 77));
+
+        List<User> stored = userDao.upsertAll(records);
+
+        assertEquals(UserUpsertSql.BATCH_SIZE * 2 + 500, stored.size());
+        assertEquals("Bulk 0", stored.get(0).getName());
+        assertEquals("Bulk 5", stored.get(5).getName());
+        assertEquals("Bulk duplicate", stored.get(7).getName());
+        assertTrue(stored.stream().allMatch(user -> user.getId() != null));
+    }
+
+    @Test
+    void shouldReturnStoredRowsWhenNothingChanged() {
+        List<User> records = Arrays.asList(
+                new User("Idem A", "idem-a@example.com", 20),
+                new User("Idem B", "idem-b@example.com", 21));
+        List<User> first = userDao.upsertAll(records);
+
+        List<User> second = userDao.upsertAll(records);
+
+        assertEquals(first.get(0).getId(), second.get(0).getId());
+        assertEquals(first.get(1).getId(), second.get(1).getId());
+    }
+}
@@ -0,0 +1,35 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserUpsertSqlTest {
+
+    @Test
+    void shouldKeepLastRecordPerNormalizedEmail() {
+        List<User> records = UserUpsertSql.deduplicate(Arrays.asList(
+                new User("First", "john@example.com", 20),
+                new User("Anna", "anna@example.com", 30),
+                new User("Second", " JOHN@example.com", 21)));
+
+        assertEquals(2, records.size());
+        assertEquals("Second", records.get(0).getName());
+        assertEquals("Anna", records.get(1).getName());
+    }
+
+    @Test
+    void shouldBuildMultiRowValuesWithConflictUpdate() {
+        String sql = UserUpsertSql.buildSql(3);
+
+        assertTrue(sql.startsWith("insert into users (id, name, email, email_normalized, age, created_at, version)"
+                + " values (?, ?, ?, ?, ?, ?, 0), (?, ?, ?, ?, ?, ?, 0), (?, ?, ?, ?, ?, ?, 0) on conflict"), sql);
+        assertTrue(sql.contains("on conflict (email_normalized) do update"), sql);
+        assertTrue(sql.contains("is distinct from"), sql);
+        assertEquals(18, sql.chars().filter(c -> c == '?').count());
+    }
+}
@@ -0,0 +1,171 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.aston.hometask.intensive2.program.cache.CachingUserDao;
+import ru.aston.hometask.intensive2.program.cache.HeapUserCache;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+import ru.aston.hometask.intensive2.program.service.UserServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindUserDaoTest {
+
+    @Mock
+    private UserDao userDao;
+
+    private final List<List<WriteBehindUserDao.PendingUpdate>> batches =
+            Collections.synchronizedList(new ArrayList<>());
+
+    private WriteBehindUserDao writeBehindDao;
+
+    @BeforeEach
+    void setUp() {
+        writeBehindDao = new WriteBehindUserDao(userDao, 3, 100, 60_000, 0, batch -> {
+            batches.add(batch);
+            return applied(batch);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehindDao.close();
+    }
+
+    @Test
+    void shouldCoalesceUpdatesForSameId() {
+        writeBehindDao.update(user(1L, "John", "john@example.com", 30));
+        writeBehindDao.update(user(1L, null, null, 31));
+
+        writeBehindDao.flush();
+
+        assertEquals(1, batches.size());
+        WriteBehindUserDao.PendingUpdate update = batches.get(0).get(0);
+        assertEquals("John", update.name);
+        assertEquals(31, update.age);
+        assertEquals(1, writeBehindDao.getCoalescedUpdates());
+        verify(userDao, never()).update(any());
+    }
+
+    @Test
+    void shouldRejectUpdatesWhenQueueIsFull() {
+        writeBehindDao.close();
+        writeBehindDao = new WriteBehindUserDao(userDao, 2, 100, 60_000, 0, WriteBehindUserDaoTest::applied);
+        writeBehindDao.update(user(1L, "A", "a@example.com", 1));
+        writeBehindDao.update(user(2L, "B", "b@example.com", 2));
+
+        assertThrows(IllegalStateException.class,
+                () -> writeBehindDao.update(user(3L, "C", "c@example.com", 3)));
+        assertEquals(1, writeBehindDao.getRejectedUpdates());
+    }
+
+    @Test
+    void shouldOverlayPendingUpdateOnRead() {
+        when(userDao.findById(1L)).thenReturn(Optional.of(user(1L, "Old", "old@example.com", 20)));
+        writeBehindDao.update(user(1L, "New", null, null));
+
+        User result = writeBehindDao.findById(1L).orElseThrow();
+
+        assertEquals("New", result.getName());
+        assertEquals("old@example.com", result.getEmail());
+    }
+
+    @Test
+    void shouldFlushPendingUpdatesOnClose() {
+        writeBehindDao.update(user(1L, "A", "a@example.com", 1));
+        writeBehindDao.update(user(2L, "B", "b@example.com", 2));
+
+        writeBehindDao.close();
+
+        assertEquals(0, writeBehindDao.getPendingCount());
+        assertEquals(2, writeBehindDao.getFlushedRows());
+        assertThrows(IllegalStateException.class,
+                () -> writeBehindDao.update(user(3L, "C", "c@example.com", 3)));
+    }
+
+    @Test
+    void shouldDropOnlyFailingRowWhenBatchFails() {
+        writeBehindDao.close();
+        writeBehindDao = new WriteBehindUserDao(userDao, 10, 100, 60_000, 0, batch -> {
+            if (batch.stream().anyMatch(update -> update.id == 2L)) {
+                throw new RuntimeException("constraint violation");
+            }
+            return applied(batch);
+        });
+        writeBehindDao.update(user(1L, "A", "a@example.com", 1));
+        writeBehindDao.update(user(2L, "B", "b@example.com", 2));
+
+        writeBehindDao.flush();
+
+        assertEquals(1, writeBehindDao.getFailedBatches());
+        assertEquals(1, writeBehindDao.getFlushedRows());
+        assertEquals(1, writeBehindDao.getDroppedUpdates());
+    }
+
+    @Test
+    void shouldCountUpdateOfMissingRowAsDropped() {
+        writeBehindDao.close();
+        writeBehindDao = new WriteBehindUserDao(userDao, 10, 100, 60_000, 0,
+                batch -> batch.stream().mapToInt(update -> update.id == 2L ? 0 : 1).toArray());
+        writeBehindDao.update(user(1L, "A", "a@example.com", 1));
+        writeBehindDao.update(user(2L, "B", "b@example.com", 2));
+
+        writeBehindDao.flush();
+
+        assertEquals(0, writeBehindDao.getFailedBatches());
+        assertEquals(1, writeBehindDao.getFlushedRows());
+        assertEquals(1, writeBehindDao.getDroppedUpdates());
+    }
+
+    @Test
+    void shouldMarkWriteForUpdatingThread() {
+        writeBehindDao.close();
+        List<String> marked = new ArrayList<>();
+        writeBehindDao = new WriteBehindUserDao(userDao, 10, 100, 60_000, 0, WriteBehindUserDaoTest::applied,
+                () -> marked.add(Thread.currentThread().getName()));
+
+        writeBehindDao.update(user(1L, "A", "a@example.com", 1));
+
+        assertEquals(List.of(Thread.currentThread().getName()), marked);
+    }
+
+    @Test
+    void shouldQueueServiceUpdateInsteadOfFlushing() {
+        when(userDao.findById(1L)).thenReturn(Optional.of(user(1L, "Old", "old@example.com", 20)));
+        UserService userService = new UserServiceImpl(
+                new CachingUserDao(writeBehindDao, new HeapUserCache(60_000, 10)));
+
+        User result = userService.updateUser(1L, "New", null, 21);
+
+        assertEquals("New", result.getName());
+        assertEquals(1, writeBehindDao.getPendingCount());
+        assertTrue(batches.isEmpty());
+        verify(userDao, never()).inTransaction(any());
+        verify(userDao, never()).update(any());
+    }
+
+    private static int[] applied(List<WriteBehindUserDao.PendingUpdate> batch) {
+        int[] updateCounts = new int[batch.size()];
+        Arrays.fill(updateCounts, 1);
+        return updateCounts;
+    }
+
+    private static User user(Long id, String name, String email, Integer age) {
+        User user = new User(name, email, age);
+        user.setId(id);
+        return user;
+    }
+}
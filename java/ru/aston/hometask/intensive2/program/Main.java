@@ -1,23 +1,84 @@
 package ru.aston.hometask.intensive2.program;
 
+import ru.aston.hometask.intensive2.program.archive.ArchiveFallbackUserDao;
+import ru.aston.hometask.intensive2.program.archive.UserArchive;
+import ru.aston.hometask.intensive2.program.archive.UserArchiver;
+import ru.aston.hometask.intensive2.program.cache.CacheWarmer;
+import ru.aston.hometask.intensive2.program.cache.CachingUserDao;
+import ru.aston.hometask.intensive2.program.cache.HeapUserCache;
+import ru.aston.hometask.intensive2.program.cache.HotUserTracker;
+import ru.aston.hometask.intensive2.program.cache.OffHeapUserCache;
+import ru.aston.hometask.intensive2.program.cache.RefreshAheadUserCache;
+import ru.aston.hometask.intensive2.program.cache.UserCache;
+import ru.aston.hometask.intensive2.program.cache.UserInvalidationListener;
+import ru.aston.hometask.intensive2.program.dao.JdbcUserDao;
+import ru.aston.hometask.intensive2.program.dao.ShardedUserDao;
 import ru.aston.hometask.intensive2.program.dao.UserDao;
 import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.dao.UserNameSearchIndex;
+import ru.aston.hometask.intensive2.program.dao.UserStatsDao;
+import ru.aston.hometask.intensive2.program.dao.UserStatsDaoImpl;
+import ru.aston.hometask.intensive2.program.dao.UserStatsSummary;
+import ru.aston.hometask.intensive2.program.dao.WriteBehindUserDao;
+import ru.aston.hometask.intensive2.program.export.ExportCompression;
+import ru.aston.hometask.intensive2.program.export.ExportFormat;
+import ru.aston.hometask.intensive2.program.export.UserExporter;
+import ru.aston.hometask.intensive2.program.jfr.JfrUserDao;
+import ru.aston.hometask.intensive2.program.jfr.JfrUserService;
+import ru.aston.hometask.intensive2.program.limit.AdaptiveConcurrencyLimiter;
+import ru.aston.hometask.intensive2.program.limit.ConcurrencyLimitedUserService;
+import ru.aston.hometask.intensive2.program.limit.Priority;
+import ru.aston.hometask.intensive2.program.outbox.FileChangeSink;
+import ru.aston.hometask.intensive2.program.outbox.OutboxRelay;
+import ru.aston.hometask.intensive2.program.outbox.UserOutbox;
+import ru.aston.hometask.intensive2.program.resilience.CircuitBreaker;
+import ru.aston.hometask.intensive2.program.resilience.ResilientUserDao;
+import ru.aston.hometask.intensive2.program.resilience.RetryBudget;
+import ru.aston.hometask.intensive2.program.service.TimeLimitedUserService;
 import ru.aston.hometask.intensive2.program.service.UserService;
 import ru.aston.hometask.intensive2.program.service.UserServiceImpl;
+import ru.aston.hometask.intensive2.program.service.UserStatsService;
+import ru.aston.hometask.intensive2.program.service.UserStatsServiceImpl;
+import ru.aston.hometask.intensive2.program.snapshot.UserSnapshot;
+import ru.aston.hometask.intensive2.program.trace.ChromeTraceExporter;
+import ru.aston.hometask.intensive2.program.trace.Tracing;
+import ru.aston.hometask.intensive2.program.trace.TracingUserDao;
+import ru.aston.hometask.intensive2.program.trace.TracingUserService;
 import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.Deadline;
 import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-
+import org.hibernate.SessionFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     private static final Logger logger = LogManager.getLogger(Main.class);
 
-    private static final UserDao userDao = new UserDaoImpl();
-    private static final UserService userService = new UserServiceImpl(userDao);
+    private static final UserStatsSummary statsSummary = createStatsSummary();
+    private static ResilientUserDao resilientDao;
+    private static UserArchiver archiver;
+    private static RefreshAheadUserCache refreshingCache;
+    private static final UserDao userDao = createUserDao();
+    private static final AdaptiveConcurrencyLimiter limiter = createLimiter();
+    private static final UserService userService = createUserService();
+    private static final UserStatsService statsService = new UserStatsServiceImpl(
+            statsSummary != null ? statsSummary : new UserStatsDaoImpl(HibernateUtil.getSessionFactory(), userSource()),
+            Long.getLong("user.stats.cacheTtlMillis", 5_000L));
 
     private static final Scanner scanner = new Scanner(System.in);
 
@@ -25,6 +86,8 @@ public class Main {
         logger.info("Starting User Service application");
 
         try {
+            startTracing();
+            startOutbox();
             displayMenu();
             boolean running = true;
 
@@ -51,6 +114,12 @@ public class Main {
                     case "6":
                         findUserByEmail();
                         break;
+                    case "7":
+                        showStatistics();
+                        break;
+                    case "8":
+                        exportUsers();
+                        break;
                     case "0":
                         running = false;
                         break;
@@ -75,6 +144,309 @@ public class Main {
         }
     }
 
+    private static UserService createUserService() {
+        UserService service = new UserServiceImpl(userDao, new RetryPolicy(
+                Integer.getInteger("user.update.maxAttempts", 5),
+                Long.getLong("user.update.initialBackoffMillis", 5L),
+                Long.getLong("user.update.maxBackoffMillis", 200L)));
+        Duration timeout = Duration.ofMillis(Long.getLong("user.operation.timeoutMillis", 0L));
+        Map<String, Duration> timeouts = parseTimeouts(System.getProperty("user.operation.timeouts", ""));
+        if (!timeout.isZero() || !timeouts.isEmpty()) {
+            logger.info("Operation deadlines enabled: default {} ms, overrides {}", timeout.toMillis(), timeouts);
+            service = new TimeLimitedUserService(service, timeout, timeouts);
+        }
+        if (limiter != null) {
+            service = new ConcurrencyLimitedUserService(service, limiter);
+        }
+        return new JfrUserService(new TracingUserService(service));
+    }
+
+    private static AdaptiveConcurrencyLimiter createLimiter() {
+        if (!Boolean.getBoolean("user.limit.enabled")) {
+            return null;
+        }
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                Integer.getInteger("user.limit.initial", AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT),
+                Integer.getInteger("user.limit.min", AdaptiveConcurrencyLimiter.DEFAULT_MIN_LIMIT),
+                Integer.getInteger("user.limit.max", AdaptiveConcurrencyLimiter.DEFAULT_MAX_LIMIT),
+                Double.parseDouble(System.getProperty("user.limit.tolerance",
+                        String.valueOf(AdaptiveConcurrencyLimiter.DEFAULT_TOLERANCE))));
+        logger.info("Adaptive concurrency limit enabled, initial limit {}", limiter.getLimit());
+        return limiter;
+    }
+
+    // Формат: getAllUsers=10000,findUsers=2000 — срок в миллисекундах по имени метода UserService
+    private static Map<String, Duration> parseTimeouts(String value) {
+        Map<String, Duration> timeouts = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            if (!entry.trim().isEmpty()) {
+                String[] parts = entry.split("=", 2);
+                timeouts.put(parts[0].trim(), Duration.ofMillis(Long.parseLong(parts[1].trim())));
+            }
+        }
+        return timeouts;
+    }
+
+    private static UserDao createUserDao() {
+        UserDao dao = createBaseUserDao();
+        UserArchive archive = startArchive();
+        if (archive != null) {
+            dao = new ArchiveFallbackUserDao(dao, archive);
+        }
+        dao = new TracingUserDao(dao);
+        if (Boolean.getBoolean("user.resilience.enabled")) {
+            resilientDao = createResilientDao(dao);
+            dao = resilientDao;
+        }
+        // События JFR пишутся только во время записи; без неё обёртка почти ничего не стоит
+        dao = new JfrUserDao(dao);
+        if (Boolean.getBoolean("user.writeBehind.enabled")) {
+            // Батчи пишутся напрямую в основную базу, мимо маршрутизации по шардам
+            if (!System.getProperty("user.shard.urls", "").trim().isEmpty()) {
+                logger.warn("Write-behind mode is not supported in sharded mode, updates are written directly");
+            } else {
+                logger.info("Write-behind mode enabled for user updates");
+                dao = new WriteBehindUserDao(dao,
+                        Integer.getInteger("user.writeBehind.capacity", 10_000),
+                        Integer.getInteger("user.writeBehind.batchSize", 500),
+                        Long.getLong("user.writeBehind.flushIntervalMillis", 200L),
+                        Long.getLong("user.writeBehind.offerTimeoutMillis", 1_000L));
+            }
+        }
+        if (Boolean.getBoolean("user.cache.enabled")) {
+            long ttlMillis = Long.getLong("user.cache.ttlMillis", 60_000L);
+            UserCache cache = createUserCache(ttlMillis, Integer.getInteger("user.cache.maxSize", 100_000));
+            double refreshAhead = Double.parseDouble(System.getProperty("user.cache.refreshAheadFraction", "0"));
+            if (refreshAhead > 0) {
+                refreshingCache = new RefreshAheadUserCache(cache, dao, ttlMillis, refreshAhead,
+                        Integer.getInteger("user.cache.refreshThreads", 2));
+                HibernateUtil.registerShutdownHook(refreshingCache::close);
+                cache = refreshingCache;
+                logger.info("Refresh-ahead enabled for the last {}% of cache TTL", Math.round(refreshAhead * 100));
+            }
+            String hotSetFile = System.getProperty("user.cache.hotSetFile");
+            HotUserTracker tracker = hotSetFile != null
+                    ? new HotUserTracker(Integer.getInteger("user.cache.hotSetSize", 10_000))
+                    : null;
+            UserDao loader = dao;
+            dao = new CachingUserDao(dao, cache, tracker);
+            UserInvalidationListener listener = new UserInvalidationListener(
+                    HibernateUtil::openDedicatedConnection, cache,
+                    Long.getLong("user.cache.invalidationBatchMillis", 20L));
+            listener.start();
+            HibernateUtil.registerShutdownHook(listener::close);
+            logger.info("User cache enabled with LISTEN/NOTIFY invalidation");
+            String snapshotPath = System.getProperty("user.snapshot.path");
+            if (snapshotPath != null) {
+                preloadCache(cache, Paths.get(snapshotPath), ttlMillis);
+            }
+            if (tracker != null) {
+                warmUpCache(cache, loader, tracker, Paths.get(hotSetFile));
+            }
+        }
+        return dao;
+    }
+
+    // Прогрев идёт до показа меню; список горячих id перезаписывается при остановке
+    private static void warmUpCache(UserCache cache, UserDao loader, HotUserTracker tracker, Path hotSetFile) {
+        int hotSetSize = Integer.getInteger("user.cache.hotSetSize", 10_000);
+        try {
+            List<Long> ids = CacheWarmer.loadHotSet(hotSetFile);
+            new CacheWarmer(cache, loader,
+                    Integer.getInteger("user.cache.warmupBatchSize", 500),
+                    Integer.getInteger("user.cache.warmupParallelism", 4)).warmUp(ids);
+            // Короткий запуск не должен затереть список: прошлые горячие id получают по одному обращению
+            ids.forEach(tracker::record);
+        } catch (Exception e) {
+            logger.warn("Could not warm up user cache from {}", hotSetFile, e);
+        }
+        HibernateUtil.registerShutdownHook(() -> {
+            try {
+                CacheWarmer.saveHotSet(tracker, hotSetFile, hotSetSize);
+            } catch (IOException e) {
+                logger.warn("Could not save hot user ids to {}", hotSetFile, e);
+            }
+        });
+    }
+
+    // Каждая попытка — отдельный участок трассы; событие JFR охватывает вызов вместе с повторами
+    private static ResilientUserDao createResilientDao(UserDao dao) {
+        ResilientUserDao resilient = new ResilientUserDao(dao,
+                new RetryPolicy(
+                        Integer.getInteger("user.resilience.maxAttempts", 3),
+                        Long.getLong("user.resilience.initialBackoffMillis", 50L),
+                        Long.getLong("user.resilience.maxBackoffMillis", 1_000L)),
+                new RetryBudget(
+                        Double.parseDouble(System.getProperty("user.resilience.retryRatio", "0.1")),
+                        Integer.getInteger("user.resilience.retryReserve", 10)),
+                new CircuitBreaker(
+                        Integer.getInteger("user.resilience.failureThreshold", 5),
+                        Long.getLong("user.resilience.openMillis", 5_000L)));
+        logger.info("Database retries and circuit breaker enabled");
+        return resilient;
+    }
+
+    // Кеш вне кучи не нагружает сборщик мусора при десятках миллионов записей
+    private static UserCache createUserCache(long ttlMillis, int maxSize) {
+        if (!Boolean.getBoolean("user.cache.offHeap")) {
+            return new HeapUserCache(ttlMillis, maxSize);
+        }
+        OffHeapUserCache cache = new OffHeapUserCache(ttlMillis, maxSize,
+                Integer.getInteger("user.cache.slotSize", OffHeapUserCache.DEFAULT_SLOT_SIZE));
+        logger.info("Off-heap user cache enabled: {} MiB reserved for {} entries",
+                cache.getOffHeapBytes() >> 20, maxSize);
+        return cache;
+    }
+
+    // Трассы пишутся в файл формата Chrome Trace Event; доля сэмплирования и порог длительности настраиваются
+    private static void startTracing() {
+        String traceFile = System.getProperty("user.trace.file");
+        if (traceFile == null) {
+            return;
+        }
+        try {
+            ChromeTraceExporter exporter = new ChromeTraceExporter(Paths.get(traceFile));
+            Tracing.configure(exporter,
+                    Double.parseDouble(System.getProperty("user.trace.sampleRatio", "0.1")),
+                    TimeUnit.MILLISECONDS.toNanos(Long.getLong("user.trace.minDurationMillis", 0L)));
+            HibernateUtil.registerShutdownHook(() -> {
+                Tracing.disable();
+                try {
+                    exporter.close();
+                } catch (IOException e) {
+                    logger.warn("Error closing trace file {}", traceFile, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.error("Could not open trace file {}", traceFile, e);
+        }
+    }
+
+    // С архивом выгрузка и статистика читают представление активных и архивных пользователей
+    private static String userSource() {
+        return archiver != null ? UserArchive.ALL_USERS_VIEW : "users";
+    }
+
+    // Архив нужен до первого обращения к DAO: он добавляет в users колонку активности и триггеры
+    private static UserArchive startArchive() {
+        if (!Boolean.getBoolean("user.archive.enabled")) {
+            return null;
+        }
+        if (!System.getProperty("user.shard.urls", "").trim().isEmpty()) {
+            logger.warn("User archive is not supported in sharded mode");
+            return null;
+        }
+        UserArchive archive = new UserArchive(HibernateUtil.getSessionFactory());
+        archive.install();
+        archiver = new UserArchiver(archive,
+                Duration.ofDays(Long.getLong("user.archive.inactiveDays", 365L)),
+                Integer.getInteger("user.archive.batchSize", 500),
+                Long.getLong("user.archive.pauseMillis", 50L),
+                Long.getLong("user.archive.intervalMillis", 3_600_000L));
+        archiver.start();
+        HibernateUtil.registerShutdownHook(archiver::close);
+        return archive;
+    }
+
+    // Outbox ведёт триггер основного узла: в шардированном режиме у каждого шарда был бы свой поток изменений
+    private static void startOutbox() {
+        if (!Boolean.getBoolean("user.outbox.enabled")) {
+            return;
+        }
+        if (!System.getProperty("user.shard.urls", "").trim().isEmpty()) {
+            logger.warn("User outbox is not supported in sharded mode");
+            return;
+        }
+        UserOutbox outbox = new UserOutbox(HibernateUtil.getSessionFactory());
+        outbox.install();
+        String relayFile = System.getProperty("user.outbox.relayFile");
+        if (relayFile == null) {
+            return;
+        }
+        try {
+            FileChangeSink sink = new FileChangeSink(Paths.get(relayFile));
+            OutboxRelay relay = new OutboxRelay(outbox, "file:" + relayFile, sink,
+                    Integer.getInteger("user.outbox.batchSize", 500),
+                    Long.getLong("user.outbox.pollIntervalMillis", 1_000L));
+            relay.start();
+            HibernateUtil.registerShutdownHook(() -> {
+                relay.close();
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    logger.warn("Error closing outbox relay file {}", relayFile, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.error("Could not open outbox relay file {}", relayFile, e);
+        }
+    }
+
+    // Изменения после снимка кешу неизвестны, поэтому снимок старше TTL кеша не используется
+    private static void preloadCache(UserCache cache, Path snapshotPath, long ttlMillis) {
+        try {
+            long started = System.nanoTime();
+            UserSnapshot snapshot = UserSnapshot.open(snapshotPath);
+            long ageMillis = System.currentTimeMillis() - snapshot.getCreatedAtMillis();
+            if (snapshot.isDelta() || ageMillis > ttlMillis) {
+                logger.warn("Snapshot {} is a delta or older than the cache TTL ({} ms), skipping cache preload",
+                        snapshotPath, ageMillis);
+                return;
+            }
+            snapshot.forEach(cache::put);
+            logger.info("Preloaded {} users from snapshot {} in {} ms", cache.size(), snapshotPath,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            logger.warn("Could not preload user cache from snapshot {}", snapshotPath, e);
+        }
+    }
+
+    // Сводку обновляет только UserDaoImpl: пакетная запись write-behind, шардирование и JdbcUserDao её обходят
+    private static UserStatsSummary createStatsSummary() {
+        if (!Boolean.getBoolean("user.stats.summary.enabled")) {
+            return null;
+        }
+        if (Boolean.getBoolean("user.writeBehind.enabled")
+                || !System.getProperty("user.shard.urls", "").trim().isEmpty()
+                || "jdbc".equalsIgnoreCase(System.getProperty("user.dao.impl", "hibernate"))) {
+            logger.warn("Statistics summary is not supported with write-behind, sharding or the JDBC DAO,"
+                    + " using GROUP BY queries");
+            return null;
+        }
+        UserStatsSummary summary = new UserStatsSummary(HibernateUtil.getSessionFactory());
+        summary.initialize();
+        logger.info("Statistics summary enabled");
+        return summary;
+    }
+
+    private static UserDao createBaseUserDao() {
+        String shardUrls = System.getProperty("user.shard.urls", "");
+        boolean jdbc = "jdbc".equalsIgnoreCase(System.getProperty("user.dao.impl", "hibernate"));
+        if (shardUrls.trim().isEmpty()) {
+            new UserNameSearchIndex(HibernateUtil.getSessionFactory()).install();
+            if (jdbc) {
+                logger.info("Plain JDBC user DAO enabled");
+                return new JdbcUserDao();
+            }
+            return new UserDaoImpl(statsSummary);
+        }
+        if (jdbc) {
+            logger.warn("Plain JDBC user DAO is not supported in sharded mode, using Hibernate");
+        }
+        Map<String, SessionFactory> shards = new LinkedHashMap<>();
+        for (String url : shardUrls.split(",")) {
+            shards.put("shard-" + shards.size(), HibernateUtil.buildSessionFactory(url.trim(), false));
+        }
+        logger.info("Sharded mode enabled with {} shards", shards.size());
+        shards.values().forEach(shard -> new UserNameSearchIndex(shard).install());
+        ShardedUserDao shardedDao = new ShardedUserDao(shards);
+        HibernateUtil.registerShutdownHook(() -> {
+            shardedDao.close();
+            shards.values().forEach(SessionFactory::close);
+        });
+        return shardedDao;
+    }
+
     private static void displayMenu() {
         System.out.println("\n=== User Service ===");
         System.out.println("1. Create User");
@@ -83,6 +455,8 @@ public class Main {
         System.out.println("4. Update User");
         System.out.println("5. Delete User");
         System.out.println("6. Find User by Email");
+        System.out.println("7. Show Statistics");
+        System.out.println("8. Export Users");
         System.out.println("0. Exit");
     }
 
@@ -244,4 +618,81 @@ public class Main {
             System.out.println("Error finding user: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static void showStatistics() {
+        try {
+            System.out.println("\n--- Statistics ---");
+            System.out.println("Total users: " + statsService.count());
+            OptionalDouble averageAge = statsService.averageAge();
+            System.out.println("Average age: "
+                    + (averageAge.isPresent() ? String.format("%.1f", averageAge.getAsDouble()) : "n/a"));
+
+            System.out.println("Users by age:");
+            statsService.countByAgeBucket().forEach((bucket, count) ->
+                    System.out.println("  " + bucket + "-" + (bucket + UserStatsDao.AGE_BUCKET_WIDTH - 1) + ": " + count));
+
+            LocalDate today = LocalDate.now();
+            System.out.println("Signups in the last 7 days:");
+            statsService.signupsPerDay(today.minusDays(6), today.plusDays(1)).forEach((day, count) ->
+                    System.out.println("  " + day + ": " + count));
+
+            System.out.println("Deadlines: applied " + Deadline.getApplied() + ", expired " + Deadline.getExpired()
+                    + ", cancelled by server " + Deadline.getCancelled());
+            if (limiter != null) {
+                System.out.println("Concurrency limit: " + limiter.getLimit() + ", in flight " + limiter.getInflight()
+                        + ", rejected read/write/bulk " + limiter.getRejected(Priority.READ) + "/"
+                        + limiter.getRejected(Priority.WRITE) + "/" + limiter.getRejected(Priority.BULK));
+            }
+            if (refreshingCache != null) {
+                System.out.println("Cache refresh-ahead: refreshed " + refreshingCache.getRefreshed() + ", failed "
+                        + refreshingCache.getFailed() + ", dropped " + refreshingCache.getDropped());
+            }
+            if (archiver != null) {
+                System.out.println("Archived users: " + archiver.getArchived() + " moved, "
+                        + archiver.getFailures() + " failed passes");
+            }
+            if (resilientDao != null) {
+                CircuitBreaker breaker = resilientDao.getCircuitBreaker();
+                System.out.println("Circuit: " + breaker.getState() + ", opened " + breaker.getOpened()
+                        + ", rejected " + breaker.getRejected()
+                        + "; retries " + resilientDao.getRetryPolicy().getRetries()
+                        + ", gave up " + resilientDao.getRetryPolicy().getExhausted()
+                        + ", over budget " + resilientDao.getRetryBudget().getExhausted());
+            }
+
+        } catch (Exception e) {
+            System.out.println("Error retrieving statistics: " + e.getMessage());
+        }
+    }
+
+    // Выгрузка читает таблицу users основного узла напрямую, поэтому в шардированном режиме недоступна
+    private static void exportUsers() {
+        try {
+            System.out.println("\n--- Export Users ---");
+            if (!System.getProperty("user.shard.urls", "").trim().isEmpty()) {
+                System.out.println("Export is not supported in sharded mode.");
+                return;
+            }
+            System.out.print("Enter format (csv, jsonl, columnar): ");
+            ExportFormat format = ExportFormat.valueOf(scanner.nextLine().trim().toUpperCase(Locale.ROOT));
+
+            System.out.print("Compress with gzip? (y/n): ");
+            ExportCompression compression = scanner.nextLine().trim().equalsIgnoreCase("y")
+                    ? ExportCompression.GZIP : ExportCompression.NONE;
+
+            String defaultFile = "users-" + LocalDate.now() + "." + format.getExtension() + compression.getSuffix();
+            System.out.print("Enter file path (default: " + defaultFile + "): ");
+            String fileInput = scanner.nextLine().trim();
+            Path target = Paths.get(fileInput.isEmpty() ? defaultFile : fileInput);
+
+            long rows = new UserExporter(HibernateUtil.getSessionFactory(), userSource())
+                    .export(target, format, compression);
+            System.out.println("Exported " + rows + " users to " + target.toAbsolutePath());
+
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Unknown export format!");
+        } catch (Exception e) {
+            System.out.println("Error exporting users: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.aston.hometask.intensive2.program.archive;
+
+import ru.aston.hometask.intensive2.program.dao.ForwardingUserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск по id и email, не нашедший пользователя в users, возвращает его из {@link UserArchive}: строка
+ * переносится обратно и дальше живёт как активная. Запись архивного пользователя сначала падает на users
+ * (строки нет или email занят архивом) — тогда строка возвращается из архива и запись повторяется один раз,
+ * так что обычный путь не платит за архив ни одним запросом. findAll отдаёт и архив без переноса;
+ * findByQuery и searchByName работают только по активным пользователям.
+ */
+public class ArchiveFallbackUserDao extends ForwardingUserDao {
+
+    private final UserArchive archive;
+    private final ThreadLocal<Boolean> inUnitOfWork = ThreadLocal.withInitial(() -> false);
+
+    public ArchiveFallbackUserDao(UserDao delegate, UserArchive archive) {
+        super(delegate);
+        this.archive = archive;
+    }
+
+    // Промах сначала проверяется чтением архива: перенос — пишущая транзакция на основном узле
+    @Override
+    public Optional<User> findById(Long id) {
+        Optional<User> user = delegate.findById(id);
+        if (user.isPresent() || archive.findArchivedIds(List.of(id)).isEmpty()) {
+            return user;
+        }
+        return archive.restoreById(id);
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>(delegate.findAll());
+        users.addAll(archive.findAll());
+        return users;
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        List<User> users = delegate.findAllById(ids);
+        Set<Long> missing = new LinkedHashSet<>(ids);
+        users.forEach(user -> missing.remove(user.getId()));
+        if (missing.isEmpty()) {
+            return users;
+        }
+        List<User> result = new ArrayList<>(users);
+        for (Long id : archive.findArchivedIds(missing)) {
+            archive.restoreById(id).ifPresent(result::add);
+        }
+        result.sort(Comparator.comparing(User::getId));
+        return result;
+    }
+
+    @Override
+    public User update(User user) {
+        return withRestore(() -> delegate.update(user), () -> archive.restoreById(user.getId()).isPresent());
+    }
+
+    // Удаление идёт через users, чтобы триггеры outbox и кеша увидели его как обычное
+    @Override
+    public void delete(Long id) {
+        try {
+            delegate.delete(id);
+        } catch (IllegalArgumentException e) {
+            if (inUnitOfWork.get() || archive.restoreById(id).isEmpty()) {
+                throw e;
+            }
+            delegate.delete(id);
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Optional<User> user = delegate.findByEmail(email);
+        if (user.isPresent() || !archive.isEmailArchived(email, null)) {
+            return user;
+        }
+        return archive.restoreByEmails(List.of(email)).stream().findFirst();
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return delegate.isEmailExistsForOtherUser(email, excludeUserId)
+                || archive.isEmailArchived(email, excludeUserId);
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return withRestore(() -> delegate.upsertByEmail(user),
+                () -> !archive.restoreByEmails(List.of(user.getEmail())).isEmpty());
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return withRestore(() -> delegate.upsertAll(users), () -> !archive.restoreByEmails(
+                users.stream().map(User::getEmail).collect(Collectors.toList())).isEmpty());
+    }
+
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        boolean outer = !inUnitOfWork.get();
+        inUnitOfWork.set(true);
+        try {
+            return super.inTransaction(work);
+        } finally {
+            if (outer) {
+                inUnitOfWork.set(false);
+            }
+        }
+    }
+
+    // Внутри единицы работы транзакция после ошибки уже прервана — повтор возможен только снаружи
+    private <T> T withRestore(Supplier<T> write, Supplier<Boolean> restore) {
+        try {
+            return write.get();
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (inUnitOfWork.get()) {
+                throw e;
+            }
+            boolean restored;
+            try {
+                restored = restore.get();
+            } catch (RuntimeException restoreFailure) {
+                e.addSuppressed(restoreFailure);
+                throw e;
+            }
+            if (!restored) {
+                throw e;
+            }
+            return write.get();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package ru.aston.hometask.intensive2.program.archive;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Холодные пользователи в users_archive, секционированной по году created_at. Сама users остаётся обычной
+ * таблицей: секционирование по created_at или id не позволило бы PostgreSQL держать общий уникальный индекс
+ * по email_normalized, на котором построены проверка email и upsert. Зато её индексы содержат только активные
+ * строки. Активность — последняя запись строки: users.last_modified_at ведёт триггер.
+ * Перенос в обе стороны выполняется под флагом user.archive_move — триггер outbox такие перемещения
+ * не публикует, а триггер на вставку не проверяет email по архиву.
+ */
+public class UserArchive {
+
+    private static final Logger logger = LogManager.getLogger(UserArchive.class);
+
+    static final String MOVE_FLAG_SQL = "set local user.archive_move = 'on'";
+
+    // Активные и архивные пользователи вместе — источник для выгрузок, снимков и статистики
+    public static final String ALL_USERS_VIEW = "users_all";
+
+    private static final String COLUMNS = "id, name, email, email_normalized, age, created_at, version";
+
+    private static final String[] INSTALL_DDL = {
+            "alter table users add column if not exists last_modified_at timestamp",
+            "create index if not exists idx_users_last_active on users ((coalesce(last_modified_at, created_at)), id)",
+            "create or replace function touch_user() returns trigger as $$ begin"
+                    + " new.last_modified_at := now(); return new; end $$ language plpgsql",
+            "do $$ begin"
+                    + " if not exists (select 1 from pg_trigger where tgname = 'users_touch') then"
+                    + " create trigger users_touch before update on users"
+                    + " for each row execute procedure touch_user();"
+                    + " end if; end $$",
+            "create table if not exists users_archive ("
+                    + " id bigint not null, name varchar(100) not null, email varchar(150) not null,"
+                    + " email_normalized varchar(150) not null, age integer, created_at timestamp not null,"
+                    + " version bigint not null, archived_at timestamp not null default now(),"
+                    + " primary key (id, created_at)) partition by range (created_at)",
+            "create index if not exists idx_users_archive_id on users_archive (id)",
+            "create index if not exists idx_users_archive_email on users_archive (email_normalized)",
+            "create or replace view " + ALL_USERS_VIEW + " as select " + COLUMNS + " from users"
+                    + " union all select " + COLUMNS + " from users_archive",
+            // Один email не может быть одновременно у активного и архивного пользователя; блокировка по email
+            // закрывает гонку с переносом той же строки в архив
+            "create or replace function reject_archived_email() returns trigger as $$"
+                    + " declare normalized varchar := coalesce(new.email_normalized, lower(trim(new.email))); begin"
+                    + " if coalesce(current_setting('user.archive_move', true), '') = 'on' then return new; end if;"
+                    + " perform pg_advisory_xact_lock(hashtext(normalized));"
+                    + " if exists (select 1 from users_archive where email_normalized = normalized) then"
+                    + " raise exception 'Email % belongs to an archived user', new.email"
+                    + " using errcode = '23505', constraint = 'uk_users_email_normalized';"
+                    + " end if; return new; end $$ language plpgsql",
+            "do $$ begin"
+                    + " if not exists (select 1 from pg_trigger where tgname = 'users_reject_archived_email') then"
+                    + " create trigger users_reject_archived_email before insert on users"
+                    + " for each row execute procedure reject_archived_email();"
+                    + " end if; end $$"
+    };
+
+    // SKIP LOCKED: строки, которые сейчас меняет приложение, остаются до следующего прохода
+    private static final String SELECT_COLD_SQL = "select id, cast(extract(year from created_at) as integer)"
+            + " from users where coalesce(last_modified_at, created_at) < ?"
+            + " order by coalesce(last_modified_at, created_at), id limit ? for update skip locked";
+    private static final String LOCK_EMAILS_SQL = "select pg_advisory_xact_lock(hashtext("
+            + "coalesce(email_normalized, lower(trim(email))))) from users where id = any(?)";
+    private static final String ARCHIVE_SQL = "with moved as (delete from users where id = any(?) returning "
+            + COLUMNS + ") insert into users_archive (" + COLUMNS + ") select id, name, email,"
+            + " coalesce(email_normalized, lower(trim(email))), age, created_at, version from moved";
+    private static final String RESTORE_BY_ID_SQL = "with moved as (delete from users_archive where id = ?"
+            + " returning " + COLUMNS + ") insert into users (" + COLUMNS + ", last_modified_at) select " + COLUMNS
+            + ", now() from moved returning " + COLUMNS;
+    private static final String RESTORE_BY_EMAIL_SQL = "with moved as (delete from users_archive"
+            + " where email_normalized = any(?) returning " + COLUMNS + ") insert into users (" + COLUMNS
+            + ", last_modified_at) select " + COLUMNS + ", now() from moved returning " + COLUMNS;
+    private static final String ARCHIVED_IDS_SQL = "select id from users_archive where id = any(?)";
+    private static final String FIND_ALL_SQL = "select " + COLUMNS + " from users_archive order by id";
+    private static final String EMAIL_EXISTS_SQL =
+            "select exists (select 1 from users_archive where email_normalized = ? and id <> ?)";
+    private static final String DELETE_SQL = "delete from users_archive where id = ?";
+    private static final String COUNT_SQL = "select count(*) from users_archive";
+
+    private final SessionFactory sessionFactory;
+    private final Set<Integer> knownPartitions = ConcurrentHashMap.newKeySet();
+
+    public UserArchive(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public void install() {
+        try {
+            Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String ddl : INSTALL_DDL) {
+                        statement.execute(ddl);
+                    }
+                }
+                return null;
+            });
+            logger.info("User archive is installed");
+        } catch (Exception e) {
+            logger.error("Error installing user archive", e);
+            throw new RuntimeException("Error installing user archive", e);
+        }
+    }
+
+    // Одна короткая транзакция: до batchSize пользователей без изменений с inactiveSince; 0 — переносить нечего
+    public int archiveBatch(LocalDateTime inactiveSince, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        try {
+            Set<Integer> years = new TreeSet<>();
+            int archived = Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                List<Long> ids = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_COLD_SQL)) {
+                    statement.setTimestamp(1, Timestamp.valueOf(inactiveSince));
+                    statement.setInt(2, batchSize);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            ids.add(resultSet.getLong(1));
+                            years.add(resultSet.getInt(2));
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                for (int year : years) {
+                    ensurePartition(connection, year);
+                }
+                Array idArray = connection.createArrayOf("bigint", ids.toArray());
+                try (PreparedStatement statement = connection.prepareStatement(LOCK_EMAILS_SQL)) {
+                    statement.setArray(1, idArray);
+                    statement.executeQuery().close();
+                }
+                markMove(connection);
+                try (PreparedStatement statement = connection.prepareStatement(ARCHIVE_SQL)) {
+                    statement.setArray(1, idArray);
+                    return statement.executeUpdate();
+                }
+            });
+            // Только после коммита: откат убрал бы и созданные в транзакции секции
+            knownPartitions.addAll(years);
+            return archived;
+        } catch (Exception e) {
+            logger.error("Error archiving users inactive since {}", inactiveSince, e);
+            throw new RuntimeException("Error archiving users", e);
+        }
+    }
+
+    // Возвращает пользователя в users: обращение к нему делает его снова активным
+    public Optional<User> restoreById(Long id) {
+        try {
+            List<User> restored = Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                markMove(connection);
+                try (PreparedStatement statement = connection.prepareStatement(RESTORE_BY_ID_SQL)) {
+                    statement.setLong(1, id);
+                    return readUsers(statement);
+                }
+            });
+            if (!restored.isEmpty()) {
+                logger.info("Restored archived user with id: {}", id);
+            }
+            return restored.stream().findFirst();
+        } catch (Exception e) {
+            logger.error("Error restoring archived user with id: {}", id, e);
+            throw new RuntimeException("Error restoring archived user", e);
+        }
+    }
+
+    public List<User> restoreByEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return List.of();
+        }
+        try {
+            List<User> restored = Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                markMove(connection);
+                try (PreparedStatement statement = connection.prepareStatement(RESTORE_BY_EMAIL_SQL)) {
+                    Array normalized = connection.createArrayOf("varchar",
+                            emails.stream().map(EmailNormalizer::normalize).distinct().toArray());
+                    statement.setArray(1, normalized);
+                    return readUsers(statement);
+                }
+            });
+            if (!restored.isEmpty()) {
+                logger.info("Restored {} archived users by email", restored.size());
+            }
+            return restored;
+        } catch (Exception e) {
+            logger.error("Error restoring archived users by email", e);
+            throw new RuntimeException("Error restoring archived users", e);
+        }
+    }
+
+    // Только чтение: промах поиска проверяется здесь, прежде чем открывать пишущую транзакцию переноса
+    public Set<Long> findArchivedIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(ARCHIVED_IDS_SQL)) {
+                    statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+                    Set<Long> archived = new TreeSet<>();
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            archived.add(resultSet.getLong(1));
+                        }
+                    }
+                    return archived;
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error finding archived user ids", e);
+            throw new RuntimeException("Error finding archived users", e);
+        }
+    }
+
+    public List<User> findAll() {
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
+                    return readUsers(statement);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error finding archived users", e);
+            throw new RuntimeException("Error finding archived users", e);
+        }
+    }
+
+    public boolean isEmailArchived(String email, Long excludeUserId) {
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(EMAIL_EXISTS_SQL)) {
+                    statement.setString(1, EmailNormalizer.normalize(email));
+                    statement.setLong(2, excludeUserId != null ? excludeUserId : -1L);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        return resultSet.getBoolean(1);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error checking archived email", e);
+            throw new RuntimeException("Error checking archived email", e);
+        }
+    }
+
+    public boolean delete(Long id) {
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+                    statement.setLong(1, id);
+                    return statement.executeUpdate() > 0;
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error deleting archived user with id: {}", id, e);
+            throw new RuntimeException("Error deleting archived user", e);
+        }
+    }
+
+    public long count() {
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(COUNT_SQL)) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error counting archived users", e);
+            throw new RuntimeException("Error counting archived users", e);
+        }
+    }
+
+    // Секция на календарный год; старые годы можно отсоединить или выгрузить целиком
+    private void ensurePartition(Connection connection, int year) throws SQLException {
+        if (knownPartitions.contains(year)) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists users_archive_" + year + " partition of users_archive"
+                    + " for values from ('" + year + "-01-01') to ('" + (year + 1) + "-01-01')");
+        }
+    }
+
+    private static void markMove(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(MOVE_FLAG_SQL);
+        }
+    }
+
+    private static List<User> readUsers(PreparedStatement statement) throws SQLException {
+        List<User> users = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                User user = new User();
+                user.setId(resultSet.getLong("id"));
+                user.setName(resultSet.getString("name"));
+                user.setEmail(resultSet.getString("email"));
+                user.setAge((Integer) resultSet.getObject("age"));
+                user.setCreatedAt(resultSet.getTimestamp("created_at").toLocalDateTime());
+                user.setVersion(resultSet.getLong("version"));
+                users.add(user);
+            }
+        }
+        return users;
+    }
+}
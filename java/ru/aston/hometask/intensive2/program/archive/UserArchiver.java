@@ -0,0 +1,128 @@
+package ru.aston.hometask.intensive2.program.archive;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Фоновый перенос неактивных пользователей в архив. Проход — серия коротких транзакций по batchSize строк
+ * с паузой между ними, чтобы не держать блокировки и не забивать WAL; следующий проход — через interval.
+ */
+public class UserArchiver implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(UserArchiver.class);
+
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 1_000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final UserArchive archive;
+    private final Duration inactiveAge;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final long intervalMillis;
+    private final Supplier<LocalDateTime> clock;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public UserArchiver(UserArchive archive, Duration inactiveAge, int batchSize, long pauseMillis,
+                        long intervalMillis) {
+        this(archive, inactiveAge, batchSize, pauseMillis, intervalMillis, LocalDateTime::now);
+    }
+
+    UserArchiver(UserArchive archive, Duration inactiveAge, int batchSize, long pauseMillis, long intervalMillis,
+                 Supplier<LocalDateTime> clock) {
+        if (inactiveAge.isNegative() || inactiveAge.isZero()) {
+            throw new IllegalArgumentException("Inactive age must be positive");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.archive = archive;
+        this.inactiveAge = inactiveAge;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.intervalMillis = intervalMillis;
+        this.clock = clock;
+        this.thread = new Thread(this::run, "user-archiver");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        logger.info("Archiving users inactive for {} in batches of {}", inactiveAge, batchSize);
+        thread.start();
+    }
+
+    public long getArchived() {
+        return archived.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Один проход до исчерпания кандидатов; граница фиксируется в начале, чтобы проход не гнался за часами
+    long archiveOnce() {
+        LocalDateTime inactiveSince = clock.get().minus(inactiveAge);
+        long total = 0;
+        int moved;
+        do {
+            moved = archive.archiveBatch(inactiveSince, batchSize);
+            total += moved;
+            archived.addAndGet(moved);
+            if (moved == batchSize && pauseMillis > 0) {
+                sleep(pauseMillis);
+            }
+        } while (moved == batchSize && running);
+        if (total > 0) {
+            logger.info("Archived {} users inactive since {}", total, inactiveSince);
+        }
+        return total;
+    }
+
+    private void run() {
+        long retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+        while (running) {
+            try {
+                archiveOnce();
+                retryDelay = INITIAL_RETRY_DELAY_MILLIS;
+                sleep(intervalMillis);
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                failures.incrementAndGet();
+                logger.warn("Error archiving users, retrying in {} ms", retryDelay, e);
+                sleep(retryDelay);
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+        logger.info("Stopped archiving users, {} archived", archived.get());
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
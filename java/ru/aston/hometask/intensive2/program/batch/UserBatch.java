@@ -0,0 +1,216 @@
+package ru.aston.hometask.intensive2.program.batch;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Пачка пользователей по столбцам: примитивные массивы вместо объектов User.
+ * Возраст без значения хранится как 0 и отмечается битом в nullAges, так что суммы считаются
+ * простым циклом по ages. Имена и email — подряд идущие байты UTF-8 с массивом смещений
+ * (строка i занимает [offsets[i], offsets[i + 1])). created_at — миллисекунды от эпохи в UTC.
+ * Массивы отдаются без копирования и не должны изменяться.
+ */
+public final class UserBatch {
+
+    private final int size;
+    private final long[] ids;
+    private final int[] ages;
+    private final long[] nullAges;
+    private final long[] createdAtEpochMillis;
+    private final byte[] nameBytes;
+    private final int[] nameOffsets;
+    private final byte[] emailBytes;
+    private final int[] emailOffsets;
+
+    private UserBatch(int size, long[] ids, int[] ages, long[] nullAges, long[] createdAtEpochMillis,
+                      byte[] nameBytes, int[] nameOffsets, byte[] emailBytes, int[] emailOffsets) {
+        this.size = size;
+        this.ids = ids;
+        this.ages = ages;
+        this.nullAges = nullAges;
+        this.createdAtEpochMillis = createdAtEpochMillis;
+        this.nameBytes = nameBytes;
+        this.nameOffsets = nameOffsets;
+        this.emailBytes = emailBytes;
+        this.emailOffsets = emailOffsets;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public static UserBatch of(List<User> users) {
+        Builder builder = builder(users.size());
+        users.forEach(builder::add);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    public boolean isAgeNull(int row) {
+        return (nullAges[row >>> 6] & (1L << row)) != 0;
+    }
+
+    // Для строки без возраста — 0; различать по isAgeNull
+    public int getAge(int row) {
+        return ages[row];
+    }
+
+    public long getCreatedAtEpochMillis(int row) {
+        return createdAtEpochMillis[row];
+    }
+
+    public String getName(int row) {
+        return new String(nameBytes, nameOffsets[row], nameOffsets[row + 1] - nameOffsets[row],
+                StandardCharsets.UTF_8);
+    }
+
+    public String getEmail(int row) {
+        return new String(emailBytes, emailOffsets[row], emailOffsets[row + 1] - emailOffsets[row],
+                StandardCharsets.UTF_8);
+    }
+
+    public User toUser(int row) {
+        User user = new User();
+        user.setId(ids[row]);
+        user.setName(getName(row));
+        user.setEmail(getEmail(row));
+        user.setAge(isAgeNull(row) ? null : ages[row]);
+        user.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtEpochMillis[row]), ZoneOffset.UTC));
+        return user;
+    }
+
+    public List<User> toUsers(int[] selection, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(toUser(selection[i]));
+        }
+        return users;
+    }
+
+    // Объём массивов без заголовков объектов
+    public long getSizeInBytes() {
+        return 8L * ids.length + 4L * ages.length + 8L * nullAges.length + 8L * createdAtEpochMillis.length
+                + nameBytes.length + 4L * nameOffsets.length + emailBytes.length + 4L * emailOffsets.length;
+    }
+
+    // Доступ для операторов UserBatchOperators
+    long[] ids() {
+        return ids;
+    }
+
+    int[] ages() {
+        return ages;
+    }
+
+    long[] nullAges() {
+        return nullAges;
+    }
+
+    long[] createdAtEpochMillis() {
+        return createdAtEpochMillis;
+    }
+
+    byte[] nameBytes() {
+        return nameBytes;
+    }
+
+    int[] nameOffsets() {
+        return nameOffsets;
+    }
+
+    public static final class Builder {
+        private int size;
+        private long[] ids;
+        private int[] ages;
+        private long[] nullAges;
+        private long[] createdAtEpochMillis;
+        private byte[] nameBytes;
+        private int[] nameOffsets;
+        private byte[] emailBytes;
+        private int[] emailOffsets;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            ids = new long[capacity];
+            ages = new int[capacity];
+            nullAges = new long[(capacity + 63) >>> 6];
+            createdAtEpochMillis = new long[capacity];
+            nameBytes = new byte[capacity * 16];
+            nameOffsets = new int[capacity + 1];
+            emailBytes = new byte[capacity * 24];
+            emailOffsets = new int[capacity + 1];
+        }
+
+        public Builder add(User user) {
+            LocalDateTime createdAt = user.getCreatedAt();
+            return add(user.getId(), user.getName().getBytes(StandardCharsets.UTF_8),
+                    user.getEmail().getBytes(StandardCharsets.UTF_8),
+                    user.getAge() != null ? user.getAge() : 0, user.getAge() == null,
+                    createdAt.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+
+        // Строки передаются уже в UTF-8: загрузчик берёт байты прямо из ResultSet
+        public Builder add(long id, byte[] nameUtf8, byte[] emailUtf8, int age, boolean ageNull,
+                           long createdAtMillis) {
+            if (size == ids.length) {
+                grow();
+            }
+            ids[size] = id;
+            ages[size] = ageNull ? 0 : age;
+            if (ageNull) {
+                nullAges[size >>> 6] |= 1L << size;
+            }
+            createdAtEpochMillis[size] = createdAtMillis;
+            nameBytes = append(nameBytes, nameOffsets, size, nameUtf8);
+            emailBytes = append(emailBytes, emailOffsets, size, emailUtf8);
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public UserBatch build() {
+            return new UserBatch(size, Arrays.copyOf(ids, size), Arrays.copyOf(ages, size),
+                    Arrays.copyOf(nullAges, (size + 63) >>> 6), Arrays.copyOf(createdAtEpochMillis, size),
+                    Arrays.copyOf(nameBytes, nameOffsets[size]), Arrays.copyOf(nameOffsets, size + 1),
+                    Arrays.copyOf(emailBytes, emailOffsets[size]), Arrays.copyOf(emailOffsets, size + 1));
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            nullAges = Arrays.copyOf(nullAges, (capacity + 63) >>> 6);
+            createdAtEpochMillis = Arrays.copyOf(createdAtEpochMillis, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+            emailOffsets = Arrays.copyOf(emailOffsets, capacity + 1);
+        }
+
+        private static byte[] append(byte[] bytes, int[] offsets, int row, byte[] value) {
+            int start = offsets[row];
+            int end = start + value.length;
+            if (end > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(end, (int) Math.min(Integer.MAX_VALUE - 8, bytes.length * 2L)));
+            }
+            System.arraycopy(value, 0, bytes, start, value.length);
+            offsets[row + 1] = end;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ru.aston.hometask.intensive2.program.batch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Загрузка таблицы users в {@link UserBatch} напрямую из JDBC, без объектов User.
+ * Имена и email берутся из ResultSet как байты (текстовый протокол PostgreSQL уже отдаёт UTF-8),
+ * created_at переводится в миллисекунды самим запросом. Чтение — серверным курсором.
+ */
+public class UserBatchLoader {
+
+    private static final Logger logger = LogManager.getLogger(UserBatchLoader.class);
+
+    static final int FETCH_SIZE = 5_000;
+    public static final int DEFAULT_BATCH_SIZE = 65_536;
+
+    private static final String SELECT_SQL = "select id, name, email, age,"
+            + " floor(extract(epoch from created_at) * 1000)::bigint from %s order by id";
+
+    private final SessionFactory sessionFactory;
+    private final String selectSql;
+
+    public UserBatchLoader(SessionFactory sessionFactory) {
+        this(sessionFactory, "users");
+    }
+
+    // source — таблица или представление с колонками users, например users_all вместе с архивом
+    public UserBatchLoader(SessionFactory sessionFactory, String source) {
+        this.sessionFactory = sessionFactory;
+        this.selectSql = String.format(SELECT_SQL, source);
+    }
+
+    // Вся таблица одной пачкой
+    public UserBatch loadAll() {
+        UserBatch[] result = new UserBatch[1];
+        scan(Integer.MAX_VALUE, batch -> result[0] = batch);
+        return result[0];
+    }
+
+    // Пачки не больше batchSize строк по возрастанию id; в памяти одновременно только одна. Возвращает число строк
+    public long scan(int batchSize, Consumer<UserBatch> consumer) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        long started = System.nanoTime();
+        try {
+            long rows = Transactions.inJdbcTransaction(sessionFactory,
+                    connection -> read(connection, batchSize, consumer));
+            logger.info("Scanned {} users into column batches in {} ms", rows,
+                    (System.nanoTime() - started) / 1_000_000);
+            return rows;
+        } catch (Exception e) {
+            logger.error("Error loading users into column batches", e);
+            throw new RuntimeException("Error loading user batches", e);
+        }
+    }
+
+    private long read(Connection connection, int batchSize, Consumer<UserBatch> consumer)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(selectSql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            long rows = 0;
+            UserBatch.Builder builder = UserBatch.builder(Math.min(batchSize, FETCH_SIZE));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int age = resultSet.getInt(4);
+                    boolean ageNull = resultSet.wasNull();
+                    builder.add(resultSet.getLong(1), resultSet.getBytes(2), resultSet.getBytes(3), age, ageNull,
+                            resultSet.getLong(5));
+                    rows++;
+                    if (builder.size() == batchSize) {
+                        consumer.accept(builder.build());
+                        builder = UserBatch.builder(Math.min(batchSize, FETCH_SIZE));
+                    }
+                }
+            }
+            // Пустая таблица тоже даёт одну (пустую) пачку
+            if (builder.size() > 0 || rows == 0) {
+                consumer.accept(builder.build());
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package ru.aston.hometask.intensive2.program.batch;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+/**
+ * Фильтры и агрегаты над {@link UserBatch}. Фильтр записывает номера подходящих строк
+ * в selection и возвращает их количество; вариант с count сужает уже отобранные строки на месте.
+ * Числовые фильтры и суммы — циклы без ветвлений и вызовов в теле: JIT разворачивает их и векторизует.
+ * Массив selection должен вмещать batch.size() элементов.
+ */
+public final class UserBatchOperators {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private UserBatchOperators() {
+    }
+
+    public static int[] newSelection(UserBatch batch) {
+        return new int[batch.size()];
+    }
+
+    // Возраст в [minAge, maxAge]; строки без возраста не проходят
+    public static int filterAgeBetween(UserBatch batch, int minAge, int maxAge, int[] selection) {
+        checkSelection(batch, selection);
+        int[] ages = batch.ages();
+        long[] nullAges = batch.nullAges();
+        int count = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            int age = ages[row];
+            boolean known = (nullAges[row >>> 6] & (1L << row)) == 0;
+            selection[count] = row;
+            count += (age >= minAge & age <= maxAge & known) ? 1 : 0;
+        }
+        return count;
+    }
+
+    public static int filterAgeBetween(UserBatch batch, int minAge, int maxAge, int[] selection, int count) {
+        int[] ages = batch.ages();
+        long[] nullAges = batch.nullAges();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            int age = ages[row];
+            boolean known = (nullAges[row >>> 6] & (1L << row)) == 0;
+            selection[kept] = row;
+            kept += (age >= minAge & age <= maxAge & known) ? 1 : 0;
+        }
+        return kept;
+    }
+
+    // Полуинтервал [fromMillis, toMillis) по created_at
+    public static int filterCreatedBetween(UserBatch batch, long fromMillis, long toMillis, int[] selection) {
+        checkSelection(batch, selection);
+        long[] createdAt = batch.createdAtEpochMillis();
+        int count = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            long value = createdAt[row];
+            selection[count] = row;
+            count += (value >= fromMillis & value < toMillis) ? 1 : 0;
+        }
+        return count;
+    }
+
+    public static int filterCreatedBetween(UserBatch batch, long fromMillis, long toMillis, int[] selection,
+                                           int count) {
+        long[] createdAt = batch.createdAtEpochMillis();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            long value = createdAt[row];
+            selection[kept] = row;
+            kept += (value >= fromMillis & value < toMillis) ? 1 : 0;
+        }
+        return kept;
+    }
+
+    // Сравнение байтов UTF-8 без декодирования строк; регистр учитывается, как в UserQuery.namePrefix
+    public static int filterNamePrefix(UserBatch batch, String prefix, int[] selection) {
+        checkSelection(batch, selection);
+        byte[] pattern = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] names = batch.nameBytes();
+        int[] offsets = batch.nameOffsets();
+        int count = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            int start = offsets[row];
+            if (offsets[row + 1] - start >= pattern.length
+                    && Arrays.equals(names, start, start + pattern.length, pattern, 0, pattern.length)) {
+                selection[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    // Сумма известных возрастов: пустые хранятся как 0 и сумму не меняют
+    public static long sumAges(UserBatch batch) {
+        int[] ages = batch.ages();
+        long sum = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            sum += ages[row];
+        }
+        return sum;
+    }
+
+    public static long sumAges(UserBatch batch, int[] selection, int count) {
+        int[] ages = batch.ages();
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += ages[selection[i]];
+        }
+        return sum;
+    }
+
+    public static int countKnownAges(UserBatch batch) {
+        long[] nullAges = batch.nullAges();
+        int nulls = 0;
+        for (long word : nullAges) {
+            nulls += Long.bitCount(word);
+        }
+        return batch.size() - nulls;
+    }
+
+    public static int countKnownAges(UserBatch batch, int[] selection, int count) {
+        long[] nullAges = batch.nullAges();
+        int known = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            known += (int) (~nullAges[row >>> 6] >>> row) & 1;
+        }
+        return known;
+    }
+
+    public static OptionalDouble averageAge(UserBatch batch) {
+        int known = countKnownAges(batch);
+        return known == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) sumAges(batch) / known);
+    }
+
+    public static OptionalDouble averageAge(UserBatch batch, int[] selection, int count) {
+        int known = countKnownAges(batch, selection, count);
+        return known == 0
+                ? OptionalDouble.empty()
+                : OptionalDouble.of((double) sumAges(batch, selection, count) / known);
+    }
+
+    // Ключ — нижняя граница корзины, как в UserStatsDao.countByAgeBucket; пустые корзины не попадают
+    public static Map<Integer, Long> countByAgeBucket(UserBatch batch, int bucketWidth) {
+        int[] ages = batch.ages();
+        long[] nullAges = batch.nullAges();
+        int maxAge = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            maxAge = Math.max(maxAge, ages[row]);
+        }
+        long[] buckets = new long[maxAge / bucketWidth + 1];
+        for (int row = 0; row < batch.size(); row++) {
+            long known = (~nullAges[row >>> 6] >>> row) & 1;
+            buckets[Math.max(0, ages[row]) / bucketWidth] += known;
+        }
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            if (buckets[bucket] > 0) {
+                result.put(bucket * bucketWidth, buckets[bucket]);
+            }
+        }
+        return result;
+    }
+
+    // Полуинтервал [from, to); как и UserStatsDao, дни без регистраций в результат не попадают
+    public static Map<LocalDate, Long> signupsPerDay(UserBatch batch, LocalDate from, LocalDate to) {
+        long firstDay = from.toEpochDay();
+        int days = (int) Math.max(0, to.toEpochDay() - firstDay);
+        long[] counts = new long[days];
+        long[] createdAt = batch.createdAtEpochMillis();
+        for (int row = 0; row < batch.size(); row++) {
+            long day = Math.floorDiv(createdAt[row], MILLIS_PER_DAY) - firstDay;
+            if (day >= 0 && day < days) {
+                counts[(int) day]++;
+            }
+        }
+        Map<LocalDate, Long> result = new LinkedHashMap<>();
+        for (int day = 0; day < days; day++) {
+            if (counts[day] > 0) {
+                result.put(LocalDate.ofEpochDay(firstDay + day), counts[day]);
+            }
+        }
+        return result;
+    }
+
+    private static void checkSelection(UserBatch batch, int[] selection) {
+        if (selection.length < batch.size()) {
+            throw new IllegalArgumentException("Selection must hold " + batch.size() + " rows");
+        }
+    }
+}
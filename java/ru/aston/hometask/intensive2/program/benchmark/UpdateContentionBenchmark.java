@@ -0,0 +1,152 @@
+package ru.aston.hometask.intensive2.program.benchmark;
+
+import org.hibernate.LockMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+import ru.aston.hometask.intensive2.program.service.UserServiceImpl;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность обновлений горячих строк: оптимистическая блокировка с повтором
+ * против SELECT ... FOR UPDATE. Потоки в течение заданного времени меняют возраст
+ * случайного пользователя из небольшого набора.
+ *
+ * Запуск: UpdateContentionBenchmark [threads] [hotUsers] [seconds]
+ * (подключение — как у приложения, через -Dhibernate.connection.*).
+ */
+public class UpdateContentionBenchmark {
+
+    private enum Mode {
+        OPTIMISTIC,
+        PESSIMISTIC
+    }
+
+    private static final class Result {
+        final Mode mode;
+        final long committed;
+        final long failed;
+        final long retries;
+        final double seconds;
+
+        Result(Mode mode, long committed, long failed, long retries, double seconds) {
+            this.mode = mode;
+            this.committed = committed;
+            this.failed = failed;
+            this.retries = retries;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-11s %10.1f ops/s  committed=%d  failed=%d  retries=%d",
+                    mode, committed / seconds, committed, failed, retries);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int hotUsers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        try {
+            UserDao userDao = new UserDaoImpl();
+            List<Long> ids = createHotUsers(userDao, hotUsers);
+            System.out.printf("threads=%d hotUsers=%d duration=%ds%n", threads, hotUsers, seconds);
+            // Короткий прогрев: первые обращения платят за инициализацию пула и JIT
+            run(Mode.OPTIMISTIC, userDao, ids, threads, 1);
+            run(Mode.PESSIMISTIC, userDao, ids, threads, 1);
+            System.out.println(run(Mode.OPTIMISTIC, userDao, ids, threads, seconds));
+            System.out.println(run(Mode.PESSIMISTIC, userDao, ids, threads, seconds));
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static List<Long> createHotUsers(UserDao userDao, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        long suffix = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            ids.add(userDao.save(new User("Hot " + i, "hot" + i + "." + suffix + "@example.com", 30)).getId());
+        }
+        return ids;
+    }
+
+    private static Result run(Mode mode, UserDao userDao, List<Long> ids, int threads, int seconds)
+            throws InterruptedException {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 1, 50);
+        UserService userService = new UserServiceImpl(userDao, retryPolicy);
+        AtomicLong committed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                awaitQuietly(start);
+                while (System.nanoTime() < deadline) {
+                    Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                    int age = ThreadLocalRandom.current().nextInt(18, 90);
+                    try {
+                        if (mode == Mode.OPTIMISTIC) {
+                            userService.updateUser(id, null, null, age);
+                        } else {
+                            updatePessimistically(id, age);
+                        }
+                        committed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // Для OPTIMISTIC это конфликты, не разрешённые за все попытки
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        return new Result(mode, committed.get(), failed.get(), retryPolicy.getRetries(), elapsed);
+    }
+
+    private static void updatePessimistically(Long id, int age) {
+        Transaction transaction = null;
+        Session session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openSession();
+            transaction = session.beginTransaction();
+            User user = session.get(User.class, id, LockMode.PESSIMISTIC_WRITE);
+            user.setAge(age);
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.aston.hometask.intensive2.program.benchmark;
+
+import ru.aston.hometask.intensive2.program.batch.UserBatch;
+import ru.aston.hometask.intensive2.program.batch.UserBatchOperators;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Память и время сканирования: List&lt;User&gt; против {@link UserBatch}. Запрос — средний возраст
+ * пользователей 20–40 лет, зарегистрированных в заданном месяце. База данных не нужна.
+ *
+ * Запуск: UserBatchScanBenchmark [users] [iterations]
+ */
+public class UserBatchScanBenchmark {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 4, 1, 0, 0);
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        long before = usedHeapAfterGc(memory);
+        List<User> users = createUsers(count);
+        long listBytes = usedHeapAfterGc(memory) - before;
+        UserBatch batch = UserBatch.of(users);
+        long batchBytes = usedHeapAfterGc(memory) - before - listBytes;
+        System.out.printf("users=%d list=%d B/user batch=%d B/user (arrays %d B/user)%n", count,
+                listBytes / count, batchBytes / count, batch.getSizeInBytes() / count);
+
+        long fromMillis = FROM.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long toMillis = TO.toInstant(ZoneOffset.UTC).toEpochMilli();
+        int[] selection = UserBatchOperators.newSelection(batch);
+        double checksum = 0;
+        long listNanos = Long.MAX_VALUE;
+        long batchNanos = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long started = System.nanoTime();
+            checksum += scanList(users).orElse(0);
+            listNanos = Math.min(listNanos, System.nanoTime() - started);
+
+            started = System.nanoTime();
+            int selected = UserBatchOperators.filterCreatedBetween(batch, fromMillis, toMillis, selection);
+            selected = UserBatchOperators.filterAgeBetween(batch, 20, 40, selection, selected);
+            checksum -= UserBatchOperators.averageAge(batch, selection, selected).orElse(0);
+            batchNanos = Math.min(batchNanos, System.nanoTime() - started);
+        }
+        System.out.printf("scan: list=%.1f ms batch=%.1f ms (best of %d, checksum %.3f)%n",
+                listNanos / 1e6, batchNanos / 1e6, iterations, checksum);
+    }
+
+    private static OptionalDouble scanList(List<User> users) {
+        return users.stream()
+                .filter(user -> !user.getCreatedAt().isBefore(FROM) && user.getCreatedAt().isBefore(TO))
+                .filter(user -> user.getAge() != null && user.getAge() >= 20 && user.getAge() <= 40)
+                .mapToInt(User::getAge)
+                .average();
+    }
+
+    private static List<User> createUsers(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User("User Name " + i, "user." + i + "@example.com",
+                    random.nextInt(10) == 0 ? null : random.nextInt(18, 90));
+            user.setId((long) i);
+            user.setCreatedAt(start.plusSeconds(random.nextLong(365L * 24 * 3600)));
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
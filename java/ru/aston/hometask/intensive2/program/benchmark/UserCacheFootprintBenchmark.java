@@ -0,0 +1,104 @@
+package ru.aston.hometask.intensive2.program.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import ru.aston.hometask.intensive2.program.cache.HeapUserCache;
+import ru.aston.hometask.intensive2.program.cache.OffHeapUserCache;
+import ru.aston.hometask.intensive2.program.cache.UserCache;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Память на запись и паузы сборщика для кеша в куче и вне кучи. Кеш заполняется
+ * пользователями, затем заданное время идёт смесь чтений и перезаписей случайных записей.
+ * База данных не нужна. Каждый вариант стоит запускать в отдельной JVM с одинаковым -Xmx.
+ *
+ * Запуск: UserCacheFootprintBenchmark heap|offheap [users] [seconds]
+ */
+public class UserCacheFootprintBenchmark {
+
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    public static void main(String[] args) throws Exception {
+        boolean offHeap = args.length > 0 && args[0].equalsIgnoreCase("offheap");
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        AtomicLong maxPauseMillis = new AtomicLong();
+        AtomicLong pauses = new AtomicLong();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    long duration = GarbageCollectionNotificationInfo
+                            .from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+                    pauses.incrementAndGet();
+                    maxPauseMillis.accumulateAndGet(duration, Math::max);
+                }
+            }, null, null);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeapAfterGc(memory);
+        UserCache cache = offHeap ? new OffHeapUserCache(TTL_MILLIS, users) : new HeapUserCache(TTL_MILLIS, users);
+        for (int i = 0; i < users; i++) {
+            cache.put(user(i, 0));
+        }
+        long heapPerEntry = (usedHeapAfterGc(memory) - heapBefore) / users;
+        long offHeapPerEntry = offHeap ? ((OffHeapUserCache) cache).getOffHeapBytes() / users : 0;
+        long fullGcStarted = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - fullGcStarted) / 1_000_000;
+
+        long gcTimeBefore = totalGcMillis();
+        pauses.set(0);
+        maxPauseMillis.set(0);
+        long operations = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 1_000; i++) {
+                int id = random.nextInt(users);
+                if (random.nextInt(10) == 0) {
+                    cache.put(user(id, random.nextInt(1_000)));
+                } else {
+                    cache.get((long) id);
+                }
+            }
+            operations += 1_000;
+        }
+
+        System.out.printf("%-8s users=%d entries=%d heap/entry=%dB off-heap/entry=%dB full-gc=%dms%n",
+                offHeap ? "offheap" : "heap", users, cache.size(), heapPerEntry, offHeapPerEntry, fullGcMillis);
+        System.out.printf("%-8s %.0f ops/s  gc-pauses=%d  gc-time=%dms  max-pause=%dms%n",
+                offHeap ? "offheap" : "heap", operations / (double) seconds, pauses.get(),
+                totalGcMillis() - gcTimeBefore, maxPauseMillis.get());
+    }
+
+    private static User user(long id, int generation) {
+        User user = new User("User Name " + id, "user." + id + "@example.com", (int) (18 + id % 70));
+        user.setId(id);
+        user.setVersion((long) generation);
+        return user;
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
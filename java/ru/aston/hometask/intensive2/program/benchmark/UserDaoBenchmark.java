@@ -0,0 +1,156 @@
+package ru.aston.hometask.intensive2.program.benchmark;
+
+import ru.aston.hometask.intensive2.program.dao.JdbcUserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDaoImpl;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Сравнение UserDaoImpl и JdbcUserDao на одних и тех же операциях горячего пути:
+ * чтение по id, чтение пачки по id, вставка и обновление. Обе реализации работают
+ * с одной базой и одним пулом соединений, так что разница — накладные расходы ORM.
+ *
+ * Запуск: UserDaoBenchmark [threads] [users] [seconds]
+ * (подключение — как у приложения, через -Dhibernate.connection.*; уровень логирования
+ * стоит поднять до WARN, иначе замер покажет в основном стоимость логов).
+ */
+public class UserDaoBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private enum Operation {
+        FIND_BY_ID,
+        FIND_ALL_BY_ID,
+        SAVE,
+        UPDATE
+    }
+
+    private static final class Result {
+        final String dao;
+        final Operation operation;
+        final long operations;
+        final long failed;
+        final double seconds;
+        final int threads;
+
+        Result(String dao, Operation operation, long operations, long failed, double seconds, int threads) {
+            this.dao = dao;
+            this.operation = operation;
+            this.operations = operations;
+            this.failed = failed;
+            this.seconds = seconds;
+            this.threads = threads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %-15s %10.1f ops/s  %8.1f us/op  failed=%d",
+                    dao, operation, operations / seconds, seconds * threads * 1e6 / Math.max(1, operations), failed);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        try {
+            UserDao hibernateDao = new UserDaoImpl();
+            UserDao jdbcDao = new JdbcUserDao();
+            List<Long> ids = createUsers(jdbcDao, userCount);
+            System.out.printf("threads=%d users=%d duration=%ds%n", threads, userCount, seconds);
+            for (Operation operation : Operation.values()) {
+                // Короткий прогрев: первые обращения платят за подготовку выражений и JIT
+                run("hibernate", hibernateDao, operation, ids, threads, 1);
+                run("jdbc", jdbcDao, operation, ids, threads, 1);
+                System.out.println(run("hibernate", hibernateDao, operation, ids, threads, seconds));
+                System.out.println(run("jdbc", jdbcDao, operation, ids, threads, seconds));
+            }
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static List<Long> createUsers(UserDao userDao, int count) {
+        List<User> users = new ArrayList<>(count);
+        long suffix = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("Bench " + i, "bench" + i + "." + suffix + "@example.com", 18 + i % 70));
+        }
+        List<Long> ids = new ArrayList<>(count);
+        for (User user : userDao.upsertAll(users)) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    private static Result run(String name, UserDao userDao, Operation operation, List<Long> ids, int threads,
+                              int seconds) throws InterruptedException {
+        BiConsumer<UserDao, ThreadLocalRandom> step = step(operation, ids);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                awaitQuietly(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    try {
+                        step.accept(userDao, random);
+                        completed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // Для UPDATE это конфликты версий между потоками
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        return new Result(name, operation, completed.get(), failed.get(), elapsed, threads);
+    }
+
+    private static BiConsumer<UserDao, ThreadLocalRandom> step(Operation operation, List<Long> ids) {
+        switch (operation) {
+            case FIND_BY_ID:
+                return (dao, random) -> dao.findById(ids.get(random.nextInt(ids.size())));
+            case FIND_ALL_BY_ID:
+                return (dao, random) -> {
+                    int from = random.nextInt(Math.max(1, ids.size() - BATCH_SIZE));
+                    dao.findAllById(ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE)));
+                };
+            case SAVE:
+                return (dao, random) -> dao.save(new User("Bench saved",
+                        "bench-saved." + random.nextLong() + "@example.com", random.nextInt(18, 90)));
+            default:
+                return (dao, random) -> {
+                    User user = dao.findById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                    user.setAge(random.nextInt(18, 90));
+                    dao.update(user);
+                };
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.aston.hometask.intensive2.program.benchmark;
+
+import ru.aston.hometask.intensive2.program.limit.AdaptiveConcurrencyLimiter;
+import ru.aston.hometask.intensive2.program.limit.ConcurrencyLimitedUserService;
+import ru.aston.hometask.intensive2.program.limit.LimitExceededException;
+import ru.aston.hometask.intensive2.program.limit.Priority;
+import ru.aston.hometask.intensive2.program.service.UserService;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Перегрузка сервиса с лимитером и без него. База имитируется пулом из 10 соединений: точечное чтение
+ * держит соединение 4 мс, пакетный upsert — 16 мс. Запросы приходят с постоянной частотой (открытая модель)
+ * и обслуживаются пулом из 256 потоков; задержка считается от момента прихода, включая ожидание потока.
+ * База данных не нужна.
+ *
+ * Запуск: UserServiceOverloadBenchmark none|limited [requests/s] [seconds]
+ */
+public class UserServiceOverloadBenchmark {
+
+    private static final int POOL_SIZE = 10;
+    private static final long READ_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+    private static final long BULK_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    private static final int BULK_PERCENT = 15;
+
+    public static void main(String[] args) throws Exception {
+        boolean limited = args.length > 0 && args[0].equalsIgnoreCase("limited");
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 2_500;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Semaphore connections = new Semaphore(POOL_SIZE, true);
+        UserService database = simulatedService(connections);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        UserService service = limited ? new ConcurrencyLimitedUserService(database, limiter) : database;
+
+        int total = rate * seconds;
+        long[] readLatencies = new long[total];
+        long[] bulkLatencies = new long[total];
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger bulks = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService workers = new ThreadPoolExecutor(256, 256, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long arrival = start + i * interval;
+            LockSupport.parkNanos(arrival - System.nanoTime());
+            boolean bulk = ThreadLocalRandom.current().nextInt(100) < BULK_PERCENT;
+            workers.execute(() -> {
+                try {
+                    if (bulk) {
+                        service.upsertAll(List.of());
+                        bulkLatencies[bulks.getAndIncrement()] = System.nanoTime() - arrival;
+                    } else {
+                        service.getUserById(1L);
+                        readLatencies[reads.getAndIncrement()] = System.nanoTime() - arrival;
+                    }
+                } catch (LimitExceededException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.MINUTES);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%-8s offered=%d/s completed=%.0f/s rejected=%d (%.1f%%) elapsed=%.1fs%n",
+                limited ? "limited" : "none", rate, (reads.get() + bulks.get()) / elapsed, rejected.get(),
+                100.0 * rejected.get() / total, elapsed);
+        print("read", readLatencies, reads.get());
+        print("bulk", bulkLatencies, bulks.get());
+        if (limited) {
+            System.out.printf("final limit=%d rejected read=%d bulk=%d%n", limiter.getLimit(),
+                    limiter.getRejected(Priority.READ), limiter.getRejected(Priority.BULK));
+        }
+    }
+
+    private static void print(String label, long[] latencies, int count) {
+        if (count == 0) {
+            System.out.printf("  %-5s none completed%n", label);
+            return;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("  %-5s n=%d p50=%.1fms p99=%.1fms max=%.1fms%n", label, count,
+                sorted[count / 2] / 1e6, sorted[(int) Math.min(count - 1, Math.ceil(count * 0.99) - 1)] / 1e6,
+                sorted[count - 1] / 1e6);
+    }
+
+    // Сервис, каждый вызов которого занимает соединение пула на фиксированное время
+    private static UserService simulatedService(Semaphore connections) {
+        return (UserService) Proxy.newProxyInstance(UserService.class.getClassLoader(),
+                new Class<?>[]{UserService.class}, (proxy, method, arguments) -> {
+                    long work = method.getName().equals("upsertAll") ? BULK_NANOS : READ_NANOS;
+                    connections.acquireUninterruptibly();
+                    try {
+                        long until = System.nanoTime() + work;
+                        while (System.nanoTime() < until) {
+                            LockSupport.parkNanos(until - System.nanoTime());
+                        }
+                    } finally {
+                        connections.release();
+                    }
+                    return method.getName().equals("getUserById") ? Optional.empty() : List.of();
+                });
+    }
+}
@@ -0,0 +1,112 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Прогрев кеша после перезапуска. При остановке id самых запрашиваемых пользователей из {@link HotUserTracker}
+ * сохраняются в файл по одному в строке; при старте они читаются из loader пачками через findAllById
+ * в несколько параллельных запросов и кладутся в кеш, пока приложение ещё не принимает запросы.
+ */
+public class CacheWarmer {
+
+    private static final Logger logger = LogManager.getLogger(CacheWarmer.class);
+
+    private final UserCache cache;
+    private final UserDao loader;
+    private final int batchSize;
+    private final int parallelism;
+
+    public CacheWarmer(UserCache cache, UserDao loader, int batchSize, int parallelism) {
+        if (batchSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Batch size and parallelism must be positive");
+        }
+        this.cache = cache;
+        this.loader = loader;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    // Запись во временный файл и переименование: оборванная остановка не оставит половину списка
+    public static void saveHotSet(HotUserTracker tracker, Path file, int limit) throws IOException {
+        List<Long> ids = tracker.top(limit);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Long id : ids) {
+                writer.write(Long.toString(id));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Saved {} hot user ids to {}", ids.size(), file);
+    }
+
+    public static List<Long> loadHotSet(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    // Возвращает число загруженных пользователей; уже лежащие в кеше id не перечитываются
+    public int warmUp(List<Long> ids) {
+        List<Long> missing = ids.stream()
+                .distinct()
+                .filter(id -> cache.expiresInNanos(id) == 0)
+                .collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism,
+                (missing.size() + batchSize - 1) / batchSize));
+        try {
+            List<Future<Integer>> batches = new ArrayList<>();
+            for (int from = 0; from < missing.size(); from += batchSize) {
+                List<Long> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+                batches.add(executor.submit(() -> load(batch)));
+            }
+            int loaded = 0;
+            for (Future<Integer> batch : batches) {
+                loaded += batch.get();
+            }
+            logger.info("Warmed up cache with {} of {} hot users in {} ms", loaded, missing.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cache warm-up interrupted", e);
+        } catch (ExecutionException e) {
+            logger.error("Error warming up user cache", e.getCause());
+            throw new RuntimeException("Error warming up user cache", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int load(List<Long> ids) {
+        List<User> users = loader.findAllById(ids);
+        users.forEach(cache::put);
+        return users.size();
+    }
+}
@@ -0,0 +1,209 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.dao.ForwardingUserDao;
+import ru.aston.hometask.intensive2.program.dao.PartialUpsertException;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class CachingUserDao extends ForwardingUserDao {
+
+    private static final Logger logger = LogManager.getLogger(CachingUserDao.class);
+
+    private final UserCache cache;
+    // null — обращения не учитываются
+    private final HotUserTracker tracker;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingUserDao(UserDao delegate, UserCache cache) {
+        this(delegate, cache, null);
+    }
+
+    public CachingUserDao(UserDao delegate, UserCache cache, HotUserTracker tracker) {
+        super(delegate);
+        this.cache = cache;
+        this.tracker = tracker;
+    }
+
+    public UserCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        recordAccess(id);
+        Optional<User> cached = cache.get(id);
+        if (cached.isPresent()) {
+            hits.incrementAndGet();
+            logger.debug("Cache hit for user id: {}", id);
+            return cached;
+        }
+        misses.incrementAndGet();
+        Optional<User> user = delegate.findById(id);
+        user.ifPresent(cache::put);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Optional<User> cached = cache.getByEmail(email);
+        if (cached.isPresent()) {
+            hits.incrementAndGet();
+            logger.debug("Cache hit for user email: {}", email);
+            recordAccess(cached.get().getId());
+            return cached;
+        }
+        misses.incrementAndGet();
+        Optional<User> user = delegate.findByEmail(email);
+        user.ifPresent(found -> {
+            recordAccess(found.getId());
+            cache.put(found);
+        });
+        return user;
+    }
+
+    // Из базы дочитываются только промахи кеша, одним запросом
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        List<User> users = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            recordAccess(id);
+            Optional<User> cached = cache.get(id);
+            if (cached.isPresent()) {
+                hits.incrementAndGet();
+                users.add(cached.get());
+            } else {
+                misses.incrementAndGet();
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (User user : delegate.findAllById(missing)) {
+                cache.put(user);
+                users.add(user);
+            }
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    public User save(User user) {
+        User saved = delegate.save(user);
+        cache.put(saved);
+        return saved;
+    }
+
+    @Override
+    public User update(User user) {
+        cache.evict(user.getId());
+        User updated = delegate.update(user);
+        cache.put(updated);
+        return updated;
+    }
+
+    @Override
+    public void delete(Long id) {
+        cache.evict(id);
+        delegate.delete(id);
+    }
+
+    // upsert мог сменить email, поэтому записи вытесняются, а не обновляются
+    @Override
+    public User upsertByEmail(User user) {
+        User stored = delegate.upsertByEmail(user);
+        cache.evict(stored.getId());
+        return stored;
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        List<User> stored;
+        try {
+            stored = delegate.upsertAll(users);
+        } catch (PartialUpsertException e) {
+            e.getApplied().forEach(user -> cache.evict(user.getId()));
+            throw e;
+        }
+        stored.forEach(user -> cache.evict(user.getId()));
+        return stored;
+    }
+
+    // Внутри транзакции кеш не читается и не пополняется, чтобы в него не попало незакоммиченное состояние;
+    // затронутые записи вытесняются после её завершения — и при коммите, и при откате
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        Set<Long> touchedIds = ConcurrentHashMap.newKeySet();
+        try {
+            return delegate.inTransaction(dao -> work.apply(new ForwardingUserDao(dao) {
+                @Override
+                public User save(User user) {
+                    User saved = delegate.save(user);
+                    touchedIds.add(saved.getId());
+                    return saved;
+                }
+
+                @Override
+                public User update(User user) {
+                    touchedIds.add(user.getId());
+                    return delegate.update(user);
+                }
+
+                @Override
+                public void delete(Long id) {
+                    touchedIds.add(id);
+                    delegate.delete(id);
+                }
+
+                @Override
+                public User upsertByEmail(User user) {
+                    User stored = delegate.upsertByEmail(user);
+                    touchedIds.add(stored.getId());
+                    return stored;
+                }
+
+                @Override
+                public List<User> upsertAll(Collection<User> users) {
+                    List<User> stored;
+                    try {
+                        stored = delegate.upsertAll(users);
+                    } catch (PartialUpsertException e) {
+                        e.getApplied().forEach(user -> touchedIds.add(user.getId()));
+                        throw e;
+                    }
+                    stored.forEach(user -> touchedIds.add(user.getId()));
+                    return stored;
+                }
+            }));
+        } finally {
+            touchedIds.forEach(cache::evict);
+        }
+    }
+
+    private void recordAccess(Long id) {
+        if (tracker != null) {
+            tracker.record(id);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
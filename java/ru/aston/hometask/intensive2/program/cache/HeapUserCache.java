@@ -0,0 +1,140 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Хранит и отдаёт копии: сервис изменяет полученных пользователей до вызова update
+public class HeapUserCache implements UserCache {
+
+    private static final class Entry {
+        final User user;
+        final long expiresAtNanos;
+
+        Entry(User user, long expiresAtNanos) {
+            this.user = user;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier nanoClock;
+
+    public HeapUserCache(long ttlMillis, int maxSize) {
+        this(ttlMillis, maxSize, System::nanoTime);
+    }
+
+    HeapUserCache(long ttlMillis, int maxSize, LongSupplier nanoClock) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxSize = maxSize;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Optional<User> get(Long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (nanoClock.getAsLong() - entry.expiresAtNanos >= 0) {
+            remove(id, entry);
+            return Optional.empty();
+        }
+        return Optional.of(new User(entry.user));
+    }
+
+    @Override
+    public Optional<User> getByEmail(String email) {
+        String key = EmailNormalizer.normalize(email);
+        Long id = idsByEmail.get(key);
+        if (id == null) {
+            return Optional.empty();
+        }
+        Optional<User> user = get(id);
+        if (user.isPresent() && !key.equals(EmailNormalizer.normalize(user.get().getEmail()))) {
+            idsByEmail.remove(key, id);
+            return Optional.empty();
+        }
+        return user;
+    }
+
+    @Override
+    public void put(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        if (entries.size() >= maxSize && !entries.containsKey(user.getId())) {
+            evictSome();
+        }
+        Entry previous = entries.put(user.getId(),
+                new Entry(new User(user), nanoClock.getAsLong() + ttlNanos));
+        String key = EmailNormalizer.normalize(user.getEmail());
+        if (previous != null) {
+            String previousKey = EmailNormalizer.normalize(previous.user.getEmail());
+            if (!previousKey.equals(key)) {
+                idsByEmail.remove(previousKey, user.getId());
+            }
+        }
+        idsByEmail.put(key, user.getId());
+    }
+
+    @Override
+    public long expiresInNanos(Long id) {
+        Entry entry = entries.get(id);
+        return entry == null ? 0 : Math.max(0, entry.expiresAtNanos - nanoClock.getAsLong());
+    }
+
+    @Override
+    public void evict(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            idsByEmail.remove(EmailNormalizer.normalize(entry.user.getEmail()), id);
+        }
+    }
+
+    @Override
+    public void evictAll(Collection<Long> ids) {
+        ids.forEach(this::evict);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        idsByEmail.clear();
+    }
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    private void remove(Long id, Entry entry) {
+        if (entries.remove(id, entry)) {
+            idsByEmail.remove(EmailNormalizer.normalize(entry.user.getEmail()), id);
+        }
+    }
+
+    // Сначала выбрасываем просроченные записи, затем — произвольную десятую часть кеша
+    private void evictSome() {
+        long now = nanoClock.getAsLong();
+        entries.forEach((id, entry) -> {
+            if (now - entry.expiresAtNanos >= 0) {
+                remove(id, entry);
+            }
+        });
+        int toEvict = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<Long> iterator = entries.keySet().iterator();
+        while (toEvict-- > 0 && iterator.hasNext()) {
+            evict(iterator.next());
+        }
+    }
+}
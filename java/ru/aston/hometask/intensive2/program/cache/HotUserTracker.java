@@ -0,0 +1,79 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Приблизительный учёт самых запрашиваемых пользователей. Счётчики держатся не более чем для 2 * capacity id;
+ * при переполнении остаются capacity самых частых, а их счётчики делятся пополам, так что давняя
+ * популярность постепенно забывается и новые горячие id успевают набрать вес.
+ */
+public class HotUserTracker {
+
+    private final int capacity;
+    private final ConcurrentHashMap<Long, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    public HotUserTracker(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void record(Long id) {
+        if (id == null) {
+            return;
+        }
+        AtomicLong count = counts.get(id);
+        if (count == null) {
+            count = counts.computeIfAbsent(id, key -> new AtomicLong());
+            if (counts.size() > 2 * capacity) {
+                prune();
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    // Самые частые id по убыванию числа обращений
+    public List<Long> top(int limit) {
+        return snapshot().stream()
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    // Одна чистка за раз; остальные потоки продолжают писать, пока она идёт
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<Long, Long>> entries = snapshot();
+            for (int i = capacity; i < entries.size(); i++) {
+                counts.remove(entries.get(i).getKey());
+            }
+            counts.values().forEach(count -> count.updateAndGet(value -> value / 2));
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private List<Map.Entry<Long, Long>> snapshot() {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(counts.size());
+        counts.forEach((id, count) -> entries.add(Map.entry(id, count.get())));
+        entries.sort(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        return entries;
+    }
+}
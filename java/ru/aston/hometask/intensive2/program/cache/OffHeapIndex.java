@@ -0,0 +1,154 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Хеш-таблица long → int с открытой адресацией и линейным пробированием в прямом буфере.
+ * Ячейка — 12 байт (ключ и значение); значение 0 означает пустую ячейку, поэтому хранимые значения
+ * должны быть ненулевыми. Одинаковые ключи допускаются (коллизии хешей email), удаление —
+ * сдвигом назад, без надгробий. Не потокобезопасна: синхронизацию обеспечивает владелец.
+ */
+final class OffHeapIndex {
+
+    static final int BUCKET_SIZE = 12;
+
+    private static final int KEY = 0;
+    private static final int VALUE = 8;
+    // Больше 2^27 ячеек не помещается в один буфер
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private final ByteBuffer buckets;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+
+    // Заполнение не выше половины: цепочки пробирования остаются короткими
+    OffHeapIndex(int expectedEntries) {
+        long required = Math.max(2L, 2L * expectedEntries);
+        if (required > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Index cannot hold " + expectedEntries + " entries");
+        }
+        int capacity = Integer.highestOneBit((int) required - 1) << 1;
+        this.buckets = ByteBuffer.allocateDirect(capacity * BUCKET_SIZE);
+        this.mask = capacity - 1;
+        this.maxSize = capacity - capacity / 4;
+    }
+
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long capacityBytes() {
+        return buckets.capacity();
+    }
+
+    // Первое значение с таким ключом или 0
+    int get(long key) {
+        for (int bucket = home(key); value(bucket) != 0; bucket = (bucket + 1) & mask) {
+            if (key(bucket) == key) {
+                return value(bucket);
+            }
+        }
+        return 0;
+    }
+
+    // Все значения с таким ключом
+    int[] getAll(long key) {
+        int count = 0;
+        for (int bucket = home(key); value(bucket) != 0; bucket = (bucket + 1) & mask) {
+            if (key(bucket) == key) {
+                count++;
+            }
+        }
+        int[] values = new int[count];
+        int found = 0;
+        for (int bucket = home(key); found < count; bucket = (bucket + 1) & mask) {
+            if (key(bucket) == key) {
+                values[found++] = value(bucket);
+            }
+        }
+        return values;
+    }
+
+    // false — таблица заполнена; дубликаты не проверяются
+    boolean add(long key, int value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("Index value cannot be 0");
+        }
+        if (size >= maxSize) {
+            return false;
+        }
+        int bucket = home(key);
+        while (value(bucket) != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets.putLong(bucket * BUCKET_SIZE + KEY, key);
+        buckets.putInt(bucket * BUCKET_SIZE + VALUE, value);
+        size++;
+        return true;
+    }
+
+    boolean contains(long key, int value) {
+        return find(key, value) >= 0;
+    }
+
+    boolean remove(long key, int value) {
+        int bucket = find(key, value);
+        if (bucket < 0) {
+            return false;
+        }
+        // Сдвиг назад: следующие ячейки цепочки переносятся в освободившуюся, если их домашняя ячейка не между ними
+        int free = bucket;
+        for (int next = (free + 1) & mask; value(next) != 0; next = (next + 1) & mask) {
+            int nextHome = home(key(next));
+            boolean staysInPlace = free <= next
+                    ? free < nextHome && nextHome <= next
+                    : free < nextHome || nextHome <= next;
+            if (!staysInPlace) {
+                buckets.putLong(free * BUCKET_SIZE + KEY, key(next));
+                buckets.putInt(free * BUCKET_SIZE + VALUE, value(next));
+                free = next;
+            }
+        }
+        buckets.putInt(free * BUCKET_SIZE + VALUE, 0);
+        size--;
+        return true;
+    }
+
+    void clear() {
+        for (int bucket = 0; bucket <= mask; bucket++) {
+            buckets.putInt(bucket * BUCKET_SIZE + VALUE, 0);
+        }
+        size = 0;
+    }
+
+    private int find(long key, int value) {
+        for (int bucket = home(key); value(bucket) != 0; bucket = (bucket + 1) & mask) {
+            if (key(bucket) == key && value(bucket) == value) {
+                return bucket;
+            }
+        }
+        return -1;
+    }
+
+    private int home(long key) {
+        return (int) mix(key) & mask;
+    }
+
+    private long key(int bucket) {
+        return buckets.getLong(bucket * BUCKET_SIZE + KEY);
+    }
+
+    private int value(int bucket) {
+        return buckets.getInt(bucket * BUCKET_SIZE + VALUE);
+    }
+}
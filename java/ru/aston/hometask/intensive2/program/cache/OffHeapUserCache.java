@@ -0,0 +1,425 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Кеш пользователей вне кучи: записи сериализуются в слоты фиксированного размера в прямых буферах,
+ * индексы по id и по хешу email — {@link OffHeapIndex}. Сборщик мусора видит только несколько
+ * буферов на сегмент, сколько бы записей ни было в кеше; объект User создаётся при чтении.
+ *
+ * Кеш разбит на сегменты по хешу id, у каждого свои слоты, индекс и вытеснение CLOCK;
+ * индекс email разбит на полосы по хешу email и указывает на слот. Пользователь, не помещающийся
+ * в слот (длинные имя и email), не кешируется. Ёмкость делится между сегментами поровну,
+ * поэтому вытеснение в сегменте может начаться чуть раньше, чем кеш заполнится целиком.
+ */
+public class OffHeapUserCache implements UserCache {
+
+    public static final int DEFAULT_SLOT_SIZE = 128;
+    public static final int DEFAULT_SEGMENTS = 64;
+    static final int MAX_SLOT_SIZE = 4096;
+
+    // Раскладка слота
+    static final int SLOT_ID = 0;
+    static final int SLOT_VERSION = 8;
+    static final int SLOT_CREATED_AT = 16;
+    static final int SLOT_EXPIRES_AT = 24;
+    static final int SLOT_EMAIL_HASH = 32;
+    static final int SLOT_AGE = 40;
+    static final int SLOT_NAME_LENGTH = 44;
+    static final int SLOT_EMAIL_LENGTH = 46;
+    static final int SLOT_HEADER_SIZE = 48;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int NULL_AGE = Integer.MIN_VALUE;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final LocalDateTime EPOCH = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+
+    // Состояние слота для CLOCK
+    private static final byte FREE = 0;
+    private static final byte OCCUPIED = 1;
+    private static final byte REFERENCED = 2;
+
+    private final Segment[] segments;
+    private final OffHeapIndex[] emailStripes;
+    private final int slotSize;
+    private final int slotsPerSegment;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public OffHeapUserCache(long ttlMillis, int maxSize) {
+        this(ttlMillis, maxSize, DEFAULT_SLOT_SIZE, DEFAULT_SEGMENTS, System::nanoTime);
+    }
+
+    public OffHeapUserCache(long ttlMillis, int maxSize, int slotSize) {
+        this(ttlMillis, maxSize, slotSize, DEFAULT_SEGMENTS, System::nanoTime);
+    }
+
+    OffHeapUserCache(long ttlMillis, int maxSize, int slotSize, int segmentCount, LongSupplier nanoClock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        if (slotSize <= SLOT_HEADER_SIZE || slotSize > MAX_SLOT_SIZE) {
+            throw new IllegalArgumentException(
+                    "Slot size must be between " + (SLOT_HEADER_SIZE + 1) + " and " + MAX_SLOT_SIZE);
+        }
+        if (Integer.bitCount(segmentCount) != 1) {
+            throw new IllegalArgumentException("Segment count must be a power of two");
+        }
+        int perSegment = (int) ((maxSize + (long) segmentCount - 1) / segmentCount);
+        if ((long) perSegment * segmentCount >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache size must be below " + Integer.MAX_VALUE);
+        }
+        if ((long) perSegment * slotSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment of " + perSegment + " slots exceeds 2 GiB, add segments");
+        }
+        this.slotSize = slotSize;
+        this.slotsPerSegment = perSegment;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+        this.segments = new Segment[segmentCount];
+        this.emailStripes = new OffHeapIndex[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(i);
+            emailStripes[i] = new OffHeapIndex(perSegment);
+        }
+    }
+
+    @Override
+    public Optional<User> get(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(segmentFor(id).get(id, nanoClock.getAsLong()));
+    }
+
+    // Индекс email хранит только хеш: найденный слот сверяется с искомым email
+    @Override
+    public Optional<User> getByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        String key = EmailNormalizer.normalize(email);
+        long emailHash = emailHash(key);
+        OffHeapIndex stripe = stripeFor(emailHash);
+        int[] references;
+        synchronized (stripe) {
+            references = stripe.getAll(emailHash);
+        }
+        long now = nanoClock.getAsLong();
+        for (int reference : references) {
+            Segment segment = segments[(reference - 1) / slotsPerSegment];
+            User user = segment.getBySlot((reference - 1) % slotsPerSegment, emailHash, now);
+            if (user != null && key.equals(EmailNormalizer.normalize(user.getEmail()))) {
+                return Optional.of(user);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        byte[] name = encode(user.getName());
+        byte[] email = encode(user.getEmail());
+        long emailHash = emailHash(EmailNormalizer.normalize(user.getEmail()));
+        int length = SLOT_HEADER_SIZE + (name != null ? name.length : 0) + (email != null ? email.length : 0);
+        if (length > slotSize) {
+            rejected.incrementAndGet();
+            // Старая версия записи не должна пережить отказ
+            evict(user.getId());
+            return;
+        }
+        segmentFor(user.getId()).put(user, name, email, emailHash, nanoClock.getAsLong());
+    }
+
+    @Override
+    public long expiresInNanos(Long id) {
+        return id == null ? 0 : segmentFor(id).expiresIn(id, nanoClock.getAsLong());
+    }
+
+    @Override
+    public void evict(Long id) {
+        if (id != null) {
+            segmentFor(id).evict(id);
+        }
+    }
+
+    @Override
+    public void evictAll(Collection<Long> ids) {
+        ids.forEach(this::evict);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // Записи, не поместившиеся в слот
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // Весь зарезервированный объём прямых буферов: слоты, состояния и оба индекса
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (int i = 0; i < segments.length; i++) {
+            bytes += segments[i].capacityBytes() + emailStripes[i].capacityBytes();
+        }
+        return bytes;
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    private Segment segmentFor(long id) {
+        return segments[(int) (OffHeapIndex.mix(id) >>> 32) & (segments.length - 1)];
+    }
+
+    private OffHeapIndex stripeFor(long emailHash) {
+        return emailStripes[(int) (emailHash >>> 32) & (emailStripes.length - 1)];
+    }
+
+    // Вызывается под замком сегмента; порядок захвата всегда сегмент → полоса email
+    private void addEmail(long emailHash, int reference) {
+        OffHeapIndex stripe = stripeFor(emailHash);
+        synchronized (stripe) {
+            if (!stripe.contains(emailHash, reference)) {
+                // Переполненная полоса: запись доступна только по id
+                stripe.add(emailHash, reference);
+            }
+        }
+    }
+
+    private void removeEmail(long emailHash, int reference) {
+        OffHeapIndex stripe = stripeFor(emailHash);
+        synchronized (stripe) {
+            stripe.remove(emailHash, reference);
+        }
+    }
+
+    // FNV-1a по UTF-8 нормализованного email с последующим перемешиванием
+    static long emailHash(String normalizedEmail) {
+        if (normalizedEmail == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : normalizedEmail.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return OffHeapIndex.mix(hash);
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private final class Segment {
+
+        private final int number;
+        private final ByteBuffer slots;
+        private final ByteBuffer states;
+        private final OffHeapIndex ids;
+        private int nextUnused;
+        private int hand;
+        private int size;
+
+        Segment(int number) {
+            this.number = number;
+            this.slots = ByteBuffer.allocateDirect(slotsPerSegment * slotSize);
+            this.states = ByteBuffer.allocateDirect(slotsPerSegment);
+            this.ids = new OffHeapIndex(slotsPerSegment);
+        }
+
+        synchronized User get(long id, long now) {
+            int slot = ids.get(id) - 1;
+            if (slot < 0) {
+                return null;
+            }
+            if (now - slots.getLong(base(slot) + SLOT_EXPIRES_AT) >= 0) {
+                remove(slot);
+                return null;
+            }
+            states.put(slot, REFERENCED);
+            return read(slot);
+        }
+
+        // Слот мог быть переиспользован после чтения индекса email: проверяется хеш email записи
+        synchronized User getBySlot(int slot, long emailHash, long now) {
+            if (states.get(slot) == FREE || slots.getLong(base(slot) + SLOT_EMAIL_HASH) != emailHash) {
+                return null;
+            }
+            if (now - slots.getLong(base(slot) + SLOT_EXPIRES_AT) >= 0) {
+                remove(slot);
+                return null;
+            }
+            states.put(slot, REFERENCED);
+            return read(slot);
+        }
+
+        synchronized void put(User user, byte[] name, byte[] email, long emailHash, long now) {
+            long id = user.getId();
+            int slot = ids.get(id) - 1;
+            if (slot >= 0) {
+                long previousHash = slots.getLong(base(slot) + SLOT_EMAIL_HASH);
+                write(slot, user, name, email, emailHash, now);
+                if (previousHash != emailHash) {
+                    removeEmail(previousHash, reference(slot));
+                    addEmail(emailHash, reference(slot));
+                }
+                return;
+            }
+            slot = allocate(now);
+            write(slot, user, name, email, emailHash, now);
+            states.put(slot, OCCUPIED);
+            ids.add(id, slot + 1);
+            size++;
+            addEmail(emailHash, reference(slot));
+        }
+
+        synchronized long expiresIn(long id, long now) {
+            int slot = ids.get(id) - 1;
+            return slot < 0 ? 0 : Math.max(0, slots.getLong(base(slot) + SLOT_EXPIRES_AT) - now);
+        }
+
+        synchronized void evict(long id) {
+            int slot = ids.get(id) - 1;
+            if (slot >= 0) {
+                remove(slot);
+            }
+        }
+
+        synchronized void clear() {
+            for (int slot = 0; slot < nextUnused; slot++) {
+                if (states.get(slot) != FREE) {
+                    remove(slot);
+                }
+            }
+            nextUnused = 0;
+            hand = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        long capacityBytes() {
+            return slots.capacity() + states.capacity() + ids.capacityBytes();
+        }
+
+        // Сначала ни разу не использованные слоты, затем CLOCK: просроченная или давно не читанная запись
+        private int allocate(long now) {
+            if (nextUnused < slotsPerSegment) {
+                return nextUnused++;
+            }
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) % slotsPerSegment;
+                byte state = states.get(slot);
+                if (state == FREE) {
+                    return slot;
+                }
+                if (state == REFERENCED && now - slots.getLong(base(slot) + SLOT_EXPIRES_AT) < 0) {
+                    states.put(slot, OCCUPIED);
+                    continue;
+                }
+                remove(slot);
+                return slot;
+            }
+        }
+
+        private void remove(int slot) {
+            int base = base(slot);
+            ids.remove(slots.getLong(base + SLOT_ID), slot + 1);
+            removeEmail(slots.getLong(base + SLOT_EMAIL_HASH), reference(slot));
+            states.put(slot, FREE);
+            size--;
+        }
+
+        private void write(int slot, User user, byte[] name, byte[] email, long emailHash, long now) {
+            int base = base(slot);
+            slots.putLong(base + SLOT_ID, user.getId());
+            slots.putLong(base + SLOT_VERSION, user.getVersion() != null ? user.getVersion() : NULL_LONG);
+            slots.putLong(base + SLOT_CREATED_AT, user.getCreatedAt() != null
+                    ? ChronoUnit.MICROS.between(EPOCH, user.getCreatedAt()) : NULL_LONG);
+            slots.putLong(base + SLOT_EXPIRES_AT, now + ttlNanos);
+            slots.putLong(base + SLOT_EMAIL_HASH, emailHash);
+            slots.putInt(base + SLOT_AGE, user.getAge() != null ? user.getAge() : NULL_AGE);
+            slots.putShort(base + SLOT_NAME_LENGTH, (short) (name != null ? name.length : NULL_LENGTH));
+            slots.putShort(base + SLOT_EMAIL_LENGTH, (short) (email != null ? email.length : NULL_LENGTH));
+            int offset = base + SLOT_HEADER_SIZE;
+            if (name != null) {
+                slots.put(offset, name);
+                offset += name.length;
+            }
+            if (email != null) {
+                slots.put(offset, email);
+            }
+        }
+
+        private User read(int slot) {
+            int base = base(slot);
+            User user = new User();
+            user.setId(slots.getLong(base + SLOT_ID));
+            long version = slots.getLong(base + SLOT_VERSION);
+            user.setVersion(version != NULL_LONG ? version : null);
+            long createdAt = slots.getLong(base + SLOT_CREATED_AT);
+            user.setCreatedAt(createdAt != NULL_LONG ? EPOCH.plus(createdAt, ChronoUnit.MICROS) : null);
+            int age = slots.getInt(base + SLOT_AGE);
+            user.setAge(age != NULL_AGE ? age : null);
+            int nameLength = slots.getShort(base + SLOT_NAME_LENGTH) & 0xFFFF;
+            int emailLength = slots.getShort(base + SLOT_EMAIL_LENGTH) & 0xFFFF;
+            int offset = base + SLOT_HEADER_SIZE;
+            if (nameLength != NULL_LENGTH) {
+                user.setName(decode(offset, nameLength));
+                offset += nameLength;
+            }
+            if (emailLength != NULL_LENGTH) {
+                user.setEmail(decode(offset, emailLength));
+            }
+            return user;
+        }
+
+        private String decode(int offset, int length) {
+            byte[] bytes = new byte[length];
+            slots.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int base(int slot) {
+            return slot * slotSize;
+        }
+
+        // Ссылка из индекса email: сквозной номер слота, начиная с 1
+        private int reference(int slot) {
+            return number * slotsPerSegment + slot + 1;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Refresh-ahead: попадание в запись, которой осталось жить меньше доли refreshAheadFraction от TTL,
+ * ставит её асинхронную перезагрузку из loader. Запись, которую читают хотя бы раз за это окно,
+ * не истекает, и горячий ключ не получает синхронного промаха. На один id — одна перезагрузка за раз;
+ * если очередь заполнена, перезагрузка пропускается, а запись доживёт свой срок как обычно.
+ * put и evict во время перезагрузки отменяют её результат: загруженное раньше не перетрёт более свежее.
+ */
+public class RefreshAheadUserCache implements UserCache, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(RefreshAheadUserCache.class);
+
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final UserCache delegate;
+    private final UserDao loader;
+    private final long refreshWindowNanos;
+    private final ThreadPoolExecutor executor;
+    // true — перезагрузка идёт и её результат ещё актуален
+    private final ConcurrentHashMap<Long, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public RefreshAheadUserCache(UserCache delegate, UserDao loader, long ttlMillis, double refreshAheadFraction,
+                                 int threads) {
+        if (refreshAheadFraction <= 0 || refreshAheadFraction >= 1) {
+            throw new IllegalArgumentException("Refresh-ahead fraction must be between 0 and 1");
+        }
+        this.delegate = delegate;
+        this.loader = loader;
+        this.refreshWindowNanos = (long) (TimeUnit.MILLISECONDS.toNanos(ttlMillis) * refreshAheadFraction);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "user-cache-refresh-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public Optional<User> get(Long id) {
+        Optional<User> user = delegate.get(id);
+        if (user.isPresent()) {
+            refreshIfExpiring(id);
+        }
+        return user;
+    }
+
+    @Override
+    public Optional<User> getByEmail(String email) {
+        Optional<User> user = delegate.getByEmail(email);
+        user.ifPresent(found -> refreshIfExpiring(found.getId()));
+        return user;
+    }
+
+    @Override
+    public void put(User user) {
+        cancelRefresh(user.getId());
+        delegate.put(user);
+    }
+
+    @Override
+    public long expiresInNanos(Long id) {
+        return delegate.expiresInNanos(id);
+    }
+
+    @Override
+    public void evict(Long id) {
+        cancelRefresh(id);
+        delegate.evict(id);
+    }
+
+    @Override
+    public void evictAll(Collection<Long> ids) {
+        ids.forEach(this::evict);
+    }
+
+    @Override
+    public void clear() {
+        inFlight.replaceAll((id, current) -> false);
+        delegate.clear();
+    }
+
+    @Override
+    public long size() {
+        return delegate.size();
+    }
+
+    public long getRefreshed() {
+        return refreshed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void refreshIfExpiring(Long id) {
+        long left = delegate.expiresInNanos(id);
+        if (left <= 0 || left > refreshWindowNanos || inFlight.putIfAbsent(id, true) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> refresh(id));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(id);
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void refresh(Long id) {
+        try {
+            Optional<User> user = loader.findById(id);
+            // Под блокировкой ключа inFlight: put или evict не вклинятся между проверкой и записью
+            inFlight.compute(id, (key, current) -> {
+                if (Boolean.TRUE.equals(current)) {
+                    if (user.isPresent()) {
+                        delegate.put(user.get());
+                    } else {
+                        delegate.evict(id);
+                    }
+                }
+                return null;
+            });
+            refreshed.incrementAndGet();
+        } catch (Exception e) {
+            inFlight.remove(id);
+            failed.incrementAndGet();
+            logger.warn("Error refreshing cached user with id: {}", id, e);
+        }
+    }
+
+    private void cancelRefresh(Long id) {
+        if (id != null) {
+            inFlight.computeIfPresent(id, (key, current) -> false);
+        }
+    }
+}
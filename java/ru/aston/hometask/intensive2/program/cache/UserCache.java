@@ -0,0 +1,25 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface UserCache {
+    Optional<User> get(Long id);
+
+    Optional<User> getByEmail(String email);
+
+    void put(User user);
+
+    // Сколько ещё проживёт запись; 0 — записи нет или она просрочена
+    long expiresInNanos(Long id);
+
+    void evict(Long id);
+
+    void evictAll(Collection<Long> ids);
+
+    void clear();
+
+    long size();
+}
@@ -0,0 +1,192 @@
+package ru.aston.hometask.intensive2.program.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Слушает канал {@value #CHANNEL} и вытесняет изменённых пользователей из локального кеша.
+ * Уведомления публикует триггер на users, поэтому в шину попадают записи всех узлов и любых путей записи.
+ * После обрыва соединения кеш очищается целиком: уведомления за время простоя потеряны.
+ */
+public class UserInvalidationListener implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(UserInvalidationListener.class);
+
+    public static final String CHANNEL = "user_changes";
+
+    private static final String CREATE_FUNCTION_SQL =
+            "create or replace function notify_user_change() returns trigger as $$ "
+                    + "begin perform pg_notify('" + CHANNEL + "', coalesce(new.id, old.id)::text); return null; end "
+                    + "$$ language plpgsql";
+    private static final String CREATE_TRIGGER_SQL =
+            "do $$ begin "
+                    + "if not exists (select 1 from pg_trigger where tgname = 'users_notify_change') then "
+                    + "create trigger users_notify_change after insert or update or delete on users "
+                    + "for each row execute procedure notify_user_change(); "
+                    + "end if; end $$";
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionSource connectionSource;
+    private final UserCache cache;
+    private final long batchWindowMillis;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Connection connection;
+
+    private final AtomicLong receivedNotifications = new AtomicLong();
+    private final AtomicLong evictedBatches = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+
+    public UserInvalidationListener(ConnectionSource connectionSource, UserCache cache, long batchWindowMillis) {
+        this.connectionSource = connectionSource;
+        this.cache = cache;
+        this.batchWindowMillis = batchWindowMillis;
+        this.thread = new Thread(this::run, "user-cache-invalidation");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        installTrigger();
+        thread.start();
+    }
+
+    public long getReceivedNotifications() {
+        return receivedNotifications.get();
+    }
+
+    public long getEvictedBatches() {
+        return evictedBatches.get();
+    }
+
+    public long getResyncs() {
+        return resyncs.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        closeConnection();
+        try {
+            thread.join(POLL_TIMEOUT_MILLIS * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void installTrigger() {
+        try (Connection installConnection = connectionSource.open();
+             Statement statement = installConnection.createStatement()) {
+            statement.execute(CREATE_FUNCTION_SQL);
+            statement.execute(CREATE_TRIGGER_SQL);
+        } catch (SQLException e) {
+            // Параллельная установка с другого узла — триггер уже есть
+            if (!"42710".equals(e.getSQLState())) {
+                logger.error("Error installing user change trigger", e);
+                throw new RuntimeException("Error installing user change trigger", e);
+            }
+        }
+    }
+
+    private void run() {
+        long reconnectDelay = 100;
+        while (running) {
+            try {
+                connect();
+                reconnectDelay = 100;
+                listen();
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("Invalidation listener connection lost, reconnecting in {} ms", reconnectDelay, e);
+                closeConnection();
+                sleep(reconnectDelay);
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+        closeConnection();
+    }
+
+    private void connect() throws SQLException {
+        connection = connectionSource.open();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        }
+        // Пока соединения не было, уведомления терялись — сбрасываем всё, что могло устареть
+        cache.clear();
+        resyncs.incrementAndGet();
+        logger.info("Listening for user changes on channel {}", CHANNEL);
+    }
+
+    private void listen() throws SQLException {
+        Connection current = connection;
+        PGConnection pgConnection = current.unwrap(PGConnection.class);
+        Set<Long> pendingIds = new HashSet<>();
+        long batchStartedAt = 0;
+        while (running) {
+            int timeout = pendingIds.isEmpty() ? POLL_TIMEOUT_MILLIS
+                    : (int) Math.max(1, batchWindowMillis - (System.currentTimeMillis() - batchStartedAt));
+            PGNotification[] notifications = pgConnection.getNotifications(timeout);
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    receivedNotifications.incrementAndGet();
+                    try {
+                        pendingIds.add(Long.parseLong(notification.getParameter()));
+                    } catch (NumberFormatException e) {
+                        logger.warn("Ignoring malformed user change notification: {}", notification.getParameter());
+                    }
+                }
+                if (batchStartedAt == 0 && !pendingIds.isEmpty()) {
+                    batchStartedAt = System.currentTimeMillis();
+                }
+            }
+            if (!pendingIds.isEmpty() && System.currentTimeMillis() - batchStartedAt >= batchWindowMillis) {
+                cache.evictAll(pendingIds);
+                evictedBatches.incrementAndGet();
+                logger.debug("Evicted {} users after change notifications", pendingIds.size());
+                pendingIds.clear();
+                batchStartedAt = 0;
+            }
+            if (current.isClosed()) {
+                throw new SQLException("Listener connection closed", "08003");
+            }
+        }
+    }
+
+    private void closeConnection() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing listener connection", e);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+public interface AsyncUserDao {
+    CompletableFuture<Optional<User>> findById(Long id);
+
+    CompletableFuture<List<User>> findAll();
+
+    CompletableFuture<List<User>> findAllById(Collection<Long> ids);
+
+    CompletableFuture<User> save(User user);
+
+    CompletableFuture<User> update(User user);
+
+    CompletableFuture<Void> delete(Long id);
+
+    CompletableFuture<Optional<User>> findByEmail(String email);
+
+    CompletableFuture<Boolean> isEmailExistsForOtherUser(String email, Long excludeUserId);
+
+    CompletableFuture<List<User>> findByQuery(UserQuery query);
+
+    CompletableFuture<List<User>> searchByName(String fragment, int limit);
+
+    CompletableFuture<User> upsertByEmail(User user);
+
+    CompletableFuture<List<User>> upsertAll(Collection<User> users);
+
+    // work выполняется целиком в одном потоке пула, поэтому транзакция привязывается к нему
+    <T> CompletableFuture<T> inTransaction(Function<UserDao, T> work);
+}
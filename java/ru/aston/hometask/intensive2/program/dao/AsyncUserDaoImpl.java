@@ -0,0 +1,139 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Неблокирующая обёртка над {@link UserDao}: JDBC-вызовы выполняются в отдельном ограниченном I/O-пуле.
+ * Размер пула стоит держать не больше размера пула соединений; при переполнении очереди
+ * future завершается с {@link RejectedExecutionException}, вызывающий поток не блокируется.
+ */
+public class AsyncUserDaoImpl implements AsyncUserDao, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(AsyncUserDaoImpl.class);
+
+    private final UserDao userDao;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncUserDaoImpl(UserDao userDao, int threads, int queueCapacity) {
+        this.userDao = userDao;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "user-dao-io-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> findById(Long id) {
+        return submit(() -> userDao.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAll() {
+        return submit(userDao::findAll);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAllById(Collection<Long> ids) {
+        return submit(() -> userDao.findAllById(ids));
+    }
+
+    @Override
+    public CompletableFuture<User> save(User user) {
+        return submit(() -> userDao.save(user));
+    }
+
+    @Override
+    public CompletableFuture<User> update(User user) {
+        return submit(() -> userDao.update(user));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(Long id) {
+        return submit(() -> {
+            userDao.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> findByEmail(String email) {
+        return submit(() -> userDao.findByEmail(email));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return submit(() -> userDao.isEmailExistsForOtherUser(email, excludeUserId));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findByQuery(UserQuery query) {
+        return submit(() -> userDao.findByQuery(query));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> searchByName(String fragment, int limit) {
+        return submit(() -> userDao.searchByName(fragment, limit));
+    }
+
+    @Override
+    public CompletableFuture<User> upsertByEmail(User user) {
+        return submit(() -> userDao.upsertByEmail(user));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> upsertAll(Collection<User> users) {
+        return submit(() -> userDao.upsertAll(users));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> inTransaction(Function<UserDao, T> work) {
+        return submit(() -> userDao.inTransaction(work));
+    }
+
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveTasks() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("User DAO I/O pool is saturated, rejecting operation");
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
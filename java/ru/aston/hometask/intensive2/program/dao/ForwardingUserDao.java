@@ -0,0 +1,88 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+public abstract class ForwardingUserDao implements UserDao {
+
+    protected final UserDao delegate;
+
+    protected ForwardingUserDao(UserDao delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public User save(User user) {
+        return delegate.save(user);
+    }
+
+    @Override
+    public User update(User user) {
+        return delegate.update(user);
+    }
+
+    @Override
+    public void delete(Long id) {
+        delegate.delete(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return delegate.isEmailExistsForOtherUser(email, excludeUserId);
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        return delegate.findByQuery(query);
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return delegate.searchByName(fragment, limit);
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return delegate.upsertByEmail(user);
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return delegate.upsertAll(users);
+    }
+
+    @Override
+    public boolean supportsDeferredUpdates() {
+        return delegate.supportsDeferredUpdates();
+    }
+
+    // Работа получает декоратор, а не delegate: его логика действует и внутри транзакции
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        return delegate.inTransaction(dao -> work.apply(this));
+    }
+}
@@ -0,0 +1,521 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGStatement;
+import ru.aston.hometask.intensive2.program.jfr.OperationRecorder;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.trace.Span;
+import ru.aston.hometask.intensive2.program.trace.Tracing;
+import ru.aston.hometask.intensive2.program.util.DataSourceRouter;
+import ru.aston.hometask.intensive2.program.util.Deadline;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+import ru.aston.hometask.intensive2.program.util.SnowflakeIdGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * UserDao поверх JDBC без сессии Hibernate: пул соединений, схема и маршрутизация чтений общие с UserDaoImpl.
+ * Все запросы — константные строки, поэтому драйвер PostgreSQL кеширует их как серверные подготовленные
+ * выражения на каждом соединении пула; порог подготовки снижен до первого выполнения.
+ * Сводка статистики (UserStatsSummary) этой реализацией не ведётся.
+ */
+public class JdbcUserDao implements UserDao {
+
+    private static final Logger logger = LogManager.getLogger(JdbcUserDao.class);
+
+    private static final String COLUMNS = "id, name, email, age, created_at, version";
+    private static final String FIND_BY_ID_SQL = "select " + COLUMNS + " from users where id = ?";
+    private static final String FIND_ALL_SQL = "select " + COLUMNS + " from users";
+    private static final String FIND_ALL_BY_ID_SQL = "select " + COLUMNS + " from users where id = any(?) order by id";
+    // Вторая ветка нужна, пока EmailNormalizationMigration не заполнила email_normalized у старых строк
+    private static final String FIND_BY_EMAIL_SQL = "select " + COLUMNS + " from users"
+            + " where email_normalized = ? or (email_normalized is null and email = ?)";
+    private static final String EMAIL_EXISTS_SQL = "select exists (select 1 from users"
+            + " where (email_normalized = ? or (email_normalized is null and email = ?)) and id <> ?)";
+    private static final String INSERT_SQL = "insert into users (id, name, email, email_normalized, age, created_at,"
+            + " version) values (?, ?, ?, ?, ?, ?, 0) returning version";
+    // Версия null (объект не читался из базы) — обновление без проверки, как merge у UserDaoImpl
+    private static final String UPDATE_SQL = "update users set name = ?, email = ?, email_normalized = ?, age = ?,"
+            + " created_at = ?, version = version + 1 where id = ? and version = coalesce(cast(? as bigint), version)"
+            + " returning version";
+    private static final String DELETE_SQL = "delete from users where id = ?";
+
+    private static final String CONNECTION_FAILURE_SQL_STATE_CLASS = "08";
+
+    private final DataSourceRouter router;
+    // Соединение открытой единицы работы (inTransaction) текущего потока
+    private final ThreadLocal<Connection> currentConnection = new ThreadLocal<>();
+
+    public JdbcUserDao() {
+        this(HibernateUtil.getRouter());
+    }
+
+    public JdbcUserDao(DataSourceRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        try {
+            User user = executeRead(connection -> {
+                try (PreparedStatement statement = prepare(connection, FIND_BY_ID_SQL)) {
+                    statement.setLong(1, id);
+                    List<User> users = readUsers(statement);
+                    return users.isEmpty() ? null : users.get(0);
+                }
+            });
+
+            if (user != null) {
+                logger.info("User found with id: {}", id);
+                return Optional.of(user);
+            } else {
+                logger.warn("User not found with id: {}", id);
+                return Optional.empty();
+            }
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding user by id: {}", id, e);
+            throw new RuntimeException("Error finding user by id", e);
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        try {
+            List<User> users = executeRead(connection -> {
+                try (PreparedStatement statement = prepare(connection, FIND_ALL_SQL)) {
+                    return readUsers(statement);
+                }
+            });
+
+            logger.info("Found {} users", users.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding all users", e);
+            throw new RuntimeException("Error finding all users", e);
+        }
+    }
+
+    // Все id передаются одним параметром-массивом: текст запроса не зависит от их числа
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<User> users = executeRead(connection -> {
+                try (PreparedStatement statement = prepare(connection, FIND_ALL_BY_ID_SQL)) {
+                    statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+                    return readUsers(statement);
+                }
+            });
+
+            logger.info("Found {} of {} users by id", users.size(), ids.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding {} users by id", ids.size(), e);
+            throw new RuntimeException("Error finding users by id", e);
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        try {
+            if (user.getId() == null) {
+                user.setId(SnowflakeIdGenerator.getDefault().nextId());
+            }
+            long version = executeWrite(connection -> {
+                try (PreparedStatement statement = prepare(connection, INSERT_SQL)) {
+                    statement.setLong(1, user.getId());
+                    bindFields(statement, 2, user);
+                    return readVersion(statement);
+                }
+            });
+            user.setVersion(version);
+
+            logger.info("User saved successfully with id: {}", user.getId());
+            return user;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error saving user: {}", user.getEmail(), e);
+            throw new RuntimeException("Error saving user", e);
+        }
+    }
+
+    // Как и merge, возвращает новый объект с увеличенной версией; переданный не меняется
+    @Override
+    public User update(User user) {
+        Long version;
+        try {
+            version = executeWrite(connection -> {
+                try (PreparedStatement statement = prepare(connection, UPDATE_SQL)) {
+                    int index = bindFields(statement, 1, user);
+                    statement.setLong(index++, user.getId());
+                    statement.setObject(index, user.getVersion(), Types.BIGINT);
+                    return readVersion(statement);
+                }
+            });
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error updating user with id: {}", user.getId(), e);
+            throw new RuntimeException("Error updating user", e);
+        }
+        // Ноль строк: версия устарела или строка удалена — как StaleObjectStateException у Hibernate
+        if (version == null) {
+            logger.warn("Concurrent update conflict for user id: {}", user.getId());
+            throw new OptimisticLockConflictException(
+                    "User was modified concurrently, id: " + user.getId(), null);
+        }
+        User updatedUser = new User(user);
+        updatedUser.setVersion(version);
+
+        logger.info("User updated successfully with id: {}", updatedUser.getId());
+        return updatedUser;
+    }
+
+    @Override
+    public void delete(Long id) {
+        int deleted;
+        try {
+            deleted = executeWrite(connection -> {
+                try (PreparedStatement statement = prepare(connection, DELETE_SQL)) {
+                    statement.setLong(1, id);
+                    return statement.executeUpdate();
+                }
+            });
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error deleting user with id: {}", id, e);
+            throw new RuntimeException("Error deleting user", e);
+        }
+        if (deleted == 0) {
+            logger.warn("Attempt to delete non-existing user with id: {}", id);
+            throw new IllegalArgumentException("User not found with id: " + id);
+        }
+        logger.info("User deleted successfully with id: {}", id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        try {
+            User user = executeRead(connection -> {
+                try (PreparedStatement statement = prepare(connection, FIND_BY_EMAIL_SQL)) {
+                    statement.setString(1, EmailNormalizer.normalize(email));
+                    statement.setString(2, email);
+                    List<User> users = readUsers(statement);
+                    return users.isEmpty() ? null : users.get(0);
+                }
+            });
+
+            if (user != null) {
+                logger.info("User found with email: {}", email);
+                return Optional.of(user);
+            } else {
+                logger.info("User not found with email: {}", email);
+                return Optional.empty();
+            }
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding user by email: {}", email, e);
+            throw new RuntimeException("Error finding user by email", e);
+        }
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        try {
+            // Проверка уникальности идёт на primary: отставание реплики здесь недопустимо
+            boolean exists = executeOnPrimary(connection -> {
+                try (PreparedStatement statement = prepare(connection, EMAIL_EXISTS_SQL)) {
+                    statement.setString(1, EmailNormalizer.normalize(email));
+                    statement.setString(2, email);
+                    statement.setObject(3, excludeUserId, Types.BIGINT);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        return resultSet.getBoolean(1);
+                    }
+                }
+            });
+
+            logger.info("Email {} exists for other users: {}", email, exists);
+            return exists;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error checking email existence: {}", email, e);
+            throw new RuntimeException("Error checking email existence", e);
+        }
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        try {
+            UserQuerySql querySql = UserQuerySql.build(query);
+            List<User> users = executeRead(connection -> {
+                try (PreparedStatement statement = prepare(connection, querySql.getJdbcSql())) {
+                    List<Object> parameters = querySql.getParameters();
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    return readUsers(statement);
+                }
+            });
+
+            logger.info("Found {} users by query", users.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding users by query", e);
+            throw new RuntimeException("Error finding users by query", e);
+        }
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        UserNameSearch search = UserNameSearch.of(fragment, limit);
+        try {
+            List<User> users = executeRead(connection -> {
+                try (PreparedStatement statement = search.prepare(connection)) {
+                    return readUsers(statement);
+                }
+            });
+
+            logger.info("Found {} users by name fragment: {}", users.size(), fragment);
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error searching users by name fragment: {}", fragment, e);
+            throw new RuntimeException("Error searching users by name", e);
+        }
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return upsertAll(Collections.singletonList(user)).get(0);
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        List<User> records = UserUpsertSql.deduplicate(users);
+        if (records.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<User> stored = executeWrite(connection ->
+                    UserUpsertSql.execute(connection, records, SnowflakeIdGenerator.getDefault(), null));
+
+            logger.info("Upserted {} users", stored.size());
+            return stored;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error upserting {} users", records.size(), e);
+            throw new RuntimeException("Error upserting users", e);
+        }
+    }
+
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        if (currentConnection.get() != null) {
+            // Вложенный вызов присоединяется к внешней транзакции
+            return work.apply(this);
+        }
+        try {
+            return inNewTransaction(router.getPrimary(), true, connection -> {
+                currentConnection.set(connection);
+                try {
+                    return work.apply(this);
+                } finally {
+                    currentConnection.remove();
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Error committing unit of work", e);
+            throw new RuntimeException("Error committing unit of work", e);
+        }
+    }
+
+    private <T> T executeWrite(SqlWork<T> work) throws SQLException {
+        Connection connection = currentConnection.get();
+        return connection != null ? inUnitOfWork(connection, work) : inNewTransaction(router.getPrimary(), true, work);
+    }
+
+    private <T> T executeOnPrimary(SqlWork<T> work) throws SQLException {
+        Connection connection = currentConnection.get();
+        return connection != null
+                ? inUnitOfWork(connection, work)
+                : inNewTransaction(router.getPrimary(), false, work);
+    }
+
+    // statement_timeout переустанавливается по оставшемуся сроку перед каждым вызовом внутри единицы работы
+    private static <T> T inUnitOfWork(Connection connection, SqlWork<T> work) throws SQLException {
+        try {
+            Deadline.applyCurrent(connection);
+            return work.execute(connection);
+        } catch (SQLException e) {
+            if (Deadline.isExceeded(e)) {
+                throw Deadline.exceeded(e);
+            }
+            throw e;
+        }
+    }
+
+    // Внутри единицы работы чтения идут через её соединение: реплика не видит незакоммиченные изменения
+    private <T> T executeRead(SqlWork<T> work) throws SQLException {
+        Connection unitOfWork = currentConnection.get();
+        if (unitOfWork != null) {
+            return inUnitOfWork(unitOfWork, work);
+        }
+        DataSourceRouter.Node replica = router.selectReadNode();
+        if (replica != null) {
+            long start = System.nanoTime();
+            try {
+                T result = inNewTransaction(replica.getSessionFactory(), false, work);
+                router.recordSuccess(replica, System.nanoTime() - start);
+                return result;
+            } catch (SQLException e) {
+                if (e.getSQLState() == null || !e.getSQLState().startsWith(CONNECTION_FAILURE_SQL_STATE_CLASS)) {
+                    throw e;
+                }
+                router.recordFailure(replica);
+                logger.warn("Read replica {} is unavailable, falling back to primary", replica.getName(), e);
+            }
+        }
+        return inNewTransaction(router.getPrimary(), false, work);
+    }
+
+    // Соединение берётся из пула Hibernate; его режим autocommit восстанавливается перед возвратом
+    private <T> T inNewTransaction(SessionFactory sessionFactory, boolean write, SqlWork<T> work)
+            throws SQLException {
+        ConnectionProvider provider = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+                .getService(ConnectionProvider.class);
+        long started = System.nanoTime();
+        Connection connection = provider.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            Deadline deadline = Deadline.current();
+            if (deadline != null) {
+                deadline.applyTo(connection);
+            }
+            long opened = System.nanoTime();
+            T result = work.execute(connection);
+            long worked = System.nanoTime();
+            try (Span ignored = Tracing.span("commit")) {
+                connection.commit();
+            }
+            OperationRecorder.addTimings(opened - started, worked - opened, System.nanoTime() - worked);
+            if (write) {
+                router.markWrite();
+            }
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            if (Deadline.isExceeded(e)) {
+                throw Deadline.exceeded(e);
+            }
+            throw e;
+        } finally {
+            try {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            } finally {
+                provider.closeConnection(connection);
+            }
+        }
+    }
+
+    // Драйвер находит уже подготовленное на этом соединении выражение по тексту запроса
+    private static PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+        return statement;
+    }
+
+    private static int bindFields(PreparedStatement statement, int index, User user) throws SQLException {
+        statement.setString(index++, user.getName());
+        statement.setString(index++, user.getEmail());
+        statement.setString(index++, EmailNormalizer.normalize(user.getEmail()));
+        if (user.getAge() != null) {
+            statement.setInt(index++, user.getAge());
+        } else {
+            statement.setNull(index++, Types.INTEGER);
+        }
+        statement.setTimestamp(index++, Timestamp.valueOf(user.getCreatedAt()));
+        return index;
+    }
+
+    // null — запрос не затронул ни одной строки
+    private static Long readVersion(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : null;
+        }
+    }
+
+    private static List<User> readUsers(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            List<User> users = new ArrayList<>();
+            if (!resultSet.next()) {
+                return users;
+            }
+            // Номера колонок ищутся один раз на выборку: запросы с u.* возвращают их в порядке таблицы
+            int id = resultSet.findColumn("id");
+            int name = resultSet.findColumn("name");
+            int email = resultSet.findColumn("email");
+            int age = resultSet.findColumn("age");
+            int createdAt = resultSet.findColumn("created_at");
+            int version = resultSet.findColumn("version");
+            do {
+                User user = new User();
+                user.setId(resultSet.getLong(id));
+                user.setName(resultSet.getString(name));
+                user.setEmail(resultSet.getString(email));
+                int ageValue = resultSet.getInt(age);
+                user.setAge(resultSet.wasNull() ? null : ageValue);
+                user.setCreatedAt(resultSet.getTimestamp(createdAt).toLocalDateTime());
+                user.setVersion(resultSet.getLong(version));
+                users.add(user);
+            } while (resultSet.next());
+            return users;
+        }
+    }
+
+    private interface SqlWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+}
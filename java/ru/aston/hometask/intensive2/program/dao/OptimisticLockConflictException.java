@@ -0,0 +1,9 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+// Строка изменена другой транзакцией после того, как была прочитана: обновление не применено
+public class OptimisticLockConflictException extends RuntimeException {
+
+    public OptimisticLockConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
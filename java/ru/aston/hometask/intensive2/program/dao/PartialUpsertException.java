@@ -0,0 +1,27 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collections;
+import java.util.List;
+
+// Пачка upsertAll применена не целиком: applied — сохранённые строки, failed — входные записи, которые не прошли
+public class PartialUpsertException extends RuntimeException {
+
+    private final List<User> applied;
+    private final List<User> failed;
+
+    public PartialUpsertException(List<User> applied, List<User> failed, Throwable cause) {
+        super("Upserted " + applied.size() + " users, " + failed.size() + " failed", cause);
+        this.applied = Collections.unmodifiableList(applied);
+        this.failed = Collections.unmodifiableList(failed);
+    }
+
+    public List<User> getApplied() {
+        return applied;
+    }
+
+    public List<User> getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.model.UserEmailRoute;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Онлайн-перенос строк между шардами после изменения состава кольца.
+ * Пока идёт перенос, ShardedUserDao пишет по новому кольцу, а читает у нового и у прежнего владельца.
+ * Строки переносятся небольшими батчами: батч блокируется на источнике (FOR UPDATE),
+ * копируется на целевой шард и только после коммита там удаляется из источника.
+ */
+public class ShardRebalancer {
+
+    private static final Logger logger = LogManager.getLogger(ShardRebalancer.class);
+
+    private final ShardedUserDao userDao;
+    private final int batchSize;
+
+    public ShardRebalancer(ShardedUserDao userDao, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.userDao = userDao;
+        this.batchSize = batchSize;
+    }
+
+    public long rebalance(Map<String, SessionFactory> newShards) {
+        Map<String, SessionFactory> oldShards = new LinkedHashMap<>(userDao.getShards());
+        userDao.beginMigration(newShards);
+        ConsistentHashRing ring = userDao.getRing();
+        Map<String, SessionFactory> allShards = userDao.getShards();
+
+        long moved = 0;
+        for (Map.Entry<String, SessionFactory> source : oldShards.entrySet()) {
+            moved += moveUsers(source.getKey(), source.getValue(), ring, allShards);
+            moveRoutes(source.getKey(), source.getValue(), ring, allShards);
+        }
+        userDao.completeMigration(newShards);
+        logger.info("Resharding moved {} users", moved);
+        return moved;
+    }
+
+    private long moveUsers(String sourceName, SessionFactory source, ConsistentHashRing ring,
+                           Map<String, SessionFactory> shards) {
+        long moved = 0;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            long after = afterId;
+            List<Long> ids = Transactions.inSession(source, session -> session
+                    .createQuery("select u.id from User u where u.id > :afterId order by u.id", Long.class)
+                    .setParameter("afterId", after)
+                    .setMaxResults(batchSize)
+                    .list());
+            if (ids.isEmpty()) {
+                return moved;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            Map<String, List<Long>> byTarget = new LinkedHashMap<>();
+            for (Long id : ids) {
+                String target = ring.nodeFor(id);
+                if (!target.equals(sourceName)) {
+                    byTarget.computeIfAbsent(target, key -> new ArrayList<>()).add(id);
+                }
+            }
+            for (Map.Entry<String, List<Long>> target : byTarget.entrySet()) {
+                moved += moveUserBatch(source, shards.get(target.getKey()), target.getValue());
+            }
+        }
+    }
+
+    private int moveUserBatch(SessionFactory source, SessionFactory target, List<Long> ids) {
+        return Transactions.inTransaction(source, sourceSession -> {
+            List<User> users = sourceSession
+                    .createQuery("from User where id in :ids", User.class)
+                    .setParameter("ids", ids)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .list();
+            Transactions.inTransaction(target, targetSession -> {
+                for (User user : users) {
+                    if (targetSession.get(User.class, user.getId()) == null) {
+                        targetSession.save(new User(user));
+                    }
+                }
+                return null;
+            });
+            users.forEach(sourceSession::delete);
+            return users.size();
+        });
+    }
+
+    private void moveRoutes(String sourceName, SessionFactory source, ConsistentHashRing ring,
+                            Map<String, SessionFactory> shards) {
+        String afterEmail = "";
+        while (true) {
+            String after = afterEmail;
+            List<String> emails = Transactions.inSession(source, session -> session
+                    .createQuery("select r.email from UserEmailRoute r where r.email > :afterEmail order by r.email",
+                            String.class)
+                    .setParameter("afterEmail", after)
+                    .setMaxResults(batchSize)
+                    .list());
+            if (emails.isEmpty()) {
+                return;
+            }
+            afterEmail = emails.get(emails.size() - 1);
+
+            Map<String, List<String>> byTarget = new LinkedHashMap<>();
+            for (String email : emails) {
+                String target = ring.nodeFor(email);
+                if (!target.equals(sourceName)) {
+                    byTarget.computeIfAbsent(target, key -> new ArrayList<>()).add(email);
+                }
+            }
+            for (Map.Entry<String, List<String>> target : byTarget.entrySet()) {
+                moveRouteBatch(source, shards.get(target.getKey()), target.getValue());
+            }
+        }
+    }
+
+    private void moveRouteBatch(SessionFactory source, SessionFactory target, List<String> emails) {
+        Transactions.inTransaction(source, sourceSession -> {
+            List<UserEmailRoute> routes = sourceSession
+                    .createQuery("from UserEmailRoute where email in :emails", UserEmailRoute.class)
+                    .setParameter("emails", emails)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .list();
+            Transactions.inTransaction(target, targetSession -> {
+                for (UserEmailRoute route : routes) {
+                    if (targetSession.get(UserEmailRoute.class, route.getEmail()) == null) {
+                        targetSession.save(new UserEmailRoute(route.getEmail(), route.getUserId()));
+                    }
+                }
+                return null;
+            });
+            routes.forEach(sourceSession::delete);
+            return null;
+        });
+    }
+}
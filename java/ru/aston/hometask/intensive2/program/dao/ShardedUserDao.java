@@ -0,0 +1,547 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.LockMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.model.UserEmailRoute;
+import ru.aston.hometask.intensive2.program.util.Deadline;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.SnowflakeIdGenerator;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Распределяет пользователей по шардам консистентным хешем id.
+ * Индекс email -> id хранится в user_email_routes на шарде, выбранном хешем email.
+ */
+public class ShardedUserDao implements UserDao, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ShardedUserDao.class);
+
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final int MAX_HOLDER_ATTEMPTS = 3;
+
+    private static final class Topology {
+        final Map<String, SessionFactory> shards;
+        final ConsistentHashRing ring;
+        // Не null, пока идёт решардинг: чтения проверяют и прежнего владельца
+        final ConsistentHashRing previousRing;
+
+        Topology(Map<String, SessionFactory> shards, ConsistentHashRing ring, ConsistentHashRing previousRing) {
+            this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+            this.ring = ring;
+            this.previousRing = previousRing;
+        }
+    }
+
+    private final int virtualNodes;
+    private final SnowflakeIdGenerator idGenerator;
+    private final ExecutorService executor;
+    private volatile Topology topology;
+
+    public ShardedUserDao(Map<String, SessionFactory> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES, SnowflakeIdGenerator.getDefault());
+    }
+
+    public ShardedUserDao(Map<String, SessionFactory> shards, int virtualNodes, SnowflakeIdGenerator idGenerator) {
+        this.virtualNodes = virtualNodes;
+        this.idGenerator = idGenerator;
+        this.topology = new Topology(shards, new ConsistentHashRing(shards.keySet(), virtualNodes), null);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, shards.size()), r -> {
+            Thread thread = new Thread(r, "user-shard-query-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        try {
+            User user = loadUser(topology, id);
+            if (user != null) {
+                logger.info("User found with id: {}", id);
+                return Optional.of(user);
+            } else {
+                logger.warn("User not found with id: {}", id);
+                return Optional.empty();
+            }
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding user by id: {}", id, e);
+            throw new RuntimeException("Error finding user by id", e);
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        try {
+            List<User> users = scatterGather(session -> session.createQuery("from User", User.class).list(),
+                    Integer.MAX_VALUE);
+            logger.info("Found {} users across {} shards", users.size(), topology.shards.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding all users", e);
+            throw new RuntimeException("Error finding all users", e);
+        }
+    }
+
+    // Каждый шард получает только свои id одним запросом; запросы к шардам идут параллельно
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Topology current = topology;
+        try {
+            Map<String, List<Long>> byShard = new HashMap<>();
+            for (Long id : ids) {
+                for (String shard : owners(current, id)) {
+                    byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(id);
+                }
+            }
+            List<CompletableFuture<List<User>>> futures = new ArrayList<>(byShard.size());
+            for (Map.Entry<String, List<Long>> entry : byShard.entrySet()) {
+                SessionFactory shard = current.shards.get(entry.getKey());
+                futures.add(CompletableFuture.supplyAsync(Deadline.propagate(() -> Transactions.inSession(shard,
+                        session -> session
+                                .createQuery("from User u where u.id in (:ids)", User.class)
+                                .setParameterList("ids", entry.getValue())
+                                .list())), executor));
+            }
+            Map<Long, User> merged = new TreeMap<>();
+            for (CompletableFuture<List<User>> future : futures) {
+                for (User user : future.join()) {
+                    merged.putIfAbsent(user.getId(), user);
+                }
+            }
+            logger.info("Found {} of {} users by id across {} shards", merged.size(), ids.size(), byShard.size());
+            return new ArrayList<>(merged.values());
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding users by id", e);
+            throw new RuntimeException("Error finding users by id", e);
+        }
+    }
+
+    // Keyset-пагинация по id: каждый шард отдаёт не больше limit строк, результат сливается по id
+    public List<User> findPage(Long afterId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        long after = afterId != null ? afterId : Long.MIN_VALUE;
+        try {
+            return scatterGather(session -> session
+                    .createQuery("from User where id > :afterId order by id", User.class)
+                    .setParameter("afterId", after)
+                    .setMaxResults(limit)
+                    .list(), limit);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding users page after id: {}", afterId, e);
+            throw new RuntimeException("Error finding users page", e);
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        Topology current = topology;
+        if (user.getId() == null) {
+            user.setId(idGenerator.nextId());
+        }
+        try {
+            if (findRoute(current, user.getEmail()) != null) {
+                throw new IllegalStateException("Email route already exists: " + user.getEmail());
+            }
+            // Маршрут пишется первым: первичный ключ по email гарантирует глобальную уникальность
+            insertRoute(current, user.getEmail(), user.getId());
+            try {
+                Transactions.inTransaction(current.shards.get(current.ring.nodeFor(user.getId())),
+                        session -> session.save(user));
+            } catch (RuntimeException e) {
+                deleteRoute(current, user.getEmail());
+                throw e;
+            }
+            logger.info("User saved successfully with id: {}", user.getId());
+            return user;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error saving user: {}", user.getEmail(), e);
+            throw new RuntimeException("Error saving user", e);
+        }
+    }
+
+    @Override
+    public User update(User user) {
+        try {
+            // Решардинг мог перенести строку между поиском шарда и блокировкой: тогда шард ищется заново
+            for (int attempt = 0; attempt < MAX_HOLDER_ATTEMPTS; attempt++) {
+                Topology current = topology;
+                for (String shard : owners(current, user.getId())) {
+                    User updatedUser = updateOnShard(current, shard, user);
+                    if (updatedUser != null) {
+                        logger.info("User updated successfully with id: {}", updatedUser.getId());
+                        return updatedUser;
+                    }
+                }
+            }
+            throw new IllegalStateException("User not found with id: " + user.getId());
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            if (UserDaoImpl.isStaleState(e)) {
+                logger.warn("Concurrent update conflict for user id: {}", user.getId());
+                throw new OptimisticLockConflictException(
+                        "User was modified concurrently, id: " + user.getId(), e);
+            }
+            logger.error("Error updating user with id: {}", user.getId(), e);
+            throw new RuntimeException("Error updating user", e);
+        }
+    }
+
+    // Строка читается под FOR UPDATE в той же транзакции, что и merge: ShardRebalancer берёт ту же блокировку,
+    // поэтому не перенесёт строку посреди обновления. null — строки на этом шарде нет
+    private User updateOnShard(Topology current, String shard, User user) {
+        String[] previousEmail = new String[1];
+        boolean[] routeAdded = new boolean[1];
+        User updatedUser;
+        try {
+            updatedUser = Transactions.inTransaction(current.shards.get(shard), session -> {
+                User stored = session.get(User.class, user.getId(), LockMode.PESSIMISTIC_WRITE);
+                if (stored == null) {
+                    return null;
+                }
+                previousEmail[0] = stored.getEmail();
+                if (!EmailNormalizer.normalize(stored.getEmail()).equals(EmailNormalizer.normalize(user.getEmail()))) {
+                    insertRoute(current, user.getEmail(), user.getId());
+                    routeAdded[0] = true;
+                }
+                return (User) session.merge(user);
+            });
+        } catch (RuntimeException e) {
+            if (routeAdded[0]) {
+                deleteRoute(current, user.getEmail());
+            }
+            throw e;
+        }
+        if (routeAdded[0]) {
+            deleteRoute(current, previousEmail[0]);
+        }
+        return updatedUser;
+    }
+
+    // Маршрут email -> id и строка пользователя живут на разных шардах, поэтому один ON CONFLICT
+    // здесь невозможен: запись сводится к save или update по найденному маршруту
+    @Override
+    public User upsertByEmail(User user) {
+        UserEmailRoute route = findRoute(topology, user.getEmail());
+        if (route == null) {
+            User created = new User(user);
+            created.setId(null);
+            created.setVersion(null);
+            try {
+                return save(created);
+            } catch (RuntimeException e) {
+                // Параллельная вставка того же email успела раньше — дальше это обновление
+                route = findRoute(topology, user.getEmail());
+                if (route == null) {
+                    throw e;
+                }
+            }
+        }
+        User stored = loadUser(topology, route.getUserId());
+        if (stored == null) {
+            throw new IllegalStateException("Email route points to missing user id: " + route.getUserId());
+        }
+        if (Objects.equals(stored.getName(), user.getName()) && Objects.equals(stored.getEmail(), user.getEmail())
+                && Objects.equals(stored.getAge(), user.getAge())) {
+            return stored;
+        }
+        stored.setName(user.getName());
+        stored.setEmail(user.getEmail());
+        stored.setAge(user.getAge());
+        return update(stored);
+    }
+
+    // Общей транзакции на несколько шардов нет: каждая запись применяется отдельно, сбой одной не откатывает
+    // остальные, а вызывающий получает список применённых и отклонённых записей
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        List<User> stored = new ArrayList<>();
+        List<User> failed = new ArrayList<>();
+        RuntimeException failure = null;
+        for (User user : UserUpsertSql.deduplicate(users)) {
+            try {
+                stored.add(upsertByEmail(user));
+            } catch (RuntimeException e) {
+                logger.error("Error upserting user with email: {}", user.getEmail(), e);
+                failed.add(user);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new PartialUpsertException(stored, failed, failure);
+        }
+        logger.info("Upserted {} users across {} shards", stored.size(), topology.shards.size());
+        return stored;
+    }
+
+    @Override
+    public void delete(Long id) {
+        Topology current = topology;
+        String holder;
+        try {
+            holder = findHoldingShard(current, id);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error deleting user with id: {}", id, e);
+            throw new RuntimeException("Error deleting user", e);
+        }
+        if (holder == null) {
+            logger.warn("Attempt to delete non-existing user with id: {}", id);
+            throw new IllegalArgumentException("User not found with id: " + id);
+        }
+        try {
+            String email = Transactions.inTransaction(current.shards.get(holder), session -> {
+                User user = session.get(User.class, id);
+                session.delete(user);
+                return user.getEmail();
+            });
+            deleteRoute(current, email);
+            logger.info("User deleted successfully with id: {}", id);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error deleting user with id: {}", id, e);
+            throw new RuntimeException("Error deleting user", e);
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        try {
+            UserEmailRoute route = findRoute(topology, email);
+            User user = route != null ? loadUser(topology, route.getUserId()) : null;
+            if (user != null) {
+                logger.info("User found with email: {}", email);
+                return Optional.of(user);
+            } else {
+                logger.info("User not found with email: {}", email);
+                return Optional.empty();
+            }
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding user by email: {}", email, e);
+            throw new RuntimeException("Error finding user by email", e);
+        }
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        try {
+            UserEmailRoute route = findRoute(topology, email);
+            boolean exists = route != null && !route.getUserId().equals(excludeUserId);
+            logger.info("Email {} exists for other users: {}", email, exists);
+            return exists;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error checking email existence: {}", email, e);
+            throw new RuntimeException("Error checking email existence", e);
+        }
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        try {
+            UserQuerySql querySql = UserQuerySql.build(query);
+            List<User> users = scatterGather(session -> querySql.toNativeQuery(session).list(),
+                    query.comparator(), query.getLimit());
+            logger.info("Found {} users by query across {} shards", users.size(), topology.shards.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding users by query", e);
+            throw new RuntimeException("Error finding users by query", e);
+        }
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        UserNameSearch search = UserNameSearch.of(fragment, limit);
+        try {
+            List<User> users = scatterGather(session -> search.toNativeQuery(session).list(),
+                    search.comparator(), search.getLimit());
+            logger.info("Found {} users by name fragment across {} shards", users.size(), topology.shards.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error searching users by name fragment: {}", fragment, e);
+            throw new RuntimeException("Error searching users by name", e);
+        }
+    }
+
+    // Распределённых транзакций нет: каждая операция внутри work фиксируется на своём шарде отдельно,
+    // как и вне inTransaction
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        return work.apply(this);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    Map<String, SessionFactory> getShards() {
+        return topology.shards;
+    }
+
+    ConsistentHashRing getRing() {
+        return topology.ring;
+    }
+
+    synchronized void beginMigration(Map<String, SessionFactory> newShards) {
+        Topology current = topology;
+        if (current.previousRing != null) {
+            throw new IllegalStateException("Resharding is already in progress");
+        }
+        Map<String, SessionFactory> allShards = new LinkedHashMap<>(current.shards);
+        allShards.putAll(newShards);
+        topology = new Topology(allShards, new ConsistentHashRing(newShards.keySet(), virtualNodes), current.ring);
+        logger.info("Resharding started: {} -> {}", current.ring.getNodes(), newShards.keySet());
+    }
+
+    synchronized void completeMigration(Map<String, SessionFactory> newShards) {
+        topology = new Topology(newShards, topology.ring, null);
+        logger.info("Resharding completed: {}", newShards.keySet());
+    }
+
+    private User loadUser(Topology current, Long id) {
+        for (String shard : owners(current, id)) {
+            User user = Transactions.inSession(current.shards.get(shard), session -> session.get(User.class, id));
+            if (user != null) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private String findHoldingShard(Topology current, Long id) {
+        for (String shard : owners(current, id)) {
+            User user = Transactions.inSession(current.shards.get(shard), session -> session.get(User.class, id));
+            if (user != null) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    private List<String> owners(Topology current, long id) {
+        String owner = current.ring.nodeFor(id);
+        if (current.previousRing == null || current.previousRing.nodeFor(id).equals(owner)) {
+            return Collections.singletonList(owner);
+        }
+        List<String> owners = new ArrayList<>(2);
+        owners.add(owner);
+        owners.add(current.previousRing.nodeFor(id));
+        return owners;
+    }
+
+    // Все методы работы с маршрутами принимают email как есть и ключуют его канонической формой
+    private List<String> routeOwners(Topology current, String email) {
+        String owner = current.ring.nodeFor(email);
+        if (current.previousRing == null || current.previousRing.nodeFor(email).equals(owner)) {
+            return Collections.singletonList(owner);
+        }
+        List<String> owners = new ArrayList<>(2);
+        owners.add(owner);
+        owners.add(current.previousRing.nodeFor(email));
+        return owners;
+    }
+
+    private UserEmailRoute findRoute(Topology current, String email) {
+        String key = EmailNormalizer.normalize(email);
+        for (String shard : routeOwners(current, key)) {
+            UserEmailRoute route = Transactions.inSession(current.shards.get(shard),
+                    session -> session.get(UserEmailRoute.class, key));
+            if (route != null) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void insertRoute(Topology current, String email, Long userId) {
+        String key = EmailNormalizer.normalize(email);
+        Transactions.inTransaction(current.shards.get(current.ring.nodeFor(key)),
+                session -> session.save(new UserEmailRoute(key, userId)));
+    }
+
+    private void deleteRoute(Topology current, String email) {
+        String key = EmailNormalizer.normalize(email);
+        for (String shard : routeOwners(current, key)) {
+            Transactions.inTransaction(current.shards.get(shard), session -> session
+                    .createQuery("delete from UserEmailRoute where email = :email")
+                    .setParameter("email", key)
+                    .executeUpdate());
+        }
+    }
+
+    private List<User> scatterGather(Function<Session, List<User>> query, int limit) {
+        return scatterGather(query, Comparator.comparing(User::getId), limit);
+    }
+
+    private List<User> scatterGather(Function<Session, List<User>> query, Comparator<User> order, int limit) {
+        Topology current = topology;
+        List<CompletableFuture<List<User>>> futures = new ArrayList<>(current.shards.size());
+        for (SessionFactory shard : current.shards.values()) {
+            futures.add(CompletableFuture.supplyAsync(
+                    Deadline.propagate(() -> Transactions.inSession(shard, query)), executor));
+        }
+        // Дубликаты возможны для строк, которые решардинг уже скопировал, но ещё не удалил
+        Map<Long, User> merged = new HashMap<>();
+        for (CompletableFuture<List<User>> future : futures) {
+            for (User user : future.join()) {
+                merged.putIfAbsent(user.getId(), user);
+            }
+        }
+        List<User> users = new ArrayList<>(merged.values());
+        users.sort(order);
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+}
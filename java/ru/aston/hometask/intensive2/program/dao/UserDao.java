@@ -2,14 +2,19 @@ package ru.aston.hometask.intensive2.program.dao;
 
 import ru.aston.hometask.intensive2.program.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 public interface UserDao {
     Optional<User> findById(Long id);
 
     List<User> findAll();
 
+    // Найденные пользователи по возрастанию id; отсутствующие id пропускаются
+    List<User> findAllById(Collection<Long> ids);
+
     User save(User user);
 
     User update(User user);
@@ -19,4 +24,24 @@ public interface UserDao {
     Optional<User> findByEmail(String email);
 
     boolean isEmailExistsForOtherUser(String email, Long excludeUserId);
+
+    List<User> findByQuery(UserQuery query);
+
+    List<User> searchByName(String fragment, int limit);
+
+    // Вставка или обновление по email за один запрос; возвращает сохранённую строку
+    User upsertByEmail(User user);
+
+    // Результат — по одной строке на каждый различный email, в порядке первого появления. Пачка применяется
+    // целиком или никак; исключение — ShardedUserDao, который пишет построчно и при частичном сбое
+    // бросает PartialUpsertException со списком применённых строк
+    List<User> upsertAll(Collection<User> users);
+
+    // Все вызовы DAO внутри work идут в одной сессии и фиксируются одним коммитом
+    <T> T inTransaction(Function<UserDao, T> work);
+
+    // true — update() только ставит изменение в очередь; транзакция вокруг него заставила бы сбросить очередь
+    default boolean supportsDeferredUpdates() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -3,24 +3,54 @@ package ru.aston.hometask.intensive2.program.dao;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
+import org.hibernate.StaleStateException;
 import org.hibernate.Transaction;
+import org.hibernate.exception.JDBCConnectionException;
 import org.hibernate.query.Query;
+import ru.aston.hometask.intensive2.program.jfr.OperationRecorder;
 import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.trace.Span;
+import ru.aston.hometask.intensive2.program.trace.Tracing;
+import ru.aston.hometask.intensive2.program.util.DataSourceRouter;
+import ru.aston.hometask.intensive2.program.util.Deadline;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
 import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+import ru.aston.hometask.intensive2.program.util.SnowflakeIdGenerator;
 
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 public class UserDaoImpl implements UserDao {
 
     private static final Logger logger = LogManager.getLogger(UserDaoImpl.class);
 
+    // Вторая ветка нужна, пока EmailNormalizationMigration не заполнила email_normalized у старых строк
+    private static final String BY_EMAIL_HQL =
+            "from User u where u.emailNormalized = :email or (u.emailNormalized is null and u.email = :rawEmail)";
+
+    // null — сводная статистика не ведётся
+    private final UserStatsSummary statsSummary;
+    // Сессия открытой единицы работы (inTransaction) текущего потока
+    private final ThreadLocal<Session> currentSession = new ThreadLocal<>();
+
+    public UserDaoImpl() {
+        this(null);
+    }
+
+    public UserDaoImpl(UserStatsSummary statsSummary) {
+        this.statsSummary = statsSummary;
+    }
+
     @Override
     public Optional<User> findById(Long id) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            User user = session.get(User.class, id);
+            User user = executeRead(session -> session.get(User.class, id));
 
             if (user != null) {
                 logger.info("User found with id: {}", id);
@@ -29,130 +59,115 @@ public class UserDaoImpl implements UserDao {
                 logger.warn("User not found with id: {}", id);
                 return Optional.empty();
             }
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error finding user by id: {}", id, e);
             throw new RuntimeException("Error finding user by id", e);
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
 
     @Override
     public List<User> findAll() {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            List<User> users = session.createQuery("from User", User.class).list();
+            List<User> users = executeRead(session -> session.createQuery("from User", User.class).list());
 
             logger.info("Found {} users", users.size());
             return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error finding all users", e);
             throw new RuntimeException("Error finding all users", e);
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
 
     @Override
-    public User save(User user) {
-        Transaction transaction = null;
-        Session session = null;
+    public List<User> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
+            List<User> users = executeRead(session -> session
+                    .createQuery("from User u where u.id in (:ids) order by u.id", User.class)
+                    .setParameterList("ids", ids)
+                    .list());
 
-            session.save(user);
-            transaction.commit();
+            logger.info("Found {} of {} users by id", users.size(), ids.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding {} users by id", ids.size(), e);
+            throw new RuntimeException("Error finding users by id", e);
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        try {
+            executeWrite(session -> session.save(user));
 
             logger.info("User saved successfully with id: {}", user.getId());
             return user;
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
-            if (transaction != null && transaction.isActive()) {
-                transaction.rollback();
-            }
             logger.error("Error saving user: {}", user.getEmail(), e);
             throw new RuntimeException("Error saving user", e);
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
 
     @Override
     public User update(User user) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-
-            User updatedUser = (User) session.merge(user);
-            transaction.commit();
+            User updatedUser = executeWrite(session -> (User) session.merge(user));
 
             logger.info("User updated successfully with id: {}", updatedUser.getId());
             return updatedUser;
+        } catch (OptimisticLockConflictException | DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
-            if (transaction != null && transaction.isActive()) {
-                transaction.rollback();
+            if (isStaleState(e)) {
+                logger.warn("Concurrent update conflict for user id: {}", user.getId());
+                throw new OptimisticLockConflictException(
+                        "User was modified concurrently, id: " + user.getId(), e);
             }
             logger.error("Error updating user with id: {}", user.getId(), e);
             throw new RuntimeException("Error updating user", e);
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
 
     @Override
     public void delete(Long id) {
-        Transaction transaction = null;
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-
-            User user = session.get(User.class, id);
-            if (user != null) {
+            executeWrite(session -> {
+                User user = session.get(User.class, id);
+                if (user == null) {
+                    logger.warn("Attempt to delete non-existing user with id: {}", id);
+                    throw new IllegalArgumentException("User not found with id: " + id);
+                }
                 session.delete(user);
-                logger.info("User deleted successfully with id: {}", id);
-            } else {
-                logger.warn("Attempt to delete non-existing user with id: {}", id);
-                throw new IllegalArgumentException("User not found with id: " + id);
-            }
-            transaction.commit();
-        } catch (IllegalArgumentException e) {
-            if (transaction != null && transaction.isActive()) {
-                transaction.rollback();
-            }
+                return null;
+            });
+            logger.info("User deleted successfully with id: {}", id);
+        } catch (IllegalArgumentException | DeadlineExceededException e) {
             throw e;
         } catch (Exception e) {
-            if (transaction != null && transaction.isActive()) {
-                transaction.rollback();
-            }
             logger.error("Error deleting user with id: {}", id, e);
             throw new RuntimeException("Error deleting user", e);
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
 
     @Override
     public Optional<User> findByEmail(String email) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query<User> query = session.createQuery("from User where email = :email", User.class);
-            query.setParameter("email", email);
-            User user = query.uniqueResult();
+            User user = executeRead(session -> {
+                Query<User> query = session.createQuery(BY_EMAIL_HQL, User.class);
+                query.setParameter("email", EmailNormalizer.normalize(email));
+                query.setParameter("rawEmail", email);
+                return query.uniqueResult();
+            });
 
             if (user != null) {
                 logger.info("User found with email: {}", email);
@@ -161,39 +176,251 @@ public class UserDaoImpl implements UserDao {
                 logger.info("User not found with email: {}", email);
                 return Optional.empty();
             }
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error finding user by email: {}", email, e);
             throw new RuntimeException("Error finding user by email", e);
-        } finally {
-            if (session != null) {
-                session.close();
-            }
         }
     }
 
     @Override
     public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
-        Session session = null;
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query<Long> query = session.createQuery(
-                    "select count(u) from User u where u.email = :email and u.id != :excludeId",
-                    Long.class
-            );
-            query.setParameter("email", email);
-            query.setParameter("excludeId", excludeUserId);
-            Long count = query.uniqueResult();
+            // Проверка уникальности идёт на primary: отставание реплики здесь недопустимо
+            Long count = executeOnPrimary(session -> {
+                Query<Long> query = session.createQuery(
+                        "select count(u) from User u where (u.emailNormalized = :email"
+                                + " or (u.emailNormalized is null and u.email = :rawEmail)) and u.id != :excludeId",
+                        Long.class
+                );
+                query.setParameter("email", EmailNormalizer.normalize(email));
+                query.setParameter("rawEmail", email);
+                query.setParameter("excludeId", excludeUserId);
+                return query.uniqueResult();
+            });
 
             boolean exists = count != null && count > 0;
             logger.info("Email {} exists for other users: {}", email, exists);
             return exists;
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error checking email existence: {}", email, e);
             throw new RuntimeException("Error checking email existence", e);
+        }
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        try {
+            UserQuerySql querySql = UserQuerySql.build(query);
+            List<User> users = executeRead(session -> querySql.toNativeQuery(session).list());
+
+            logger.info("Found {} users by query", users.size());
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error finding users by query", e);
+            throw new RuntimeException("Error finding users by query", e);
+        }
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        UserNameSearch search = UserNameSearch.of(fragment, limit);
+        try {
+            List<User> users = executeRead(session -> search.toNativeQuery(session).list());
+
+            logger.info("Found {} users by name fragment: {}", users.size(), fragment);
+            return users;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error searching users by name fragment: {}", fragment, e);
+            throw new RuntimeException("Error searching users by name", e);
+        }
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return upsertAll(Collections.singletonList(user)).get(0);
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        List<User> records = UserUpsertSql.deduplicate(users);
+        if (records.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<User> stored = executeWrite(session -> {
+                // Внутри единицы работы несброшенные изменения сессии должны лечь раньше JDBC-запроса
+                session.flush();
+                return session.doReturningWork(connection ->
+                        UserUpsertSql.execute(connection, records, SnowflakeIdGenerator.getDefault(),
+                                statsSummary != null ? statsSummary.changeListener(session) : null));
+            });
+
+            logger.info("Upserted {} users", stored.size());
+            return stored;
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error upserting {} users", records.size(), e);
+            throw new RuntimeException("Error upserting users", e);
+        }
+    }
+
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        if (currentSession.get() != null) {
+            // Вложенный вызов присоединяется к внешней транзакции
+            return work.apply(this);
+        }
+        return inNewTransaction(session -> {
+            currentSession.set(session);
+            try {
+                T result = work.apply(this);
+                // Накопленные изменения сбрасываются на коммите — тоже в пределах оставшегося срока
+                if (Deadline.current() != null) {
+                    session.doWork(Deadline::applyCurrent);
+                }
+                return result;
+            } finally {
+                currentSession.remove();
+            }
+        });
+    }
+
+    private <T> T executeWrite(Function<Session, T> work) {
+        Session session = currentSession.get();
+        return session != null ? inUnitOfWork(session, work) : inNewTransaction(work);
+    }
+
+    // statement_timeout переустанавливается по оставшемуся сроку перед каждым вызовом внутри единицы работы
+    private static <T> T inUnitOfWork(Session session, Function<Session, T> work) {
+        try {
+            if (Deadline.current() != null) {
+                session.doWork(Deadline::applyCurrent);
+            }
+            return work.apply(session);
+        } catch (RuntimeException e) {
+            throw Deadline.isExceeded(e) ? Deadline.exceeded(e) : e;
+        }
+    }
+
+    private <T> T inNewTransaction(Function<Session, T> work) {
+        Transaction transaction = null;
+        Session session = null;
+        try {
+            long started = System.nanoTime();
+            session = statsSummary != null
+                    ? statsSummary.openSession()
+                    : HibernateUtil.getSessionFactory().openSession();
+            // Соединение из пула Hibernate берёт в beginTransaction: оно входит во время открытия сессии
+            transaction = session.beginTransaction();
+            Deadline deadline = Deadline.current();
+            if (deadline != null) {
+                session.doWork(deadline::applyTo);
+            }
+            long opened = System.nanoTime();
+            T result = work.apply(session);
+            long worked = System.nanoTime();
+            try (Span ignored = Tracing.span("commit")) {
+                transaction.commit();
+            }
+            OperationRecorder.addTimings(opened - started, worked - opened, System.nanoTime() - worked);
+            HibernateUtil.getRouter().markWrite();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            // Внутри единицы работы версия проверяется при flush на коммите, а не в merge
+            if (isStaleState(e) && !(e instanceof OptimisticLockConflictException)) {
+                logger.warn("Concurrent update conflict detected on commit");
+                throw new OptimisticLockConflictException("User was modified concurrently", e);
+            }
+            throw Deadline.isExceeded(e) ? Deadline.exceeded(e) : e;
         } finally {
             if (session != null) {
                 session.close();
             }
         }
     }
-}
\ No newline at end of file
+
+    private <T> T executeOnPrimary(Function<Session, T> work) {
+        Session session = currentSession.get();
+        if (session != null) {
+            return inUnitOfWork(session, work);
+        }
+        long started = System.nanoTime();
+        try (Session primary = HibernateUtil.getSessionFactory().openSession()) {
+            return timed(started, primary, work);
+        }
+    }
+
+    // Внутри единицы работы чтения идут через её сессию: реплика не видит незакоммиченные изменения
+    private <T> T executeRead(Function<Session, T> work) {
+        Session unitOfWork = currentSession.get();
+        if (unitOfWork != null) {
+            return inUnitOfWork(unitOfWork, work);
+        }
+        DataSourceRouter router = HibernateUtil.getRouter();
+        DataSourceRouter.Node replica = router.selectReadNode();
+        if (replica != null) {
+            long start = System.nanoTime();
+            try (Session session = replica.getSessionFactory().openSession()) {
+                T result = timed(start, session, work);
+                router.recordSuccess(replica, System.nanoTime() - start);
+                return result;
+            } catch (JDBCConnectionException e) {
+                router.recordFailure(replica);
+                logger.warn("Read replica {} is unavailable, falling back to primary", replica.getName(), e);
+            }
+        }
+        long started = System.nanoTime();
+        try (Session session = router.getPrimary().openSession()) {
+            return timed(started, session, work);
+        }
+    }
+
+    // Чтение вне транзакции: соединение берётся лениво, при первом запросе, и попадает во время работы
+    private static <T> T timed(long started, Session session, Function<Session, T> work) {
+        long opened = System.nanoTime();
+        T result = readWithDeadline(session, work);
+        OperationRecorder.addTimings(opened - started, System.nanoTime() - opened, 0);
+        return result;
+    }
+
+    // Со сроком чтение идёт в короткой транзакции: SET LOCAL statement_timeout действует только внутри неё
+    private static <T> T readWithDeadline(Session session, Function<Session, T> work) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return work.apply(session);
+        }
+        Transaction transaction = session.beginTransaction();
+        try {
+            session.doWork(deadline::applyTo);
+            T result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw Deadline.isExceeded(e) ? Deadline.exceeded(e) : e;
+        }
+    }
+
+    static boolean isStaleState(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StaleStateException || cause instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Поиск по фрагменту имени для {@link UserDao#searchByName(String, int)}.
+ * ILIKE '%fragment%' обслуживается GIN-индексом pg_trgm ({@link UserNameSearchIndex}); фрагмент короче трёх символов
+ * не даёт ни одной триграммы и вырождается в полный скан, поэтому такие запросы отклоняются.
+ * Ранжирование: точное совпадение, затем начало имени, начало слова, вхождение; внутри — короче имя, затем id.
+ */
+final class UserNameSearch {
+
+    static final int MIN_FRAGMENT_LENGTH = 3;
+    static final int MAX_LIMIT = 100;
+
+    private static final String SQL = "select u.* from users u where u.name ilike :pattern escape '\\'"
+            + " order by case when lower(u.name) = :exact then 0"
+            + " when lower(u.name) like :prefix escape '\\' then 1"
+            + " when lower(u.name) like :wordPrefix escape '\\' then 2 else 3 end,"
+            + " length(u.name), u.id"
+            + " limit :limit";
+    // Тот же запрос для JDBC; параметры идут в порядке pattern, exact, prefix, wordPrefix, limit
+    private static final String JDBC_SQL = SQL.replaceAll(":\\w+", "?");
+
+    private final String fragment;
+    private final int limit;
+
+    private UserNameSearch(String fragment, int limit) {
+        this.fragment = fragment;
+        this.limit = limit;
+    }
+
+    static UserNameSearch of(String fragment, int limit) {
+        if (fragment == null || fragment.trim().length() < MIN_FRAGMENT_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Search fragment must contain at least " + MIN_FRAGMENT_LENGTH + " characters");
+        }
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        return new UserNameSearch(fragment.trim().toLowerCase(Locale.ROOT), limit);
+    }
+
+    String getFragment() {
+        return fragment;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    NativeQuery<User> toNativeQuery(Session session) {
+        String escaped = escapeLike(fragment);
+        NativeQuery<User> query = session.createNativeQuery(SQL, User.class);
+        query.setParameter("pattern", "%" + escaped + "%");
+        query.setParameter("exact", fragment);
+        query.setParameter("prefix", escaped + "%");
+        query.setParameter("wordPrefix", "% " + escaped + "%");
+        query.setParameter("limit", limit);
+        return query;
+    }
+
+    String getJdbcSql() {
+        return JDBC_SQL;
+    }
+
+    List<Object> getParameters() {
+        String escaped = escapeLike(fragment);
+        return Arrays.asList("%" + escaped + "%", fragment, escaped + "%", "% " + escaped + "%", limit);
+    }
+
+    PreparedStatement prepare(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(JDBC_SQL);
+        List<Object> parameters = getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+    // Тот же порядок, что и ORDER BY запроса: нужен для слияния результатов нескольких шардов
+    Comparator<User> comparator() {
+        return Comparator.<User>comparingInt(user -> rank(user.getName()))
+                .thenComparingInt(user -> user.getName().codePointCount(0, user.getName().length()))
+                .thenComparing(User::getId);
+    }
+
+    int rank(String name) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        if (lowerName.equals(fragment)) {
+            return 0;
+        }
+        if (lowerName.startsWith(fragment)) {
+            return 1;
+        }
+        if (lowerName.contains(" " + fragment)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
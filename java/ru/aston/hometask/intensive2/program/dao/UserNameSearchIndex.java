@@ -0,0 +1,63 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Триграммный GIN-индекс для {@link UserDao#searchByName(String, int)}. hbm2ddl не умеет GIN с классом операторов,
+ * поэтому индекс ставится при старте приложения. CREATE INDEX CONCURRENTLY не блокирует запись в users,
+ * но не работает внутри транзакции, а прерванная сборка оставляет невалидный индекс — его удаляют и строят заново.
+ */
+public class UserNameSearchIndex {
+
+    private static final Logger logger = LogManager.getLogger(UserNameSearchIndex.class);
+
+    static final String INDEX_NAME = "idx_users_name_trgm";
+
+    private static final String CREATE_EXTENSION_SQL = "create extension if not exists pg_trgm";
+    private static final String VALID_SQL = "select indisvalid from pg_index where indexrelid = to_regclass('"
+            + INDEX_NAME + "')";
+    private static final String DROP_INVALID_SQL = "drop index concurrently if exists " + INDEX_NAME;
+    private static final String CREATE_INDEX_SQL = "create index concurrently if not exists " + INDEX_NAME
+            + " on users using gin (name gin_trgm_ops)";
+
+    private final SessionFactory sessionFactory;
+
+    public UserNameSearchIndex(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    // Возвращает false, если индекс построить не удалось: поиск при этом работает, но полным сканом
+    public boolean install() {
+        try (Session session = sessionFactory.openSession()) {
+            session.doWork(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_EXTENSION_SQL);
+                    boolean invalid;
+                    try (ResultSet resultSet = statement.executeQuery(VALID_SQL)) {
+                        invalid = resultSet.next() && !resultSet.getBoolean(1);
+                    }
+                    if (invalid) {
+                        logger.warn("Dropping invalid trigram index {} left by an interrupted build", INDEX_NAME);
+                        statement.execute(DROP_INVALID_SQL);
+                    }
+                    statement.execute(CREATE_INDEX_SQL);
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+            logger.info("Trigram index on users.name is ready");
+            return true;
+        } catch (Exception e) {
+            logger.warn("Could not create trigram index on users.name, search will scan the table", e);
+            return false;
+        }
+    }
+}
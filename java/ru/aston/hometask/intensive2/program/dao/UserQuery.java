@@ -0,0 +1,204 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Фильтр, сортировка и keyset-пагинация для {@link UserDao#findByQuery(UserQuery)}.
+ * Следующая страница запрашивается через {@link Builder#after(User)} с последней строкой предыдущей:
+ * в отличие от offset, стоимость не растёт с номером страницы.
+ */
+public final class UserQuery {
+
+    public enum SortField {
+        ID("id"),
+        AGE("age"),
+        CREATED_AT("created_at");
+
+        private final String column;
+
+        SortField(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1_000;
+
+    private final Integer minAge;
+    private final Integer maxAge;
+    private final LocalDateTime createdFrom;
+    private final LocalDateTime createdTo;
+    private final String namePrefix;
+    private final SortField sortField;
+    private final boolean descending;
+    private final int limit;
+    private final Object afterValue;
+    private final Long afterId;
+
+    private UserQuery(Builder builder) {
+        this.minAge = builder.minAge;
+        this.maxAge = builder.maxAge;
+        this.createdFrom = builder.createdFrom;
+        this.createdTo = builder.createdTo;
+        this.namePrefix = builder.namePrefix;
+        this.sortField = builder.sortField;
+        this.descending = builder.descending;
+        this.limit = builder.limit;
+        this.afterValue = builder.afterValue;
+        this.afterId = builder.afterId;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public LocalDateTime getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public LocalDateTime getCreatedTo() {
+        return createdTo;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public SortField getSortField() {
+        return sortField;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public Object getAfterValue() {
+        return afterValue;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public boolean hasCursor() {
+        return afterId != null;
+    }
+
+    // Порядок строк, совпадающий с ORDER BY запроса: поле сортировки, затем id
+    public Comparator<User> comparator() {
+        Comparator<User> comparator;
+        switch (sortField) {
+            case AGE:
+                comparator = Comparator.comparing(User::getAge);
+                break;
+            case CREATED_AT:
+                comparator = Comparator.comparing(User::getCreatedAt);
+                break;
+            default:
+                comparator = Comparator.comparing(User::getId);
+                break;
+        }
+        comparator = comparator.thenComparing(User::getId);
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    public static final class Builder {
+        private Integer minAge;
+        private Integer maxAge;
+        private LocalDateTime createdFrom;
+        private LocalDateTime createdTo;
+        private String namePrefix;
+        private SortField sortField = SortField.ID;
+        private boolean descending;
+        private int limit = DEFAULT_LIMIT;
+        private Object afterValue;
+        private Long afterId;
+
+        private Builder() {
+        }
+
+        public Builder ageBetween(Integer minAge, Integer maxAge) {
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        // Полуинтервал [from, to): удобно для "за прошлую неделю"
+        public Builder createdBetween(LocalDateTime from, LocalDateTime to) {
+            this.createdFrom = from;
+            this.createdTo = to;
+            return this;
+        }
+
+        public Builder namePrefix(String namePrefix) {
+            this.namePrefix = namePrefix;
+            return this;
+        }
+
+        public Builder sortBy(SortField sortField, boolean descending) {
+            this.sortField = sortField;
+            this.descending = descending;
+            return this;
+        }
+
+        public Builder limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        // Вызывать после sortBy: значение курсора берётся по текущему полю сортировки
+        public Builder after(User lastRow) {
+            this.afterId = lastRow.getId();
+            switch (sortField) {
+                case AGE:
+                    this.afterValue = lastRow.getAge();
+                    break;
+                case CREATED_AT:
+                    this.afterValue = lastRow.getCreatedAt();
+                    break;
+                default:
+                    this.afterValue = lastRow.getId();
+                    break;
+            }
+            return this;
+        }
+
+        public UserQuery build() {
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+            }
+            if (minAge != null && maxAge != null && minAge > maxAge) {
+                throw new IllegalArgumentException("Minimum age cannot exceed maximum age");
+            }
+            if (createdFrom != null && createdTo != null && !createdFrom.isBefore(createdTo)) {
+                throw new IllegalArgumentException("Created-from must be before created-to");
+            }
+            if (sortField == null) {
+                throw new IllegalArgumentException("Sort field is required");
+            }
+            if (afterId != null && afterValue == null) {
+                throw new IllegalArgumentException("Cursor row has no value for sort field " + sortField);
+            }
+            return new UserQuery(this);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// SQL для UserQuery: условия и ORDER BY построены так, чтобы их покрывали индексы (age, id) и (created_at, id)
+final class UserQuerySql {
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    private UserQuerySql(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    static UserQuerySql build(UserQuery query) {
+        StringBuilder sql = new StringBuilder("select u.* from users u where 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        String column = "u." + query.getSortField().getColumn();
+
+        if (query.getSortField() == UserQuery.SortField.AGE) {
+            // Keyset по age не умеет работать с NULL, поэтому такие строки в выборку не попадают
+            sql.append(" and u.age is not null");
+        }
+        if (query.getMinAge() != null) {
+            sql.append(" and u.age >= ").append(parameter(parameters, query.getMinAge()));
+        }
+        if (query.getMaxAge() != null) {
+            sql.append(" and u.age <= ").append(parameter(parameters, query.getMaxAge()));
+        }
+        if (query.getCreatedFrom() != null) {
+            sql.append(" and u.created_at >= ").append(parameter(parameters, query.getCreatedFrom()));
+        }
+        if (query.getCreatedTo() != null) {
+            sql.append(" and u.created_at < ").append(parameter(parameters, query.getCreatedTo()));
+        }
+        if (query.getNamePrefix() != null) {
+            sql.append(" and u.name like ").append(parameter(parameters, escapeLike(query.getNamePrefix()) + "%"))
+                    .append(" escape '\\'");
+        }
+        if (query.hasCursor()) {
+            String comparison = query.isDescending() ? " < " : " > ";
+            if (query.getSortField() == UserQuery.SortField.ID) {
+                sql.append(" and u.id").append(comparison).append(parameter(parameters, query.getAfterId()));
+            } else {
+                sql.append(" and (").append(column).append(", u.id)").append(comparison)
+                        .append("(").append(parameter(parameters, query.getAfterValue()))
+                        .append(", ").append(parameter(parameters, query.getAfterId())).append(")");
+            }
+        }
+        String direction = query.isDescending() ? " desc" : " asc";
+        sql.append(" order by ").append(column).append(direction);
+        if (query.getSortField() != UserQuery.SortField.ID) {
+            sql.append(", u.id").append(direction);
+        }
+        sql.append(" limit ").append(parameter(parameters, query.getLimit()));
+        return new UserQuerySql(sql.toString(), parameters);
+    }
+
+    // Именованные параметры :p0, :p1... для Hibernate
+    String getSql() {
+        return sql;
+    }
+
+    // Тот же запрос с позиционными ? для JDBC; порядок параметров совпадает
+    String getJdbcSql() {
+        return sql.replaceAll(":p\\d+", "?");
+    }
+
+    List<Object> getParameters() {
+        return parameters;
+    }
+
+    NativeQuery<User> toNativeQuery(Session session) {
+        NativeQuery<User> query = session.createNativeQuery(sql, User.class);
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter("p" + i, parameters.get(i));
+        }
+        return query;
+    }
+
+    private static String parameter(List<Object> parameters, Object value) {
+        parameters.add(value);
+        return ":p" + (parameters.size() - 1);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,20 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+public interface UserStatsDao {
+
+    int AGE_BUCKET_WIDTH = 10;
+
+    long count();
+
+    // Ключ — нижняя граница корзины (0, 10, 20...); пользователи без возраста не учитываются
+    Map<Integer, Long> countByAgeBucket();
+
+    // Полуинтервал [from, to); дни без регистраций в результат не попадают
+    Map<LocalDate, Long> signupsPerDay(LocalDate from, LocalDate to);
+
+    OptionalDouble averageAge();
+}
@@ -0,0 +1,110 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// Каждая метрика — один агрегирующий запрос; по сети идёт результат, а не таблица users
+public class UserStatsDaoImpl implements UserStatsDao {
+
+    private static final Logger logger = LogManager.getLogger(UserStatsDaoImpl.class);
+
+    private static final String COUNT_SQL = "select count(*) from %s";
+    private static final String AGE_BUCKETS_SQL = "select (age / " + AGE_BUCKET_WIDTH + ") * " + AGE_BUCKET_WIDTH
+            + " as bucket, count(*) from %s where age is not null group by 1 order by 1";
+    // Условие по created_at без функций над колонкой, чтобы работал индекс (created_at, id)
+    private static final String SIGNUPS_SQL = "select cast(created_at as date) as day, count(*) from %s"
+            + " where created_at >= :from and created_at < :to group by 1 order by 1";
+    private static final String AVERAGE_AGE_SQL = "select avg(age) from %s";
+
+    private final SessionFactory sessionFactory;
+    private final String countSql;
+    private final String ageBucketsSql;
+    private final String signupsSql;
+    private final String averageAgeSql;
+
+    public UserStatsDaoImpl(SessionFactory sessionFactory) {
+        this(sessionFactory, "users");
+    }
+
+    // source — таблица или представление с колонками users, например users_all вместе с архивом
+    public UserStatsDaoImpl(SessionFactory sessionFactory, String source) {
+        this.sessionFactory = sessionFactory;
+        this.countSql = String.format(COUNT_SQL, source);
+        this.ageBucketsSql = String.format(AGE_BUCKETS_SQL, source);
+        this.signupsSql = String.format(SIGNUPS_SQL, source);
+        this.averageAgeSql = String.format(AVERAGE_AGE_SQL, source);
+    }
+
+    @Override
+    public long count() {
+        try {
+            Number count = inSession(session -> (Number) session.createNativeQuery(countSql).uniqueResult());
+            return count.longValue();
+        } catch (Exception e) {
+            logger.error("Error counting users", e);
+            throw new RuntimeException("Error counting users", e);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> countByAgeBucket() {
+        try {
+            List<?> rows = inSession(session -> session.createNativeQuery(ageBucketsSql).list());
+            Map<Integer, Long> buckets = new TreeMap<>();
+            for (Object row : rows) {
+                Object[] columns = (Object[]) row;
+                buckets.put(((Number) columns[0]).intValue(), ((Number) columns[1]).longValue());
+            }
+            return buckets;
+        } catch (Exception e) {
+            logger.error("Error counting users by age bucket", e);
+            throw new RuntimeException("Error counting users by age bucket", e);
+        }
+    }
+
+    @Override
+    public Map<LocalDate, Long> signupsPerDay(LocalDate from, LocalDate to) {
+        try {
+            List<?> rows = inSession(session -> session.createNativeQuery(signupsSql)
+                    .setParameter("from", from.atStartOfDay())
+                    .setParameter("to", to.atStartOfDay())
+                    .list());
+            Map<LocalDate, Long> signups = new TreeMap<>();
+            for (Object row : rows) {
+                Object[] columns = (Object[]) row;
+                signups.put(((Date) columns[0]).toLocalDate(), ((Number) columns[1]).longValue());
+            }
+            return signups;
+        } catch (Exception e) {
+            logger.error("Error counting signups from {} to {}", from, to, e);
+            throw new RuntimeException("Error counting signups per day", e);
+        }
+    }
+
+    @Override
+    public OptionalDouble averageAge() {
+        try {
+            Number average = inSession(session -> (Number) session.createNativeQuery(averageAgeSql).uniqueResult());
+            return average != null ? OptionalDouble.of(average.doubleValue()) : OptionalDouble.empty();
+        } catch (Exception e) {
+            logger.error("Error computing average user age", e);
+            throw new RuntimeException("Error computing average user age", e);
+        }
+    }
+
+    private <T> T inSession(Function<Session, T> work) {
+        try (Session session = sessionFactory.openSession()) {
+            return work.apply(session);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Interceptor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.type.Type;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Счётчики по корзинам возраста и по дням регистрации, которые {@link UserDaoImpl} обновляет
+ * в той же транзакции, что и саму строку users (через перехватчик сессии, см. {@link #openSession()}).
+ * Чтение — сумма по нескольким десяткам строк вместо агрегации всей таблицы.
+ * Каждый счётчик разбит на {@value #SLOTS} слотов: иначе все регистрации за день
+ * сериализовались бы на блокировке одной строки.
+ */
+public class UserStatsSummary implements UserStatsDao {
+
+    private static final Logger logger = LogManager.getLogger(UserStatsSummary.class);
+
+    static final int SLOTS = 8;
+    // Корзина для пользователей без возраста: нужна, чтобы count() тоже читался из сводки
+    static final int UNKNOWN_AGE_BUCKET = -1;
+
+    private static final String[] TABLES_DDL = {
+            "create table if not exists user_stats_age_buckets (bucket integer not null, slot smallint not null,"
+                    + " user_count bigint not null, age_sum bigint not null, primary key (bucket, slot))",
+            "create table if not exists user_stats_daily_signups (day date not null, slot smallint not null,"
+                    + " user_count bigint not null, primary key (day, slot))"
+    };
+
+    private static final String BUCKET_UPSERT_SQL =
+            "insert into user_stats_age_buckets (bucket, slot, user_count, age_sum) values (?, ?, ?, ?)"
+                    + " on conflict (bucket, slot) do update set"
+                    + " user_count = user_stats_age_buckets.user_count + excluded.user_count,"
+                    + " age_sum = user_stats_age_buckets.age_sum + excluded.age_sum";
+    private static final String DAY_UPSERT_SQL =
+            "insert into user_stats_daily_signups (day, slot, user_count) values (?, ?, ?)"
+                    + " on conflict (day, slot) do update set"
+                    + " user_count = user_stats_daily_signups.user_count + excluded.user_count";
+
+    private static final String REBUILD_BUCKETS_SQL =
+            "insert into user_stats_age_buckets (bucket, slot, user_count, age_sum)"
+                    + " select coalesce((age / " + AGE_BUCKET_WIDTH + ") * " + AGE_BUCKET_WIDTH
+                    + ", " + UNKNOWN_AGE_BUCKET + "), 0, count(*), coalesce(sum(age), 0) from users group by 1";
+    private static final String REBUILD_DAYS_SQL =
+            "insert into user_stats_daily_signups (day, slot, user_count)"
+                    + " select cast(created_at as date), 0, count(*) from users group by 1";
+
+    private static final String COUNT_SQL = "select coalesce(sum(user_count), 0) from user_stats_age_buckets";
+    private static final String BUCKETS_SQL = "select bucket, sum(user_count) from user_stats_age_buckets"
+            + " where bucket <> " + UNKNOWN_AGE_BUCKET + " group by bucket having sum(user_count) > 0";
+    private static final String SIGNUPS_SQL = "select day, sum(user_count) from user_stats_daily_signups"
+            + " where day >= ? and day < ? group by day having sum(user_count) > 0";
+    private static final String AVERAGE_AGE_SQL = "select sum(age_sum), sum(user_count) from user_stats_age_buckets"
+            + " where bucket <> " + UNKNOWN_AGE_BUCKET;
+
+    private final SessionFactory sessionFactory;
+
+    public UserStatsSummary(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    // Создаёт таблицы сводки и заполняет их, если сводка включается на уже наполненной базе
+    public void initialize() {
+        try (Session session = sessionFactory.openSession()) {
+            boolean empty = session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String ddl : TABLES_DDL) {
+                        statement.execute(ddl);
+                    }
+                    try (ResultSet resultSet = statement.executeQuery(
+                            "select not exists (select 1 from user_stats_age_buckets)")) {
+                        resultSet.next();
+                        return resultSet.getBoolean(1);
+                    }
+                }
+            });
+            if (empty) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            logger.error("Error initializing user statistics summary", e);
+            throw new RuntimeException("Error initializing user statistics summary", e);
+        }
+    }
+
+    // Пересчёт с нуля; SHARE-блокировка users не пускает параллельные записи, пока идёт пересчёт
+    public void rebuild() {
+        Transactions.inTransaction(sessionFactory, session -> {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("lock table users in share mode");
+                    statement.execute("truncate user_stats_age_buckets, user_stats_daily_signups");
+                    statement.execute(REBUILD_BUCKETS_SQL);
+                    statement.execute(REBUILD_DAYS_SQL);
+                }
+            });
+            return null;
+        });
+        logger.info("User statistics summary rebuilt");
+    }
+
+    // Сессия записи: изменения users, сброшенные в ней, попадают в сводку перед коммитом
+    Session openSession() {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        Session session = sessionFactory.withOptions().interceptor(interceptor).openSession();
+        interceptor.session = session;
+        return session;
+    }
+
+    // Для записей мимо Hibernate (upsert): изменения копятся в том же перехватчике сессии
+    UserUpsertSql.ChangeListener changeListener(Session session) {
+        Interceptor interceptor = session.unwrap(SharedSessionContractImplementor.class).getInterceptor();
+        if (!(interceptor instanceof CountingInterceptor)) {
+            throw new IllegalStateException("Session was not opened by UserStatsSummary");
+        }
+        return (CountingInterceptor) interceptor;
+    }
+
+    @Override
+    public long count() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(COUNT_SQL)) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error counting users from summary", e);
+            throw new RuntimeException("Error counting users", e);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> countByAgeBucket() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.doReturningWork(connection -> {
+                Map<Integer, Long> buckets = new TreeMap<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(BUCKETS_SQL)) {
+                    while (resultSet.next()) {
+                        buckets.put(resultSet.getInt(1), resultSet.getLong(2));
+                    }
+                }
+                return buckets;
+            });
+        } catch (Exception e) {
+            logger.error("Error counting users by age bucket from summary", e);
+            throw new RuntimeException("Error counting users by age bucket", e);
+        }
+    }
+
+    @Override
+    public Map<LocalDate, Long> signupsPerDay(LocalDate from, LocalDate to) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.doReturningWork(connection -> {
+                Map<LocalDate, Long> signups = new TreeMap<>();
+                try (PreparedStatement statement = connection.prepareStatement(SIGNUPS_SQL)) {
+                    statement.setObject(1, from);
+                    statement.setObject(2, to);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            signups.put(resultSet.getObject(1, LocalDate.class), resultSet.getLong(2));
+                        }
+                    }
+                }
+                return signups;
+            });
+        } catch (Exception e) {
+            logger.error("Error counting signups from {} to {} from summary", from, to, e);
+            throw new RuntimeException("Error counting signups per day", e);
+        }
+    }
+
+    @Override
+    public OptionalDouble averageAge() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.doReturningWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(AVERAGE_AGE_SQL)) {
+                    resultSet.next();
+                    long count = resultSet.getLong(2);
+                    return count > 0
+                            ? OptionalDouble.of((double) resultSet.getLong(1) / count)
+                            : OptionalDouble.empty();
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error computing average user age from summary", e);
+            throw new RuntimeException("Error computing average user age", e);
+        }
+    }
+
+    static int bucketOf(Integer age) {
+        return age == null ? UNKNOWN_AGE_BUCKET : (age / AGE_BUCKET_WIDTH) * AGE_BUCKET_WIDTH;
+    }
+
+    /**
+     * Копит изменения счётчиков по событиям сессии и пишет их одним заходом перед коммитом.
+     * Старый возраст берётся из состояния, с которым Hibernate загрузил строку, поэтому
+     * несколько изменений одного пользователя в одной единице работы учитываются корректно.
+     */
+    private static final class CountingInterceptor extends EmptyInterceptor
+            implements UserUpsertSql.ChangeListener {
+        private final Map<Integer, long[]> bucketDeltas = new HashMap<>();
+        private final Map<LocalDate, Long> dayDeltas = new HashMap<>();
+        private Session session;
+
+        @Override
+        public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            if (entity instanceof User) {
+                addBucket((Integer) value(state, propertyNames, "age"), 1);
+                addDay((LocalDateTime) value(state, propertyNames, "createdAt"), 1);
+            }
+            return false;
+        }
+
+        @Override
+        public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            if (entity instanceof User) {
+                addBucket((Integer) value(state, propertyNames, "age"), -1);
+                addDay((LocalDateTime) value(state, propertyNames, "createdAt"), -1);
+            }
+        }
+
+        @Override
+        public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+                                    String[] propertyNames, Type[] types) {
+            if (entity instanceof User && previousState != null) {
+                ageChanged((Integer) value(previousState, propertyNames, "age"),
+                        (Integer) value(currentState, propertyNames, "age"));
+            }
+            return false;
+        }
+
+        @Override
+        public void inserted(User user) {
+            addBucket(user.getAge(), 1);
+            addDay(user.getCreatedAt(), 1);
+        }
+
+        @Override
+        public void ageChanged(Integer oldAge, Integer newAge) {
+            if (!Objects.equals(oldAge, newAge)) {
+                addBucket(oldAge, -1);
+                addBucket(newAge, 1);
+            }
+        }
+
+        @Override
+        public void beforeTransactionCompletion(Transaction tx) {
+            if (bucketDeltas.isEmpty() && dayDeltas.isEmpty()) {
+                return;
+            }
+            session.doWork(connection -> {
+                for (Map.Entry<Integer, long[]> delta : bucketDeltas.entrySet()) {
+                    if (delta.getValue()[0] != 0 || delta.getValue()[1] != 0) {
+                        upsert(connection, BUCKET_UPSERT_SQL, delta.getKey(), delta.getValue()[0], delta.getValue()[1]);
+                    }
+                }
+                for (Map.Entry<LocalDate, Long> delta : dayDeltas.entrySet()) {
+                    if (delta.getValue() != 0) {
+                        upsert(connection, DAY_UPSERT_SQL, delta.getKey(), delta.getValue(), null);
+                    }
+                }
+            });
+            clear();
+        }
+
+        @Override
+        public void afterTransactionCompletion(Transaction tx) {
+            // После отката накопленные изменения не должны перейти в следующую транзакцию сессии
+            clear();
+        }
+
+        private void addBucket(Integer age, int sign) {
+            long[] delta = bucketDeltas.computeIfAbsent(bucketOf(age), bucket -> new long[2]);
+            delta[0] += sign;
+            delta[1] += age == null ? 0 : (long) age * sign;
+        }
+
+        private void addDay(LocalDateTime createdAt, int sign) {
+            dayDeltas.merge(createdAt.toLocalDate(), (long) sign, Long::sum);
+        }
+
+        private void clear() {
+            bucketDeltas.clear();
+            dayDeltas.clear();
+        }
+
+        private static Object value(Object[] state, String[] propertyNames, String property) {
+            for (int i = 0; i < propertyNames.length; i++) {
+                if (propertyNames[i].equals(property)) {
+                    return state[i];
+                }
+            }
+            throw new IllegalStateException("User has no property " + property);
+        }
+    }
+
+    private static void upsert(Connection connection, String sql, Object key, long count, Long ageSum)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setObject(1, key);
+            statement.setInt(2, ThreadLocalRandom.current().nextInt(SLOTS));
+            statement.setLong(3, count);
+            if (ageSum != null) {
+                statement.setLong(4, ageSum);
+            }
+            statement.executeUpdate();
+        }
+    }
+}
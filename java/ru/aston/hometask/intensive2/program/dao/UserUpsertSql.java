@@ -0,0 +1,172 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.SnowflakeIdGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Многострочный INSERT ... ON CONFLICT (email_normalized) DO UPDATE для {@link UserDao#upsertAll}.
+ * Строки, где ничего не меняется, не переписываются (WHERE ... IS DISTINCT FROM): повторная доставка
+ * той же записи не создаёт новую версию строки и не увеличивает version. RETURNING таких строк не
+ * возвращает, поэтому они дочитываются отдельным запросом.
+ */
+final class UserUpsertSql {
+
+    // 6 параметров на строку: до лимита протокола в 65535 параметров остаётся большой запас
+    static final int BATCH_SIZE = 1_000;
+
+    private static final String INSERT_PREFIX =
+            "insert into users (id, name, email, email_normalized, age, created_at, version) values ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, 0)";
+    private static final String CONFLICT_CLAUSE = " on conflict (email_normalized) do update set"
+            + " name = excluded.name, email = excluded.email, age = excluded.age, version = users.version + 1"
+            + " where (users.name, users.email, users.age) is distinct from (excluded.name, excluded.email, excluded.age)"
+            + " returning id, name, email, age, created_at, version, (xmax = 0) as inserted";
+    private static final String SELECT_BY_EMAILS_SQL =
+            "select id, name, email, age, created_at, version from users where email_normalized = any(?)";
+    private static final String LOCK_EXISTING_SQL =
+            "select email_normalized, age from users where email_normalized = any(?) for update";
+
+    // Сводка статистики узнаёт о вставках и сменах возраста, которые прошли мимо сессии Hibernate
+    interface ChangeListener {
+        void inserted(User user);
+
+        void ageChanged(Integer oldAge, Integer newAge);
+    }
+
+    private UserUpsertSql() {
+    }
+
+    // Одна запись на нормализованный email (последняя побеждает): иначе Postgres отклонит батч,
+    // в котором ON CONFLICT затрагивает одну строку дважды
+    static List<User> deduplicate(Collection<User> users) {
+        Map<String, User> unique = new LinkedHashMap<>();
+        for (User user : users) {
+            unique.put(EmailNormalizer.normalize(user.getEmail()), user);
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    static String buildSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDER.length() + 2)
+                + CONFLICT_CLAUSE.length());
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+        }
+        return sql.append(CONFLICT_CLAUSE).toString();
+    }
+
+    // Результат — сохранённые строки в порядке records
+    static List<User> execute(Connection connection, List<User> records, SnowflakeIdGenerator idGenerator,
+                              ChangeListener listener) throws SQLException {
+        Map<String, User> stored = new HashMap<>();
+        for (int from = 0; from < records.size(); from += BATCH_SIZE) {
+            List<User> batch = records.subList(from, Math.min(records.size(), from + BATCH_SIZE));
+            Map<String, Integer> oldAges = listener != null ? lockExisting(connection, batch) : null;
+            try (PreparedStatement statement = connection.prepareStatement(buildSql(batch.size()))) {
+                int index = 1;
+                for (User user : batch) {
+                    statement.setLong(index++, idGenerator.nextId());
+                    statement.setString(index++, user.getName());
+                    statement.setString(index++, user.getEmail());
+                    statement.setString(index++, EmailNormalizer.normalize(user.getEmail()));
+                    if (user.getAge() != null) {
+                        statement.setInt(index++, user.getAge());
+                    } else {
+                        statement.setNull(index++, Types.INTEGER);
+                    }
+                    statement.setTimestamp(index++, Timestamp.valueOf(user.getCreatedAt()));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        User user = readUser(resultSet);
+                        stored.put(user.getEmailNormalized(), user);
+                        if (listener != null) {
+                            if (resultSet.getBoolean("inserted")) {
+                                listener.inserted(user);
+                            } else if (oldAges.containsKey(user.getEmailNormalized())) {
+                                listener.ageChanged(oldAges.get(user.getEmailNormalized()), user.getAge());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (stored.size() < records.size()) {
+            fetchUnchanged(connection, records, stored);
+        }
+        List<User> result = new ArrayList<>(records.size());
+        for (User record : records) {
+            result.add(stored.get(EmailNormalizer.normalize(record.getEmail())));
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> lockExisting(Connection connection, List<User> batch) throws SQLException {
+        Map<String, Integer> ages = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(LOCK_EXISTING_SQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", normalizedEmails(batch)));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ages.put(resultSet.getString(1), (Integer) resultSet.getObject(2));
+                }
+            }
+        }
+        return ages;
+    }
+
+    private static void fetchUnchanged(Connection connection, List<User> records, Map<String, User> stored)
+            throws SQLException {
+        List<User> missing = new ArrayList<>();
+        for (User record : records) {
+            if (!stored.containsKey(EmailNormalizer.normalize(record.getEmail()))) {
+                missing.add(record);
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_BY_EMAILS_SQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", normalizedEmails(missing)));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    User user = readUser(resultSet);
+                    stored.put(user.getEmailNormalized(), user);
+                }
+            }
+        }
+    }
+
+    private static Object[] normalizedEmails(List<User> users) {
+        Object[] emails = new Object[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            emails[i] = EmailNormalizer.normalize(users.get(i).getEmail());
+        }
+        return emails;
+    }
+
+    private static User readUser(ResultSet resultSet) throws SQLException {
+        User user = new User();
+        user.setId(resultSet.getLong("id"));
+        user.setName(resultSet.getString("name"));
+        user.setEmail(resultSet.getString("email"));
+        user.setAge((Integer) resultSet.getObject("age"));
+        user.setCreatedAt(resultSet.getTimestamp("created_at").toLocalDateTime());
+        user.setVersion(resultSet.getLong("version"));
+        return user;
+    }
+}
@@ -0,0 +1,475 @@
+package ru.aston.hometask.intensive2.program.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.Deadline;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Откладывает {@link #update(User)} в ограниченную очередь и сбрасывает её JDBC-батчами
+ * по размеру или по таймеру. Повторные обновления одного id сливаются (last-write-wins по полю).
+ */
+public class WriteBehindUserDao extends ForwardingUserDao implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(WriteBehindUserDao.class);
+
+    private static final String UPDATE_SQL =
+            "update users set name = coalesce(?, name), email = coalesce(?, email),"
+                    + " email_normalized = coalesce(?, email_normalized), age = coalesce(?, age),"
+                    + " version = version + 1 where id = ?";
+
+    // Возвращает число изменённых строк для каждого обновления батча, как executeBatch
+    interface BatchWriter {
+        int[] write(List<PendingUpdate> batch);
+    }
+
+    static final class PendingUpdate {
+        final Long id;
+        String name;
+        String email;
+        Integer age;
+
+        PendingUpdate(User user) {
+            this.id = user.getId();
+            this.name = user.getName();
+            this.email = user.getEmail();
+            this.age = user.getAge();
+        }
+
+        void mergeNewer(PendingUpdate newer) {
+            if (newer.name != null) {
+                name = newer.name;
+            }
+            if (newer.email != null) {
+                email = newer.email;
+            }
+            if (newer.age != null) {
+                age = newer.age;
+            }
+        }
+
+        void applyTo(User user) {
+            if (name != null) {
+                user.setName(name);
+            }
+            if (email != null) {
+                user.setEmail(email);
+            }
+            if (age != null) {
+                user.setAge(age);
+            }
+        }
+    }
+
+    private final int capacity;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final BatchWriter batchWriter;
+    private final Runnable writeMarker;
+
+    private final Map<Long, PendingUpdate> pending = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    private final AtomicLong submittedUpdates = new AtomicLong();
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final AtomicLong rejectedUpdates = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong droppedUpdates = new AtomicLong();
+
+    public WriteBehindUserDao(UserDao delegate, int capacity, int batchSize,
+                              long flushIntervalMillis, long offerTimeoutMillis) {
+        this(delegate, capacity, batchSize, flushIntervalMillis, offerTimeoutMillis,
+                WriteBehindUserDao::writeJdbcBatch, () -> HibernateUtil.getRouter().markWrite());
+        HibernateUtil.registerShutdownHook(this::close);
+    }
+
+    WriteBehindUserDao(UserDao delegate, int capacity, int batchSize, long flushIntervalMillis,
+                       long offerTimeoutMillis, BatchWriter batchWriter) {
+        this(delegate, capacity, batchSize, flushIntervalMillis, offerTimeoutMillis, batchWriter, () -> {
+        });
+    }
+
+    WriteBehindUserDao(UserDao delegate, int capacity, int batchSize, long flushIntervalMillis,
+                       long offerTimeoutMillis, BatchWriter batchWriter, Runnable writeMarker) {
+        super(delegate);
+        if (capacity <= 0 || batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Capacity, batch size and flush interval must be positive");
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.batchWriter = batchWriter;
+        this.writeMarker = writeMarker;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public User update(User user) {
+        if (user.getId() == null) {
+            throw new IllegalArgumentException("User ID is required for write-behind update");
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-behind writer is closed");
+        }
+        PendingUpdate update = new PendingUpdate(user);
+        boolean flushNow;
+        lock.lock();
+        try {
+            PendingUpdate existing = pending.get(update.id);
+            if (existing != null) {
+                existing.mergeNewer(update);
+                coalescedUpdates.incrementAndGet();
+            } else {
+                awaitCapacity();
+                pending.put(update.id, update);
+            }
+            submittedUpdates.incrementAndGet();
+            flushNow = pending.size() >= batchSize;
+        } finally {
+            lock.unlock();
+        }
+        if (flushNow && !closed) {
+            scheduler.execute(this::flushQuietly);
+        }
+        // Окно read-your-writes привязано к потоку: батч сбрасывает другой поток, а читать с primary
+        // после снятия наложения должен тот, кто обновлял
+        writeMarker.run();
+        return user;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        Optional<User> user = delegate.findById(id);
+        user.ifPresent(this::overlayPending);
+        return user;
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = delegate.findAll();
+        users.forEach(this::overlayPending);
+        return users;
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        List<User> users = delegate.findAllById(ids);
+        users.forEach(this::overlayPending);
+        return users;
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        List<User> users = delegate.findByQuery(query);
+        users.forEach(this::overlayPending);
+        return users;
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        List<User> users = delegate.searchByName(fragment, limit);
+        users.forEach(this::overlayPending);
+        return users;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Long pendingId = findPendingIdByEmail(email, null);
+        if (pendingId != null) {
+            return findById(pendingId);
+        }
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return findPendingIdByEmail(email, excludeUserId) != null
+                || delegate.isEmailExistsForOtherUser(email, excludeUserId);
+    }
+
+    // Накопленные обновления старше upsert: сбрасываем их заранее, иначе они затрут его результат
+    @Override
+    public User upsertByEmail(User user) {
+        flush();
+        return delegate.upsertByEmail(user);
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        flush();
+        return delegate.upsertAll(users);
+    }
+
+    @Override
+    public boolean supportsDeferredUpdates() {
+        return true;
+    }
+
+    // Отложенная запись нарушила бы атомарность: внутри транзакции обновления идут в delegate сразу,
+    // а накопленные ранее сбрасываются заранее, чтобы не затереть её результат
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        flush();
+        return delegate.inTransaction(work);
+    }
+
+    @Override
+    public void delete(Long id) {
+        lock.lock();
+        try {
+            if (pending.remove(id) != null) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        delegate.delete(id);
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<PendingUpdate> batch;
+            while (!(batch = drain()).isEmpty()) {
+                writeBatch(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(offerTimeoutMillis + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.info("Write-behind writer closed: {} rows flushed in {} batches, {} dropped",
+                flushedRows.get(), flushedBatches.get(), droppedUpdates.get());
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSubmittedUpdates() {
+        return submittedUpdates.get();
+    }
+
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    public long getRejectedUpdates() {
+        return rejectedUpdates.get();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    public long getFlushedBatches() {
+        return flushedBatches.get();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    // Вызывается под lock
+    private void awaitCapacity() {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        try {
+            while (pending.size() >= capacity) {
+                if (remainingNanos <= 0) {
+                    rejectedUpdates.incrementAndGet();
+                    throw new IllegalStateException("Write-behind queue is full (" + capacity + " pending updates)");
+                }
+                scheduler.execute(this::flushQuietly);
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedUpdates.incrementAndGet();
+            throw new IllegalStateException("Interrupted while waiting for write-behind queue", e);
+        }
+    }
+
+    private List<PendingUpdate> drain() {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<PendingUpdate> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<PendingUpdate> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeBatch(List<PendingUpdate> batch) {
+        try {
+            recordApplied(batch, batchWriter.write(batch));
+            flushedBatches.incrementAndGet();
+            return;
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            logger.error("Error flushing write-behind batch of {} updates, retrying row by row", batch.size(), e);
+        }
+        // Одна "ядовитая" строка не должна блокировать остальные обновления батча
+        for (PendingUpdate update : batch) {
+            try {
+                List<PendingUpdate> single = Collections.singletonList(update);
+                recordApplied(single, batchWriter.write(single));
+            } catch (Exception e) {
+                droppedUpdates.incrementAndGet();
+                logger.error("Dropping write-behind update for user id: {}", update.id, e);
+            }
+        }
+    }
+
+    // Обновление, не задевшее ни одной строки, потеряно: пользователь удалён или перенесён в архив
+    private void recordApplied(List<PendingUpdate> batch, int[] updateCounts) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (updateCounts[i] == 0) {
+                droppedUpdates.incrementAndGet();
+                logger.warn("Dropping write-behind update for user id: {}, no such row", batch.get(i).id);
+            } else {
+                flushedRows.incrementAndGet();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Unexpected error in write-behind flush", e);
+        }
+    }
+
+    private void overlayPending(User user) {
+        lock.lock();
+        try {
+            PendingUpdate update = pending.get(user.getId());
+            if (update != null) {
+                update.applyTo(user);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Long findPendingIdByEmail(String email, Long excludeUserId) {
+        String normalizedEmail = EmailNormalizer.normalize(email);
+        lock.lock();
+        try {
+            for (PendingUpdate update : pending.values()) {
+                if (update.email != null && EmailNormalizer.normalize(update.email).equals(normalizedEmail)
+                        && !update.id.equals(excludeUserId)) {
+                    return update.id;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int[] writeJdbcBatch(List<PendingUpdate> batch) {
+        Transaction transaction = null;
+        Session session = null;
+        try {
+            session = HibernateUtil.getSessionFactory().openSession();
+            transaction = session.beginTransaction();
+            // Срок есть только у сброса в потоке вызывающего (flush перед upsert и транзакцией), не у фонового
+            session.doWork(Deadline::applyCurrent);
+            int[] updateCounts = session.doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+                    for (PendingUpdate update : batch) {
+                        statement.setString(1, update.name);
+                        statement.setString(2, update.email);
+                        statement.setString(3, EmailNormalizer.normalize(update.email));
+                        if (update.age != null) {
+                            statement.setInt(4, update.age);
+                        } else {
+                            statement.setNull(4, Types.INTEGER);
+                        }
+                        statement.setLong(5, update.id);
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch();
+                }
+            });
+            transaction.commit();
+            HibernateUtil.getRouter().markWrite();
+            return updateCounts;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new RuntimeException("Error writing write-behind batch", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Consumer;
+
+// Чтение файлов ColumnarUserWriter; в памяти одновременно не больше одной группы строк
+public final class ColumnarUserReader {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+
+    private ColumnarUserReader() {
+    }
+
+    public static long read(Path file, ExportCompression compression, Consumer<User> consumer) throws IOException {
+        try (InputStream in = compression.wrap(
+                new BufferedInputStream(Files.newInputStream(file), ExportCompression.BUFFER_SIZE))) {
+            return read(in, consumer);
+        }
+    }
+
+    public static long read(InputStream in, Consumer<User> consumer) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != ColumnarUserWriter.MAGIC) {
+            throw new IOException("Not a columnar user export");
+        }
+        byte version = data.readByte();
+        if (version != ColumnarUserWriter.VERSION) {
+            throw new IOException("Unsupported columnar export version: " + version);
+        }
+        long total = 0;
+        for (int rows = (int) readVarLong(data); rows > 0; rows = (int) readVarLong(data)) {
+            Column ids = Column.read(data);
+            Column names = Column.read(data);
+            Column emails = Column.read(data);
+            Column ages = Column.read(data);
+            Column createdAts = Column.read(data);
+            long id = 0;
+            long createdAtMicros = 0;
+            for (int i = 0; i < rows; i++) {
+                id += unzigzag(ids.readVarLong());
+                createdAtMicros += unzigzag(createdAts.readVarLong());
+                long age = ages.readVarLong();
+                User user = new User();
+                user.setId(id);
+                user.setName(names.readString());
+                user.setEmail(emails.readString());
+                user.setAge(age != 0 ? (int) unzigzag(age - 1) : null);
+                user.setCreatedAt(EPOCH.plus(createdAtMicros, ChronoUnit.MICROS));
+                consumer.accept(user);
+            }
+            total += rows;
+        }
+        return total;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static final class Column {
+        final byte[] bytes;
+        int position;
+
+        private Column(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        static Column read(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[(int) ColumnarUserReader.readVarLong(in)];
+            in.readFully(bytes);
+            return new Column(bytes);
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Компактный столбцовый формат выгрузки. Строки копятся группами по {@link #ROW_GROUP_SIZE};
+ * внутри группы каждый столбец лежит отдельным блоком (varint-длина + данные), так что читатель
+ * может пропустить ненужные столбцы, а память писателя ограничена одной группой.
+ *
+ * Файл: MAGIC (int), VERSION (byte), группы, затем varint 0.
+ * Группа: varint число строк, затем блоки id, name, email, age, created_at.
+ * id и created_at (микросекунды UTC) — zigzag-varint дельты от предыдущей строки группы;
+ * строки — varint-длина + UTF-8; age — zigzag(age) + 1, где 0 означает null.
+ */
+final class ColumnarUserWriter implements UserRowWriter {
+
+    static final int MAGIC = 0x55434F4C; // "UCOL"
+    static final byte VERSION = 1;
+    static final int ROW_GROUP_SIZE = 8_192;
+
+    private final DataOutputStream out;
+    private final ColumnBuffer ids = new ColumnBuffer();
+    private final ColumnBuffer names = new ColumnBuffer();
+    private final ColumnBuffer emails = new ColumnBuffer();
+    private final ColumnBuffer ages = new ColumnBuffer();
+    private final ColumnBuffer createdAts = new ColumnBuffer();
+    private final ColumnBuffer[] columns = {ids, names, emails, ages, createdAts};
+
+    private int rows;
+    private long previousId;
+    private long previousCreatedAt;
+
+    ColumnarUserWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void write(long id, String name, String email, Integer age, LocalDateTime createdAt) throws IOException {
+        long createdAtMicros = toEpochMicros(createdAt);
+        ids.writeVarLong(zigzag(id - previousId));
+        names.writeString(name);
+        emails.writeString(email);
+        ages.writeVarLong(age != null ? zigzag(age) + 1 : 0);
+        createdAts.writeVarLong(zigzag(createdAtMicros - previousCreatedAt));
+        previousId = id;
+        previousCreatedAt = createdAtMicros;
+        if (++rows == ROW_GROUP_SIZE) {
+            flushGroup();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rows > 0) {
+            flushGroup();
+        }
+        writeVarLong(out, 0);
+        out.flush();
+    }
+
+    private void flushGroup() throws IOException {
+        writeVarLong(out, rows);
+        for (ColumnBuffer column : columns) {
+            writeVarLong(out, column.size);
+            out.write(column.bytes, 0, column.size);
+            column.size = 0;
+        }
+        rows = 0;
+        previousId = 0;
+        previousCreatedAt = 0;
+    }
+
+    static long toEpochMicros(LocalDateTime value) {
+        return ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), value);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    // Растущий буфер одного столбца; переиспользуется между группами
+    private static final class ColumnBuffer {
+        byte[] bytes = new byte[16 * 1024];
+        int size;
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
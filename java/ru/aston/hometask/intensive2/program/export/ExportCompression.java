@@ -0,0 +1,32 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public enum ExportCompression {
+    NONE(""),
+    GZIP(".gz");
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String suffix;
+
+    ExportCompression(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    OutputStream wrap(OutputStream out) throws IOException {
+        return this == GZIP ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+
+    InputStream wrap(InputStream in) throws IOException {
+        return this == GZIP ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.aston.hometask.intensive2.program.export;
+
+public enum ExportFormat {
+    // Формирует сам PostgreSQL через COPY TO STDOUT
+    CSV("csv"),
+    JSONL("jsonl"),
+    // Блоки по столбцам, см. ColumnarUserWriter
+    COLUMNAR("ucol");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import ru.aston.hometask.intensive2.program.util.JsonStrings;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+
+// Один JSON-объект на строку
+final class JsonLinesUserWriter implements UserRowWriter {
+
+    private final Writer out;
+
+    JsonLinesUserWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(long id, String name, String email, Integer age, LocalDateTime createdAt) throws IOException {
+        out.write("{\"id\":");
+        out.write(Long.toString(id));
+        out.write(",\"name\":");
+        JsonStrings.write(out, name);
+        out.write(",\"email\":");
+        JsonStrings.write(out, email);
+        out.write(",\"age\":");
+        out.write(age != null ? age.toString() : "null");
+        out.write(",\"createdAt\":");
+        JsonStrings.write(out, createdAt != null ? createdAt.toString() : null);
+        out.write("}\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+}
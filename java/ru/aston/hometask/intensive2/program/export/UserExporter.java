@@ -0,0 +1,127 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Потоковая выгрузка всей таблицы users в файл. Строки не собираются в список:
+ * CSV формирует сам PostgreSQL (COPY TO STDOUT), JSONL и столбцовый формат читаются
+ * серверным курсором порциями по {@link #FETCH_SIZE}. Запись идёт в буферизованный
+ * FileChannel во временный файл, который по завершении атомарно переименовывается.
+ */
+public class UserExporter {
+
+    private static final Logger logger = LogManager.getLogger(UserExporter.class);
+
+    static final int FETCH_SIZE = 5_000;
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    private static final String COPY_SQL = "copy (select id, name, email, age, created_at from %s order by id)"
+            + " to stdout with (format csv, header true)";
+    private static final String SELECT_SQL = "select id, name, email, age, created_at from %s order by id";
+
+    private final SessionFactory sessionFactory;
+    private final String copySql;
+    private final String selectSql;
+
+    public UserExporter(SessionFactory sessionFactory) {
+        this(sessionFactory, "users");
+    }
+
+    // source — таблица или представление с колонками users, например users_all вместе с архивом
+    public UserExporter(SessionFactory sessionFactory, String source) {
+        this.sessionFactory = sessionFactory;
+        this.copySql = String.format(COPY_SQL, source);
+        this.selectSql = String.format(SELECT_SQL, source);
+    }
+
+    // Возвращает число выгруженных строк
+    public long export(Path target, ExportFormat format, ExportCompression compression) {
+        logger.info("Exporting users to {} as {} ({})", target, format, compression);
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        long started = System.nanoTime();
+        try {
+            long rows;
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream out = compression.wrap(
+                         new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE))) {
+                rows = Transactions.inJdbcTransaction(sessionFactory, connection -> write(connection, format, out));
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Exported {} users to {} in {} ms", rows, target, (System.nanoTime() - started) / 1_000_000);
+            return rows;
+        } catch (Exception e) {
+            deleteQuietly(partial);
+            logger.error("Error exporting users to {}", target, e);
+            throw new RuntimeException("Error exporting users", e);
+        }
+    }
+
+    private long write(Connection connection, ExportFormat format, OutputStream out) throws SQLException {
+        try {
+            if (format == ExportFormat.CSV) {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(copySql, out);
+            }
+            UserRowWriter writer = format == ExportFormat.JSONL
+                    ? new JsonLinesUserWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                    OUTPUT_BUFFER_SIZE))
+                    : new ColumnarUserWriter(out);
+            long rows = stream(connection, writer);
+            writer.finish();
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Драйвер PostgreSQL использует курсор только при fetchSize > 0 и выключенном autocommit
+    private long stream(Connection connection, UserRowWriter writer) throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement(selectSql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            long rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int age = resultSet.getInt(4);
+                    Integer nullableAge = resultSet.wasNull() ? null : age;
+                    Timestamp createdAt = resultSet.getTimestamp(5);
+                    writer.write(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                            nullableAge, createdAt.toLocalDateTime());
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete partial export {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.aston.hometask.intensive2.program.export;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+// Строка пишется из колонок курсора напрямую, без промежуточного объекта User
+interface UserRowWriter {
+
+    void write(long id, String name, String email, Integer age, LocalDateTime createdAt) throws IOException;
+
+    // Дописывает буферизованный хвост; поток закрывает вызывающий
+    void finish() throws IOException;
+}
@@ -0,0 +1,97 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import ru.aston.hometask.intensive2.program.dao.ForwardingUserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static ru.aston.hometask.intensive2.program.jfr.OperationRecorder.*;
+
+// Событие UserDaoEvent на каждый вызов DAO, в том числе внутри inTransaction
+public class JfrUserDao extends ForwardingUserDao {
+
+    public JfrUserDao(UserDao delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return record("findById", KEY_ID, () -> delegate.findById(id), OperationRecorder::rows);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return record("findAll", KEY_NONE, delegate::findAll, List::size);
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return record("findAllById", KEY_IDS, () -> delegate.findAllById(ids), List::size);
+    }
+
+    @Override
+    public User save(User user) {
+        return record("save", KEY_ENTITY, () -> delegate.save(user), ONE_ROW);
+    }
+
+    @Override
+    public User update(User user) {
+        return record("update", KEY_ID, () -> delegate.update(user), ONE_ROW);
+    }
+
+    @Override
+    public void delete(Long id) {
+        record("delete", KEY_ID, () -> {
+            delegate.delete(id);
+            return null;
+        }, ONE_ROW);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return record("findByEmail", KEY_EMAIL, () -> delegate.findByEmail(email), OperationRecorder::rows);
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return record("isEmailExistsForOtherUser", KEY_EMAIL,
+                () -> delegate.isEmailExistsForOtherUser(email, excludeUserId), exists -> exists ? 1 : 0);
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        return record("findByQuery", KEY_QUERY, () -> delegate.findByQuery(query), List::size);
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return record("searchByName", KEY_NAME, () -> delegate.searchByName(fragment, limit), List::size);
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return record("upsertByEmail", KEY_EMAIL, () -> delegate.upsertByEmail(user), ONE_ROW);
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return record("upsertAll", KEY_EMAIL, () -> delegate.upsertAll(users), List::size);
+    }
+
+    // Событие единицы работы охватывает вложенные вызовы; их подвремена суммируются в нём
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        return record("inTransaction", KEY_NONE, () -> super.inTransaction(work), result -> 0);
+    }
+
+    private static <T> T record(String operation, String keyType, Supplier<T> call, ToIntFunction<? super T> rows) {
+        return OperationRecorder.record(new UserDaoEvent(), operation, keyType, call, rows);
+    }
+}
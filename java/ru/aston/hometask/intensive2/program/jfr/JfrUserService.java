@@ -0,0 +1,85 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static ru.aston.hometask.intensive2.program.jfr.OperationRecorder.*;
+
+// Событие UserServiceEvent на каждый вызов сервиса; повторы при конфликте версий входят в одно событие
+public class JfrUserService implements UserService {
+
+    private final UserService delegate;
+
+    public JfrUserService(UserService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return record("createUser", KEY_ENTITY, () -> delegate.createUser(name, email, age), ONE_ROW);
+    }
+
+    @Override
+    public Optional<User> getUserById(Long id) {
+        return record("getUserById", KEY_ID, () -> delegate.getUserById(id), OperationRecorder::rows);
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return record("getAllUsers", KEY_NONE, delegate::getAllUsers, List::size);
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return record("updateUser", KEY_ID, () -> delegate.updateUser(id, name, email, age), ONE_ROW);
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        record("deleteUser", KEY_ID, () -> {
+            delegate.deleteUser(id);
+            return null;
+        }, ONE_ROW);
+    }
+
+    @Override
+    public Optional<User> getUserByEmail(String email) {
+        return record("getUserByEmail", KEY_EMAIL, () -> delegate.getUserByEmail(email), OperationRecorder::rows);
+    }
+
+    @Override
+    public boolean isEmailUnique(String email) {
+        return record("isEmailUnique", KEY_EMAIL, () -> delegate.isEmailUnique(email), unique -> unique ? 0 : 1);
+    }
+
+    @Override
+    public List<User> findUsers(UserQuery query) {
+        return record("findUsers", KEY_QUERY, () -> delegate.findUsers(query), List::size);
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return record("searchByName", KEY_NAME, () -> delegate.searchByName(fragment, limit), List::size);
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return record("upsertByEmail", KEY_EMAIL, () -> delegate.upsertByEmail(user), ONE_ROW);
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return record("upsertAll", KEY_EMAIL, () -> delegate.upsertAll(users), List::size);
+    }
+
+    private static <T> T record(String operation, String keyType, Supplier<T> call, ToIntFunction<? super T> rows) {
+        return OperationRecorder.record(new UserServiceEvent(), operation, keyType, call, rows);
+    }
+}
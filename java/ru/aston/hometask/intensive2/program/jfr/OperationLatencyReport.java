@@ -0,0 +1,219 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Таблица задержек по операциям из записи JFR с событиями UserDaoEvent и UserServiceEvent.
+ * Подвремена — средние на один вызов, в миллисекундах.
+ *
+ * Запись с профилем resources/jfr/user-operations.jfc:
+ * -XX:StartFlightRecording=settings=default,settings=user-operations.jfc,filename=users.jfr
+ * Запуск: OperationLatencyReport users.jfr
+ */
+public final class OperationLatencyReport {
+
+    private static final String HEADER = String.format("%-7s %-26s %8s %7s %9s %9s %9s %9s %9s %9s %9s %9s",
+            "layer", "operation", "count", "failed", "p50 ms", "p95 ms", "p99 ms", "max ms",
+            "open ms", "tx ms", "commit ms", "rows");
+
+    private OperationLatencyReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: OperationLatencyReport <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.print(format(summarize(Paths.get(args[0]))));
+    }
+
+    // Сначала сервисный слой, затем DAO; внутри слоя — по убыванию суммарного времени
+    public static List<OperationStats> summarize(Path recording) throws IOException {
+        Map<String, Accumulator> byOperation = new TreeMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String layer = layer(event.getEventType().getName());
+                if (layer != null) {
+                    String operation = event.getString("operation");
+                    byOperation.computeIfAbsent(layer + ' ' + operation, key -> new Accumulator(layer, operation))
+                            .add(event);
+                }
+            }
+        }
+        List<OperationStats> result = new ArrayList<>();
+        byOperation.values().forEach(accumulator -> result.add(accumulator.toStats()));
+        result.sort(Comparator.comparing((OperationStats stats) -> !stats.getLayer().equals("service"))
+                .thenComparing(Comparator.comparingLong(OperationStats::getTotalNanos).reversed()));
+        return result;
+    }
+
+    public static String format(List<OperationStats> stats) {
+        StringBuilder out = new StringBuilder(HEADER).append(System.lineSeparator());
+        for (OperationStats row : stats) {
+            out.append(String.format("%-7s %-26s %8d %7d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.1f",
+                    row.getLayer(), row.getOperation(), row.getCount(), row.getFailed(),
+                    millis(row.getP50Nanos()), millis(row.getP95Nanos()), millis(row.getP99Nanos()),
+                    millis(row.getMaxNanos()), millis(row.getAvgSessionOpenNanos()),
+                    millis(row.getAvgTransactionNanos()), millis(row.getAvgCommitNanos()), row.getAvgRows()))
+                    .append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    private static String layer(String eventName) {
+        if (UserServiceEvent.NAME.equals(eventName)) {
+            return "service";
+        }
+        return UserDaoEvent.NAME.equals(eventName) ? "dao" : null;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    public static final class OperationStats {
+        private final String layer;
+        private final String operation;
+        private final int count;
+        private final int failed;
+        private final long totalNanos;
+        private final long p50Nanos;
+        private final long p95Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+        private final long avgSessionOpenNanos;
+        private final long avgTransactionNanos;
+        private final long avgCommitNanos;
+        private final double avgRows;
+
+        private OperationStats(String layer, String operation, int count, int failed, long totalNanos,
+                               long[] sortedDurations, long avgSessionOpenNanos, long avgTransactionNanos,
+                               long avgCommitNanos, double avgRows) {
+            this.layer = layer;
+            this.operation = operation;
+            this.count = count;
+            this.failed = failed;
+            this.totalNanos = totalNanos;
+            this.p50Nanos = percentile(sortedDurations, 0.50);
+            this.p95Nanos = percentile(sortedDurations, 0.95);
+            this.p99Nanos = percentile(sortedDurations, 0.99);
+            this.maxNanos = sortedDurations[sortedDurations.length - 1];
+            this.avgSessionOpenNanos = avgSessionOpenNanos;
+            this.avgTransactionNanos = avgTransactionNanos;
+            this.avgCommitNanos = avgCommitNanos;
+            this.avgRows = avgRows;
+        }
+
+        // Ближайший ранг: наименьшее значение, не меньше которого доля p всех замеров
+        private static long percentile(long[] sorted, double p) {
+            int rank = (int) Math.ceil(p * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        public String getLayer() {
+            return layer;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        // Вызовы с исходом, отличным от ok
+        public int getFailed() {
+            return failed;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP95Nanos() {
+            return p95Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getAvgSessionOpenNanos() {
+            return avgSessionOpenNanos;
+        }
+
+        public long getAvgTransactionNanos() {
+            return avgTransactionNanos;
+        }
+
+        public long getAvgCommitNanos() {
+            return avgCommitNanos;
+        }
+
+        public double getAvgRows() {
+            return avgRows;
+        }
+    }
+
+    private static final class Accumulator {
+        private final String layer;
+        private final String operation;
+        private long[] durations = new long[16];
+        private int count;
+        private int failed;
+        private long total;
+        private long sessionOpen;
+        private long transaction;
+        private long commit;
+        private long rows;
+
+        Accumulator(String layer, String operation) {
+            this.layer = layer;
+            this.operation = operation;
+        }
+
+        void add(RecordedEvent event) {
+            long duration = event.getDuration().toNanos();
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = duration;
+            total += duration;
+            if (!UserOperationEvent.OUTCOME_OK.equals(event.getString("outcome"))) {
+                failed++;
+            }
+            sessionOpen += event.getDuration("sessionOpen").toNanos();
+            transaction += event.getDuration("transaction").toNanos();
+            commit += event.getDuration("commit").toNanos();
+            rows += event.getInt("rows");
+        }
+
+        OperationStats toStats() {
+            long[] sorted = Arrays.copyOf(durations, count);
+            Arrays.sort(sorted);
+            return new OperationStats(layer, operation, count, failed, total, sorted, sessionOpen / count,
+                    transaction / count, commit / count, (double) rows / count);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import ru.aston.hometask.intensive2.program.dao.OptimisticLockConflictException;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Запись событий JFR вокруг операций. Пока запись не идёт, isEnabled() ложно: событие не заполняется,
+ * поток не отмечается, и addTimings сводится к чтению пустого ThreadLocal.
+ */
+public final class OperationRecorder {
+
+    static final String KEY_ID = "id";
+    static final String KEY_IDS = "ids";
+    static final String KEY_EMAIL = "email";
+    static final String KEY_QUERY = "query";
+    static final String KEY_NAME = "name";
+    static final String KEY_ENTITY = "entity";
+    static final String KEY_NONE = "none";
+
+    static final ToIntFunction<Object> ONE_ROW = result -> 1;
+
+    private static final ThreadLocal<UserOperationEvent> current = new ThreadLocal<>();
+
+    private OperationRecorder() {
+    }
+
+    // Вызывают реализации DAO после каждой своей сессии или транзакции
+    public static void addTimings(long sessionOpenNanos, long transactionNanos, long commitNanos) {
+        UserOperationEvent event = current.get();
+        if (event != null) {
+            event.sessionOpen += sessionOpenNanos;
+            event.transaction += transactionNanos;
+            event.commit += commitNanos;
+        }
+    }
+
+    static <T> T record(UserOperationEvent event, String operation, String keyType, Supplier<T> call,
+                        ToIntFunction<? super T> rows) {
+        if (!event.isEnabled()) {
+            return call.get();
+        }
+        event.operation = operation;
+        event.keyType = keyType;
+        UserOperationEvent outer = current.get();
+        current.set(event);
+        event.begin();
+        try {
+            T result = call.get();
+            event.rows = rows.applyAsInt(result);
+            event.outcome = UserOperationEvent.OUTCOME_OK;
+            return result;
+        } catch (RuntimeException | Error e) {
+            event.outcome = outcome(e);
+            throw e;
+        } finally {
+            event.end();
+            // Подвремена вложенной операции входят и во внешнюю
+            if (outer != null) {
+                outer.sessionOpen += event.sessionOpen;
+                outer.transaction += event.transaction;
+                outer.commit += event.commit;
+                current.set(outer);
+            } else {
+                current.remove();
+            }
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+
+    static int rows(Optional<?> result) {
+        return result.isPresent() ? 1 : 0;
+    }
+
+    private static String outcome(Throwable e) {
+        if (e instanceof OptimisticLockConflictException) {
+            return UserOperationEvent.OUTCOME_CONFLICT;
+        }
+        if (e instanceof IllegalArgumentException) {
+            return UserOperationEvent.OUTCOME_REJECTED;
+        }
+        return UserOperationEvent.OUTCOME_ERROR;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(UserDaoEvent.NAME)
+@Label("User DAO Operation")
+@Description("Вызов метода UserDao")
+public final class UserDaoEvent extends UserOperationEvent {
+
+    public static final String NAME = "ru.aston.user.DaoOperation";
+}
@@ -0,0 +1,45 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Общие поля событий JFR для операций с пользователями. Подвремена — суммы по всем сессиям
+ * и транзакциям, открытым за время операции, включая вложенные вызовы DAO.
+ */
+@Category({"User Service"})
+@StackTrace(false)
+abstract class UserOperationEvent extends Event {
+
+    static final String OUTCOME_OK = "ok";
+    static final String OUTCOME_REJECTED = "rejected";
+    static final String OUTCOME_CONFLICT = "conflict";
+    static final String OUTCOME_ERROR = "error";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key Type")
+    String keyType;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Session Open")
+    @Timespan(Timespan.NANOSECONDS)
+    long sessionOpen;
+
+    @Label("Transaction")
+    @Timespan(Timespan.NANOSECONDS)
+    long transaction;
+
+    @Label("Commit")
+    @Timespan(Timespan.NANOSECONDS)
+    long commit;
+}
@@ -0,0 +1,13 @@
+package ru.aston.hometask.intensive2.program.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(UserServiceEvent.NAME)
+@Label("User Service Operation")
+@Description("Вызов метода UserService")
+public final class UserServiceEvent extends UserOperationEvent {
+
+    public static final String NAME = "ru.aston.user.ServiceOperation";
+}
@@ -0,0 +1,157 @@
+package ru.aston.hometask.intensive2.program.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Адаптивный лимит одновременных вызовов по градиенту задержки (как Gradient2 в Netflix concurrency-limits).
+ * Короткое и долгое скользящие средние времени ответа сравниваются: пока короткое не выше долгого
+ * больше чем в tolerance раз, лимит растёт на sqrt(limit); когда за соединения пула начинает выстраиваться
+ * очередь, короткое среднее растёт и лимит сжимается пропорционально. Вызов сверх лимита сразу отклоняется:
+ * очередь перед базой не копится, а задержка принятых вызовов остаётся близкой к задержке без нагрузки.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 4;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_TOLERANCE = 1.5;
+
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double SMOOTHING = 0.2;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLongArray rejected = new AtomicLongArray(Priority.values().length);
+    private volatile double estimatedLimit;
+    // Скользящие средние по классам: у чтений и пакетных операций разное время ответа. Наносекунды, под монитором this
+    private final double[] shortRtt = new double[Priority.values().length];
+    private final double[] longRtt = new double[Priority.values().length];
+
+    public AdaptiveConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_TOLERANCE);
+    }
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this(initialLimit, minLimit, maxLimit, tolerance, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance,
+                               LongSupplier nanoClock) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("Tolerance must be at least 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.nanoClock = nanoClock;
+        this.estimatedLimit = initialLimit;
+    }
+
+    public Permit acquire(Priority priority) {
+        int allowed = Math.max(1, (int) (getLimit() * priority.getShare()));
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= allowed) {
+                rejected.incrementAndGet(priority.ordinal());
+                throw new LimitExceededException("Concurrency limit reached for " + priority + " operations: "
+                        + current + " in flight, " + allowed + " allowed");
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        return new Permit(priority, nanoClock.getAsLong(), current + 1);
+    }
+
+    public int getLimit() {
+        return (int) estimatedLimit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejected(Priority priority) {
+        return rejected.get(priority.ordinal());
+    }
+
+    private synchronized void onSample(Priority priority, long rttNanos, int inflightAtStart, boolean dropped) {
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * DROP_BACKOFF);
+            return;
+        }
+        int index = priority.ordinal();
+        double shortAverage = shortRtt[index] == 0
+                ? rttNanos
+                : shortRtt[index] + (rttNanos - shortRtt[index]) / SHORT_WINDOW;
+        double longAverage = longRtt[index] == 0 ? rttNanos : longRtt[index];
+        // Долгое среднее — задержка без очереди: при перегрузке оно почти замирает, иначе подтянулось бы
+        // к задержке с очередью и лимит перестал бы сжиматься. Вниз оно догоняет быстрее, чем растёт
+        int window = shortAverage > tolerance * longAverage ? LONG_WINDOW * 10 : LONG_WINDOW;
+        longAverage += (rttNanos - longAverage) / window;
+        if (longAverage / shortAverage > 2) {
+            longAverage *= 0.95;
+        }
+        shortRtt[index] = shortAverage;
+        longRtt[index] = longAverage;
+        // Нагрузка меньше половины лимита ничего не говорит о ёмкости базы
+        if (inflightAtStart < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longAverage / shortAverage));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    // Разрешение на один вызов; освобождается ровно одним из методов
+    public final class Permit {
+        private final Priority priority;
+        private final long startNanos;
+        private final int inflightAtStart;
+        private boolean released;
+
+        private Permit(Priority priority, long startNanos, int inflightAtStart) {
+            this.priority = priority;
+            this.startNanos = startNanos;
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        // Вызов завершён, его время — замер для лимита
+        public void success() {
+            if (release()) {
+                onSample(priority, nanoClock.getAsLong() - startNanos, inflightAtStart, false);
+            }
+        }
+
+        // Вызов не уложился в срок или отменён базой: лимит сразу снижается
+        public void dropped() {
+            if (release()) {
+                onSample(priority, nanoClock.getAsLong() - startNanos, inflightAtStart, true);
+            }
+        }
+
+        // Ошибка, не связанная с нагрузкой (например, валидация): замер не учитывается
+        public void ignore() {
+            release();
+        }
+
+        private boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            inflight.decrementAndGet();
+            return true;
+        }
+    }
+}
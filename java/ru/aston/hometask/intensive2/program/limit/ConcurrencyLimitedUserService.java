@@ -0,0 +1,99 @@
+package ru.aston.hometask.intensive2.program.limit;
+
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+import ru.aston.hometask.intensive2.program.util.DeadlineExceededException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Пропускает вызовы сервиса через {@link AdaptiveConcurrencyLimiter}. Точечные чтения — READ,
+ * одиночные записи — WRITE, выгрузка всей таблицы и пакетный upsert — BULK.
+ * Сверх лимита бросается {@link LimitExceededException}, делегат не вызывается.
+ */
+public class ConcurrencyLimitedUserService implements UserService {
+
+    private final UserService delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedUserService(UserService delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return limited(Priority.WRITE, () -> delegate.createUser(name, email, age));
+    }
+
+    @Override
+    public Optional<User> getUserById(Long id) {
+        return limited(Priority.READ, () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return limited(Priority.BULK, delegate::getAllUsers);
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return limited(Priority.WRITE, () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        limited(Priority.WRITE, () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<User> getUserByEmail(String email) {
+        return limited(Priority.READ, () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public boolean isEmailUnique(String email) {
+        return limited(Priority.READ, () -> delegate.isEmailUnique(email));
+    }
+
+    @Override
+    public List<User> findUsers(UserQuery query) {
+        return limited(Priority.READ, () -> delegate.findUsers(query));
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return limited(Priority.READ, () -> delegate.searchByName(fragment, limit));
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return limited(Priority.WRITE, () -> delegate.upsertByEmail(user));
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return limited(Priority.BULK, () -> delegate.upsertAll(users));
+    }
+
+    private <T> T limited(Priority priority, Supplier<T> call) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(priority);
+        try {
+            T result = call.get();
+            permit.success();
+            return result;
+        } catch (DeadlineExceededException e) {
+            permit.dropped();
+            throw e;
+        } finally {
+            permit.ignore();
+        }
+    }
+}
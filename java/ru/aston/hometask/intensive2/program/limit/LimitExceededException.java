@@ -0,0 +1,9 @@
+package ru.aston.hometask.intensive2.program.limit;
+
+// Вызов отклонён без ожидания: одновременных операций этого класса уже столько, сколько позволяет лимит
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.aston.hometask.intensive2.program.limit;
+
+// Доля текущего лимита, доступная классу: массовые операции не могут занять всю ёмкость и вытеснить чтения
+public enum Priority {
+    READ(1.0),
+    WRITE(0.8),
+    BULK(0.5);
+
+    private final double share;
+
+    Priority(double share) {
+        this.share = share;
+    }
+
+    public double getShare() {
+        return share;
+    }
+}
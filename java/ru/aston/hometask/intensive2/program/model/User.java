@@ -1,14 +1,24 @@
 package ru.aston.hometask.intensive2.program.model;
 
+import org.hibernate.annotations.GenericGenerator;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_age_id", columnList = "age, id"),
+        @Index(name = "idx_users_created_at_id", columnList = "created_at, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_users_email_normalized", columnNames = "email_normalized")
+})
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "snowflake")
+    @GenericGenerator(name = "snowflake",
+            strategy = "ru.aston.hometask.intensive2.program.util.SnowflakeIdentifierGenerator")
     private Long id;
 
     @Column(name = "name", nullable = false, length = 100)
@@ -17,12 +27,21 @@ public class User {
     @Column(name = "email", nullable = false, unique = true, length = 150)
     private String email;
 
+    // Nullable только на время бэкфилла существующих строк (EmailNormalizationMigration)
+    @Column(name = "email_normalized", length = 150)
+    private String emailNormalized;
+
     @Column(name = "age")
     private Integer age;
 
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    // null у ещё не сохранённого объекта; default 0 заполняет колонку у существующих строк при hbm2ddl update
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     public User() {
         this.createdAt = LocalDateTime.now();
     }
@@ -30,10 +49,20 @@ public class User {
     public User(String name, String email, Integer age) {
         this();
         this.name = name;
-        this.email = email;
+        setEmail(email);
         this.age = age;
     }
 
+    public User(User other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.email = other.email;
+        this.emailNormalized = other.emailNormalized;
+        this.age = other.age;
+        this.createdAt = other.createdAt;
+        this.version = other.version;
+    }
+
     // Геттеры и сеттеры
     public Long getId() {
         return id;
@@ -57,6 +86,11 @@ public class User {
 
     public void setEmail(String email) {
         this.email = email;
+        this.emailNormalized = EmailNormalizer.normalize(email);
+    }
+
+    public String getEmailNormalized() {
+        return emailNormalized;
     }
 
     public Integer getAge() {
@@ -75,9 +109,24 @@ public class User {
         this.createdAt = createdAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalizeEmail() {
+        this.emailNormalized = EmailNormalizer.normalize(email);
+    }
+
     @Override
     public String toString() {
-        return String.format("User{id=%d, name='%s', email='%s', age=%d, createdAt=%s}",
-                id, name, email, age, createdAt);
+        // Конкатенация вместо String.format: toString вызывается на каждую строку при выводе списков
+        return "User{id=" + id + ", name='" + name + "', email='" + email + "', age=" + age
+                + ", createdAt=" + createdAt + '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.aston.hometask.intensive2.program.model;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "user_email_routes")
+public class UserEmailRoute {
+
+    @Id
+    @Column(name = "email", nullable = false, length = 150)
+    private String email;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    public UserEmailRoute() {
+    }
+
+    public UserEmailRoute(String email, Long userId) {
+        this.email = email;
+        this.userId = userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+}
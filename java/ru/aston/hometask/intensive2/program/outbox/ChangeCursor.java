@@ -0,0 +1,71 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import java.util.Objects;
+
+/**
+ * Позиция в потоке изменений: (id транзакции, номер записи outbox). Порядок по номеру записи
+ * не совпадает с порядком фиксации транзакций, поэтому курсор включает id транзакции,
+ * а {@link UserOutbox#changesSince} отдаёт только записи уже завершённых транзакций.
+ */
+public final class ChangeCursor implements Comparable<ChangeCursor> {
+
+    public static final ChangeCursor START = new ChangeCursor(0, 0);
+
+    private final long transactionId;
+    private final long sequence;
+
+    public ChangeCursor(long transactionId, long sequence) {
+        this.transactionId = transactionId;
+        this.sequence = sequence;
+    }
+
+    // Формат toString(): "transactionId:sequence"
+    public static ChangeCursor parse(String value) {
+        int separator = value == null ? -1 : value.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid change cursor: " + value);
+        }
+        try {
+            return new ChangeCursor(Long.parseLong(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid change cursor: " + value, e);
+        }
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public int compareTo(ChangeCursor other) {
+        int byTransaction = Long.compare(transactionId, other.transactionId);
+        return byTransaction != 0 ? byTransaction : Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChangeCursor)) {
+            return false;
+        }
+        ChangeCursor that = (ChangeCursor) o;
+        return transactionId == that.transactionId && sequence == that.sequence;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transactionId, sequence);
+    }
+
+    @Override
+    public String toString() {
+        return transactionId + ":" + sequence;
+    }
+}
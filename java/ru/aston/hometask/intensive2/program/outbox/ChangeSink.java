@@ -0,0 +1,14 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import java.util.List;
+
+/**
+ * Получатель пачек изменений от {@link OutboxRelay}. Пачка передаётся повторно, если accept
+ * завершился исключением, поэтому доставка — «хотя бы один раз»: получатель должен
+ * переносить повторы (например, сверяясь с {@link UserChange#getCursor()}).
+ */
+@FunctionalInterface
+public interface ChangeSink {
+
+    void accept(List<UserChange> changes) throws Exception;
+}
@@ -0,0 +1,66 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.JsonStrings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Дописывает изменения в файл, по одному JSON-объекту на строку. Пачка сбрасывается на диск
+ * (force) до возврата из accept, чтобы курсор ретранслятора не обгонял записанное.
+ */
+public class FileChangeSink implements ChangeSink, AutoCloseable {
+
+    private final FileChannel channel;
+    private final Writer out;
+
+    public FileChangeSink(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    @Override
+    public synchronized void accept(List<UserChange> changes) throws IOException {
+        for (UserChange change : changes) {
+            out.write("{\"cursor\":\"");
+            out.write(change.getCursor().toString());
+            out.write("\",\"operation\":\"");
+            out.write(change.getOperation().name());
+            out.write("\",\"userId\":");
+            out.write(Long.toString(change.getUserId()));
+            out.write(",\"changedAt\":\"");
+            out.write(change.getChangedAt().toString());
+            out.write('"');
+            User user = change.getUser();
+            if (user != null) {
+                out.write(",\"name\":");
+                JsonStrings.write(out, user.getName());
+                out.write(",\"email\":");
+                JsonStrings.write(out, user.getEmail());
+                out.write(",\"age\":");
+                out.write(user.getAge() != null ? user.getAge().toString() : "null");
+                out.write(",\"version\":");
+                out.write(Long.toString(user.getVersion()));
+            }
+            out.write("}\n");
+        }
+        out.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая ретрансляция outbox в {@link ChangeSink}: пачки по порядку курсора, курсор потребителя
+ * сохраняется в user_outbox_offsets после успешной доставки, так что после перезапуска
+ * ретранслятор продолжает с места остановки. Ошибка получателя — повтор той же пачки с задержкой.
+ */
+public class OutboxRelay implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(OutboxRelay.class);
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final UserOutbox outbox;
+    private final String consumer;
+    private final ChangeSink sink;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile ChangeCursor cursor = ChangeCursor.START;
+
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public OutboxRelay(UserOutbox outbox, String consumer, ChangeSink sink, int batchSize, long pollIntervalMillis) {
+        if (batchSize <= 0 || batchSize > UserOutbox.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + UserOutbox.MAX_BATCH_SIZE);
+        }
+        this.outbox = outbox;
+        this.consumer = consumer;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.thread = new Thread(this::run, "user-outbox-relay-" + consumer);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        cursor = outbox.loadCursor(consumer).orElse(ChangeCursor.START);
+        logger.info("Relaying user changes to {} from cursor {}", consumer, cursor);
+        thread.start();
+    }
+
+    public ChangeCursor getCursor() {
+        return cursor;
+    }
+
+    public long getRelayed() {
+        return relayed.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    // Ждёт окончания текущей доставки; прерывание — только если получатель завис
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(pollIntervalMillis + 5_000);
+            if (thread.isAlive()) {
+                thread.interrupt();
+                thread.join(1_000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Одна итерация: true, если пачка была полной и стоит сразу запросить следующую
+    boolean relayOnce() throws Exception {
+        List<UserChange> changes = outbox.changesSince(cursor, batchSize);
+        if (changes.isEmpty()) {
+            return false;
+        }
+        sink.accept(changes);
+        ChangeCursor last = changes.get(changes.size() - 1).getCursor();
+        outbox.saveCursor(consumer, last);
+        cursor = last;
+        relayed.addAndGet(changes.size());
+        logger.debug("Relayed {} user changes to {}, cursor {}", changes.size(), consumer, last);
+        return changes.size() == batchSize;
+    }
+
+    private void run() {
+        long retryDelay = pollIntervalMillis;
+        while (running) {
+            try {
+                boolean more = relayOnce();
+                retryDelay = pollIntervalMillis;
+                if (!more) {
+                    sleep(pollIntervalMillis);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                failures.incrementAndGet();
+                logger.warn("Error relaying user changes to {}, retrying in {} ms", consumer, retryDelay, e);
+                sleep(retryDelay);
+                retryDelay = Math.min(Math.max(1, retryDelay * 2), MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+        logger.info("Stopped relaying user changes to {} at cursor {}", consumer, cursor);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
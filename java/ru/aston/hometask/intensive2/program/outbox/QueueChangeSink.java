@@ -0,0 +1,21 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+// Передаёт изменения в локальную очередь; заполненная очередь притормаживает ретранслятор
+public class QueueChangeSink implements ChangeSink {
+
+    private final BlockingQueue<UserChange> queue;
+
+    public QueueChangeSink(BlockingQueue<UserChange> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void accept(List<UserChange> changes) throws InterruptedException {
+        for (UserChange change : changes) {
+            queue.put(change);
+        }
+    }
+}
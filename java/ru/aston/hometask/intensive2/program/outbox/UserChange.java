@@ -0,0 +1,66 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Одно изменение пользователя из outbox; для DELETED состояние строки не передаётся.
+ * Порядок курсора — порядок начала транзакций, а не коммитов: транзакция, начатая раньше, может
+ * обновить ту же строку позже и прийти первой. Получатель применяет событие, только если
+ * {@link #isNewerThan(Long)} для последней применённой версии пользователя.
+ */
+public final class UserChange {
+
+    public enum Operation {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final ChangeCursor cursor;
+    private final Operation operation;
+    private final long userId;
+    private final User user;
+    private final LocalDateTime changedAt;
+
+    public UserChange(ChangeCursor cursor, Operation operation, long userId, User user, LocalDateTime changedAt) {
+        this.cursor = cursor;
+        this.operation = operation;
+        this.userId = userId;
+        this.user = user;
+        this.changedAt = changedAt;
+    }
+
+    public ChangeCursor getCursor() {
+        return cursor;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    // null для DELETED
+    public User getUser() {
+        return user;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    // appliedVersion — версия последнего применённого события пользователя, null — событий ещё не было
+    public boolean isNewerThan(Long appliedVersion) {
+        return appliedVersion == null || operation == Operation.DELETED || user.getVersion() > appliedVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "UserChange{cursor=" + cursor + ", operation=" + operation + ", userId=" + userId
+                + ", changedAt=" + changedAt + '}';
+    }
+}
@@ -0,0 +1,189 @@
+package ru.aston.hometask.intensive2.program.outbox;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Таблица изменений пользователей (transactional outbox). Запись в user_outbox делает триггер на users,
+ * поэтому событие фиксируется в той же транзакции, что и изменение строки, — для save/update/delete
+ * UserDaoImpl и для любых других путей записи (upsert, write-behind, миграции).
+ */
+public class UserOutbox {
+
+    private static final Logger logger = LogManager.getLogger(UserOutbox.class);
+
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    private static final String[] INSTALL_DDL = {
+            "create table if not exists user_outbox ("
+                    + " id bigserial primary key,"
+                    + " txid bigint not null default txid_current(),"
+                    + " user_id bigint not null,"
+                    + " operation varchar(6) not null,"
+                    + " name varchar(100), email varchar(150), age integer, user_created_at timestamp, version bigint,"
+                    + " changed_at timestamp not null default now())",
+            "create index if not exists idx_user_outbox_txid_id on user_outbox (txid, id)",
+            "create table if not exists user_outbox_offsets ("
+                    + " consumer varchar(200) primary key, txid bigint not null, seq bigint not null)",
+            // Перенос строки в архив и обратно — не изменение пользователя, см. UserArchive
+            "create or replace function record_user_change() returns trigger as $$ begin"
+                    + " if coalesce(current_setting('user.archive_move', true), '') = 'on' then return null; end if;"
+                    + " if tg_op = 'DELETE' then"
+                    + " insert into user_outbox (user_id, operation) values (old.id, tg_op);"
+                    + " else"
+                    + " insert into user_outbox (user_id, operation, name, email, age, user_created_at, version)"
+                    + " values (new.id, tg_op, new.name, new.email, new.age, new.created_at, new.version);"
+                    + " end if; return null; end $$ language plpgsql",
+            "do $$ begin"
+                    + " if not exists (select 1 from pg_trigger where tgname = 'users_record_change') then"
+                    + " create trigger users_record_change after insert or update or delete on users"
+                    + " for each row execute procedure record_user_change();"
+                    + " end if; end $$"
+    };
+
+    // Только записи транзакций старше горизонта снимка: все они уже завершены, и новых с меньшим txid не появится
+    private static final String CHANGES_SINCE_SQL = "select txid, id, user_id, operation, name, email, age,"
+            + " user_created_at, version, changed_at from user_outbox"
+            + " where (txid, id) > (?, ?) and txid < txid_snapshot_xmin(txid_current_snapshot())"
+            + " order by txid, id limit ?";
+    private static final String LOAD_CURSOR_SQL = "select txid, seq from user_outbox_offsets where consumer = ?";
+    private static final String SAVE_CURSOR_SQL = "insert into user_outbox_offsets (consumer, txid, seq)"
+            + " values (?, ?, ?) on conflict (consumer) do update set txid = excluded.txid, seq = excluded.seq";
+    private static final String PURGE_SQL = "delete from user_outbox where changed_at < ?";
+
+    private final SessionFactory sessionFactory;
+
+    public UserOutbox(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public void install() {
+        try {
+            Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String ddl : INSTALL_DDL) {
+                        statement.execute(ddl);
+                    }
+                }
+                return null;
+            });
+            logger.info("User outbox is installed");
+        } catch (Exception e) {
+            logger.error("Error installing user outbox", e);
+            throw new RuntimeException("Error installing user outbox", e);
+        }
+    }
+
+    // Изменения строго после cursor в порядке курсора; пустой список — новых завершённых изменений нет.
+    // События одного пользователя могут прийти не по возрастанию версии, см. UserChange#isNewerThan
+    public List<UserChange> changesSince(ChangeCursor cursor, int limit) {
+        if (cursor == null) {
+            throw new IllegalArgumentException("Change cursor cannot be null");
+        }
+        if (limit <= 0 || limit > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(CHANGES_SINCE_SQL)) {
+                    statement.setLong(1, cursor.getTransactionId());
+                    statement.setLong(2, cursor.getSequence());
+                    statement.setInt(3, limit);
+                    List<UserChange> changes = new ArrayList<>();
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            changes.add(readChange(resultSet));
+                        }
+                    }
+                    return changes;
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error reading user changes since {}", cursor, e);
+            throw new RuntimeException("Error reading user changes", e);
+        }
+    }
+
+    public Optional<ChangeCursor> loadCursor(String consumer) {
+        try {
+            return Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(LOAD_CURSOR_SQL)) {
+                    statement.setString(1, consumer);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        return resultSet.next()
+                                ? Optional.of(new ChangeCursor(resultSet.getLong(1), resultSet.getLong(2)))
+                                : Optional.<ChangeCursor>empty();
+                    }
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error loading change cursor of consumer {}", consumer, e);
+            throw new RuntimeException("Error loading change cursor", e);
+        }
+    }
+
+    public void saveCursor(String consumer, ChangeCursor cursor) {
+        try {
+            Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SAVE_CURSOR_SQL)) {
+                    statement.setString(1, consumer);
+                    statement.setLong(2, cursor.getTransactionId());
+                    statement.setLong(3, cursor.getSequence());
+                    return statement.executeUpdate();
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error saving change cursor {} of consumer {}", cursor, consumer, e);
+            throw new RuntimeException("Error saving change cursor", e);
+        }
+    }
+
+    // Хранение ограничено по времени: потребитель, отставший дольше срока, должен пересинхронизироваться
+    public int purgeOlderThan(LocalDateTime threshold) {
+        try {
+            int deleted = Transactions.inJdbcTransaction(sessionFactory, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(PURGE_SQL)) {
+                    statement.setTimestamp(1, Timestamp.valueOf(threshold));
+                    return statement.executeUpdate();
+                }
+            });
+            logger.info("Purged {} user changes older than {}", deleted, threshold);
+            return deleted;
+        } catch (Exception e) {
+            logger.error("Error purging user changes older than {}", threshold, e);
+            throw new RuntimeException("Error purging user changes", e);
+        }
+    }
+
+    private static UserChange readChange(ResultSet resultSet) throws SQLException {
+        ChangeCursor cursor = new ChangeCursor(resultSet.getLong("txid"), resultSet.getLong("id"));
+        long userId = resultSet.getLong("user_id");
+        String operation = resultSet.getString("operation");
+        LocalDateTime changedAt = resultSet.getTimestamp("changed_at").toLocalDateTime();
+        if (operation.equals("DELETE")) {
+            return new UserChange(cursor, UserChange.Operation.DELETED, userId, null, changedAt);
+        }
+        User user = new User();
+        user.setId(userId);
+        user.setName(resultSet.getString("name"));
+        user.setEmail(resultSet.getString("email"));
+        user.setAge((Integer) resultSet.getObject("age"));
+        user.setCreatedAt(resultSet.getTimestamp("user_created_at").toLocalDateTime());
+        user.setVersion(resultSet.getLong("version"));
+        return new UserChange(cursor, operation.equals("INSERT") ? UserChange.Operation.CREATED
+                : UserChange.Operation.UPDATED, userId, user, changedAt);
+    }
+}
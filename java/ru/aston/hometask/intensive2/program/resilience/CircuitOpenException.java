@@ -0,0 +1,9 @@
+package ru.aston.hometask.intensive2.program.resilience;
+
+// База считается недоступной: вызов отклонён сразу, без попытки соединения
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
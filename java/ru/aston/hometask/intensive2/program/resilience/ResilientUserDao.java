@@ -0,0 +1,163 @@
+package ru.aston.hometask.intensive2.program.resilience;
+
+import ru.aston.hometask.intensive2.program.dao.ForwardingUserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Повторы временных ошибок базы и предохранитель вокруг DAO. Чтения и upsert повторяются при любой временной
+ * ошибке; save, update, delete и единица работы — только если транзакция точно откатилась
+ * (см. {@link TransientErrors}), иначе повтор мог бы применить запись дважды. Вызовы внутри inTransaction
+ * идут напрямую: повторяется вся единица работы целиком, а не отдельный запрос в прерванной транзакции.
+ */
+public class ResilientUserDao extends ForwardingUserDao {
+
+    private final RetryPolicy retryPolicy;
+    private final RetryBudget retryBudget;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadLocal<Boolean> inUnitOfWork = ThreadLocal.withInitial(() -> false);
+
+    public ResilientUserDao(UserDao delegate, RetryPolicy retryPolicy, RetryBudget retryBudget,
+                            CircuitBreaker circuitBreaker) {
+        super(delegate);
+        this.retryPolicy = retryPolicy;
+        this.retryBudget = retryBudget;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return idempotent(() -> delegate.findById(id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return idempotent(delegate::findAll);
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return idempotent(() -> delegate.findAllById(ids));
+    }
+
+    @Override
+    public User save(User user) {
+        return nonIdempotent(() -> delegate.save(user));
+    }
+
+    @Override
+    public User update(User user) {
+        return nonIdempotent(() -> delegate.update(user));
+    }
+
+    @Override
+    public void delete(Long id) {
+        nonIdempotent(() -> {
+            delegate.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return idempotent(() -> delegate.findByEmail(email));
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return idempotent(() -> delegate.isEmailExistsForOtherUser(email, excludeUserId));
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        return idempotent(() -> delegate.findByQuery(query));
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return idempotent(() -> delegate.searchByName(fragment, limit));
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return idempotent(() -> delegate.upsertByEmail(user));
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return idempotent(() -> delegate.upsertAll(users));
+    }
+
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        if (inUnitOfWork.get()) {
+            return delegate.inTransaction(dao -> work.apply(this));
+        }
+        return nonIdempotent(() -> {
+            inUnitOfWork.set(true);
+            try {
+                return delegate.inTransaction(dao -> work.apply(this));
+            } finally {
+                inUnitOfWork.set(false);
+            }
+        });
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    private <T> T idempotent(Supplier<T> action) {
+        return execute(action, false);
+    }
+
+    private <T> T nonIdempotent(Supplier<T> action) {
+        return execute(action, true);
+    }
+
+    private <T> T execute(Supplier<T> action, boolean rolledBackOnly) {
+        if (inUnitOfWork.get()) {
+            return action.get();
+        }
+        retryBudget.onCall();
+        return retryPolicy.execute(() -> attempt(action), e -> {
+            TransientErrors.Kind kind = TransientErrors.classify(e);
+            boolean retryable = kind == TransientErrors.Kind.ROLLED_BACK
+                    || (kind == TransientErrors.Kind.CONNECTION_LOST && !rolledBackOnly);
+            return retryable && retryBudget.tryRetry();
+        });
+    }
+
+    private <T> T attempt(Supplier<T> action) {
+        circuitBreaker.acquire();
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            if (TransientErrors.isUnavailable(e)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onUnrelatedFailure();
+            }
+            throw e;
+        }
+        circuitBreaker.onSuccess();
+        return result;
+    }
+}
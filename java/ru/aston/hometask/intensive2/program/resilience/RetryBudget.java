@@ -0,0 +1,40 @@
+package ru.aston.hometask.intensive2.program.resilience;
+
+/**
+ * Бюджет повторов: каждый вызов добавляет ratio жетона, каждый повтор забирает целый.
+ * При массовом отказе повторов не больше доли ratio от потока вызовов, так что они не умножают нагрузку
+ * на восстанавливающуюся базу; запас maxTokens покрывает редкие одиночные сбои.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+    private long exhausted;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens <= 0) {
+            throw new IllegalArgumentException("Ratio must be non-negative and max tokens positive");
+        }
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void onCall() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            exhausted++;
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized long getExhausted() {
+        return exhausted;
+    }
+}
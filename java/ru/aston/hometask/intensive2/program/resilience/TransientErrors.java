@@ -0,0 +1,60 @@
+package ru.aston.hometask.intensive2.program.resilience;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Классификация ошибок базы по SQLSTATE в цепочке причин. ROLLED_BACK — транзакция точно не применена:
+ * соединение не установлено, сериализационный конфликт или взаимоблокировка; такой вызов можно повторить
+ * даже для неидемпотентной записи. CONNECTION_LOST — соединение оборвалось посреди работы, и неизвестно,
+ * дошёл ли коммит; повторять безопасно только чтения и идемпотентные записи.
+ */
+public final class TransientErrors {
+
+    public enum Kind {
+        NONE,
+        ROLLED_BACK,
+        CONNECTION_LOST
+    }
+
+    // 08001, 08004 — соединение не установлено; 57P03 — сервер ещё не принимает соединения (failover)
+    private static final Set<String> NOT_CONNECTED = Set.of("08001", "08004", "57P03");
+    private static final Set<String> CONTENTION = Set.of("40001", "40P01");
+    private static final String CONNECTION_CLASS = "08";
+    // Сервер остановлен администратором или при переключении
+    private static final Set<String> SERVER_SHUTDOWN = Set.of("57P01", "57P02");
+
+    private TransientErrors() {
+    }
+
+    public static Kind classify(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state == null) {
+                    continue;
+                }
+                if (NOT_CONNECTED.contains(state) || CONTENTION.contains(state)) {
+                    return Kind.ROLLED_BACK;
+                }
+                if (state.startsWith(CONNECTION_CLASS) || SERVER_SHUTDOWN.contains(state)) {
+                    return Kind.CONNECTION_LOST;
+                }
+            }
+        }
+        return Kind.NONE;
+    }
+
+    // Признак недоступности базы, а не конкуренции транзакций: такие ошибки считает предохранитель
+    public static boolean isUnavailable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && (state.startsWith(CONNECTION_CLASS) || state.startsWith("57P"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
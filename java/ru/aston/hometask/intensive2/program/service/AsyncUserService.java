@@ -0,0 +1,33 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncUserService {
+    CompletableFuture<User> createUser(String name, String email, Integer age);
+
+    CompletableFuture<Optional<User>> getUserById(Long id);
+
+    CompletableFuture<List<User>> getAllUsers();
+
+    CompletableFuture<User> updateUser(Long id, String name, String email, Integer age);
+
+    CompletableFuture<Void> deleteUser(Long id);
+
+    CompletableFuture<Optional<User>> getUserByEmail(String email);
+
+    CompletableFuture<Boolean> isEmailUnique(String email);
+
+    CompletableFuture<List<User>> findUsers(UserQuery query);
+
+    CompletableFuture<List<User>> searchByName(String fragment, int limit);
+
+    CompletableFuture<User> upsertByEmail(User user);
+
+    CompletableFuture<List<User>> upsertAll(Collection<User> users);
+}
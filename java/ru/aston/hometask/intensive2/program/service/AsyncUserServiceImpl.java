@@ -0,0 +1,190 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.dao.AsyncUserDao;
+import ru.aston.hometask.intensive2.program.dao.OptimisticLockConflictException;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static ru.aston.hometask.intensive2.program.service.UserValidator.*;
+
+// Ошибки валидации возвращаются как завершённые с исключением future, а не бросаются из метода
+public class AsyncUserServiceImpl implements AsyncUserService {
+
+    private static final Logger logger = LogManager.getLogger(AsyncUserServiceImpl.class);
+    private final AsyncUserDao userDao;
+    private final RetryPolicy conflictRetryPolicy;
+
+    public AsyncUserServiceImpl(AsyncUserDao userDao) {
+        this(userDao, RetryPolicy.noRetry());
+    }
+
+    public AsyncUserServiceImpl(AsyncUserDao userDao, RetryPolicy conflictRetryPolicy) {
+        this.userDao = userDao;
+        this.conflictRetryPolicy = conflictRetryPolicy;
+    }
+
+    @Override
+    public CompletableFuture<User> createUser(String name, String email, Integer age) {
+        logger.info("Creating new user: {}, {}, {}", name, email, age);
+        try {
+            validateUserData(name, email, age);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Проверка и вставка в одной транзакции, как в UserServiceImpl
+        return userDao.inTransaction(dao -> {
+            if (dao.findByEmail(EmailNormalizer.normalize(email)).isPresent()) {
+                throw new IllegalArgumentException("User with this email already exists: " + email);
+            }
+            return dao.save(new User(name, email.trim(), age));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getUserById(Long id) {
+        logger.info("Getting user by id: {}", id);
+        try {
+            validateId(id);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return userDao.findById(id);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> getAllUsers() {
+        logger.info("Getting all users");
+        return userDao.findAll();
+    }
+
+    @Override
+    public CompletableFuture<User> updateUser(Long id, String name, String email, Integer age) {
+        logger.info("Updating user with id: {}", id);
+        boolean emailChanged = email != null && !email.trim().isEmpty();
+        boolean nameChanged = name != null && !name.trim().isEmpty();
+        try {
+            validateId(id);
+            if (emailChanged) {
+                validateEmail(email);
+            }
+            if (nameChanged) {
+                validateName(name);
+            }
+            if (age != null) {
+                validateAge(age);
+            }
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Function<UserDao, User> change = dao -> {
+            User existingUser = dao.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + id));
+
+            if (emailChanged) {
+                if (dao.isEmailExistsForOtherUser(EmailNormalizer.normalize(email), id)) {
+                    throw new IllegalArgumentException("Another user with this email already exists: " + email);
+                }
+                existingUser.setEmail(email.trim());
+            }
+            if (nameChanged) {
+                existingUser.setName(name);
+            }
+            if (age != null) {
+                existingUser.setAge(age);
+            }
+            return dao.update(existingUser);
+        };
+        // Поиск, проверка email и merge — одна транзакция на primary; при конфликте версий она повторяется
+        return conflictRetryPolicy.executeAsync(() -> userDao.inTransaction(change),
+                e -> e instanceof OptimisticLockConflictException);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteUser(Long id) {
+        logger.info("Deleting user with id: {}", id);
+        try {
+            validateId(id);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return userDao.inTransaction(dao -> {
+            if (dao.findById(id).isEmpty()) {
+                throw new IllegalArgumentException("User not found with id: " + id);
+            }
+            dao.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getUserByEmail(String email) {
+        logger.info("Getting user by email: {}", email);
+        if (email == null || email.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Email cannot be empty"));
+        }
+        return userDao.findByEmail(EmailNormalizer.normalize(email));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isEmailUnique(String email) {
+        return userDao.findByEmail(EmailNormalizer.normalize(email)).thenApply(Optional::isEmpty);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findUsers(UserQuery query) {
+        logger.info("Finding users by query");
+        if (query == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Query cannot be null"));
+        }
+        return userDao.findByQuery(query);
+    }
+
+    @Override
+    public CompletableFuture<User> upsertByEmail(User user) {
+        logger.info("Upserting user by email: {}", user != null ? user.getEmail() : null);
+        User record;
+        try {
+            record = toUpsertRecord(user);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return userDao.upsertByEmail(record);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> upsertAll(Collection<User> users) {
+        logger.info("Upserting {} users", users != null ? users.size() : 0);
+        List<User> records;
+        try {
+            records = toUpsertRecords(users);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return userDao.upsertAll(records);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> searchByName(String fragment, int limit) {
+        logger.info("Searching users by name fragment: {}", fragment);
+        try {
+            validateSearchFragment(fragment);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return userDao.searchByName(fragment.trim(), limit);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.Deadline;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Задаёт срок каждому вызову сервиса: общий или свой для метода (ключ — имя метода).
+ * Срок, уже заданный вызывающим через {@link Deadline#within}, может только сократиться.
+ * Нулевой срок для метода отключает ограничение.
+ */
+public class TimeLimitedUserService implements UserService {
+
+    private final UserService delegate;
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts;
+
+    public TimeLimitedUserService(UserService delegate, Duration defaultTimeout, Map<String, Duration> timeouts) {
+        this.delegate = delegate;
+        this.defaultTimeout = defaultTimeout;
+        this.timeouts = Map.copyOf(timeouts);
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return limited("createUser", () -> delegate.createUser(name, email, age));
+    }
+
+    @Override
+    public Optional<User> getUserById(Long id) {
+        return limited("getUserById", () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return limited("getAllUsers", delegate::getAllUsers);
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return limited("updateUser", () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        limited("deleteUser", () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<User> getUserByEmail(String email) {
+        return limited("getUserByEmail", () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public boolean isEmailUnique(String email) {
+        return limited("isEmailUnique", () -> delegate.isEmailUnique(email));
+    }
+
+    @Override
+    public List<User> findUsers(UserQuery query) {
+        return limited("findUsers", () -> delegate.findUsers(query));
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return limited("searchByName", () -> delegate.searchByName(fragment, limit));
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return limited("upsertByEmail", () -> delegate.upsertByEmail(user));
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return limited("upsertAll", () -> delegate.upsertAll(users));
+    }
+
+    private <T> T limited(String operation, Supplier<T> call) {
+        Duration timeout = timeouts.getOrDefault(operation, defaultTimeout);
+        return timeout.isZero() ? call.get() : Deadline.within(timeout, call);
+    }
+}
@@ -1,7 +1,9 @@
 package ru.aston.hometask.intensive2.program.service;
 
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
 import ru.aston.hometask.intensive2.program.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,5 +21,12 @@ public interface UserService {
     Optional<User> getUserByEmail(String email);
 
     boolean isEmailUnique(String email);
-}
 
+    List<User> findUsers(UserQuery query);
+
+    List<User> searchByName(String fragment, int limit);
+
+    User upsertByEmail(User user);
+
+    List<User> upsertAll(Collection<User> users);
+}
@@ -2,42 +2,58 @@ package ru.aston.hometask.intensive2.program.service;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.dao.OptimisticLockConflictException;
 import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
 import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.trace.Span;
+import ru.aston.hometask.intensive2.program.trace.Tracing;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.RetryPolicy;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+
+import static ru.aston.hometask.intensive2.program.service.UserValidator.*;
 
 public class UserServiceImpl implements UserService {
 
     private static final Logger logger = LogManager.getLogger(UserServiceImpl.class);
     private final UserDao userDao;
+    private final RetryPolicy conflictRetryPolicy;
 
     public UserServiceImpl(UserDao userDao) {
+        this(userDao, RetryPolicy.noRetry());
+    }
+
+    public UserServiceImpl(UserDao userDao, RetryPolicy conflictRetryPolicy) {
         this.userDao = userDao;
+        this.conflictRetryPolicy = conflictRetryPolicy;
     }
 
     @Override
     public User createUser(String name, String email, Integer age) {
         logger.info("Creating new user: {}, {}, {}", name, email, age);
 
-
-        validateUserData(name, email, age);
-
-        if (!isEmailUnique(email)) {
-            throw new IllegalArgumentException("User with this email already exists: " + email);
+        try (Span ignored = Tracing.span("validate")) {
+            validateUserData(name, email, age);
         }
 
-        User user = new User(name, email, age);
-        return userDao.save(user);
+        // Проверка и вставка в одной транзакции; гонку двух вставок закрывает уникальный индекс
+        return userDao.inTransaction(dao -> {
+            if (dao.findByEmail(EmailNormalizer.normalize(email)).isPresent()) {
+                throw new IllegalArgumentException("User with this email already exists: " + email);
+            }
+            return dao.save(new User(name, email.trim(), age));
+        });
     }
 
     @Override
     public Optional<User> getUserById(Long id) {
         logger.info("Getting user by id: {}", id);
-        if (id == null || id <= 0) {
-            throw new IllegalArgumentException("User ID must be positive");
-        }
+        validateId(id);
         return userDao.findById(id);
     }
 
@@ -51,51 +67,64 @@ public class UserServiceImpl implements UserService {
     public User updateUser(Long id, String name, String email, Integer age) {
         logger.info("Updating user with id: {}", id);
 
-        if (id == null || id <= 0) {
-            throw new IllegalArgumentException("User ID must be positive");
-        }
-
-
-        User existingUser = userDao.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + id));
-
-
-        if (email != null && !email.trim().isEmpty()) {
-            validateEmail(email);
-            // Используем новый метод из DAO
-            if (userDao.isEmailExistsForOtherUser(email, id)) {
-                throw new IllegalArgumentException("Another user with this email already exists: " + email);
+        boolean emailChanged = email != null && !email.trim().isEmpty();
+        boolean nameChanged = name != null && !name.trim().isEmpty();
+        try (Span ignored = Tracing.span("validate")) {
+            validateId(id);
+            if (emailChanged) {
+                validateEmail(email);
+            }
+            if (nameChanged) {
+                validateName(name);
+            }
+            if (age != null) {
+                validateAge(age);
             }
-            existingUser.setEmail(email);
-        }
-
-        if (name != null && !name.trim().isEmpty()) {
-            validateName(name);
-            existingUser.setName(name);
         }
 
-        if (age != null) {
-            validateAge(age);
-            existingUser.setAge(age);
-        }
+        Function<UserDao, User> change = dao -> {
+            User existingUser = dao.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + id));
 
-        return userDao.update(existingUser);
+            if (emailChanged) {
+                if (dao.isEmailExistsForOtherUser(EmailNormalizer.normalize(email), id)) {
+                    throw new IllegalArgumentException("Another user with this email already exists: " + email);
+                }
+                existingUser.setEmail(email.trim());
+            }
+            if (nameChanged) {
+                existingUser.setName(name);
+            }
+            if (age != null) {
+                existingUser.setAge(age);
+            }
+            return dao.update(existingUser);
+        };
+        // Write-behind ставит обновление в очередь со слиянием по id; транзакция сбросила бы очередь
+        // и записала строку сразу
+        if (userDao.supportsDeferredUpdates()) {
+            return change.apply(userDao);
+        }
+        // Поиск, проверка email и merge — одна сессия, одно соединение, один коммит.
+        // При конфликте версий вся единица работы повторяется поверх свежего состояния строки
+        return conflictRetryPolicy.execute(() -> userDao.inTransaction(change),
+                e -> e instanceof OptimisticLockConflictException);
     }
 
     @Override
     public void deleteUser(Long id) {
         logger.info("Deleting user with id: {}", id);
 
-        if (id == null || id <= 0) {
-            throw new IllegalArgumentException("User ID must be positive");
-        }
+        validateId(id);
 
-        // Проверяем существование пользователя
-        if (!userDao.findById(id).isPresent()) {
-            throw new IllegalArgumentException("User not found with id: " + id);
-        }
-
-        userDao.delete(id);
+        userDao.inTransaction(dao -> {
+            // Проверяем существование пользователя
+            if (!dao.findById(id).isPresent()) {
+                throw new IllegalArgumentException("User not found with id: " + id);
+            }
+            dao.delete(id);
+            return null;
+        });
     }
 
     @Override
@@ -104,50 +133,39 @@ public class UserServiceImpl implements UserService {
         if (email == null || email.trim().isEmpty()) {
             throw new IllegalArgumentException("Email cannot be empty");
         }
-        return userDao.findByEmail(email);
+        return userDao.findByEmail(EmailNormalizer.normalize(email));
     }
 
     @Override
     public boolean isEmailUnique(String email) {
-        return !userDao.findByEmail(email).isPresent();
+        return !userDao.findByEmail(EmailNormalizer.normalize(email)).isPresent();
     }
 
-
-    private void validateUserData(String name, String email, Integer age) {
-        validateName(name);
-        validateEmail(email);
-        if (age != null) {
-            validateAge(age);
+    @Override
+    public List<User> findUsers(UserQuery query) {
+        logger.info("Finding users by query");
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
         }
+        return userDao.findByQuery(query);
     }
 
-    private void validateName(String name) {
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Name cannot be empty");
-        }
-        if (name.length() > 100) {
-            throw new IllegalArgumentException("Name cannot exceed 100 characters");
-        }
+    @Override
+    public User upsertByEmail(User user) {
+        logger.info("Upserting user by email: {}", user != null ? user.getEmail() : null);
+        return userDao.upsertByEmail(toUpsertRecord(user));
     }
 
-    private void validateEmail(String email) {
-        if (email == null || email.trim().isEmpty()) {
-            throw new IllegalArgumentException("Email cannot be empty");
-        }
-        if (email.length() > 150) {
-            throw new IllegalArgumentException("Email cannot exceed 150 characters");
-        }
-        if (!email.contains("@")) {
-            throw new IllegalArgumentException("Email must contain @ symbol");
-        }
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        logger.info("Upserting {} users", users != null ? users.size() : 0);
+        return userDao.upsertAll(toUpsertRecords(users));
     }
 
-    private void validateAge(Integer age) {
-        if (age < 0) {
-            throw new IllegalArgumentException("Age cannot be negative");
-        }
-        if (age > 150) {
-            throw new IllegalArgumentException("Age cannot exceed 150");
-        }
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        logger.info("Searching users by name fragment: {}", fragment);
+        validateSearchFragment(fragment);
+        return userDao.searchByName(fragment.trim(), limit);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+public interface UserStatsService {
+    long count();
+
+    Map<Integer, Long> countByAgeBucket();
+
+    // Все дни полуинтервала [from, to), включая дни без регистраций
+    Map<LocalDate, Long> signupsPerDay(LocalDate from, LocalDate to);
+
+    OptionalDouble averageAge();
+}
@@ -0,0 +1,104 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.aston.hometask.intensive2.program.dao.UserStatsDao;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Результаты кешируются на короткое время: дашборды опрашивают одни и те же метрики часто
+public class UserStatsServiceImpl implements UserStatsService {
+
+    private static final Logger logger = LogManager.getLogger(UserStatsServiceImpl.class);
+
+    static final long MAX_SIGNUP_RANGE_DAYS = 366;
+
+    private static final class CachedValue {
+        final Object value;
+        final long expiresAtMillis;
+
+        CachedValue(Object value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final UserStatsDao statsDao;
+    private final long cacheTtlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CachedValue> cache = new ConcurrentHashMap<>();
+
+    public UserStatsServiceImpl(UserStatsDao statsDao, long cacheTtlMillis) {
+        this(statsDao, cacheTtlMillis, System::currentTimeMillis);
+    }
+
+    UserStatsServiceImpl(UserStatsDao statsDao, long cacheTtlMillis, LongSupplier clock) {
+        this.statsDao = statsDao;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    public long count() {
+        logger.info("Counting users");
+        return cached("count", statsDao::count);
+    }
+
+    @Override
+    public Map<Integer, Long> countByAgeBucket() {
+        logger.info("Counting users by age bucket");
+        return cached("ageBuckets", () -> Collections.unmodifiableMap(statsDao.countByAgeBucket()));
+    }
+
+    @Override
+    public Map<LocalDate, Long> signupsPerDay(LocalDate from, LocalDate to) {
+        logger.info("Counting signups from {} to {}", from, to);
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Date range cannot be empty");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("From date must be before to date");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > MAX_SIGNUP_RANGE_DAYS) {
+            throw new IllegalArgumentException("Date range cannot exceed " + MAX_SIGNUP_RANGE_DAYS + " days");
+        }
+        return cached("signups:" + from + ":" + to, () -> {
+            Map<LocalDate, Long> signups = new TreeMap<>();
+            for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+                signups.put(day, 0L);
+            }
+            signups.putAll(statsDao.signupsPerDay(from, to));
+            return Collections.unmodifiableMap(signups);
+        });
+    }
+
+    @Override
+    public OptionalDouble averageAge() {
+        logger.info("Computing average user age");
+        return cached("averageAge", statsDao::averageAge);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Supplier<T> loader) {
+        long now = clock.getAsLong();
+        CachedValue cachedValue = cache.get(key);
+        if (cachedValue != null && cachedValue.expiresAtMillis > now) {
+            return (T) cachedValue.value;
+        }
+        T value = loader.get();
+        if (cacheTtlMillis > 0) {
+            // Ключей немного, но диапазоны дат произвольные — заодно выбрасываем протухшие
+            cache.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            cache.put(key, new CachedValue(value, now + cacheTtlMillis));
+        }
+        return value;
+    }
+}
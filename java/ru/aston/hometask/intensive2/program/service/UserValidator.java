@@ -0,0 +1,91 @@
+package ru.aston.hometask.intensive2.program.service;
+
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+final class UserValidator {
+
+    private UserValidator() {
+    }
+
+    static void validateId(Long id) {
+        if (id == null || id <= 0) {
+            throw new IllegalArgumentException("User ID must be positive");
+        }
+    }
+
+    static void validateUserData(String name, String email, Integer age) {
+        validateName(name);
+        validateEmail(email);
+        if (age != null) {
+            validateAge(age);
+        }
+    }
+
+    static void validateName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be empty");
+        }
+        if (name.length() > 100) {
+            throw new IllegalArgumentException("Name cannot exceed 100 characters");
+        }
+    }
+
+    static void validateEmail(String email) {
+        if (email == null || email.trim().isEmpty()) {
+            throw new IllegalArgumentException("Email cannot be empty");
+        }
+        if (email.length() > 150) {
+            throw new IllegalArgumentException("Email cannot exceed 150 characters");
+        }
+        if (!email.contains("@")) {
+            throw new IllegalArgumentException("Email must contain @ symbol");
+        }
+    }
+
+    // Короче трёх символов триграммный индекс не помогает
+    static void validateSearchFragment(String fragment) {
+        if (fragment == null || fragment.trim().length() < 3) {
+            throw new IllegalArgumentException("Search fragment must contain at least 3 characters");
+        }
+        if (fragment.length() > 100) {
+            throw new IllegalArgumentException("Search fragment cannot exceed 100 characters");
+        }
+    }
+
+    // Запись для upsert: проверенная копия, email без пробелов по краям; время создания сохраняется
+    static User toUpsertRecord(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        validateUserData(user.getName(), user.getEmail(), user.getAge());
+        User record = new User(user.getName(), user.getEmail().trim(), user.getAge());
+        if (user.getCreatedAt() != null) {
+            record.setCreatedAt(user.getCreatedAt());
+        }
+        return record;
+    }
+
+    static List<User> toUpsertRecords(Collection<User> users) {
+        if (users == null) {
+            throw new IllegalArgumentException("Users cannot be null");
+        }
+        List<User> records = new ArrayList<>(users.size());
+        for (User user : users) {
+            records.add(toUpsertRecord(user));
+        }
+        return records;
+    }
+
+    static void validateAge(Integer age) {
+        if (age < 0) {
+            throw new IllegalArgumentException("Age cannot be negative");
+        }
+        if (age > 150) {
+            throw new IllegalArgumentException("Age cannot exceed 150");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Пишет файл снимка за один проход. Число записей известно заранее, поэтому записи, индекс
+ * и куча пишутся в свои области файла одновременно, каждая через свой буфер.
+ * Файл собирается рядом с целевым (.part) и переименовывается только после записи заголовка.
+ */
+final class SnapshotFileBuilder implements Closeable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path target;
+    private final Path partial;
+    private final FileChannel channel;
+    private final byte kind;
+    private final int recordCount;
+    private final int indexCount;
+    private final long baseChecksum;
+
+    // id записанных записей: по ним индекс находит номер записи
+    private final long[] ids;
+    private int records;
+    private int indexEntries;
+
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(SnapshotLayout.RECORD_SIZE * 1_024);
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(SnapshotLayout.INDEX_ENTRY_SIZE * 4_096);
+    private final ByteBuffer heapBuffer = ByteBuffer.allocate(256 * 1024);
+    private long recordPosition;
+    private long indexPosition;
+    private final long heapStart;
+    private long heapPosition;
+    private long heapSize;
+    private boolean finished;
+
+    SnapshotFileBuilder(Path target, byte kind, int recordCount, int indexCount, long baseChecksum)
+            throws IOException {
+        if (indexCount > recordCount) {
+            throw new IllegalArgumentException("Index cannot be larger than the record set");
+        }
+        this.target = target;
+        this.partial = target.resolveSibling(target.getFileName() + ".part");
+        this.kind = kind;
+        this.recordCount = recordCount;
+        this.indexCount = indexCount;
+        this.baseChecksum = baseChecksum;
+        this.ids = new long[recordCount];
+        this.recordPosition = SnapshotLayout.HEADER_SIZE;
+        this.indexPosition = SnapshotLayout.indexStart(recordCount);
+        this.heapStart = SnapshotLayout.heapStart(recordCount, indexCount);
+        this.heapPosition = heapStart;
+        this.channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    void addRecord(long id, long version, LocalDateTime createdAt, String name, String email, Integer age)
+            throws IOException {
+        addRecord(id, version, SnapshotLayout.toEpochMicros(createdAt), name.getBytes(StandardCharsets.UTF_8),
+                email.getBytes(StandardCharsets.UTF_8), age != null ? age : SnapshotLayout.NULL_AGE, 0);
+    }
+
+    void addTombstone(long id) throws IOException {
+        addRecord(id, 0, 0, EMPTY, EMPTY, SnapshotLayout.NULL_AGE, SnapshotLayout.FLAG_TOMBSTONE);
+    }
+
+    void addRecord(long id, long version, long createdAtMicros, byte[] name, byte[] email, int age, int flags)
+            throws IOException {
+        if (records == recordCount) {
+            throw new IllegalStateException("Snapshot already holds " + recordCount + " records");
+        }
+        if (records > 0 && id <= ids[records - 1]) {
+            throw new IllegalArgumentException("Records must be added in ascending id order");
+        }
+        ids[records++] = id;
+        if (recordBuffer.remaining() < SnapshotLayout.RECORD_SIZE) {
+            recordPosition = flush(recordBuffer, recordPosition);
+        }
+        recordBuffer.putLong(id)
+                .putLong(version)
+                .putLong(createdAtMicros)
+                .putInt(appendHeap(name)).putInt(name.length)
+                .putInt(appendHeap(email)).putInt(email.length)
+                .putInt(age)
+                .putInt(flags);
+    }
+
+    // Вызывается в порядке нормализованных email; запись с этим id уже должна быть добавлена
+    void addIndexEntry(long id, byte[] normalizedEmail) throws IOException {
+        if (indexEntries == indexCount) {
+            throw new IllegalStateException("Email index already holds " + indexCount + " entries");
+        }
+        int record = Arrays.binarySearch(ids, 0, records, id);
+        if (record < 0) {
+            throw new IllegalArgumentException("No record with id " + id + " for email index");
+        }
+        indexEntries++;
+        if (indexBuffer.remaining() < SnapshotLayout.INDEX_ENTRY_SIZE) {
+            indexPosition = flush(indexBuffer, indexPosition);
+        }
+        indexBuffer.putInt(record).putInt(appendHeap(normalizedEmail)).putInt(normalizedEmail.length);
+    }
+
+    // Возвращает контрольную сумму готового снимка
+    long finish(long createdAtMillis) throws IOException {
+        if (records != recordCount || indexEntries != indexCount) {
+            throw new IllegalStateException("Snapshot is incomplete: " + records + "/" + recordCount
+                    + " records, " + indexEntries + "/" + indexCount + " index entries");
+        }
+        flush(recordBuffer, recordPosition);
+        flush(indexBuffer, indexPosition);
+        flush(heapBuffer, heapPosition);
+        long size = heapStart + heapSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds the 2 GiB limit of a single memory mapping");
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long checksum = SnapshotLayout.checksum(mapped);
+
+        ByteBuffer header = ByteBuffer.allocate(SnapshotLayout.HEADER_SIZE);
+        header.putInt(SnapshotLayout.HEADER_MAGIC, SnapshotLayout.MAGIC)
+                .putShort(SnapshotLayout.HEADER_FORMAT_VERSION, SnapshotLayout.FORMAT_VERSION)
+                .put(SnapshotLayout.HEADER_KIND, kind)
+                .putInt(SnapshotLayout.HEADER_RECORD_COUNT, recordCount)
+                .putInt(SnapshotLayout.HEADER_INDEX_COUNT, indexCount)
+                .putLong(SnapshotLayout.HEADER_HEAP_SIZE, heapSize)
+                .putLong(SnapshotLayout.HEADER_CREATED_AT, createdAtMillis)
+                .putLong(SnapshotLayout.HEADER_BASE_CHECKSUM, baseChecksum)
+                .putLong(SnapshotLayout.HEADER_CHECKSUM, checksum);
+        flush(header.position(SnapshotLayout.HEADER_SIZE), 0);
+        channel.force(true);
+        channel.close();
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return checksum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private int appendHeap(byte[] value) throws IOException {
+        if (heapSize + value.length > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot string heap exceeds 2 GiB");
+        }
+        int offset = (int) heapSize;
+        if (heapBuffer.remaining() < value.length) {
+            heapPosition = flush(heapBuffer, heapPosition);
+        }
+        heapBuffer.put(value);
+        heapSize += value.length;
+        return offset;
+    }
+
+    // Пишет накопленное в буфере по позиции position и возвращает позицию следующей записи
+    private long flush(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+}
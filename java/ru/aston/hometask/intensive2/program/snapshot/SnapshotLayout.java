@@ -0,0 +1,97 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Формат файла снимка. Все числа big-endian, смещения строк отсчитываются от начала кучи.
+ *
+ * Заголовок (64 байта): magic, версия формата, вид (полный/дельта), число записей,
+ * число записей email-индекса, размер кучи, время снимка, контрольная сумма базового снимка
+ * (для дельты) и CRC32C всего, что идёт после заголовка.
+ * Записи (по 48 байт, по возрастанию id): id, version, created_at в микросекундах UTC,
+ * смещение и длина имени, смещение и длина email, возраст, флаги.
+ * Email-индекс (по 12 байт, по байтам UTF-8 нормализованного email): номер записи, смещение и длина.
+ * Куча строк UTF-8.
+ */
+final class SnapshotLayout {
+
+    static final int MAGIC = 0x55534E50; // "USNP"
+    static final short FORMAT_VERSION = 1;
+
+    static final byte KIND_FULL = 0;
+    static final byte KIND_DELTA = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_FORMAT_VERSION = 4;
+    static final int HEADER_KIND = 6;
+    static final int HEADER_RECORD_COUNT = 8;
+    static final int HEADER_INDEX_COUNT = 12;
+    static final int HEADER_HEAP_SIZE = 16;
+    static final int HEADER_CREATED_AT = 24;
+    static final int HEADER_BASE_CHECKSUM = 32;
+    static final int HEADER_CHECKSUM = 40;
+
+    static final int RECORD_SIZE = 48;
+    static final int RECORD_ID = 0;
+    static final int RECORD_VERSION = 8;
+    static final int RECORD_CREATED_AT = 16;
+    static final int RECORD_NAME_OFFSET = 24;
+    static final int RECORD_NAME_LENGTH = 28;
+    static final int RECORD_EMAIL_OFFSET = 32;
+    static final int RECORD_EMAIL_LENGTH = 36;
+    static final int RECORD_AGE = 40;
+    static final int RECORD_FLAGS = 44;
+
+    static final int INDEX_ENTRY_SIZE = 12;
+    static final int INDEX_RECORD = 0;
+    static final int INDEX_OFFSET = 4;
+    static final int INDEX_LENGTH = 8;
+
+    static final int FLAG_TOMBSTONE = 1;
+    static final int NULL_AGE = Integer.MIN_VALUE;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+
+    private SnapshotLayout() {
+    }
+
+    static long indexStart(int recordCount) {
+        return HEADER_SIZE + (long) recordCount * RECORD_SIZE;
+    }
+
+    static long heapStart(int recordCount, int indexCount) {
+        return indexStart(recordCount) + (long) indexCount * INDEX_ENTRY_SIZE;
+    }
+
+    static long toEpochMicros(LocalDateTime value) {
+        return ChronoUnit.MICROS.between(EPOCH, value);
+    }
+
+    static LocalDateTime fromEpochMicros(long micros) {
+        return EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    // Контрольная сумма тела файла, начиная с конца заголовка
+    static long checksum(ByteBuffer file) {
+        CRC32C crc = new CRC32C();
+        crc.update(file.duplicate().position(HEADER_SIZE));
+        return crc.getValue();
+    }
+
+    // Порядок email-индекса: беззнаковое сравнение байтов UTF-8, как COLLATE "C" в PostgreSQL
+    static int compareUtf8(ByteBuffer buffer, int offset, int length, byte[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[i]);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+}
@@ -0,0 +1,305 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Снимок пользователей, отображённый в память (формат — {@link SnapshotLayout}).
+ * Поиск по id и email — бинарный поиск прямо по отображённому файлу, без загрузки в кучу;
+ * объект User создаётся только для найденной записи. Потокобезопасен: чтение идёт
+ * абсолютными методами буфера.
+ */
+public final class UserSnapshot {
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final byte kind;
+    private final int recordCount;
+    private final int indexCount;
+    private final int indexStart;
+    private final int heapStart;
+    private final long createdAtMillis;
+    private final long baseChecksum;
+    private final long checksum;
+
+    private UserSnapshot(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < SnapshotLayout.HEADER_SIZE
+                || buffer.getInt(SnapshotLayout.HEADER_MAGIC) != SnapshotLayout.MAGIC) {
+            throw new IOException("Not a user snapshot: " + file);
+        }
+        short formatVersion = buffer.getShort(SnapshotLayout.HEADER_FORMAT_VERSION);
+        if (formatVersion != SnapshotLayout.FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + formatVersion + ": " + file);
+        }
+        this.kind = buffer.get(SnapshotLayout.HEADER_KIND);
+        this.recordCount = buffer.getInt(SnapshotLayout.HEADER_RECORD_COUNT);
+        this.indexCount = buffer.getInt(SnapshotLayout.HEADER_INDEX_COUNT);
+        this.createdAtMillis = buffer.getLong(SnapshotLayout.HEADER_CREATED_AT);
+        this.baseChecksum = buffer.getLong(SnapshotLayout.HEADER_BASE_CHECKSUM);
+        this.checksum = buffer.getLong(SnapshotLayout.HEADER_CHECKSUM);
+        long heapSize = buffer.getLong(SnapshotLayout.HEADER_HEAP_SIZE);
+        if (recordCount < 0 || indexCount < 0 || indexCount > recordCount
+                || SnapshotLayout.heapStart(recordCount, indexCount) + heapSize != buffer.capacity()) {
+            throw new IOException("Snapshot is truncated or corrupted: " + file);
+        }
+        this.indexStart = (int) SnapshotLayout.indexStart(recordCount);
+        this.heapStart = (int) SnapshotLayout.heapStart(recordCount, indexCount);
+    }
+
+    public static UserSnapshot open(Path file) throws IOException {
+        return open(file, true);
+    }
+
+    // Проверка CRC читает весь файл; без неё открытие стоит только отображения страниц
+    public static UserSnapshot open(Path file, boolean verifyChecksum) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot exceeds the 2 GiB limit of a single memory mapping: " + file);
+            }
+            // Отображение остаётся действительным и после закрытия канала
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        UserSnapshot snapshot = new UserSnapshot(file, buffer);
+        if (verifyChecksum && SnapshotLayout.checksum(buffer) != snapshot.checksum) {
+            throw new IOException("Snapshot checksum mismatch: " + file);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Накладывает дельту на полный снимок и пишет новый полный снимок в target.
+     * Дельта принимается только для того базового снимка, от которого она снята (по контрольной сумме).
+     */
+    public static UserSnapshot applyDelta(UserSnapshot base, UserSnapshot delta, Path target) throws IOException {
+        if (base.isDelta() || !delta.isDelta()) {
+            throw new IllegalArgumentException("Delta must be applied to a full snapshot");
+        }
+        if (delta.baseChecksum != base.checksum) {
+            throw new IOException("Delta " + delta.file + " was not taken against snapshot " + base.file);
+        }
+        int records = mergeRecords(base, delta, null);
+        try (SnapshotFileBuilder builder = new SnapshotFileBuilder(target, SnapshotLayout.KIND_FULL,
+                records, records, 0)) {
+            mergeRecords(base, delta, builder);
+            mergeIndex(base, delta, builder);
+            builder.finish(delta.createdAtMillis);
+        }
+        return open(target, false);
+    }
+
+    // Слияние по id; без builder только считает записи результата
+    private static int mergeRecords(UserSnapshot base, UserSnapshot delta, SnapshotFileBuilder builder)
+            throws IOException {
+        int merged = 0;
+        int i = 0;
+        int j = 0;
+        while (i < base.recordCount || j < delta.recordCount) {
+            if (j >= delta.recordCount || (i < base.recordCount && base.recordId(i) < delta.recordId(j))) {
+                if (builder != null) {
+                    base.copyRecord(i, builder);
+                }
+                merged++;
+                i++;
+                continue;
+            }
+            if (i < base.recordCount && base.recordId(i) == delta.recordId(j)) {
+                i++;
+            }
+            int fromDelta = j++;
+            if (!delta.isTombstone(fromDelta)) {
+                if (builder != null) {
+                    delta.copyRecord(fromDelta, builder);
+                }
+                merged++;
+            }
+        }
+        return merged;
+    }
+
+    // Оба индекса уже упорядочены: записи базы, изменённые или удалённые дельтой, пропускаются
+    private static void mergeIndex(UserSnapshot base, UserSnapshot delta, SnapshotFileBuilder builder)
+            throws IOException {
+        int i = 0;
+        int j = 0;
+        while (i < base.indexCount || j < delta.indexCount) {
+            if (i < base.indexCount && delta.findRecord(base.indexRecordId(i)) >= 0) {
+                i++;
+                continue;
+            }
+            if (j >= delta.indexCount
+                    || (i < base.indexCount && Arrays.compareUnsigned(base.indexEmail(i), delta.indexEmail(j)) < 0)) {
+                builder.addIndexEntry(base.indexRecordId(i), base.indexEmail(i));
+                i++;
+            } else {
+                builder.addIndexEntry(delta.indexRecordId(j), delta.indexEmail(j));
+                j++;
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean isDelta() {
+        return kind == SnapshotLayout.KIND_DELTA;
+    }
+
+    // Для дельты — вместе с удалениями
+    public int size() {
+        return recordCount;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public long getBaseChecksum() {
+        return baseChecksum;
+    }
+
+    public Optional<User> findById(long id) {
+        int record = findRecord(id);
+        return record >= 0 && !isTombstone(record) ? Optional.of(readUser(record)) : Optional.empty();
+    }
+
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        byte[] key = EmailNormalizer.normalize(email).getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = indexCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = indexEntry(middle);
+            int comparison = SnapshotLayout.compareUtf8(buffer,
+                    heapStart + buffer.getInt(entry + SnapshotLayout.INDEX_OFFSET),
+                    buffer.getInt(entry + SnapshotLayout.INDEX_LENGTH), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return Optional.of(readUser(buffer.getInt(entry + SnapshotLayout.INDEX_RECORD)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Пользователи по возрастанию id; удаления дельты пропускаются
+    public void forEach(Consumer<User> consumer) {
+        for (int record = 0; record < recordCount; record++) {
+            if (!isTombstone(record)) {
+                consumer.accept(readUser(record));
+            }
+        }
+    }
+
+    int findRecord(long id) {
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = recordId(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    int indexCount() {
+        return indexCount;
+    }
+
+    long recordId(int record) {
+        return buffer.getLong(recordStart(record) + SnapshotLayout.RECORD_ID);
+    }
+
+    boolean isTombstone(int record) {
+        return (buffer.getInt(recordStart(record) + SnapshotLayout.RECORD_FLAGS) & SnapshotLayout.FLAG_TOMBSTONE) != 0;
+    }
+
+    long indexRecordId(int entry) {
+        return recordId(buffer.getInt(indexEntry(entry) + SnapshotLayout.INDEX_RECORD));
+    }
+
+    byte[] indexEmail(int entry) {
+        int start = indexEntry(entry);
+        return heapBytes(buffer.getInt(start + SnapshotLayout.INDEX_OFFSET),
+                buffer.getInt(start + SnapshotLayout.INDEX_LENGTH));
+    }
+
+    // Копирует запись в другой снимок без декодирования строк
+    void copyRecord(int record, SnapshotFileBuilder builder) throws IOException {
+        int start = recordStart(record);
+        builder.addRecord(recordId(record),
+                buffer.getLong(start + SnapshotLayout.RECORD_VERSION),
+                buffer.getLong(start + SnapshotLayout.RECORD_CREATED_AT),
+                heapBytes(buffer.getInt(start + SnapshotLayout.RECORD_NAME_OFFSET),
+                        buffer.getInt(start + SnapshotLayout.RECORD_NAME_LENGTH)),
+                heapBytes(buffer.getInt(start + SnapshotLayout.RECORD_EMAIL_OFFSET),
+                        buffer.getInt(start + SnapshotLayout.RECORD_EMAIL_LENGTH)),
+                buffer.getInt(start + SnapshotLayout.RECORD_AGE),
+                0);
+    }
+
+    long recordVersion(int record) {
+        return buffer.getLong(recordStart(record) + SnapshotLayout.RECORD_VERSION);
+    }
+
+    private User readUser(int record) {
+        int start = recordStart(record);
+        User user = new User();
+        user.setId(buffer.getLong(start + SnapshotLayout.RECORD_ID));
+        user.setVersion(buffer.getLong(start + SnapshotLayout.RECORD_VERSION));
+        user.setCreatedAt(SnapshotLayout.fromEpochMicros(buffer.getLong(start + SnapshotLayout.RECORD_CREATED_AT)));
+        user.setName(heapString(buffer.getInt(start + SnapshotLayout.RECORD_NAME_OFFSET),
+                buffer.getInt(start + SnapshotLayout.RECORD_NAME_LENGTH)));
+        user.setEmail(heapString(buffer.getInt(start + SnapshotLayout.RECORD_EMAIL_OFFSET),
+                buffer.getInt(start + SnapshotLayout.RECORD_EMAIL_LENGTH)));
+        int age = buffer.getInt(start + SnapshotLayout.RECORD_AGE);
+        user.setAge(age != SnapshotLayout.NULL_AGE ? age : null);
+        return user;
+    }
+
+    private int recordStart(int record) {
+        return SnapshotLayout.HEADER_SIZE + record * SnapshotLayout.RECORD_SIZE;
+    }
+
+    private int indexEntry(int entry) {
+        return indexStart + entry * SnapshotLayout.INDEX_ENTRY_SIZE;
+    }
+
+    private String heapString(int offset, int length) {
+        return new String(heapBytes(offset, length), StandardCharsets.UTF_8);
+    }
+
+    private byte[] heapBytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(heapStart + offset, bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,301 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.ReturningWork;
+import ru.aston.hometask.intensive2.program.archive.UserArchive;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.util.EmailNormalizer;
+import ru.aston.hometask.intensive2.program.util.Transactions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Снятие снимков таблицы users и восстановление из них. Все запросы одного снимка идут
+ * в одной транзакции REPEATABLE READ, поэтому записи и email-индекс согласованы между собой.
+ * Дельта сравнивает пары (id, version) с базовым снимком и дочитывает только изменённые строки.
+ */
+public class UserSnapshotService {
+
+    private static final Logger logger = LogManager.getLogger(UserSnapshotService.class);
+
+    static final int FETCH_SIZE = 5_000;
+    static final int RESTORE_BATCH_SIZE = 1_000;
+
+    private static final String COUNT_SQL = "select count(*) from %s";
+    private static final String SELECT_SQL = "select id, version, created_at, name, email, age from %s order by id";
+    private static final String SELECT_VERSIONS_SQL = "select id, version from %s order by id";
+    private static final String SELECT_BY_IDS_SQL =
+            "select id, version, created_at, name, email, age from %s where id = any(?) order by id";
+    // COLLATE "C" сортирует по байтам UTF-8 — так же, как сравнивает UserSnapshot.findByEmail
+    private static final String EMAIL_KEYS_SQL = "select id, email_key from"
+            + " (select id, coalesce(email_normalized, lower(trim(email))) as email_key from %s%s) u"
+            + " order by email_key collate \"C\"";
+    private static final String RESTORE_SQL = "insert into users (id, name, email, email_normalized, age, created_at, version)"
+            + " values (?, ?, ?, ?, ?, ?, ?) on conflict (id) do update set name = excluded.name,"
+            + " email = excluded.email, email_normalized = excluded.email_normalized, age = excluded.age,"
+            + " created_at = excluded.created_at, version = excluded.version";
+    private static final String DELETE_ARCHIVED_SQL = "delete from users_archive where id = any(?)";
+
+    private final SessionFactory sessionFactory;
+    private final String source;
+
+    public UserSnapshotService(SessionFactory sessionFactory) {
+        this(sessionFactory, "users");
+    }
+
+    // source — таблица или представление с колонками users; с UserArchive.ALL_USERS_VIEW архивные
+    // пользователи входят в снимок и не считаются удалёнными в дельте
+    public UserSnapshotService(SessionFactory sessionFactory, String source) {
+        this.sessionFactory = sessionFactory;
+        this.source = source;
+    }
+
+    public UserSnapshot dump(Path target) {
+        logger.info("Writing user snapshot to {}", target);
+        try {
+            long checksum = inSnapshotTransaction(connection -> {
+                long createdAtMillis = System.currentTimeMillis();
+                int count = queryCount(connection);
+                try (SnapshotFileBuilder builder = new SnapshotFileBuilder(target, SnapshotLayout.KIND_FULL,
+                        count, count, 0)) {
+                    try (PreparedStatement statement = cursor(connection, String.format(SELECT_SQL, source))) {
+                        addRecords(statement, builder);
+                    }
+                    try (PreparedStatement statement = cursor(connection, String.format(EMAIL_KEYS_SQL, source, ""))) {
+                        addIndexEntries(statement, builder);
+                    }
+                    return builder.finish(createdAtMillis);
+                }
+            });
+            UserSnapshot snapshot = UserSnapshot.open(target, false);
+            logger.info("Wrote snapshot of {} users to {} (checksum {})", snapshot.size(), target, checksum);
+            return snapshot;
+        } catch (Exception e) {
+            logger.error("Error writing user snapshot to {}", target, e);
+            throw new RuntimeException("Error writing user snapshot", e);
+        }
+    }
+
+    // Дельта рассчитана на небольшую долю изменённых строк: их id и email-ключи передаются одним массивом
+    public UserSnapshot dumpDelta(UserSnapshot base, Path target) {
+        if (base.isDelta()) {
+            throw new IllegalArgumentException("Delta must be taken against a full snapshot");
+        }
+        logger.info("Writing user snapshot delta against {} to {}", base.getFile(), target);
+        try {
+            inSnapshotTransaction(connection -> {
+                long createdAtMillis = System.currentTimeMillis();
+                List<Long> changed = new ArrayList<>();
+                List<Long> deleted = new ArrayList<>();
+                diffVersions(connection, base, changed, deleted);
+                try (SnapshotFileBuilder builder = new SnapshotFileBuilder(target, SnapshotLayout.KIND_DELTA,
+                        changed.size() + deleted.size(), changed.size(), base.getChecksum())) {
+                    Object[] changedIds = changed.toArray();
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            String.format(SELECT_BY_IDS_SQL, source))) {
+                        statement.setArray(1, connection.createArrayOf("bigint", changedIds));
+                        addRecords(statement, builder, deleted);
+                    }
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            String.format(EMAIL_KEYS_SQL, source, " where id = any(?)"))) {
+                        statement.setArray(1, connection.createArrayOf("bigint", changedIds));
+                        addIndexEntries(statement, builder);
+                    }
+                    return builder.finish(createdAtMillis);
+                }
+            });
+            UserSnapshot delta = UserSnapshot.open(target, false);
+            logger.info("Wrote snapshot delta with {} changes to {}", delta.size(), target);
+            return delta;
+        } catch (Exception e) {
+            logger.error("Error writing user snapshot delta to {}", target, e);
+            throw new RuntimeException("Error writing user snapshot delta", e);
+        }
+    }
+
+    /**
+     * Загружает полный снимок в таблицу users с сохранением id, version и created_at
+     * (существующие строки с тем же id перезаписываются). Предназначено для подготовки окружения:
+     * кеши и сводка статистики об этой записи не узнают. Со снимком, включающим архив, строки с теми же id
+     * убираются из users_archive: иначе один пользователь оказался бы и активным, и архивным.
+     */
+    public int restore(UserSnapshot snapshot) {
+        if (snapshot.isDelta()) {
+            throw new IllegalArgumentException("Only a full snapshot can be restored");
+        }
+        logger.info("Restoring {} users from snapshot {}", snapshot.size(), snapshot.getFile());
+        try {
+            inTransaction(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(RESTORE_SQL)) {
+                    List<Long> pending = new ArrayList<>();
+                    snapshot.forEach(user -> {
+                        try {
+                            bindRestore(statement, user);
+                            statement.addBatch();
+                            pending.add(user.getId());
+                            if (pending.size() == RESTORE_BATCH_SIZE) {
+                                executeRestoreBatch(connection, statement, pending);
+                            }
+                        } catch (SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                    if (!pending.isEmpty()) {
+                        executeRestoreBatch(connection, statement, pending);
+                    }
+                }
+                return (long) snapshot.size();
+            });
+            logger.info("Restored {} users from snapshot {}", snapshot.size(), snapshot.getFile());
+            return snapshot.size();
+        } catch (Exception e) {
+            logger.error("Error restoring users from snapshot {}", snapshot.getFile(), e);
+            throw new RuntimeException("Error restoring users from snapshot", e);
+        }
+    }
+
+    private void diffVersions(Connection connection, UserSnapshot base, List<Long> changed, List<Long> deleted)
+            throws SQLException {
+        int record = 0;
+        try (PreparedStatement statement = cursor(connection, String.format(SELECT_VERSIONS_SQL, source));
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                long id = resultSet.getLong(1);
+                long version = resultSet.getLong(2);
+                while (record < base.size() && base.recordId(record) < id) {
+                    deleted.add(base.recordId(record++));
+                }
+                if (record < base.size() && base.recordId(record) == id) {
+                    if (base.recordVersion(record) != version) {
+                        changed.add(id);
+                    }
+                    record++;
+                } else {
+                    changed.add(id);
+                }
+            }
+        }
+        while (record < base.size()) {
+            deleted.add(base.recordId(record++));
+        }
+    }
+
+    private static void addRecords(PreparedStatement statement, SnapshotFileBuilder builder)
+            throws SQLException, IOException {
+        addRecords(statement, builder, List.of());
+    }
+
+    // Строки и удаления идут по возрастанию id, поэтому сливаются на ходу
+    private static void addRecords(PreparedStatement statement, SnapshotFileBuilder builder, List<Long> deleted)
+            throws SQLException, IOException {
+        int tombstone = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                long id = resultSet.getLong(1);
+                while (tombstone < deleted.size() && deleted.get(tombstone) < id) {
+                    builder.addTombstone(deleted.get(tombstone++));
+                }
+                long version = resultSet.getLong(2);
+                Timestamp createdAt = resultSet.getTimestamp(3);
+                String name = resultSet.getString(4);
+                String email = resultSet.getString(5);
+                int age = resultSet.getInt(6);
+                builder.addRecord(id, version, createdAt.toLocalDateTime(), name, email,
+                        resultSet.wasNull() ? null : age);
+            }
+        }
+        while (tombstone < deleted.size()) {
+            builder.addTombstone(deleted.get(tombstone++));
+        }
+    }
+
+    private static void addIndexEntries(PreparedStatement statement, SnapshotFileBuilder builder)
+            throws SQLException, IOException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                builder.addIndexEntry(resultSet.getLong(1), resultSet.getString(2).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void executeRestoreBatch(Connection connection, PreparedStatement statement, List<Long> ids)
+            throws SQLException {
+        if (UserArchive.ALL_USERS_VIEW.equals(source)) {
+            try (PreparedStatement delete = connection.prepareStatement(DELETE_ARCHIVED_SQL)) {
+                delete.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+                delete.executeUpdate();
+            }
+        }
+        statement.executeBatch();
+        ids.clear();
+    }
+
+    private static void bindRestore(PreparedStatement statement, User user) throws SQLException {
+        statement.setLong(1, user.getId());
+        statement.setString(2, user.getName());
+        statement.setString(3, user.getEmail());
+        statement.setString(4, EmailNormalizer.normalize(user.getEmail()));
+        if (user.getAge() != null) {
+            statement.setInt(5, user.getAge());
+        } else {
+            statement.setNull(5, Types.INTEGER);
+        }
+        statement.setTimestamp(6, Timestamp.valueOf(user.getCreatedAt()));
+        statement.setLong(7, user.getVersion());
+    }
+
+    private int queryCount(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(String.format(COUNT_SQL, source))) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    // Драйвер PostgreSQL использует серверный курсор только при fetchSize > 0 внутри транзакции
+    private static PreparedStatement cursor(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(FETCH_SIZE);
+        return statement;
+    }
+
+    private long inSnapshotTransaction(IoWork work) {
+        return inTransaction(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                // Уровень изоляции задаётся до первого запроса транзакции
+                statement.execute("set transaction isolation level repeatable read, read only");
+            }
+            return work.execute(connection);
+        });
+    }
+
+    private long inTransaction(IoWork work) {
+        ReturningWork<Long> returningWork = connection -> {
+            try {
+                return work.execute(connection);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        return Transactions.inJdbcTransaction(sessionFactory, returningWork);
+    }
+
+    private interface IoWork {
+        long execute(Connection connection) throws SQLException, IOException;
+    }
+}
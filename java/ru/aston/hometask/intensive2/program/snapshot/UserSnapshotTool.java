@@ -0,0 +1,68 @@
+package ru.aston.hometask.intensive2.program.snapshot;
+
+import ru.aston.hometask.intensive2.program.archive.UserArchive;
+import ru.aston.hometask.intensive2.program.util.HibernateUtil;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Работа со снимками из командной строки (подключение — как у приложения, через -Dhibernate.connection.*;
+ * с -Duser.archive.enabled=true снимок включает архивных пользователей):
+ * <pre>
+ * UserSnapshotTool dump &lt;snapshot&gt;
+ * UserSnapshotTool delta &lt;base&gt; &lt;delta&gt;
+ * UserSnapshotTool apply &lt;base&gt; &lt;delta&gt; &lt;snapshot&gt;
+ * UserSnapshotTool restore &lt;snapshot&gt;
+ * </pre>
+ */
+public class UserSnapshotTool {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: UserSnapshotTool dump|delta|apply|restore <files...>");
+            System.exit(2);
+        }
+        String command = args[0];
+        if (command.equals("apply")) {
+            requireArguments(args, 4);
+            UserSnapshot merged = UserSnapshot.applyDelta(
+                    UserSnapshot.open(path(args[1])), UserSnapshot.open(path(args[2])), path(args[3]));
+            System.out.println("Wrote " + merged.size() + " users to " + merged.getFile());
+            return;
+        }
+        try {
+            UserSnapshotService service = new UserSnapshotService(HibernateUtil.getSessionFactory(),
+                    Boolean.getBoolean("user.archive.enabled") ? UserArchive.ALL_USERS_VIEW : "users");
+            switch (command) {
+                case "dump":
+                    System.out.println("Wrote " + service.dump(path(args[1])).size() + " users to " + args[1]);
+                    break;
+                case "delta":
+                    requireArguments(args, 3);
+                    UserSnapshot delta = service.dumpDelta(UserSnapshot.open(path(args[1])), path(args[2]));
+                    System.out.println("Wrote " + delta.size() + " changes to " + args[2]);
+                    break;
+                case "restore":
+                    System.out.println("Restored " + service.restore(UserSnapshot.open(path(args[1]))) + " users");
+                    break;
+                default:
+                    System.err.println("Unknown command: " + command);
+                    System.exit(2);
+            }
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void requireArguments(String[] args, int count) {
+        if (args.length < count) {
+            System.err.println("Command " + args[0] + " expects " + (count - 1) + " file arguments");
+            System.exit(2);
+        }
+    }
+
+    private static Path path(String value) {
+        return Paths.get(value);
+    }
+}
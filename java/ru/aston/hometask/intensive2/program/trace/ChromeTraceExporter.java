@@ -0,0 +1,72 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import ru.aston.hometask.intensive2.program.util.JsonStrings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Трассы в формате Chrome Trace Event (JSON-массив событий "X"), который открывают
+ * chrome://tracing и ui.perfetto.dev. Время — микросекунды от эпохи с дробной частью.
+ * Закрывающая скобка пишется в close(); без неё файл тоже читается — формат это допускает.
+ */
+public class ChromeTraceExporter implements TraceExporter, AutoCloseable {
+
+    private final Writer out;
+    private final long pid = ProcessHandle.current().pid();
+    // Перевод System.nanoTime() в наносекунды от эпохи
+    private final long epochOffsetNanos = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+    private boolean first = true;
+
+    public ChromeTraceExporter(Path file) throws IOException {
+        this.out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 64 * 1024);
+        out.write("[\n");
+        out.flush();
+    }
+
+    @Override
+    public synchronized void export(List<Span> spans) throws IOException {
+        for (Span span : spans) {
+            out.write(first ? "{\"name\":" : ",\n{\"name\":");
+            first = false;
+            JsonStrings.write(out, span.getName());
+            out.write(",\"cat\":\"user\",\"ph\":\"X\",\"ts\":");
+            writeMicros(epochOffsetNanos + span.getStartNanos());
+            out.write(",\"dur\":");
+            writeMicros(span.getDurationNanos());
+            out.write(",\"pid\":");
+            out.write(Long.toString(pid));
+            out.write(",\"tid\":");
+            out.write(Long.toString(span.getThreadId()));
+            out.write(",\"args\":{\"traceId\":");
+            JsonStrings.write(out, span.getTraceId());
+            for (Map.Entry<String, String> attribute : span.getAttributes().entrySet()) {
+                out.write(',');
+                JsonStrings.write(out, attribute.getKey());
+                out.write(':');
+                JsonStrings.write(out, attribute.getValue());
+            }
+            out.write("}}");
+        }
+        out.flush();
+    }
+
+    private void writeMicros(long nanos) throws IOException {
+        out.write(Long.toString(nanos / 1_000));
+        out.write('.');
+        String fraction = Long.toString(nanos % 1_000 + 1_000);
+        out.write(fraction, 1, 3);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.write("\n]\n");
+        out.close();
+    }
+}
@@ -0,0 +1,80 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Участок трассы. Закрывается в том же потоке, где открыт, в порядке вложенности (try-with-resources).
+ * Для несэмплированных вызовов и выключенной трассировки возвращается {@link #NOOP}.
+ */
+public class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span(null, null, null);
+
+    private final Trace trace;
+    private final Span parent;
+    private final String name;
+    private final long startNanos;
+    private final long threadId;
+    private long endNanos;
+    private Map<String, String> attributes;
+
+    Span(Trace trace, Span parent, String name) {
+        this.trace = trace;
+        this.parent = parent;
+        this.name = name;
+        this.startNanos = trace != null ? System.nanoTime() : 0;
+        this.threadId = trace != null ? Thread.currentThread().getId() : 0;
+    }
+
+    public Span setAttribute(String key, Object value) {
+        if (trace != null) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, String.valueOf(value));
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (trace != null) {
+            endNanos = System.nanoTime();
+            Tracing.finish(this);
+        }
+    }
+
+    Trace getTrace() {
+        return trace;
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getDurationNanos() {
+        return endNanos - startNanos;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getTraceId() {
+        return trace != null ? trace.getId() : null;
+    }
+
+    // Пустая карта, если атрибутов нет
+    public Map<String, String> getAttributes() {
+        return attributes != null ? attributes : Map.of();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Законченные участки одной трассы и SQL, ожидающий выполнения; живёт в одном потоке
+final class Trace {
+
+    private final String id;
+    private final List<Span> spans = new ArrayList<>();
+    private String pendingSql;
+
+    Trace(String id) {
+        this.id = id;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    List<Span> getSpans() {
+        return spans;
+    }
+
+    void setPendingSql(String sql) {
+        pendingSql = sql;
+    }
+
+    String takePendingSql() {
+        String sql = pendingSql;
+        pendingSql = null;
+        return sql;
+    }
+}
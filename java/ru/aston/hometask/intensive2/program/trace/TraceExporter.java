@@ -0,0 +1,10 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface TraceExporter {
+
+    // Участки одной трассы в порядке завершения: корневой — последний
+    void export(List<Span> spans) throws IOException;
+}
@@ -0,0 +1,141 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Трассировка вызовов сервиса, DAO и SQL. Контекст — участок, открытый последним в текущем потоке.
+ * Участок без открытого родителя начинает трассу; решение о сэмплировании принимается один раз,
+ * на корне, и действует на все вложенные участки. Трасса короче minDurationNanos не экспортируется.
+ * Пока трассировка не настроена, span() сводится к чтению volatile-поля.
+ */
+public final class Tracing {
+
+    private static final Logger logger = LogManager.getLogger(Tracing.class);
+
+    // Метка потока, чей корневой вызов не попал в выборку: вложенные участки не создаются
+    private static final Span UNSAMPLED = new UnsampledRoot();
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static final AtomicLong traceIds = new AtomicLong(ThreadLocalRandom.current().nextLong() >>> 16);
+
+    private static volatile Settings settings;
+
+    private Tracing() {
+    }
+
+    public static void configure(TraceExporter exporter, double sampleRatio, long minDurationNanos) {
+        if (sampleRatio < 0 || sampleRatio > 1) {
+            throw new IllegalArgumentException("Sample ratio must be between 0 and 1");
+        }
+        settings = new Settings(exporter, sampleRatio, minDurationNanos);
+        logger.info("Tracing enabled: sample ratio {}, min duration {} ms", sampleRatio,
+                minDurationNanos / 1_000_000);
+    }
+
+    public static void disable() {
+        settings = null;
+    }
+
+    public static boolean isEnabled() {
+        return settings != null;
+    }
+
+    public static Span span(String name) {
+        Settings active = settings;
+        if (active == null) {
+            return Span.NOOP;
+        }
+        Span parent = current.get();
+        if (parent == UNSAMPLED) {
+            return Span.NOOP;
+        }
+        if (parent != null) {
+            Span span = new Span(parent.getTrace(), parent, name);
+            current.set(span);
+            return span;
+        }
+        if (ThreadLocalRandom.current().nextDouble() >= active.sampleRatio) {
+            current.set(UNSAMPLED);
+            return UNSAMPLED;
+        }
+        Span root = new Span(new Trace(Long.toHexString(traceIds.incrementAndGet())), null, name);
+        current.set(root);
+        return root;
+    }
+
+    // Вызов внутри участка; имя исключения попадает в атрибут error
+    public static <T> T traced(String name, Supplier<T> call) {
+        try (Span span = span(name)) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                span.setAttribute("error", e.getClass().getSimpleName());
+                throw e;
+            }
+        }
+    }
+
+    // Участок, открытый последним в потоке, если идёт сэмплированная трасса
+    public static Span currentSpan() {
+        Span span = current.get();
+        return span != null && span != UNSAMPLED ? span : Span.NOOP;
+    }
+
+    // SQL запоминается при подготовке выражения и достаётся участком его выполнения
+    static void setPendingSql(String sql) {
+        Span span = current.get();
+        if (span != null && span != UNSAMPLED) {
+            span.getTrace().setPendingSql(sql);
+        }
+    }
+
+    static String takePendingSql(Span span) {
+        return span.getTrace() != null ? span.getTrace().takePendingSql() : null;
+    }
+
+    static void finish(Span span) {
+        Trace trace = span.getTrace();
+        trace.getSpans().add(span);
+        if (span.getParent() != null) {
+            current.set(span.getParent());
+            return;
+        }
+        current.remove();
+        Settings active = settings;
+        if (active != null && span.getDurationNanos() >= active.minDurationNanos) {
+            try {
+                active.exporter.export(trace.getSpans());
+            } catch (Exception e) {
+                logger.warn("Failed to export trace {}", trace.getId(), e);
+            }
+        }
+    }
+
+    private static final class UnsampledRoot extends Span {
+        UnsampledRoot() {
+            super(null, null, null);
+        }
+
+        @Override
+        public void close() {
+            current.remove();
+        }
+    }
+
+    private static final class Settings {
+        final TraceExporter exporter;
+        final double sampleRatio;
+        final long minDurationNanos;
+
+        Settings(TraceExporter exporter, double sampleRatio, long minDurationNanos) {
+            this.exporter = exporter;
+            this.sampleRatio = sampleRatio;
+            this.minDurationNanos = minDurationNanos;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Участки для работы Hibernate с JDBC: получение соединения, выполнение выражений и flush.
+ * Создаётся Hibernate на каждую сессию (hibernate.session.events.auto), поэтому поля не разделяются потоками.
+ */
+public class TracingSessionEventListener extends BaseSessionEventListener {
+
+    private Span connection = Span.NOOP;
+    private Span statement = Span.NOOP;
+    private Span flush = Span.NOOP;
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        connection = Tracing.span("jdbc.connection");
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        connection.close();
+        connection = Span.NOOP;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statement = Tracing.span("sql");
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        endStatement();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        statement = Tracing.span("sql.batch");
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        endStatement();
+    }
+
+    @Override
+    public void flushStart() {
+        flush = Tracing.span("flush");
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        flush.setAttribute("entities", numberOfEntities).close();
+        flush = Span.NOOP;
+    }
+
+    private void endStatement() {
+        String sql = Tracing.takePendingSql(statement);
+        if (sql != null) {
+            statement.setAttribute("db.statement", sql);
+        }
+        statement.close();
+        statement = Span.NOOP;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Запоминает текст SQL для участка его выполнения (см. TracingSessionEventListener); сам SQL не меняет
+public class TracingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        if (Tracing.isEnabled()) {
+            Tracing.setPendingSql(sql);
+        }
+        return sql;
+    }
+}
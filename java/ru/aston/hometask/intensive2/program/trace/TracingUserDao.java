@@ -0,0 +1,90 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import ru.aston.hometask.intensive2.program.dao.ForwardingUserDao;
+import ru.aston.hometask.intensive2.program.dao.UserDao;
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static ru.aston.hometask.intensive2.program.trace.Tracing.traced;
+
+// Участок на каждый вызов DAO; внутри inTransaction вызовы идут через этот же декоратор
+public class TracingUserDao extends ForwardingUserDao {
+
+    public TracingUserDao(UserDao delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return traced("UserDao.findById", () -> delegate.findById(id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return traced("UserDao.findAll", delegate::findAll);
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return traced("UserDao.findAllById", () -> delegate.findAllById(ids));
+    }
+
+    @Override
+    public User save(User user) {
+        return traced("UserDao.save", () -> delegate.save(user));
+    }
+
+    @Override
+    public User update(User user) {
+        return traced("UserDao.update", () -> delegate.update(user));
+    }
+
+    @Override
+    public void delete(Long id) {
+        traced("UserDao.delete", () -> {
+            delegate.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return traced("UserDao.findByEmail", () -> delegate.findByEmail(email));
+    }
+
+    @Override
+    public boolean isEmailExistsForOtherUser(String email, Long excludeUserId) {
+        return traced("UserDao.isEmailExistsForOtherUser",
+                () -> delegate.isEmailExistsForOtherUser(email, excludeUserId));
+    }
+
+    @Override
+    public List<User> findByQuery(UserQuery query) {
+        return traced("UserDao.findByQuery", () -> delegate.findByQuery(query));
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return traced("UserDao.searchByName", () -> delegate.searchByName(fragment, limit));
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return traced("UserDao.upsertByEmail", () -> delegate.upsertByEmail(user));
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return traced("UserDao.upsertAll", () -> delegate.upsertAll(users));
+    }
+
+    @Override
+    public <T> T inTransaction(Function<UserDao, T> work) {
+        return traced("UserDao.inTransaction", () -> super.inTransaction(work));
+    }
+}
@@ -0,0 +1,79 @@
+package ru.aston.hometask.intensive2.program.trace;
+
+import ru.aston.hometask.intensive2.program.dao.UserQuery;
+import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.service.UserService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static ru.aston.hometask.intensive2.program.trace.Tracing.traced;
+
+// Корневой участок трассы на каждый вызов сервиса; здесь же принимается решение о сэмплировании
+public class TracingUserService implements UserService {
+
+    private final UserService delegate;
+
+    public TracingUserService(UserService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return traced("UserService.createUser", () -> delegate.createUser(name, email, age));
+    }
+
+    @Override
+    public Optional<User> getUserById(Long id) {
+        return traced("UserService.getUserById", () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return traced("UserService.getAllUsers", delegate::getAllUsers);
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return traced("UserService.updateUser", () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        traced("UserService.deleteUser", () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<User> getUserByEmail(String email) {
+        return traced("UserService.getUserByEmail", () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public boolean isEmailUnique(String email) {
+        return traced("UserService.isEmailUnique", () -> delegate.isEmailUnique(email));
+    }
+
+    @Override
+    public List<User> findUsers(UserQuery query) {
+        return traced("UserService.findUsers", () -> delegate.findUsers(query));
+    }
+
+    @Override
+    public List<User> searchByName(String fragment, int limit) {
+        return traced("UserService.searchByName", () -> delegate.searchByName(fragment, limit));
+    }
+
+    @Override
+    public User upsertByEmail(User user) {
+        return traced("UserService.upsertByEmail", () -> delegate.upsertByEmail(user));
+    }
+
+    @Override
+    public List<User> upsertAll(Collection<User> users) {
+        return traced("UserService.upsertAll", () -> delegate.upsertAll(users));
+    }
+}
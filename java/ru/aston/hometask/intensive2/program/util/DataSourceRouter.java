@@ -0,0 +1,164 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Маршрутизирует чтения на реплики, а записи — на primary.
+ * После собственной записи поток читает с primary в течение окна read-your-writes.
+ */
+public class DataSourceRouter {
+
+    private static final Logger logger = LogManager.getLogger(DataSourceRouter.class);
+
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_LATENCY
+    }
+
+    public static class Node {
+        private final String name;
+        private final SessionFactory sessionFactory;
+        private int consecutiveFailures;
+        private long downUntilNanos;
+        private double latencyEwmaNanos;
+
+        Node(String name, SessionFactory sessionFactory) {
+            this.name = name;
+            this.sessionFactory = sessionFactory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SessionFactory getSessionFactory() {
+            return sessionFactory;
+        }
+
+        public synchronized boolean isHealthy(long nowNanos) {
+            return nowNanos - downUntilNanos >= 0;
+        }
+
+        public synchronized double getLatencyEwmaNanos() {
+            return latencyEwmaNanos;
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+    }
+
+    private final SessionFactory primary;
+    private final List<Node> replicas;
+    private final Balancing balancing;
+    private final long readYourWritesNanos;
+    private final int failureThreshold;
+    private final long downtimeNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    public DataSourceRouter(SessionFactory primary, List<Node> replicas, Balancing balancing,
+                            long readYourWritesMillis, int failureThreshold, long downtimeMillis) {
+        this(primary, replicas, balancing, readYourWritesMillis, failureThreshold, downtimeMillis, System::nanoTime);
+    }
+
+    DataSourceRouter(SessionFactory primary, List<Node> replicas, Balancing balancing, long readYourWritesMillis,
+                     int failureThreshold, long downtimeMillis, LongSupplier nanoClock) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.balancing = balancing;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        this.failureThreshold = failureThreshold;
+        this.downtimeNanos = TimeUnit.MILLISECONDS.toNanos(downtimeMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    public static Node node(String name, SessionFactory sessionFactory) {
+        return new Node(name, sessionFactory);
+    }
+
+    public SessionFactory getPrimary() {
+        return primary;
+    }
+
+    public List<Node> getReplicas() {
+        return replicas;
+    }
+
+    // null означает "читать с primary"
+    public Node selectReadNode() {
+        if (replicas.isEmpty() || isInReadYourWritesWindow()) {
+            return null;
+        }
+        long now = nanoClock.getAsLong();
+        List<Node> healthy = new ArrayList<>(replicas.size());
+        for (Node node : replicas) {
+            if (node.isHealthy(now)) {
+                healthy.add(node);
+            }
+        }
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        if (balancing == Balancing.LEAST_LATENCY) {
+            Node best = healthy.get(0);
+            for (Node node : healthy) {
+                if (node.getLatencyEwmaNanos() < best.getLatencyEwmaNanos()) {
+                    best = node;
+                }
+            }
+            return best;
+        }
+        return healthy.get(Math.floorMod(roundRobin.getAndIncrement(), healthy.size()));
+    }
+
+    public void recordSuccess(Node node, long latencyNanos) {
+        synchronized (node) {
+            node.consecutiveFailures = 0;
+            node.latencyEwmaNanos = node.latencyEwmaNanos == 0
+                    ? latencyNanos
+                    : node.latencyEwmaNanos + LATENCY_EWMA_WEIGHT * (latencyNanos - node.latencyEwmaNanos);
+        }
+    }
+
+    public void recordFailure(Node node) {
+        synchronized (node) {
+            node.consecutiveFailures++;
+            if (node.consecutiveFailures >= failureThreshold) {
+                node.downUntilNanos = nanoClock.getAsLong() + downtimeNanos;
+                logger.warn("Read replica {} marked unhealthy after {} consecutive failures",
+                        node.name, node.consecutiveFailures);
+            }
+        }
+    }
+
+    public void markWrite() {
+        if (readYourWritesNanos > 0) {
+            lastWriteNanos.set(nanoClock.getAsLong());
+        }
+    }
+
+    public boolean isInReadYourWritesWindow() {
+        Long lastWrite = lastWriteNanos.get();
+        if (lastWrite == null) {
+            return false;
+        }
+        if (nanoClock.getAsLong() - lastWrite < readYourWritesNanos) {
+            return true;
+        }
+        lastWriteNanos.remove();
+        return false;
+    }
+}
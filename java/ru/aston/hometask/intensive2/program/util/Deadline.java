@@ -0,0 +1,156 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Срок выполнения операции, привязанный к текущему потоку. DAO переводят его в statement_timeout
+ * транзакции (SET LOCAL), так что выражение, пережившее срок, отменяет сам PostgreSQL, а соединение
+ * возвращается в пул. Вложенный within() может только сократить срок, но не продлить.
+ */
+public final class Deadline {
+
+    // SQLSTATE query_canceled: statement_timeout или явная отмена
+    private static final String QUERY_CANCELED_SQL_STATE = "57014";
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private static final AtomicLong applied = new AtomicLong();
+    private static final AtomicLong expired = new AtomicLong();
+    private static final AtomicLong cancelled = new AtomicLong();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    // Срок текущего потока; null — не задан
+    public static Deadline current() {
+        return current.get();
+    }
+
+    public static <T> T within(Duration timeout, Supplier<T> call) {
+        Deadline outer = current.get();
+        Deadline deadline = after(timeout);
+        if (outer != null && outer.deadlineNanos - deadline.deadlineNanos < 0) {
+            deadline = outer;
+        }
+        current.set(deadline);
+        try {
+            return call.get();
+        } finally {
+            if (outer != null) {
+                current.set(outer);
+            } else {
+                current.remove();
+            }
+        }
+    }
+
+    // Переносит срок текущего потока в задачу, которую выполнит другой поток (параллельный запрос к шардам)
+    public static <T> Supplier<T> propagate(Supplier<T> call) {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return call;
+        }
+        return () -> {
+            Deadline outer = current.get();
+            current.set(deadline);
+            try {
+                return call.get();
+            } finally {
+                if (outer != null) {
+                    current.set(outer);
+                } else {
+                    current.remove();
+                }
+            }
+        };
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    // Проверка срока текущего потока без обращения к базе
+    public static void checkCurrent() {
+        Deadline deadline = current.get();
+        if (deadline != null && deadline.isExpired()) {
+            expired.incrementAndGet();
+            throw new DeadlineExceededException("Deadline expired before the operation started");
+        }
+    }
+
+    // Перед каждым вызовом внутри единицы работы: statement_timeout, заданный на её начало, уже не отражает
+    // оставшееся время
+    public static void applyCurrent(Connection connection) throws SQLException {
+        Deadline deadline = current.get();
+        if (deadline != null) {
+            deadline.applyTo(connection);
+        }
+    }
+
+    // Вызывается сразу после начала транзакции; меньше миллисекунды не бывает: 0 отключил бы таймаут
+    public void applyTo(Connection connection) throws SQLException {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remaining <= 0) {
+            expired.incrementAndGet();
+            throw new DeadlineExceededException("Deadline expired before the transaction started");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set local statement_timeout = " + remaining);
+        }
+        applied.incrementAndGet();
+    }
+
+    // Отмена выражения сервером где-либо в цепочке причин либо уже переведённое исключение
+    public static boolean isExceeded(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException) {
+                return true;
+            }
+            if (cause instanceof SQLException
+                    && QUERY_CANCELED_SQL_STATE.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static DeadlineExceededException exceeded(Throwable cause) {
+        if (cause instanceof DeadlineExceededException) {
+            return (DeadlineExceededException) cause;
+        }
+        cancelled.incrementAndGet();
+        return new DeadlineExceededException("Statement cancelled by the server after the deadline", cause);
+    }
+
+    // Выполненные SET LOCAL statement_timeout: на начало транзакции и на каждый вызов внутри единицы работы
+    public static long getApplied() {
+        return applied.get();
+    }
+
+    // Операции, не начатые из-за истёкшего срока
+    public static long getExpired() {
+        return expired.get();
+    }
+
+    // Выражения, отменённые сервером
+    public static long getCancelled() {
+        return cancelled.get();
+    }
+}
@@ -0,0 +1,13 @@
+package ru.aston.hometask.intensive2.program.util;
+
+// Срок операции истёк: работа не начата или выражение отменено сервером по statement_timeout
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
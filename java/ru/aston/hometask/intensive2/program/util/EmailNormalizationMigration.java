@@ -0,0 +1,133 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Заполняет users.email_normalized у строк, созданных до появления колонки.
+ * Каждый батч — отдельная короткая транзакция: строки берутся через FOR UPDATE SKIP LOCKED,
+ * поэтому миграция не блокирует таблицу и не ждёт на строках, которые сейчас меняет приложение.
+ */
+public class EmailNormalizationMigration {
+
+    private static final Logger logger = LogManager.getLogger(EmailNormalizationMigration.class);
+
+    private static final String DUPLICATES_SQL =
+            "select lower(trim(email)) from users group by lower(trim(email)) having count(*) > 1 limit 20";
+    private static final String SELECT_BATCH_SQL =
+            "select id, email from users where email_normalized is null order by id limit ? for update skip locked";
+    private static final String UPDATE_SQL = "update users set email_normalized = ? where id = ?";
+
+    private final SessionFactory sessionFactory;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    public EmailNormalizationMigration(SessionFactory sessionFactory, int batchSize, long pauseMillis) {
+        this.sessionFactory = sessionFactory;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        long pauseMillis = args.length > 1 ? Long.parseLong(args[1]) : 50L;
+        try {
+            long updated = new EmailNormalizationMigration(HibernateUtil.getSessionFactory(), batchSize, pauseMillis)
+                    .run();
+            logger.info("Email normalization backfill finished, {} rows updated", updated);
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    public long run() {
+        List<String> duplicates = findCaseInsensitiveDuplicates();
+        if (!duplicates.isEmpty()) {
+            // Такие пары нарушат уникальный индекс — их нужно разрешить вручную до бэкфилла
+            throw new IllegalStateException("Emails differing only by case must be merged first: " + duplicates);
+        }
+        long total = 0;
+        int updated;
+        do {
+            updated = migrateBatch();
+            total += updated;
+            logger.info("Normalized emails for {} users ({} total)", updated, total);
+            if (updated > 0 && pauseMillis > 0) {
+                sleep();
+            }
+        } while (updated > 0);
+        return total;
+    }
+
+    private List<String> findCaseInsensitiveDuplicates() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.doReturningWork(connection -> {
+                List<String> duplicates = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(DUPLICATES_SQL);
+                     ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        duplicates.add(resultSet.getString(1));
+                    }
+                }
+                return duplicates;
+            });
+        }
+    }
+
+    private int migrateBatch() {
+        Transaction transaction = null;
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+            int updated = session.doReturningWork(connection -> {
+                int count = 0;
+                try (PreparedStatement select = connection.prepareStatement(SELECT_BATCH_SQL);
+                     PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+                    select.setInt(1, batchSize);
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        while (resultSet.next()) {
+                            update.setString(1, EmailNormalizer.normalize(resultSet.getString("email")));
+                            update.setLong(2, resultSet.getLong("id"));
+                            update.addBatch();
+                            count++;
+                        }
+                    }
+                    if (count > 0) {
+                        update.executeBatch();
+                    }
+                }
+                return count;
+            });
+            transaction.commit();
+            return updated;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Error normalizing email batch", e);
+            throw new RuntimeException("Error normalizing email batch", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Email normalization backfill interrupted", e);
+        }
+    }
+}
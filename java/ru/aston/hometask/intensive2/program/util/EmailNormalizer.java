@@ -0,0 +1,14 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import java.util.Locale;
+
+// Каноническая форма email для поиска и уникальности: John@X.com и john@x.com — один пользователь
+public final class EmailNormalizer {
+
+    private EmailNormalizer() {
+    }
+
+    public static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,18 +1,35 @@
 package ru.aston.hometask.intensive2.program.util;
 
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
 import ru.aston.hometask.intensive2.program.model.User;
+import ru.aston.hometask.intensive2.program.model.UserEmailRoute;
+import ru.aston.hometask.intensive2.program.trace.TracingSessionEventListener;
+import ru.aston.hometask.intensive2.program.trace.TracingStatementInspector;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class HibernateUtil {
+    private static final String[] OVERRIDABLE_PROPERTIES = {
+            "hibernate.connection.url",
+            "hibernate.connection.username",
+            "hibernate.connection.password"
+    };
+
     private static final SessionFactory sessionFactory;
+    private static final DataSourceRouter router;
+    private static final List<Runnable> shutdownHooks = new ArrayList<>();
 
     static {
         try {
-            sessionFactory = new Configuration()
-                    .configure("hibernate.cfg.xml")
-                    .addAnnotatedClass(User.class)
-                    .buildSessionFactory();
+            sessionFactory = buildSessionFactory(null, false);
+            router = buildRouter(sessionFactory);
         } catch (Exception e) {
             System.err.println("Initial SessionFactory creation failed: " + e);
             throw new ExceptionInInitializerError(e);
@@ -23,9 +40,91 @@ public class HibernateUtil {
         return sessionFactory;
     }
 
+    public static DataSourceRouter getRouter() {
+        return router;
+    }
+
+    // Отдельное соединение вне пула — для долгоживущих задач вроде LISTEN
+    public static Connection openDedicatedConnection() throws SQLException {
+        Map<String, Object> properties = sessionFactory.getProperties();
+        return DriverManager.getConnection(
+                (String) properties.get("hibernate.connection.url"),
+                (String) properties.get("hibernate.connection.username"),
+                (String) properties.get("hibernate.connection.password"));
+    }
+
+    // url == null — primary из hibernate.cfg.xml (с учётом системных свойств)
+    public static SessionFactory buildSessionFactory(String url, boolean readReplica) {
+        Configuration configuration = new Configuration()
+                .configure("hibernate.cfg.xml")
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserEmailRoute.class);
+        // Участки трассы для соединений, SQL и flush; без настроенной трассировки ничего не записывают
+        configuration.setProperty(AvailableSettings.STATEMENT_INSPECTOR, TracingStatementInspector.class.getName());
+        configuration.setProperty(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                TracingSessionEventListener.class.getName());
+        for (String property : OVERRIDABLE_PROPERTIES) {
+            String value = System.getProperty(property);
+            if (value != null) {
+                configuration.setProperty(property, value);
+            }
+        }
+        if (url != null) {
+            configuration.setProperty("hibernate.connection.url", url);
+        }
+        if (readReplica) {
+            configuration.setProperty("hibernate.hbm2ddl.auto", "none");
+            String username = System.getProperty("hibernate.replica.username");
+            if (username != null) {
+                configuration.setProperty("hibernate.connection.username", username);
+                configuration.setProperty("hibernate.connection.password",
+                        System.getProperty("hibernate.replica.password", ""));
+            }
+        }
+        return configuration.buildSessionFactory();
+    }
+
+    private static DataSourceRouter buildRouter(SessionFactory primary) {
+        List<DataSourceRouter.Node> replicas = new ArrayList<>();
+        String urls = System.getProperty("hibernate.replica.urls", "");
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                replicas.add(DataSourceRouter.node(url.trim(), buildSessionFactory(url.trim(), true)));
+            }
+        }
+        DataSourceRouter.Balancing balancing = DataSourceRouter.Balancing.valueOf(
+                System.getProperty("hibernate.replica.balancing", "ROUND_ROBIN").toUpperCase());
+        return new DataSourceRouter(primary, replicas, balancing,
+                Long.getLong("hibernate.replica.readYourWritesMillis", 1_000L),
+                Integer.getInteger("hibernate.replica.failureThreshold", 3),
+                Long.getLong("hibernate.replica.downtimeMillis", 5_000L));
+    }
+
+    // Хуки выполняются до закрытия SessionFactory, в обратном порядке регистрации
+    public static synchronized void registerShutdownHook(Runnable hook) {
+        shutdownHooks.add(hook);
+    }
+
     public static void shutdown() {
+        List<Runnable> hooks;
+        synchronized (HibernateUtil.class) {
+            hooks = new ArrayList<>(shutdownHooks);
+            shutdownHooks.clear();
+        }
+        for (int i = hooks.size() - 1; i >= 0; i--) {
+            try {
+                hooks.get(i).run();
+            } catch (Exception e) {
+                System.err.println("Shutdown hook failed: " + e);
+            }
+        }
+        if (router != null) {
+            for (DataSourceRouter.Node replica : router.getReplicas()) {
+                replica.getSessionFactory().close();
+            }
+        }
         if (sessionFactory != null) {
             sessionFactory.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Повтор операции с экспоненциальной задержкой и full jitter: случайная пауза в [0, backoff)
+ * разводит конкурирующие потоки, которые иначе снова столкнулись бы на той же строке.
+ */
+public class RetryPolicy {
+
+    private static final Logger logger = LogManager.getLogger(RetryPolicy.class);
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Sleeper sleeper;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        this(maxAttempts, initialBackoffMillis, maxBackoffMillis, Thread::sleep);
+    }
+
+    RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, Sleeper sleeper) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Max attempts must be positive");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Backoff must be non-negative and not exceed max backoff");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.sleeper = sleeper;
+    }
+
+    public static RetryPolicy noRetry() {
+        return new RetryPolicy(1, 0, 0);
+    }
+
+    public <T> T execute(Supplier<T> action, Predicate<RuntimeException> retryable) {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                if (!retryable.test(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    logger.warn("Giving up after {} attempts", attempt);
+                    throw e;
+                }
+                long pause = backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+                // Повтор, который не успеет до срока операции, не начинается
+                Deadline deadline = Deadline.current();
+                if (deadline != null && deadline.remainingMillis() <= pause) {
+                    exhausted.incrementAndGet();
+                    logger.warn("Giving up after {} attempts: deadline is too close", attempt);
+                    throw e;
+                }
+                retries.incrementAndGet();
+                logger.debug("Attempt {} failed with {}, retrying in {} ms", attempt, e.getClass().getSimpleName(), pause);
+                sleep(pause, e);
+                backoff = Math.min(maxBackoffMillis, Math.max(1, backoff * 2));
+            }
+        }
+    }
+
+    // Асинхронный вариант: пауза между попытками не занимает поток, следующая попытка планируется с задержкой
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> action,
+                                                 Predicate<RuntimeException> retryable) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(action, retryable, 1, initialBackoffMillis, result);
+        return result;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    private <T> void attemptAsync(Supplier<CompletableFuture<T>> action, Predicate<RuntimeException> retryable,
+                                  int attempt, long backoff, CompletableFuture<T> result) {
+        action.get().whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (!(cause instanceof RuntimeException) || !retryable.test((RuntimeException) cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (attempt >= maxAttempts) {
+                exhausted.incrementAndGet();
+                logger.warn("Giving up after {} attempts", attempt);
+                result.completeExceptionally(cause);
+                return;
+            }
+            long pause = backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+            retries.incrementAndGet();
+            logger.debug("Attempt {} failed with {}, retrying in {} ms",
+                    attempt, cause.getClass().getSimpleName(), pause);
+            long nextBackoff = Math.min(maxBackoffMillis, Math.max(1, backoff * 2));
+            CompletableFuture.delayedExecutor(pause, TimeUnit.MILLISECONDS)
+                    .execute(() -> attemptAsync(action, retryable, attempt + 1, nextBackoff, result));
+        });
+    }
+
+    private void sleep(long millis, RuntimeException failure) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            sleeper.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.addSuppressed(e);
+            throw failure;
+        }
+    }
+}
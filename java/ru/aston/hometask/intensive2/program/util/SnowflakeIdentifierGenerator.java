@@ -0,0 +1,19 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+
+// Уже назначенный id сохраняется: так шардированный DAO и перенос строк между шардами не меняют ключ
+public class SnowflakeIdentifierGenerator implements IdentifierGenerator {
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Serializable assigned = session.getEntityPersister(null, object).getIdentifier(object, session);
+        if (assigned != null) {
+            return assigned;
+        }
+        return SnowflakeIdGenerator.getDefault().nextId();
+    }
+}
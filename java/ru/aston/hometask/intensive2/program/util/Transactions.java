@@ -0,0 +1,66 @@
+package ru.aston.hometask.intensive2.program.util;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.jdbc.ReturningWork;
+
+import java.util.function.Function;
+
+// Короткая сессия или транзакция на произвольной SessionFactory (шард, основной узел); при исключении — откат.
+// Срок операции текущего потока (Deadline) ставится транзакции как statement_timeout
+public final class Transactions {
+
+    private Transactions() {
+    }
+
+    public static <T> T inSession(SessionFactory sessionFactory, Function<Session, T> work) {
+        // SET LOCAL действует только внутри транзакции
+        if (Deadline.current() != null) {
+            return inTransaction(sessionFactory, work);
+        }
+        try (Session session = sessionFactory.openSession()) {
+            return work.apply(session);
+        }
+    }
+
+    public static <T> T inTransaction(SessionFactory sessionFactory, Function<Session, T> work) {
+        Transaction transaction = null;
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+            session.doWork(Deadline::applyCurrent);
+            T result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw Deadline.isExceeded(e) ? Deadline.exceeded(e) : e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    // JDBC-работа в транзакции сессии; при выключенном autocommit драйвер PostgreSQL читает курсором (fetchSize > 0)
+    public static <T> T inJdbcTransaction(SessionFactory sessionFactory, ReturningWork<T> work) {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                session.doWork(Deadline::applyCurrent);
+                T result = session.doReturningWork(work);
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw Deadline.isExceeded(e) ? Deadline.exceeded(e) : e;
+            }
+        }
+    }
+}